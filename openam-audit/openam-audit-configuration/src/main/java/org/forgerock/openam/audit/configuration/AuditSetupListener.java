@@ -11,11 +11,15 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 package org.forgerock.openam.audit.configuration;
 
+import java.util.Collections;
+import java.util.Set;
+
 import com.sun.identity.setup.SetupListener;
+import com.sun.identity.setup.SetupPhase;
 import org.forgerock.guice.core.InjectorHolder;
 
 /**
@@ -23,10 +27,20 @@ import org.forgerock.guice.core.InjectorHolder;
  *
  * @since 13.0.0
  */
-public class AuditSetupListener implements SetupListener {
+public class AuditSetupListener implements SetupPhase {
 
     @Override
     public void setupComplete() {
         InjectorHolder.getInstance(AuditServiceConfigurationProvider.class).setupComplete();
     }
+
+    @Override
+    public Set<Class<? extends SetupListener>> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean isBackground() {
+        return false;
+    }
 }
@@ -28,10 +28,8 @@ package org.forgerock.openam.authentication.modules.adaptive;
 
 import static org.forgerock.openam.utils.Time.*;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.InetAddress;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.security.AccessController;
@@ -39,10 +37,13 @@ import java.security.Principal;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -58,6 +59,7 @@ import org.forgerock.openam.utils.ClientUtils;
 import org.forgerock.openam.utils.CollectionUtils;
 import org.forgerock.openam.utils.IPRange;
 import org.forgerock.openam.utils.ValidateIPaddress;
+import org.forgerock.util.annotations.VisibleForTesting;
 
 import com.googlecode.ipv6.IPv6Address;
 import com.googlecode.ipv6.IPv6AddressRange;
@@ -66,8 +68,8 @@ import com.iplanet.dpro.session.service.InternalSession;
 import com.iplanet.sso.SSOException;
 import com.iplanet.sso.SSOToken;
 import com.iplanet.sso.SSOTokenManager;
-import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.sun.identity.common.CaseInsensitiveHashMap;
 import com.sun.identity.authentication.spi.AMLoginModule;
 import com.sun.identity.authentication.spi.AuthLoginException;
 import com.sun.identity.authentication.spi.AuthenticationException;
@@ -140,10 +142,10 @@ public class Adaptive extends AMLoginModule {
     private static final String REQ_HEADER_SCORE = "openam-auth-adaptive-req-header-score";
     private static final String REQ_HEADER_INVERT = "openam-auth-adaptive-req-header-invert";
     private static Debug debug = Debug.getInstance(ADAPTIVE);
-    private static DatabaseReader lookupService = null;
     private String userUUID = null;
     private String userName = null;
     private AMIdentity amAuthIdentity = null;
+    private Map<String, Set<String>> profileAttributes = Collections.emptyMap();
     private Map postAuthNMap = null;
     private Principal userPrincipal = null;
     private String clientIP = null;
@@ -203,7 +205,7 @@ public class Adaptive extends AMLoginModule {
     private static final String IP_END = "IPEnd";
     private static final String IP_TYPE = "Type";
 
-    private static final String UNKNOWN_COUNTRY_CODE = "--";
+    static final String UNKNOWN_COUNTRY_CODE = "--";
 
     // support for search with alias name
     private Set<String> userSearchAttributes = Collections.emptySet();
@@ -289,76 +291,7 @@ public class Adaptive extends AMLoginModule {
         }
 
         try {
-            if (IPRangeCheck) {
-                int retVal = checkIPRange();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkIPRange: returns {}", ADAPTIVE,  retVal);
-                }
-                currentScore += retVal;
-            }
-            if (IPHistoryCheck) {
-                int retVal = checkIPHistory();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkIPHistory: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (knownCookieCheck) {
-                int retVal = checkKnownCookie();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkKnownCookie: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (timeOfDayCheck) {
-                int retVal = checkTimeDay();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkTimeDay: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (timeSinceLastLoginCheck) {
-                int retVal = checkLastLogin();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkLastLogin: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (riskAttributeCheck) {
-                int retVal = checkRiskAttribute();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkRiskAttribute: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (authFailureCheck) {
-                int retVal = checkAuthFailure();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkAuthFailure: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (deviceCookieCheck) {
-                int retVal = checkRegisteredClient();
-                if (debug.messageEnabled()) {
-                    debug.message( "{}.checkRegisteredClient: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (geoLocationCheck) {
-                int retVal = checkGeoLocation();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkGeoLocation: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
-            if (reqHeaderCheck) {
-                int retVal = checkRequestHeader();
-                if (debug.messageEnabled()) {
-                    debug.message("{}.checkRequestHeader: returns {}", ADAPTIVE, retVal);
-                }
-                currentScore += retVal;
-            }
+            currentScore = evaluateChecks(getEnabledChecks(), adaptiveThreshold);
         } catch (Exception ex) {
             currentScore = Integer.MAX_VALUE;
             debug.error("{}.process() : Unknown exception occurred while executing checks, module will fail.",
@@ -380,6 +313,138 @@ public class Adaptive extends AMLoginModule {
         }
     }
 
+    /**
+     * Evaluates the given checks in order, and returns the risk score. Once the score is certain to reach the
+     * threshold, or certain to stay below it, whatever the remaining checks return, only the remaining checks which
+     * save state for the post authentication plugin are evaluated, as the others can no longer change the outcome.
+     *
+     * @param checks The checks to evaluate.
+     * @param threshold The score at or above which authentication fails.
+     * @return The risk score, which is at or above the threshold if and only if evaluating every check would have
+     * returned a score at or above the threshold.
+     */
+    @VisibleForTesting
+    static int evaluateChecks(List<RiskCheck> checks, int threshold) {
+        int currentScore = 0;
+        int minRemainingScore = 0;
+        int maxRemainingScore = 0;
+        for (RiskCheck check : checks) {
+            minRemainingScore += Math.min(0, check.score);
+            maxRemainingScore += Math.max(0, check.score);
+        }
+        for (RiskCheck check : checks) {
+            boolean decided = currentScore + minRemainingScore >= threshold
+                    || currentScore + maxRemainingScore < threshold;
+            minRemainingScore -= Math.min(0, check.score);
+            maxRemainingScore -= Math.max(0, check.score);
+            if (decided && !check.savesState) {
+                if (debug.messageEnabled()) {
+                    debug.message("{}.{}: skipped as the outcome is decided with score {}", ADAPTIVE, check.name,
+                            currentScore);
+                }
+                continue;
+            }
+            int retVal = check.evaluate();
+            if (debug.messageEnabled()) {
+                debug.message("{}.{}: returns {}", ADAPTIVE, check.name, retVal);
+            }
+            currentScore += retVal;
+        }
+        return currentScore;
+    }
+
+    /**
+     * Returns the enabled checks, cheapest first: checks of the request, then checks of the profile attributes
+     * read with the identity, then the account lockout and geolocation checks, which may need further reads.
+     *
+     * @return The enabled checks in the order they should be evaluated.
+     */
+    private List<RiskCheck> getEnabledChecks() {
+        List<RiskCheck> checks = new ArrayList<>();
+        if (IPRangeCheck) {
+            checks.add(new RiskCheck("checkIPRange", IPRangeScore, false) {
+                @Override
+                int evaluate() {
+                    return checkIPRange();
+                }
+            });
+        }
+        if (reqHeaderCheck) {
+            checks.add(new RiskCheck("checkRequestHeader", reqHeaderScore, false) {
+                @Override
+                int evaluate() {
+                    return checkRequestHeader();
+                }
+            });
+        }
+        if (timeOfDayCheck) {
+            checks.add(new RiskCheck("checkTimeDay", 0, false) {
+                @Override
+                int evaluate() {
+                    return checkTimeDay();
+                }
+            });
+        }
+        if (knownCookieCheck) {
+            checks.add(new RiskCheck("checkKnownCookie", knownCookieScore, knownCookieSave) {
+                @Override
+                int evaluate() {
+                    return checkKnownCookie();
+                }
+            });
+        }
+        if (deviceCookieCheck) {
+            checks.add(new RiskCheck("checkRegisteredClient", deviceCookieScore, deviceCookieSave) {
+                @Override
+                int evaluate() {
+                    return checkRegisteredClient();
+                }
+            });
+        }
+        if (timeSinceLastLoginCheck) {
+            checks.add(new RiskCheck("checkLastLogin", timeSinceLastLoginScore,
+                    timeSinceLastLoginSave && timeSinceLastLoginAttribute != null) {
+                @Override
+                int evaluate() {
+                    return checkLastLogin();
+                }
+            });
+        }
+        if (IPHistoryCheck) {
+            checks.add(new RiskCheck("checkIPHistory", IPHistoryScore, IPHistorySave) {
+                @Override
+                int evaluate() {
+                    return checkIPHistory();
+                }
+            });
+        }
+        if (riskAttributeCheck) {
+            checks.add(new RiskCheck("checkRiskAttribute", riskAttributeScore, false) {
+                @Override
+                int evaluate() {
+                    return checkRiskAttribute();
+                }
+            });
+        }
+        if (authFailureCheck) {
+            checks.add(new RiskCheck("checkAuthFailure", authFailureScore, false) {
+                @Override
+                int evaluate() {
+                    return checkAuthFailure();
+                }
+            });
+        }
+        if (geoLocationCheck) {
+            checks.add(new RiskCheck("checkGeoLocation", geoLocationScore, false) {
+                @Override
+                int evaluate() {
+                    return checkGeoLocation();
+                }
+            });
+        }
+        return checks;
+    }
+
     /**
      * Checks what type of version of IP range is
      * @param range can be a range, CIDR, or a single IP address
@@ -631,10 +696,6 @@ public class Adaptive extends AMLoginModule {
         return retVal;
     }
 
-    private String getCountryCode(DatabaseReader db, String ipAddress) throws IOException, GeoIp2Exception {
-        return db.country(InetAddress.getByName(ipAddress)).getCountry().getIsoCode();
-    }
-
     protected int checkGeoLocation() {
         int retVal = 0;
         String countryCode;
@@ -643,9 +704,10 @@ public class Adaptive extends AMLoginModule {
             debug.message("{}.checkGeoLocation: GeoLocation database location = {}", ADAPTIVE, geoLocationDatabase);
         }
 
-        DatabaseReader db = getLookupService(geoLocationDatabase);
+        GeoLocationLookup lookup = geoLocationDatabase == null ? null
+                : GeoLocationLookup.getInstance(geoLocationDatabase);
 
-        if (db == null) {
+        if (lookup == null || !lookup.isAvailable()) {
             debug.error("{}.checkGeoLocation: GeoLocation database lookup returns null", ADAPTIVE);
             return geoLocationScore;
         }
@@ -656,7 +718,7 @@ public class Adaptive extends AMLoginModule {
         }
 
         try {
-            countryCode = getCountryCode(db, clientIP);
+            countryCode = lookup.getCountryCode(clientIP);
         } catch (IOException e) {
             if (debug.warningEnabled()) {
                 debug.warning("{}.checkGeoLocation: #getCountryCode :: An IO error happened", ADAPTIVE, e);
@@ -928,43 +990,58 @@ public class Adaptive extends AMLoginModule {
     }
 
     private Set<String> getIdentityAttributeSet(String attr) {
-        Set<String> retVal = null;
-
-        try {
-            retVal = amAuthIdentity.getAttribute(attr);
-        } catch (Exception e) {
-            if (debug.messageEnabled()) {
-                debug.message("{}.getIdentityAttributeSet Attribute: {}", ADAPTIVE, attr, e);
-            }
-        }
-        return retVal;
+        return profileAttributes.get(attr);
     }
 
     private String getIdentityAttributeString(String attr) {
-        Set<String> theSet = null;
-        String retVal = null;
+        Set<String> theSet = profileAttributes.get(attr);
+        return CollectionUtils.isEmpty(theSet) ? null : theSet.iterator().next();
+    }
 
-        try {
-            theSet = amAuthIdentity.getAttribute(attr);
-            if (theSet.size() > 0) {
-                retVal = theSet.iterator().next();
-            }
-        } catch (Exception e) {
-            if (debug.messageEnabled()) {
-                debug.message("{}.getIdentityAttributeString Attribute: {}", ADAPTIVE, attr, e);
-            }
+    /**
+     * Returns the names of the profile attributes needed by the enabled checks, so that they can all be read with
+     * the identity.
+     */
+    private Set<String> getProfileAttributeNames() {
+        Set<String> names = new HashSet<>();
+        if (IPHistoryCheck && IPHistoryAttribute != null) {
+            names.add(IPHistoryAttribute);
         }
-        return retVal;
+        if (riskAttributeCheck && riskAttributeName != null && riskAttributeValue != null) {
+            names.add(riskAttributeName);
+        }
+        return names;
+    }
 
+    private Map<String, Set<String>> getProfileAttributes(AMIdentity identity, IdSearchResults searchResults,
+            Set<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Set<String>> attributes = (Map<String, Set<String>>) searchResults.getResultAttributes()
+                .get(identity);
+        if (attributes == null) {
+            // The data store did not return the attributes with the search results
+            try {
+                attributes = identity.getAttributes(names);
+            } catch (IdRepoException | SSOException e) {
+                if (debug.messageEnabled()) {
+                    debug.message("{}.getProfileAttributes Attributes: {}", ADAPTIVE, names, e);
+                }
+                return Collections.emptyMap();
+            }
+        }
+        return new CaseInsensitiveHashMap<>(attributes);
     }
 
     private AMIdentity getIdentity() {
         AMIdentity theID = null;
         AMIdentityRepository amIdRepo = getAMIdentityRepository(getRequestOrg());
 
+        Set<String> profileAttributeNames = getProfileAttributeNames();
         IdSearchControl idsc = new IdSearchControl();
         idsc.setRecursive(true);
-        idsc.setAllReturnAttributes(true);
+        idsc.setReturnAttributes(profileAttributeNames);
         // search for the identity
         Set<AMIdentity> results = Collections.EMPTY_SET;
         try {
@@ -992,6 +1069,7 @@ public class Adaptive extends AMLoginModule {
                 debug.error("{}.getIdentity : More than one user found for the userName '{}'", ADAPTIVE, userName);
             } else {
                 theID = results.iterator().next();
+                profileAttributes = getProfileAttributes(theID, searchResults, profileAttributeNames);
             }
 
         } catch (IdRepoException e) {
@@ -1185,6 +1263,7 @@ public class Adaptive extends AMLoginModule {
         postAuthNMap = null;
 
         amAuthIdentity = null;
+        profileAttributes = Collections.emptyMap();
         clientIP = null;
         adaptiveThreshold = 1;
 
@@ -1286,15 +1365,27 @@ public class Adaptive extends AMLoginModule {
         return result;
     }
 
-    private static synchronized DatabaseReader getLookupService(String dbLocation) {
-        try {
-            if (lookupService == null) {
-                lookupService = new DatabaseReader.Builder(new File(dbLocation)).build();
-            }
-        } catch (IOException ioe) {
-            //don't log the stacktrace, since it will occur on any module invocation
-            debug.message("{}.getLookupService : Unable to initialize GeoDB service: {}", ADAPTIVE, ioe.getMessage());
+    /**
+     * One of the checks which add to the risk score.
+     */
+    @VisibleForTesting
+    abstract static class RiskCheck {
+        private final String name;
+        private final int score;
+        private final boolean savesState;
+
+        /**
+         * @param name The name of the check, for debugging.
+         * @param score The score of the check. The check adds either zero or this score to the risk score.
+         * @param savesState Whether the check saves state for the post authentication plugin, and so must run even
+         * once the outcome is known.
+         */
+        RiskCheck(String name, int score, boolean savesState) {
+            this.name = name;
+            this.score = score;
+            this.savesState = savesState;
         }
-        return lookupService;
+
+        abstract int evaluate();
     }
 }
@@ -0,0 +1,165 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.authentication.modules.adaptive;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.maxmind.geoip2.DatabaseReader;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Country lookups against one GeoIP2 database file, shared by every Adaptive module instance configured with that
+ * file.
+ * <p>
+ * Lookups never block: the database reader is thread safe and is published through a volatile field, and the
+ * country found for each IP address is cached. At most once a minute, one lookup checks whether the database file has
+ * been replaced and, if so, opens the new file and clears the cache, while other lookups carry on with the old
+ * reader. The old reader is not closed, as lookups may still be using it; it is released once no longer referenced.
+ */
+final class GeoLocationLookup {
+
+    private static final String ADAPTIVE = "amAuthAdaptive";
+    private static final Debug DEBUG = Debug.getInstance(ADAPTIVE);
+    private static final ConcurrentMap<String, GeoLocationLookup> LOOKUPS = new ConcurrentHashMap<>();
+    private static final long RELOAD_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_CACHED_ADDRESSES = 10000;
+
+    private final File database;
+    private final AtomicLong nextReloadCheck = new AtomicLong();
+    private final ConcurrentMap<String, String> countries = new ConcurrentHashMap<>();
+    private volatile Reader reader;
+
+    private GeoLocationLookup(File database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns the lookup for the given database file.
+     *
+     * @param databaseLocation The path to the GeoIP2 country database.
+     * @return The lookup.
+     */
+    static GeoLocationLookup getInstance(String databaseLocation) {
+        GeoLocationLookup lookup = LOOKUPS.get(databaseLocation);
+        if (lookup == null) {
+            lookup = new GeoLocationLookup(new File(databaseLocation));
+            GeoLocationLookup existing = LOOKUPS.putIfAbsent(databaseLocation, lookup);
+            if (existing != null) {
+                lookup = existing;
+            }
+        }
+        return lookup;
+    }
+
+    /**
+     * Whether the database has been opened, opening it if it has not yet been.
+     *
+     * @return {@code true} if countries can be looked up.
+     */
+    boolean isAvailable() {
+        return getReader() != null;
+    }
+
+    /**
+     * Returns the ISO code of the country of the given IP address.
+     *
+     * @param ipAddress The IP address.
+     * @return The country code, or {@code null} if the database is not available.
+     * @throws IOException If the database cannot be read or the address cannot be parsed.
+     * @throws GeoIp2Exception If the address cannot be looked up.
+     */
+    String getCountryCode(String ipAddress) throws IOException, GeoIp2Exception {
+        Reader current = getReader();
+        if (current == null) {
+            return null;
+        }
+        String countryCode = countries.get(ipAddress);
+        if (countryCode == null) {
+            countryCode = current.databaseReader.country(InetAddress.getByName(ipAddress)).getCountry().getIsoCode();
+            if (countryCode == null) {
+                countryCode = Adaptive.UNKNOWN_COUNTRY_CODE;
+            }
+            if (countries.size() >= MAX_CACHED_ADDRESSES) {
+                countries.clear();
+            }
+            if (reader == current) {
+                countries.put(ipAddress, countryCode);
+            }
+        }
+        return countryCode;
+    }
+
+    private Reader getReader() {
+        Reader current = reader;
+        long now = currentTimeMillis();
+        if (current == null) {
+            // Lookups wait for the first open so that they don't fail while it is in progress
+            synchronized (this) {
+                current = reader;
+                if (current == null && now >= nextReloadCheck.get()) {
+                    nextReloadCheck.set(now + RELOAD_CHECK_INTERVAL);
+                    current = open(null, database.lastModified());
+                }
+            }
+            return current;
+        }
+        long nextCheck = nextReloadCheck.get();
+        if (now >= nextCheck && nextReloadCheck.compareAndSet(nextCheck, now + RELOAD_CHECK_INTERVAL)) {
+            long lastModified = database.lastModified();
+            if (current.lastModified != lastModified) {
+                current = open(current, lastModified);
+            }
+        }
+        return current;
+    }
+
+    private Reader open(Reader current, long lastModified) {
+        try {
+            Reader opened = new Reader(new DatabaseReader.Builder(database).build(), lastModified);
+            reader = opened;
+            countries.clear();
+            if (DEBUG.messageEnabled()) {
+                DEBUG.message("{}.GeoLocationLookup : opened GeoDB {}", ADAPTIVE, database);
+            }
+            return opened;
+        } catch (IOException ioe) {
+            //don't log the stacktrace, since it will occur on any module invocation
+            DEBUG.message("{}.GeoLocationLookup : Unable to initialize GeoDB service: {}", ADAPTIVE,
+                    ioe.getMessage());
+            return current;
+        }
+    }
+
+    private static final class Reader {
+        private final DatabaseReader databaseReader;
+        private final long lastModified;
+
+        private Reader(DatabaseReader databaseReader, long lastModified) {
+            this.databaseReader = databaseReader;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.authentication.modules.adaptive;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class AdaptiveTest {
+
+    @Test
+    public void shouldRunStateSavingChecksOnceThresholdIsReached() {
+        //Given
+        RecordingCheck failing = new RecordingCheck(1, 1, false);
+        RecordingCheck scoring = new RecordingCheck(1, 1, false);
+        RecordingCheck saving = new RecordingCheck(1, 0, true);
+        List<Adaptive.RiskCheck> checks = asList(failing, scoring, saving);
+
+        //When
+        int score = Adaptive.evaluateChecks(checks, 1);
+
+        //Then
+        assertThat(score).isGreaterThanOrEqualTo(1);
+        assertThat(failing.evaluated).isTrue();
+        assertThat(scoring.evaluated).isFalse();
+        assertThat(saving.evaluated).isTrue();
+    }
+
+    @Test
+    public void shouldRunStateSavingChecksOnceThresholdCannotBeReached() {
+        //Given
+        RecordingCheck scoring = new RecordingCheck(1, 1, false);
+        RecordingCheck saving = new RecordingCheck(1, 1, true);
+        List<Adaptive.RiskCheck> checks = asList(scoring, saving);
+
+        //When
+        int score = Adaptive.evaluateChecks(checks, 10);
+
+        //Then
+        assertThat(score).isLessThan(10);
+        assertThat(scoring.evaluated).isFalse();
+        assertThat(saving.evaluated).isTrue();
+    }
+
+    @Test
+    public void shouldEvaluateEveryCheckWhileOutcomeIsUndecided() {
+        //Given
+        RecordingCheck first = new RecordingCheck(1, 0, false);
+        RecordingCheck second = new RecordingCheck(1, 1, false);
+        RecordingCheck third = new RecordingCheck(1, 1, false);
+        List<Adaptive.RiskCheck> checks = asList(first, second, third);
+
+        //When
+        int score = Adaptive.evaluateChecks(checks, 2);
+
+        //Then
+        assertThat(score).isEqualTo(2);
+        assertThat(first.evaluated).isTrue();
+        assertThat(second.evaluated).isTrue();
+        assertThat(third.evaluated).isTrue();
+    }
+
+    @Test
+    public void shouldEvaluateNegativeChecksWhichCanStillBringScoreBelowThreshold() {
+        //Given
+        RecordingCheck risky = new RecordingCheck(1, 1, false);
+        RecordingCheck trusted = new RecordingCheck(-1, -1, false);
+        List<Adaptive.RiskCheck> checks = asList(risky, trusted);
+
+        //When
+        int score = Adaptive.evaluateChecks(checks, 1);
+
+        //Then
+        assertThat(score).isEqualTo(0);
+        assertThat(trusted.evaluated).isTrue();
+    }
+
+    private static final class RecordingCheck extends Adaptive.RiskCheck {
+        private final int result;
+        private boolean evaluated;
+
+        private RecordingCheck(int score, int result, boolean savesState) {
+            super("recordingCheck", score, savesState);
+            this.result = result;
+        }
+
+        @Override
+        int evaluate() {
+            evaluated = true;
+            return result;
+        }
+    }
+}
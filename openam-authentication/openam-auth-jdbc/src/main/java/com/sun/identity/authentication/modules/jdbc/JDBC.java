@@ -39,10 +39,13 @@ import com.sun.identity.authentication.util.ISAuthConstants;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -65,6 +68,15 @@ public class JDBC extends AMLoginModule {
     private static Debug debug = Debug.getInstance(amAuthJDBC);
     private ResourceBundle bundle = null;
     private static final String INVALID_CHARS = "forgerock-am-auth-jdbc-invalid-chars";
+    private static final String POOL_MAX_SIZE = "forgerock-am-auth-jdbc-pool-max-size";
+    private static final String POOL_VALIDATION_QUERY = "forgerock-am-auth-jdbc-pool-validation-query";
+    private static final String POOL_IDLE_TIMEOUT = "forgerock-am-auth-jdbc-pool-idle-timeout";
+    private static final int DEFAULT_POOL_MAX_SIZE = 10;
+    private static final int DEFAULT_POOL_IDLE_TIMEOUT_SECONDS = 300;
+
+    /** Password syntax transform classes, by class name, so that each is only loaded once. */
+    private static final ConcurrentMap<String, Class<? extends JDBCPasswordSyntaxTransform>> TRANSFORM_CLASSES =
+            new ConcurrentHashMap<>();
     
     private Map options;
     
@@ -97,6 +109,9 @@ public class JDBC extends AMLoginModule {
     private String url;
     private String dbuser;
     private String dbpassword;
+    private int poolMaxSize;
+    private String poolValidationQuery;
+    private long poolIdleTimeout;
     private String passwordColumn;
     private String statement;
     private String transform;
@@ -211,6 +226,12 @@ public class JDBC extends AMLoginModule {
                             errorMsg = "noDBPASSWORD";
                             return;
                         }
+
+                        poolMaxSize = CollectionHelper.getIntMapAttr(options, POOL_MAX_SIZE,
+                                DEFAULT_POOL_MAX_SIZE, debug);
+                        poolValidationQuery = CollectionHelper.getMapAttr(options, POOL_VALIDATION_QUERY);
+                        poolIdleTimeout = TimeUnit.SECONDS.toMillis(CollectionHelper.getIntMapAttr(options,
+                                POOL_IDLE_TIMEOUT, DEFAULT_POOL_IDLE_TIMEOUT_SECONDS, debug));
                     }
                 }
                 
@@ -316,6 +337,9 @@ public class JDBC extends AMLoginModule {
         validateUserName(userName, CollectionHelper.getMapAttr(options, INVALID_CHARS));
 
         Connection database = null;
+        JDBCConnectionPool pool = null;
+        JDBCConnectionPool.PooledConnection pooledConnection = null;
+        boolean connectionFailed = false;
         PreparedStatement thisStatement = null;
         ResultSet results = null;
         try {
@@ -328,20 +352,27 @@ public class JDBC extends AMLoginModule {
                 }
                 database = ds.getConnection();
                 debug.message("Using JNDI Retrieved Connection pool");
-                
+                if (debug.messageEnabled()) {
+                    debug.message("Connection Acquired: " + database.toString());
+                }
+                //Prepare the statement for execution
+                if (debug.messageEnabled()) {
+                    debug.message("PreparedStatement to build: " + statement);
+                }
+                thisStatement =
+                    database.prepareStatement(statement);
+
             } else {
-                Class.forName (driver);
-                database = DriverManager.getConnection(url,dbuser,dbpassword);
-            }          
-            if (debug.messageEnabled()) {
-                debug.message("Connection Acquired: " + database.toString());
-            }           
-            //Prepare the statement for execution
-            if (debug.messageEnabled()) {
-                debug.message("PreparedStatement to build: " + statement);
+                pool = JDBCConnectionPool.getInstance(
+                        getRequestOrg() + "/" + options.get(ISAuthConstants.MODULE_INSTANCE_NAME), driver, url,
+                        dbuser, dbpassword, poolMaxSize, poolValidationQuery, poolIdleTimeout);
+                pooledConnection = pool.borrow();
+                if (debug.messageEnabled()) {
+                    debug.message("Pooled Connection Acquired: " + pooledConnection);
+                }
+                // the statement is cached by the pooled connection, and is only prepared on first use
+                thisStatement = pooledConnection.prepareStatement(statement);
             }
-            thisStatement = 
-                database.prepareStatement(statement);
             thisStatement.setString(1,userName);
             if (debug.messageEnabled()) {
                     debug.message("Statement to execute: " + thisStatement);
@@ -378,6 +409,7 @@ public class JDBC extends AMLoginModule {
                 throw new AuthLoginException(amAuthJDBC, "nullResult", null);
              }
         } catch (Throwable e) {
+            connectionFailed = e instanceof SQLException;
             if (getCredentialsFromSharedState && !isUseFirstPassEnabled()) {
                 getCredentialsFromSharedState = false;
                 return ISAuthConstants.LOGIN_START;
@@ -395,8 +427,12 @@ public class JDBC extends AMLoginModule {
                     // ignore
                 }
             }
+            // give the pooled connection back, keeping its statement for the next login
+            if (pooledConnection != null) {
+                pool.release(pooledConnection, connectionFailed);
+            }
             // close the statement
-            if (thisStatement != null) {
+            if (database != null && thisStatement != null) {
                   try {
                     thisStatement.close();
                 } catch (Exception e) {
@@ -419,9 +455,8 @@ public class JDBC extends AMLoginModule {
             
         if (!transform.equals(DEFAULT_TRANSFORM)) {
             try {
-                  JDBCPasswordSyntaxTransform syntaxTransform = 
-                    (JDBCPasswordSyntaxTransform)Class.forName(transform)
-                        .newInstance();
+                  JDBCPasswordSyntaxTransform syntaxTransform =
+                    getTransformClass(transform).newInstance();
                 if (debug.messageEnabled()) {
                     debug.message("Got my Transform Object" + 
                             syntaxTransform.toString() );
@@ -450,6 +485,16 @@ public class JDBC extends AMLoginModule {
         }
     }
 
+    private static Class<? extends JDBCPasswordSyntaxTransform> getTransformClass(String className)
+            throws ClassNotFoundException {
+        Class<? extends JDBCPasswordSyntaxTransform> transformClass = TRANSFORM_CLASSES.get(className);
+        if (transformClass == null) {
+            transformClass = Class.forName(className).asSubclass(JDBCPasswordSyntaxTransform.class);
+            TRANSFORM_CLASSES.putIfAbsent(className, transformClass);
+        }
+        return transformClass;
+    }
+
     /**
      * Returns principal of the authenticated user.
      *
@@ -488,6 +533,7 @@ public class JDBC extends AMLoginModule {
         url = null;
         dbuser = null;
         dbpassword = null;
+        poolValidationQuery = null;
         passwordColumn = null;
         statement = null;
         transform = null;
@@ -0,0 +1,515 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.authentication.modules.jdbc;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+import org.forgerock.openam.utils.StringUtils;
+import org.forgerock.util.annotations.VisibleForTesting;
+
+import com.sun.identity.common.GeneralTaskRunnable;
+import com.sun.identity.common.SystemTimer;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * A bounded pool of JDBC connections, used by the JDBC module when its connections are not obtained from a JNDI data
+ * source. One pool is shared by every module instance configured with the same database settings.
+ * <p>
+ * When the database settings of a module instance change, the instance moves to the pool for its new settings. A pool
+ * which is no longer used by any module instance is removed and closed, along with its idle connections and its
+ * eviction task; connections still borrowed from it are closed when they are given back.
+ * <p>
+ * Idle connections are lent out most recently used first, and are closed by a background task once they have been
+ * idle for longer than the idle timeout. A connection which has not been used for a short while is validated before
+ * it is lent out, with the configured validation query or, if there is none, with {@link Connection#isValid(int)}.
+ * Each connection caches the statements prepared on it, so that the module's query is prepared once per connection
+ * rather than once per login.
+ * <p>
+ * The number of connections in use, idle connections, connections opened and time spent waiting for a connection are
+ * published to the {@link MetricsRegistry}, summed over all pools.
+ */
+final class JDBCConnectionPool {
+
+    private static final Debug DEBUG = Debug.getInstance("amAuthJDBC");
+    private static final ConcurrentMap<Settings, JDBCConnectionPool> POOLS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Settings> MODULE_SETTINGS = new ConcurrentHashMap<>();
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long VALIDATION_INTERVAL_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long MAX_EVICTION_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int STATEMENT_CACHE_SIZE = 16;
+
+    private static final MetricsRegistry.Counter CONNECTIONS_OPENED = MetricsRegistry.getInstance().counter(
+            "openam_authentication_jdbc_connections_opened_total", "Number of connections opened by JDBC modules");
+    private static final MetricsRegistry.Timer WAIT_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_authentication_jdbc_connection_wait_seconds", "Time JDBC modules waited for a pooled connection");
+
+    static {
+        MetricsRegistry.getInstance().gauge("openam_authentication_jdbc_connections_active",
+                "Number of pooled connections in use by JDBC modules", new MetricsRegistry.Gauge() {
+                    @Override
+                    public long getValue() {
+                        long active = 0;
+                        for (JDBCConnectionPool pool : POOLS.values()) {
+                            active += pool.active.get();
+                        }
+                        return active;
+                    }
+                });
+        MetricsRegistry.getInstance().gauge("openam_authentication_jdbc_connections_idle",
+                "Number of idle pooled connections of JDBC modules", new MetricsRegistry.Gauge() {
+                    @Override
+                    public long getValue() {
+                        long idle = 0;
+                        for (JDBCConnectionPool pool : POOLS.values()) {
+                            idle += pool.idle.size();
+                        }
+                        return idle;
+                    }
+                });
+    }
+
+    private final Settings settings;
+    private final ConnectionFactory connectionFactory;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    /** The module instances using the pool, guarded by the lock of {@link #POOLS}. */
+    private final Set<String> modules = new HashSet<>();
+    private volatile IdleConnectionEvictor evictor;
+    private volatile boolean closed;
+
+    private JDBCConnectionPool(final Settings settings) {
+        this(settings, new ConnectionFactory() {
+            @Override
+            public Connection open() throws SQLException {
+                return DriverManager.getConnection(settings.url, settings.user, settings.password);
+            }
+        }, MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Creates a pool which is not shared through {@link #getInstance}, and whose connections are opened by the given
+     * factory.
+     *
+     * @param connectionFactory Opens the connections of the pool.
+     * @param maxSize The maximum number of connections open at any time.
+     * @param validationQuery The query used to validate idle connections, or {@code null} to use
+     * {@link Connection#isValid(int)}.
+     * @param idleTimeout The time in milliseconds after which an idle connection is closed.
+     * @param maxWaitMillis The time in milliseconds to wait for a connection when the pool is at its maximum size.
+     */
+    @VisibleForTesting
+    JDBCConnectionPool(ConnectionFactory connectionFactory, int maxSize, String validationQuery, long idleTimeout,
+            long maxWaitMillis) {
+        this(new Settings("", "", "", "", maxSize, validationQuery, idleTimeout), connectionFactory, maxWaitMillis);
+    }
+
+    private JDBCConnectionPool(Settings settings, ConnectionFactory connectionFactory, long maxWaitMillis) {
+        this.settings = settings;
+        this.connectionFactory = connectionFactory;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(settings.maxSize, true);
+    }
+
+    /**
+     * Returns the pool for the given database settings, creating it and loading the JDBC driver if necessary. If the
+     * module instance was previously using a pool with other settings, it stops using that pool, which is closed if
+     * no other module instance uses it.
+     *
+     * @param module Identifies the module instance, by its realm and name.
+     * @param driver The class name of the JDBC driver.
+     * @param url The JDBC URL of the database.
+     * @param user The database user.
+     * @param password The password of the database user.
+     * @param maxSize The maximum number of connections open at any time.
+     * @param validationQuery The query used to validate idle connections, or {@code null} to use
+     * {@link Connection#isValid(int)}.
+     * @param idleTimeout The time in milliseconds after which an idle connection is closed.
+     * @return The pool.
+     * @throws ClassNotFoundException If the JDBC driver cannot be loaded.
+     */
+    static JDBCConnectionPool getInstance(String module, String driver, String url, String user, String password,
+            int maxSize, String validationQuery, long idleTimeout) throws ClassNotFoundException {
+        Settings settings = new Settings(driver, url, user, password, Math.max(1, maxSize),
+                StringUtils.isBlank(validationQuery) ? null : validationQuery.trim(), Math.max(1000L, idleTimeout));
+        if (settings.equals(MODULE_SETTINGS.get(module))) {
+            JDBCConnectionPool pool = POOLS.get(settings);
+            if (pool != null) {
+                return pool;
+            }
+        }
+        synchronized (POOLS) {
+            JDBCConnectionPool pool = POOLS.get(settings);
+            if (pool == null) {
+                Class.forName(driver);
+                pool = new JDBCConnectionPool(settings);
+                POOLS.put(settings, pool);
+                if (DEBUG.messageEnabled()) {
+                    DEBUG.message("JDBCConnectionPool: created pool of {} connections for {}", settings.maxSize, url);
+                }
+                pool.evictor = new IdleConnectionEvictor(pool);
+                SystemTimer.getTimer().schedule(pool.evictor,
+                        new Date(currentTimeMillis() + pool.evictor.getRunPeriod()));
+            }
+            pool.modules.add(module);
+            Settings previous = MODULE_SETTINGS.put(module, settings);
+            JDBCConnectionPool superseded = previous == null || previous.equals(settings) ? null : POOLS.get(previous);
+            if (superseded != null) {
+                superseded.modules.remove(module);
+                if (superseded.modules.isEmpty()) {
+                    POOLS.remove(previous);
+                    superseded.close();
+                    if (DEBUG.messageEnabled()) {
+                        DEBUG.message("JDBCConnectionPool: closed superseded pool for {}", previous.url);
+                    }
+                }
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new connection if none is idle, and waiting for a connection to
+     * be released if the pool is at its maximum size. The connection must be given back with
+     * {@link #release(PooledConnection, boolean)}.
+     *
+     * @return The connection.
+     * @throws SQLException If no connection becomes available in time, or a new connection cannot be opened.
+     */
+    PooledConnection borrow() throws SQLException {
+        long startTime = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out waiting for a connection to " + settings.url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a connection to " + settings.url, e);
+        } finally {
+            WAIT_TIMER.recordSince(startTime);
+        }
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isUsable(connection)) {
+                    active.incrementAndGet();
+                    return connection;
+                }
+                connection.close();
+            }
+            connection = new PooledConnection(connectionFactory.open());
+            CONNECTIONS_OPENED.increment();
+            active.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool.
+     *
+     * @param connection The connection.
+     * @param broken Whether the connection failed while it was borrowed, in which case it is closed rather than kept.
+     */
+    void release(PooledConnection connection, boolean broken) {
+        active.decrementAndGet();
+        try {
+            if (broken || closed) {
+                connection.close();
+            } else {
+                connection.lastUsed = currentTimeMillis();
+                idle.offerFirst(connection);
+                if (closed && idle.removeFirstOccurrence(connection)) {
+                    // the pool was closed while the connection was being given back
+                    connection.close();
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes the pool: stops its eviction task and closes its idle connections. Connections which are still
+     * borrowed are closed when they are given back.
+     */
+    @VisibleForTesting
+    void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.cancel();
+        }
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Returns whether the pool has been closed.
+     *
+     * @return {@code true} once the pool has been closed.
+     */
+    @VisibleForTesting
+    boolean isClosed() {
+        return closed;
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        long idleTime = currentTimeMillis() - connection.lastUsed;
+        if (idleTime > settings.idleTimeout) {
+            return false;
+        }
+        return idleTime < VALIDATION_INTERVAL_MILLIS || connection.validate(settings.validationQuery);
+    }
+
+    /**
+     * Closes the connections which have been idle for longer than the idle timeout.
+     */
+    @VisibleForTesting
+    void evictIdleConnections() {
+        long expiry = currentTimeMillis() - settings.idleTimeout;
+        for (Iterator<PooledConnection> connections = idle.descendingIterator(); connections.hasNext();) {
+            PooledConnection connection = connections.next();
+            if (connection.lastUsed >= expiry) {
+                // Connections are returned to the head of the queue, so the remaining ones have been used since
+                break;
+            }
+            if (idle.removeFirstOccurrence(connection)) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Opens the physical connections of a pool.
+     */
+    interface ConnectionFactory {
+
+        /**
+         * Opens a new connection to the database.
+         *
+         * @return The connection.
+         * @throws SQLException If the connection cannot be opened.
+         */
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * A physical connection of the pool, along with the statements prepared on it. A connection is only used by one
+     * thread at a time.
+     */
+    static final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<String, PreparedStatement>(STATEMENT_CACHE_SIZE, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= STATEMENT_CACHE_SIZE) {
+                            return false;
+                        }
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+        private volatile long lastUsed = currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns a prepared statement for the given SQL, preparing it on first use. The statement belongs to the
+         * connection and must not be closed.
+         *
+         * @param sql The SQL of the statement.
+         * @return The prepared statement, with its parameters cleared.
+         * @throws SQLException If the statement cannot be prepared.
+         */
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        private boolean validate(String validationQuery) {
+            try {
+                if (validationQuery == null) {
+                    return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+                }
+                PreparedStatement statement = prepareStatement(validationQuery);
+                statement.setQueryTimeout(VALIDATION_TIMEOUT_SECONDS);
+                try (ResultSet ignored = statement.executeQuery()) {
+                    return true;
+                }
+            } catch (SQLException e) {
+                if (DEBUG.messageEnabled()) {
+                    DEBUG.message("JDBCConnectionPool: discarding connection which failed validation", e);
+                }
+                return false;
+            }
+        }
+
+        private void close() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                if (DEBUG.messageEnabled()) {
+                    DEBUG.message("JDBCConnectionPool: failed to close connection", e);
+                }
+            }
+        }
+
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // the connection is being discarded or the statement is no longer needed
+            }
+        }
+
+        @Override
+        public String toString() {
+            return connection.toString();
+        }
+    }
+
+    /**
+     * Periodically closes the idle connections of a pool.
+     */
+    private static final class IdleConnectionEvictor extends GeneralTaskRunnable {
+        private final JDBCConnectionPool pool;
+
+        private IdleConnectionEvictor(JDBCConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public boolean addElement(Object key) {
+            return false;
+        }
+
+        @Override
+        public boolean removeElement(Object key) {
+            return false;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public long getRunPeriod() {
+            return Math.min(pool.settings.idleTimeout, MAX_EVICTION_PERIOD_MILLIS);
+        }
+
+        @Override
+        public void run() {
+            pool.evictIdleConnections();
+        }
+    }
+
+    /**
+     * The settings which identify a pool.
+     */
+    private static final class Settings {
+        private final String driver;
+        private final String url;
+        private final String user;
+        private final String password;
+        private final int maxSize;
+        private final String validationQuery;
+        private final long idleTimeout;
+
+        private Settings(String driver, String url, String user, String password, int maxSize,
+                String validationQuery, long idleTimeout) {
+            this.driver = driver;
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.maxSize = maxSize;
+            this.validationQuery = validationQuery;
+            this.idleTimeout = idleTimeout;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Settings)) {
+                return false;
+            }
+            Settings that = (Settings) o;
+            return maxSize == that.maxSize
+                    && idleTimeout == that.idleTimeout
+                    && driver.equals(that.driver)
+                    && url.equals(that.url)
+                    && user.equals(that.user)
+                    && password.equals(that.password)
+                    && (validationQuery == null ? that.validationQuery == null
+                            : validationQuery.equals(that.validationQuery));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = driver.hashCode();
+            result = 31 * result + url.hashCode();
+            result = 31 * result + user.hashCode();
+            result = 31 * result + password.hashCode();
+            result = 31 * result + maxSize;
+            result = 31 * result + (validationQuery == null ? 0 : validationQuery.hashCode());
+            result = 31 * result + (int) (idleTimeout ^ (idleTimeout >>> 32));
+            return result;
+        }
+    }
+}
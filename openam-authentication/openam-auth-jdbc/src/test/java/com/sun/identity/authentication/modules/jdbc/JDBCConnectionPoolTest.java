@@ -0,0 +1,229 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.authentication.modules.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.identity.authentication.modules.jdbc.JDBCConnectionPool.ConnectionFactory;
+import com.sun.identity.authentication.modules.jdbc.JDBCConnectionPool.PooledConnection;
+
+public class JDBCConnectionPoolTest {
+
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toMillis(10);
+
+    private ConnectionFactory connectionFactory;
+    private Connection firstConnection;
+    private Connection secondConnection;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        connectionFactory = mock(ConnectionFactory.class);
+        firstConnection = mock(Connection.class);
+        secondConnection = mock(Connection.class);
+        given(firstConnection.isValid(anyInt())).willReturn(true);
+        given(secondConnection.isValid(anyInt())).willReturn(true);
+        given(connectionFactory.open()).willReturn(firstConnection, secondConnection);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldLendReleasedConnectionAgain() throws Exception {
+        //Given
+        JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 2, null, IDLE_TIMEOUT, MAX_WAIT);
+        PooledConnection connection = pool.borrow();
+        pool.release(connection, false);
+
+        //When
+        PooledConnection again = pool.borrow();
+
+        //Then
+        assertThat(again).isSameAs(connection);
+        verify(connectionFactory, times(1)).open();
+        verify(firstConnection, never()).close();
+    }
+
+    @Test
+    public void shouldCloseBrokenConnectionWhenReleased() throws Exception {
+        //Given
+        JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 2, null, IDLE_TIMEOUT, MAX_WAIT);
+        PooledConnection connection = pool.borrow();
+
+        //When
+        pool.release(connection, true);
+        PooledConnection replacement = pool.borrow();
+
+        //Then
+        verify(firstConnection).close();
+        assertThat(replacement).isNotSameAs(connection);
+        verify(connectionFactory, times(2)).open();
+    }
+
+    @Test
+    public void shouldDiscardIdleConnectionWhichFailsValidation() throws Exception {
+        //Given
+        given(firstConnection.isValid(anyInt())).willReturn(false);
+        JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 2, null, IDLE_TIMEOUT, MAX_WAIT);
+        PooledConnection connection = pool.borrow();
+        pool.release(connection, false);
+        // idle connections are only validated once they have not been used for a short while
+        Thread.sleep(600);
+
+        //When
+        PooledConnection replacement = pool.borrow();
+
+        //Then
+        verify(firstConnection).isValid(anyInt());
+        verify(firstConnection).close();
+        assertThat(replacement).isNotSameAs(connection);
+    }
+
+    @Test
+    public void shouldWaitForConnectionWhenAtMaximumSize() throws Exception {
+        //Given
+        final JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 1, null, IDLE_TIMEOUT, MAX_WAIT);
+        PooledConnection connection = pool.borrow();
+        Future<PooledConnection> waiting = executor.submit(new Callable<PooledConnection>() {
+            @Override
+            public PooledConnection call() throws Exception {
+                return pool.borrow();
+            }
+        });
+        try {
+            waiting.get(100, TimeUnit.MILLISECONDS);
+            throw new AssertionError("Connection lent beyond the maximum size of the pool");
+        } catch (TimeoutException e) {
+            // still waiting
+        }
+
+        //When
+        pool.release(connection, false);
+
+        //Then
+        assertThat(waiting.get(MAX_WAIT, TimeUnit.MILLISECONDS)).isSameAs(connection);
+        verify(connectionFactory, times(1)).open();
+    }
+
+    @Test(expectedExceptions = SQLTransientConnectionException.class)
+    public void shouldTimeOutWhenNoConnectionIsReleased() throws Exception {
+        //Given
+        JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 1, null, IDLE_TIMEOUT, 50);
+        pool.borrow();
+
+        //When
+        pool.borrow();
+    }
+
+    @Test
+    public void shouldEvictConnectionsIdleBeyondIdleTimeout() throws Exception {
+        //Given
+        JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 2, null, 50, MAX_WAIT);
+        PooledConnection connection = pool.borrow();
+        pool.release(connection, false);
+        Thread.sleep(100);
+
+        //When
+        pool.evictIdleConnections();
+
+        //Then
+        verify(firstConnection).close();
+        assertThat(pool.borrow()).isNotSameAs(connection);
+    }
+
+    @Test
+    public void shouldCloseConnectionsWhenPoolIsClosed() throws Exception {
+        //Given
+        JDBCConnectionPool pool = new JDBCConnectionPool(connectionFactory, 2, null, IDLE_TIMEOUT, MAX_WAIT);
+        PooledConnection idle = pool.borrow();
+        PooledConnection borrowed = pool.borrow();
+        pool.release(idle, false);
+
+        //When
+        pool.close();
+
+        //Then
+        verify(firstConnection).close();
+        verify(secondConnection, never()).close();
+        pool.release(borrowed, false);
+        verify(secondConnection).close();
+    }
+
+    @Test
+    public void shouldCloseSupersededPoolWhenModuleSettingsChange() throws Exception {
+        //Given
+        String url = "jdbc:test:" + UUID.randomUUID();
+        JDBCConnectionPool pool = getPool("/:JDBC", url, "password");
+
+        //When
+        JDBCConnectionPool changed = getPool("/:JDBC", url, "changed");
+
+        //Then
+        assertThat(changed).isNotSameAs(pool);
+        assertThat(pool.isClosed()).isTrue();
+        assertThat(changed.isClosed()).isFalse();
+        assertThat(getPool("/:JDBC", url, "changed")).isSameAs(changed);
+        changed.close();
+    }
+
+    @Test
+    public void shouldKeepPoolWhileAnotherModuleUsesIt() throws Exception {
+        //Given
+        String url = "jdbc:test:" + UUID.randomUUID();
+        JDBCConnectionPool pool = getPool("/:JDBC", url, "password");
+        assertThat(getPool("/:OtherJDBC", url, "password")).isSameAs(pool);
+
+        //When
+        JDBCConnectionPool changed = getPool("/:JDBC", url, "changed");
+
+        //Then
+        assertThat(pool.isClosed()).isFalse();
+        getPool("/:OtherJDBC", url, "changed");
+        assertThat(pool.isClosed()).isTrue();
+        changed.close();
+    }
+
+    private static JDBCConnectionPool getPool(String module, String url, String password) throws Exception {
+        return JDBCConnectionPool.getInstance(module, Object.class.getName(), url, "user", password, 5, null,
+                IDLE_TIMEOUT);
+    }
+}
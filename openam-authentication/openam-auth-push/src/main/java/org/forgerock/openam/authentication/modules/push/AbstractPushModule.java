@@ -18,6 +18,7 @@ package org.forgerock.openam.authentication.modules.push;
 import static org.forgerock.json.JsonValue.*;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.iplanet.am.util.SystemProperties;
 import com.sun.identity.authentication.spi.AMLoginModule;
 import com.sun.identity.authentication.spi.AuthLoginException;
 import java.io.IOException;
@@ -49,6 +50,16 @@ public abstract class AbstractPushModule extends AMLoginModule {
     /** Used to make the polling occur every second. Not recommended to be set in production. **/
     protected final String nearInstantProperty = "com.forgerock.openam.authentication.push.nearinstant";
 
+    /**
+     * Used to configure the minimum period, in milliseconds, between reads of the CTS while waiting for a response.
+     * Responses received by other servers are normally relayed to this server over the notification broker, so the
+     * CTS is only read as a fallback.
+     **/
+    protected final String ctsFallbackIntervalProperty =
+            "com.forgerock.openam.authentication.push.ctsFallbackInterval";
+
+    private static final long DEFAULT_CTS_FALLBACK_INTERVAL = 10000L;
+
     /** Used to store tokens which may be updated by other machines in the cluster. **/
     protected final CTSPersistentStore coreTokenService = InjectorHolder.getInstance(CTSPersistentStore.class);
 
@@ -65,6 +76,11 @@ public abstract class AbstractPushModule extends AMLoginModule {
 
     private final JSONSerialisation jsonSerialization = InjectorHolder.getInstance(JSONSerialisation.class);
 
+    private final long ctsFallbackInterval = SystemProperties.getAsLong(ctsFallbackIntervalProperty,
+            DEFAULT_CTS_FALLBACK_INTERVAL);
+
+    private long lastCTSCheck;
+
     /**
      * Stores the message information in the CTS, to be used across the cluster.
      *
@@ -95,6 +111,21 @@ public abstract class AbstractPushModule extends AMLoginModule {
         coreTokenService.create(ctsToken);
     }
 
+    /**
+     * Determines whether a waiting module should fall back to reading the CTS for a response received by another
+     * server in the cluster. Returns true at most once per configured fallback interval.
+     *
+     * @return true if the CTS should be read now, false otherwise.
+     */
+    protected boolean isCTSCheckDue() {
+        long now = Time.currentTimeMillis();
+        if (now - lastCTSCheck < ctsFallbackInterval) {
+            return false;
+        }
+        lastCTSCheck = now;
+        return true;
+    }
+
     /**
      * Retrieves a Push Device for a user in a realm.
      *
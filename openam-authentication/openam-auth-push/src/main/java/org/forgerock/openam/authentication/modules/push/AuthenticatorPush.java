@@ -251,7 +251,7 @@ public class AuthenticatorPush extends AbstractPushModule {
 
     private int waitingChecks() throws AuthLoginException {
         try {
-            Boolean ctsValue = checkCTSAuth(messageId);
+            Boolean ctsValue = isCTSCheckDue() ? checkCTSAuth(messageId) : null;
             if (ctsValue != null) {
                 pushService.getMessageDispatcher(realm).forget(messageId);
                 coreTokenService.deleteAsync(messageId);
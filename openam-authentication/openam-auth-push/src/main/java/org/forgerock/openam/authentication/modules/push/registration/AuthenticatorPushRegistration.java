@@ -318,7 +318,7 @@ public class AuthenticatorPushRegistration extends AbstractPushModule {
 
     private int waitingChecks() throws AuthLoginException {
         try {
-            JsonValue ctsValue = checkCTSRegistration(messageId);
+            JsonValue ctsValue = isCTSCheckDue() ? checkCTSRegistration(messageId) : null;
             if (ctsValue != null) {
                 pushService.getMessageDispatcher(realm).forget(messageId);
                 coreTokenService.deleteAsync(messageId);
@@ -0,0 +1,239 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.authentication.modules.windowsdesktopsso;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.Oid;
+
+import com.sun.identity.authentication.spi.AuthLoginException;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * The Kerberos acceptor credentials of one WindowsDesktopSSO module instance, logged in from the keytab of its service
+ * principal.
+ * <p>
+ * The service login happens once, and the resulting credentials are used concurrently by any number of logins. When
+ * the credentials hold a ticket which is about to expire, the first login to notice renews the credentials
+ * while the others carry on with the current credentials, so logins only wait for a service login when there are no
+ * usable credentials at all.
+ * <p>
+ * The JAAS configuration is passed to each service login rather than installed JVM wide, and names the service
+ * principal in the realm of the module instance. The service login only reads the keys of the principal from the
+ * keytab, so it needs neither the KDC nor a JVM wide Kerberos configuration, and module instances configured with
+ * different realms do not affect one another.
+ * <p>
+ * When the configuration of a module instance changes, its acceptor is replaced, and the credentials of the previous
+ * configuration are released once the logins using them have finished.
+ */
+final class KerberosAcceptor {
+
+    private static final String BUNDLE_NAME = "amAuthWindowsDesktopSSO";
+    private static final Debug DEBUG = Debug.getInstance(BUNDLE_NAME);
+    private static final ConcurrentMap<String, KerberosAcceptor> ACCEPTORS = new ConcurrentHashMap<>();
+    private static final long RENEWAL_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String KRB5_MECHANISM = "1.2.840.113554.1.2.2";
+
+    private final String principal;
+    private final String keyTab;
+    private final String realm;
+    private final ReentrantLock loginLock = new ReentrantLock();
+    private volatile Credentials credentials;
+
+    private KerberosAcceptor(String principal, String keyTab, String realm) {
+        this.principal = principal;
+        this.keyTab = keyTab;
+        this.realm = realm;
+    }
+
+    /**
+     * Returns the acceptor of the given module instance, replacing it if the module instance was reconfigured. The
+     * service login is only performed when credentials are first needed.
+     *
+     * @param moduleInstance The name identifying the module instance, unique across realms.
+     * @param principal The service principal name.
+     * @param keyTab The path to the keytab of the service principal.
+     * @param realm The Kerberos realm.
+     * @return The acceptor.
+     */
+    static KerberosAcceptor getInstance(String moduleInstance, String principal, String keyTab, String realm) {
+        while (true) {
+            KerberosAcceptor current = ACCEPTORS.get(moduleInstance);
+            if (current != null && current.isConfiguredWith(principal, keyTab, realm)) {
+                return current;
+            }
+            KerberosAcceptor acceptor = new KerberosAcceptor(principal, keyTab, realm);
+            if (current == null ? ACCEPTORS.putIfAbsent(moduleInstance, acceptor) == null
+                    : ACCEPTORS.replace(moduleInstance, current, acceptor)) {
+                if (current != null && DEBUG.messageEnabled()) {
+                    DEBUG.message("KerberosAcceptor: configuration of {} changed, replacing the credentials of {}",
+                            moduleInstance, current.principal);
+                }
+                return acceptor;
+            }
+        }
+    }
+
+    private boolean isConfiguredWith(String principal, String keyTab, String realm) {
+        return this.principal.equalsIgnoreCase(principal) && this.keyTab.equals(keyTab)
+                && this.realm.equals(realm);
+    }
+
+    /**
+     * Returns usable credentials, logging in if there are none or they have expired. Credentials which are due for
+     * renewal are renewed by this thread if no other thread is already doing so.
+     *
+     * @return The credentials.
+     * @throws AuthLoginException If the service login fails.
+     */
+    Credentials getCredentials() throws AuthLoginException {
+        Credentials current = credentials;
+        long now = currentTimeMillis();
+        if (current == null || now >= current.expiryTime) {
+            return login(current);
+        }
+        if (now >= current.renewalTime && loginLock.tryLock()) {
+            try {
+                if (credentials == current) {
+                    credentials = serviceLogin();
+                }
+            } catch (AuthLoginException e) {
+                DEBUG.warning("KerberosAcceptor: unable to renew credentials of {}, using current credentials",
+                        principal, e);
+            } finally {
+                loginLock.unlock();
+            }
+            return credentials;
+        }
+        return current;
+    }
+
+    /**
+     * Replaces credentials which have been rejected as expired, unless another thread has already done so.
+     *
+     * @param expired The rejected credentials.
+     * @return The new credentials.
+     * @throws AuthLoginException If the service login fails.
+     */
+    Credentials renew(Credentials expired) throws AuthLoginException {
+        return login(expired);
+    }
+
+    private Credentials login(Credentials stale) throws AuthLoginException {
+        loginLock.lock();
+        try {
+            Credentials current = credentials;
+            if (current != stale && current != null) {
+                return current;
+            }
+            current = serviceLogin();
+            credentials = current;
+            return current;
+        } finally {
+            loginLock.unlock();
+        }
+    }
+
+    private Credentials serviceLogin() throws AuthLoginException {
+        if (DEBUG.messageEnabled()) {
+            DEBUG.message("KerberosAcceptor: new service login for {}", principal);
+        }
+        WindowsDesktopSSOConfig config = new WindowsDesktopSSOConfig(null);
+        config.setPrincipalName(principal);
+        config.setKeyTab(keyTab);
+        config.setRealm(realm);
+        try {
+            LoginContext loginContext = new LoginContext(WindowsDesktopSSOConfig.defaultAppName, new Subject(), null,
+                    config);
+            loginContext.login();
+            Subject subject = loginContext.getSubject();
+            GSSCredential credential = Subject.doAs(subject, new PrivilegedExceptionAction<GSSCredential>() {
+                @Override
+                public GSSCredential run() throws GSSException {
+                    return GSSManager.getInstance().createCredential(null, GSSCredential.INDEFINITE_LIFETIME,
+                            new Oid(KRB5_MECHANISM), GSSCredential.ACCEPT_ONLY);
+                }
+            });
+            Credentials result = new Credentials(subject, credential);
+            if (DEBUG.messageEnabled()) {
+                DEBUG.message("KerberosAcceptor: service login succeeded for {}, credentials valid until {}",
+                        principal, result.expiryTime);
+            }
+            return result;
+        } catch (LoginException | PrivilegedActionException e) {
+            DEBUG.error("KerberosAcceptor: service login failed for {}", principal, e);
+            throw new AuthLoginException(BUNDLE_NAME, "serviceAuth", null, e);
+        }
+    }
+
+    /**
+     * The subject and acceptor credential obtained by a service login.
+     */
+    static final class Credentials {
+        private final Subject subject;
+        private final GSSCredential credential;
+        private final long expiryTime;
+        private final long renewalTime;
+
+        private Credentials(Subject subject, GSSCredential credential) {
+            this.subject = subject;
+            this.credential = credential;
+            long start = currentTimeMillis();
+            long end = Long.MAX_VALUE;
+            for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+                if (ticket.getEndTime() != null) {
+                    end = Math.min(end, ticket.getEndTime().getTime());
+                }
+            }
+            this.expiryTime = end;
+            this.renewalTime = end == Long.MAX_VALUE ? end : end - Math.min(RENEWAL_MARGIN_MILLIS, (end - start) / 2);
+        }
+
+        /**
+         * Returns the subject of the service principal.
+         *
+         * @return The subject.
+         */
+        Subject getSubject() {
+            return subject;
+        }
+
+        /**
+         * Returns the acceptor credential of the service principal.
+         *
+         * @return The credential.
+         */
+        GSSCredential getCredential() {
+            return credential;
+        }
+    }
+}
@@ -54,16 +54,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
-import javax.security.auth.login.Configuration;
-import javax.security.auth.login.LoginContext;
 import javax.servlet.http.HttpServletRequest;
 import org.ietf.jgss.GSSContext;
-import org.ietf.jgss.GSSCredential;
 import org.ietf.jgss.GSSException;
 import org.ietf.jgss.GSSManager;
 import org.ietf.jgss.GSSName;
@@ -79,8 +75,7 @@ public class WindowsDesktopSSO extends AMLoginModule {
         "iplanet-am-auth-windowsdesktopsso-kdc",
         "iplanet-am-auth-windowsdesktopsso-returnRealm",
         "iplanet-am-auth-windowsdesktopsso-lookupUserInRealm",
-        "iplanet-am-auth-windowsdesktopsso-auth-level",
-        "serviceSubject" };
+        "iplanet-am-auth-windowsdesktopsso-auth-level" };
 
     private static final int PRINCIPAL = 0;
     private static final int KEYTAB    = 1;
@@ -89,14 +84,11 @@ public class WindowsDesktopSSO extends AMLoginModule {
     private static final int RETURNREALM = 4;
     private static final int LOOKUPUSER = 5;
     private static final int AUTHLEVEL = 6;
-    private static final int SUBJECT   = 7;
     
     private static final String ACCEPTED_REALMS_ATTR = ISAuthConstants.AUTH_ATTR_PREFIX 
             + "windowsdesktopsso-kerberos-realms-trusted";
         
-    private static Hashtable configTable = new Hashtable();
     private Principal userPrincipal = null;
-    private Subject serviceSubject = null;
     private String servicePrincipalName = null;
     private String keyTabFile = null;
     private String kdcRealm   = null;
@@ -104,7 +96,6 @@ public class WindowsDesktopSSO extends AMLoginModule {
     private boolean returnRealm = false;
     private String authLevel  = null;
     private Map    options    = null;
-    private String confIndex  = null;
     private boolean lookupUserInRealm = false;
     
     private Debug debug = Debug.getInstance(amAuthWindowsDesktopSSO);
@@ -157,9 +148,12 @@ public class WindowsDesktopSSO extends AMLoginModule {
             return ISAuthConstants.LOGIN_IGNORE;
         }
 
-        if ( !getConfigParams() ) {
-            initWindowsDesktopSSOAuth(options);
-        }
+        getConfigParams();
+        verifyAttributes();
+        KerberosAcceptor acceptor = KerberosAcceptor.getInstance(
+                getRequestOrg() + '\n' + options.get(ISAuthConstants.MODULE_INSTANCE_NAME), servicePrincipalName,
+                keyTabFile, kdcRealm);
+        KerberosAcceptor.Credentials credentials = acceptor.getCredentials();
 
         // retrieve the spnego token
         byte[] spnegoToken = getSPNEGOTokenFromHTTPRequest(request);
@@ -189,7 +183,7 @@ public class WindowsDesktopSSO extends AMLoginModule {
 
         // authenticate the user with the kerberos token
         try {
-            authenticateToken(kerberosToken, trustedKerberosRealms);
+            authenticateToken(kerberosToken, trustedKerberosRealms, credentials);
             if (debug.messageEnabled()){
                 debug.message("WindowsDesktopSSO kerberos authentication passed succesfully.");
             }
@@ -200,9 +194,9 @@ public class WindowsDesktopSSO extends AMLoginModule {
                  int major = ((GSSException)e).getMajor();	 
                  if (major == GSSException.CREDENTIALS_EXPIRED) {	 
                          debug.message("Credential expired. Re-establish credential...");	 
-                 serviceLogin();	 
+                 credentials = acceptor.renew(credentials);
                  try {   
-                     authenticateToken(kerberosToken, trustedKerberosRealms);  
+                     authenticateToken(kerberosToken, trustedKerberosRealms, credentials);
                      if (debug.messageEnabled()){
                        debug.message("Authentication succeeded with new cred.");    
                            result = ISAuthConstants.LOGIN_SUCCEED;
@@ -222,9 +216,9 @@ public class WindowsDesktopSSO extends AMLoginModule {
            int major = e1.getMajor();
            if (major == GSSException.CREDENTIALS_EXPIRED) {
                debug.message("Credential expired. Re-establish credential...");
-               serviceLogin();
+               credentials = acceptor.renew(credentials);
                    try {
-                   authenticateToken(kerberosToken, trustedKerberosRealms);
+                   authenticateToken(kerberosToken, trustedKerberosRealms, credentials);
                    if (debug.messageEnabled()){
                        debug.message("Authentication succeeded with new cred.");
                            result = ISAuthConstants.LOGIN_SUCCEED; 
@@ -250,15 +244,15 @@ public class WindowsDesktopSSO extends AMLoginModule {
         return result;
     }
 
-    private void authenticateToken(final byte[] kerberosToken, final Set<String> trustedRealms) 
-            throws AuthLoginException, GSSException, Exception {
+    private void authenticateToken(final byte[] kerberosToken, final Set<String> trustedRealms,
+            final KerberosAcceptor.Credentials credentials) throws AuthLoginException, GSSException, Exception {
 
         debug.message("In authenticationToken ...");
-        Subject.doAs(serviceSubject, new PrivilegedExceptionAction(){
+        Subject.doAs(credentials.getSubject(), new PrivilegedExceptionAction(){
             public Object run() throws Exception {
                 GSSContext context =
                     GSSManager.getInstance().createContext(
-                        (GSSCredential)null);
+                        credentials.getCredential());
                 if (debug.messageEnabled()){
                     debug.message("Context created.");
                 }
@@ -354,14 +348,12 @@ public class WindowsDesktopSSO extends AMLoginModule {
      * TODO-JAVADOC
      */
     public void nullifyUsedVars() {
-        serviceSubject = null;
         servicePrincipalName = null;
         keyTabFile = null;
         kdcRealm = null;
         kdcServer = null;
         authLevel = null;
         options = null;
-        confIndex = null;
         trustedKerberosRealms = Collections.EMPTY_SET;
     }
 
@@ -520,7 +512,7 @@ public class WindowsDesktopSSO extends AMLoginModule {
         return token;
     }
 
-    private boolean getConfigParams() {
+    private void getConfigParams() {
         // KDC realm in service principal must be uppercase.
         servicePrincipalName = getMapAttr(options, PRINCIPAL);
         keyTabFile = getMapAttr(options, KEYTAB);
@@ -544,105 +536,8 @@ public class WindowsDesktopSSO extends AMLoginModule {
                 "\nAccepted Kerberos realms: " + trustedKerberosRealms +    
                 "\nauth level: " + authLevel);
         }
-
-        confIndex = getRequestOrg() + "/" +
-            options.get(ISAuthConstants.MODULE_INSTANCE_NAME);
-        Map configMap = (Map)configTable.get(confIndex);
-        if (configMap == null) {
-            return false;
-        }
-        
-
-        String principalName = 
-            (String)configMap.get(configAttributes[PRINCIPAL]);
-        String tabFile = (String)configMap.get(configAttributes[KEYTAB]);
-        String realm = (String)configMap.get(configAttributes[REALM]);
-        String kdc = (String)configMap.get(configAttributes[KDC]);
-
-        if (principalName == null || tabFile == null || 
-            realm == null || kdc == null ||
-            ! servicePrincipalName.equalsIgnoreCase(principalName) ||
-            ! keyTabFile.equals(tabFile) ||
-            ! kdcRealm.equals(realm) ||
-            ! kdcServer.equalsIgnoreCase(kdc)) {
-            return false;
-        }
-
-        serviceSubject = (Subject)configMap.get(configAttributes[SUBJECT]);
-        if (serviceSubject == null) {
-            return false;
-        }
-        if (debug.messageEnabled()){
-            debug.message("Retrieved config params from cache.");
-        }
-        return true;
     }
 
-    private void initWindowsDesktopSSOAuth(Map options) 
-        throws AuthLoginException{
-        
-        if (debug.messageEnabled()){
-            debug.message("Init WindowsDesktopSSO. This should not happen often.");
-        }
-        verifyAttributes();
-        serviceLogin();
-
-        // save the service subject and the other configuration data
-        // into configTable for other auth requests in the same org
-        Map configMap = (Map)configTable.get(confIndex);
-        if (configMap == null) {
-            configMap = new HashMap();
-        }
-
-        configMap.put(configAttributes[SUBJECT], serviceSubject);
-        configMap.put(configAttributes[PRINCIPAL], servicePrincipalName);
-        configMap.put(configAttributes[KEYTAB], keyTabFile);
-        configMap.put(configAttributes[REALM], kdcRealm);
-        configMap.put(configAttributes[KDC], kdcServer);
-
-        configTable.put(confIndex, configMap);
-    }
-
-    private synchronized void serviceLogin() throws AuthLoginException{
-        if (debug.messageEnabled()){
-            debug.message("New Service Login ...");
-        }
-        System.setProperty("java.security.krb5.realm", kdcRealm);
-        System.setProperty("java.security.krb5.kdc", kdcServer); 
-        System.setProperty("java.security.auth.login.config", "/dev/null");
-
-        try {
-            Configuration config = Configuration.getConfiguration();
-            WindowsDesktopSSOConfig wtc = null;
-            if (config instanceof WindowsDesktopSSOConfig) {
-                wtc = (WindowsDesktopSSOConfig) config;
-                wtc.setRefreshConfig("true");
-            } else {
-                wtc = new WindowsDesktopSSOConfig(config);
-            }
-            wtc.setPrincipalName(servicePrincipalName);
-            wtc.setKeyTab(keyTabFile);
-            Configuration.setConfiguration(wtc);
-
-            // perform service authentication using JDK Kerberos module
-            LoginContext lc = new LoginContext(
-                WindowsDesktopSSOConfig.defaultAppName);
-            lc.login();
-
-            serviceSubject = lc.getSubject();
-            if (debug.messageEnabled()){
-                debug.message("Service login succeeded.");
-            }
-        } catch (Exception e) {
-            debug.error("Service Login Error: ");
-            if (debug.messageEnabled()) {
-                debug.message("Stack trace: ", e);
-            }
-            throw new AuthLoginException(amAuthWindowsDesktopSSO, 
-                "serviceAuth", null, e);
-        }
-    }        
-
     private String getMapAttr(Map options, int index) {
         return CollectionHelper.getMapAttr(options, configAttributes[index]);
     }
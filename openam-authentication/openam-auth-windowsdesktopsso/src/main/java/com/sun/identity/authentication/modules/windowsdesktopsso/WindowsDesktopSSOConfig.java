@@ -24,6 +24,7 @@
  *
  * $Id: WindowsDesktopSSOConfig.java,v 1.3 2009/04/07 22:55:13 beomsuk Exp $
  *
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 
 
@@ -48,12 +49,14 @@ public class WindowsDesktopSSOConfig extends Configuration {
     private Configuration config = null;
     private String servicePrincipal = null;
     private String keytab = null;
+    private String realm = null;
     private String refreshConf = "false";
 
     /**
      * Constructor
      *
-     * @param config
+     * @param config The configuration to delegate to for other applications, or {@code null} if this configuration
+     * is passed directly to the {@code LoginContext} of the service login.
      */
     public WindowsDesktopSSOConfig(Configuration config) {
         this.config = config;
@@ -77,6 +80,16 @@ public class WindowsDesktopSSOConfig extends Configuration {
         keytab = keytabFile;
     }
 
+    /**
+     * Sets the Kerberos realm of the service principal, which qualifies a principal name given without a realm, so
+     * that the service login does not depend on the default realm of the JVM wide Kerberos configuration.
+     *
+     * @param realm The Kerberos realm.
+     */
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
     /**
      * TODO-JAVADOC
      */
@@ -94,7 +107,7 @@ public class WindowsDesktopSSOConfig extends Configuration {
     public AppConfigurationEntry[] getAppConfigurationEntry(String appName){
         if (appName.equals(defaultAppName)) {
             HashMap hashmap = new HashMap();
-            hashmap.put("principal", servicePrincipal);
+            hashmap.put("principal", getQualifiedPrincipal());
             if (kerberosModuleName.equalsIgnoreCase("com.ibm.security.auth.module.Krb5LoginModule")) {
                 hashmap.put("useKeytab", keytab);
                 hashmap.put("credsType", credsType);
@@ -104,6 +117,8 @@ public class WindowsDesktopSSOConfig extends Configuration {
                 hashmap.put("useKeyTab", "true");
                 hashmap.put("keyTab", keytab);
                 hashmap.put("doNotPrompt", "true");
+                // Only read the keys from the keytab, without contacting the KDC
+                hashmap.put("isInitiator", "false");
                 hashmap.put("refreshKrb5Config", refreshConf);
             }
 
@@ -114,14 +129,23 @@ public class WindowsDesktopSSOConfig extends Configuration {
                     hashmap);
             return new AppConfigurationEntry[]{ appConfigurationEntry };
         }
-        return config.getAppConfigurationEntry(appName);
+        return config == null ? null : config.getAppConfigurationEntry(appName);
+    }
+
+    private String getQualifiedPrincipal() {
+        if (realm == null || realm.isEmpty() || servicePrincipal == null || servicePrincipal.indexOf('@') >= 0) {
+            return servicePrincipal;
+        }
+        return servicePrincipal + "@" + realm;
     }
 
     /**
      * TODO-JAVADOC
      */
     public void refresh() {
-        config.refresh();
+        if (config != null) {
+            config.refresh();
+        }
     }
 }
 
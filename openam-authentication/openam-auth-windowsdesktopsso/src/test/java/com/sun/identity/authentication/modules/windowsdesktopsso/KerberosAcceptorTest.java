@@ -0,0 +1,104 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.authentication.modules.windowsdesktopsso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import javax.security.auth.login.AppConfigurationEntry;
+
+import org.testng.annotations.Test;
+
+public class KerberosAcceptorTest {
+
+    private static final String PRINCIPAL = "HTTP/openam.example.com";
+    private static final String KEYTAB = "/etc/openam.keytab";
+    private static final String REALM = "EXAMPLE.COM";
+
+    @Test
+    public void shouldReuseAcceptorOfUnchangedConfiguration() {
+        //Given
+        KerberosAcceptor acceptor = KerberosAcceptor.getInstance("/\nunchanged", PRINCIPAL, KEYTAB, REALM);
+
+        //When
+        KerberosAcceptor reused = KerberosAcceptor.getInstance("/\nunchanged", PRINCIPAL.toLowerCase(), KEYTAB,
+                REALM);
+
+        //Then
+        assertThat(reused).isSameAs(acceptor);
+    }
+
+    @Test
+    public void shouldReplaceAcceptorWhenConfigurationChanges() {
+        //Given
+        KerberosAcceptor acceptor = KerberosAcceptor.getInstance("/\nchanged", PRINCIPAL, KEYTAB, REALM);
+
+        //When
+        KerberosAcceptor replaced = KerberosAcceptor.getInstance("/\nchanged", PRINCIPAL, KEYTAB, "OTHER.COM");
+
+        //Then
+        assertThat(replaced).isNotSameAs(acceptor);
+        assertThat(KerberosAcceptor.getInstance("/\nchanged", PRINCIPAL, KEYTAB, "OTHER.COM")).isSameAs(replaced);
+        assertThat(KerberosAcceptor.getInstance("/\nchanged", PRINCIPAL, KEYTAB, REALM))
+                .isNotSameAs(acceptor).isNotSameAs(replaced);
+    }
+
+    @Test
+    public void shouldNotShareAcceptorBetweenModuleInstances() {
+        //Given
+        KerberosAcceptor acceptor = KerberosAcceptor.getInstance("/\nfirst", PRINCIPAL, KEYTAB, REALM);
+
+        //When
+        KerberosAcceptor other = KerberosAcceptor.getInstance("/sub\nfirst", PRINCIPAL, KEYTAB, "OTHER.COM");
+
+        //Then
+        assertThat(other).isNotSameAs(acceptor);
+        assertThat(KerberosAcceptor.getInstance("/\nfirst", PRINCIPAL, KEYTAB, REALM)).isSameAs(acceptor);
+    }
+
+    @Test
+    public void shouldNameServicePrincipalInConfiguredRealm() {
+        //Given
+        WindowsDesktopSSOConfig config = new WindowsDesktopSSOConfig(null);
+        config.setPrincipalName(PRINCIPAL);
+        config.setKeyTab(KEYTAB);
+        config.setRealm(REALM);
+
+        //When
+        AppConfigurationEntry[] entries = config.getAppConfigurationEntry(WindowsDesktopSSOConfig.defaultAppName);
+
+        //Then
+        Map<String, ?> options = entries[0].getOptions();
+        assertThat(options.get("principal")).isEqualTo(PRINCIPAL + "@" + REALM);
+    }
+
+    @Test
+    public void shouldKeepRealmOfQualifiedServicePrincipal() {
+        //Given
+        WindowsDesktopSSOConfig config = new WindowsDesktopSSOConfig(null);
+        config.setPrincipalName(PRINCIPAL + "@OTHER.COM");
+        config.setKeyTab(KEYTAB);
+        config.setRealm(REALM);
+
+        //When
+        AppConfigurationEntry[] entries = config.getAppConfigurationEntry(WindowsDesktopSSOConfig.defaultAppName);
+
+        //Then
+        assertThat(entries[0].getOptions().get("principal")).isEqualTo(PRINCIPAL + "@OTHER.COM");
+    }
+}
@@ -1778,7 +1778,8 @@ public class AccessManager {
           macro="authentication",
           optionalOptions={"outfile|o|s|Filename where configuration was written."},
           resourceStrings={
-                  "export-service-configuration-succeeded=Service Configuration was exported."
+                  "export-service-configuration-succeeded=Service Configuration was exported.",
+                  "export-service-configuration-progress=Services exported: {0} ({1} per second)."
           }
   )
   private String export_svc_cfg;
@@ -1797,6 +1798,8 @@ public class AccessManager {
                   "import-service-configuration-unknown-ds=Unable to import service configuration because we are unable to recognize the data store type. We support Sun Directory Server and Embedded OpenDJ as service configuration data store.",
                   "import-service-configuration-processing=Please wait while we import the service configuration...",
                   "import-service-configuration-succeeded=Service Configuration was imported.",
+                  "import-service-configuration-schema-progress=Service schemas imported: {0} ({2} per second).",
+                  "import-service-configuration-config-progress=Service configurations imported: {0} of {1} ({2} per second).",
                   "import-service-configuration-invalid-ds-type=Invalid datastore type.",
                   "import-service-configuration-invalid-port=Invalid port number.",
                   "import-service-configuration-not-connect-to-ds=Unable to connect to directory server.",
@@ -28,6 +28,7 @@
 
 /*
  * Portions Copyrighted [2010] [ForgeRock AS]
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 package com.sun.identity.cli.schema;
 
@@ -46,11 +47,28 @@ import com.sun.identity.sm.SMSException;
 import com.sun.identity.sm.ServiceManager;
 import com.sun.identity.log.Level;
 import com.sun.identity.shared.encode.Hash;
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ExportServiceConfiguration extends AuthenticatedCommand {
+
+    private static final int PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final int PROGRESS_INTERVAL = 10;
     
     /**
      * Handles request.
@@ -83,13 +101,14 @@ public class ExportServiceConfiguration extends AuthenticatedCommand {
             AMEncryption encryptObj = new JCEEncryption();
             ((ConfigurableKey)encryptObj).setPassword(encryptSecret);
  
-            String resultXML = sm.toXML(encryptObj);
-            resultXML += "<!-- " + Hash.hash(encryptSecret) + " -->";
-            if (fout != null) {
-                fout.write(resultXML.getBytes("UTF-8"));
-            } else {
-                System.out.write(resultXML.getBytes("UTF-8"));
-            }
+            OutputStream out = (fout != null) ? fout : System.out;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(ServiceManager.SERVICES_CONFIGURATION_START);
+            // Progress is only reported when it cannot be mixed up with the exported XML
+            writeServices(sm, encryptObj, writer, fout != null);
+            writer.write(ServiceManager.SERVICES_CONFIGURATION_END);
+            writer.write("<!-- " + Hash.hash(encryptSecret) + " -->");
+            writer.flush();
 
             getOutputWriter().printlnMessage(getResourceString(
                 "export-service-configuration-succeeded"));
@@ -130,4 +149,64 @@ public class ExportServiceConfiguration extends AuthenticatedCommand {
             }
         }
     }
+
+    /**
+     * Writes the services one at a time, in the order of {@link ServiceManager#toXML(AMEncryption)}. The XML of the
+     * next few services is read concurrently while earlier services are being written.
+     */
+    private void writeServices(
+        final ServiceManager sm,
+        final AMEncryption encryptObj,
+        Writer writer,
+        boolean printProgress
+    ) throws SMSException, SSOException, IOException, InterruptedException, ExecutionException {
+        Deque<Future<String>> pending = new ArrayDeque<Future<String>>();
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+        long start = System.currentTimeMillis();
+        int count = 0;
+        try {
+            Set<String> serviceNames = sm.getServiceNames();
+            for (final String serviceName : serviceNames) {
+                Set<String> versions = (Set<String>) sm.getServiceVersions(serviceName);
+                for (final String version : versions) {
+                    if (pending.size() >= PARALLELISM * 2) {
+                        writer.write(pending.removeFirst().get());
+                        count++;
+                    }
+                    pending.addLast(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws SMSException, SSOException {
+                            return sm.toXML(serviceName, version, encryptObj);
+                        }
+                    }));
+                    if (printProgress && count > 0 && count % PROGRESS_INTERVAL == 0) {
+                        printProgress(start, count);
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                writer.write(pending.removeFirst().get());
+                count++;
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SMSException) {
+                throw (SMSException) e.getCause();
+            } else if (e.getCause() instanceof SSOException) {
+                throw (SSOException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        if (printProgress) {
+            printProgress(start, count);
+        }
+    }
+
+    private void printProgress(long start, int count) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        getOutputWriter().printlnMessage(MessageFormat.format(
+            getResourceString("export-service-configuration-progress"),
+            Integer.toString(count), Long.toString(count * 1000L / elapsed)));
+    }
 }
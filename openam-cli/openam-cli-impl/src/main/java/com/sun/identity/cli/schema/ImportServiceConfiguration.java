@@ -61,13 +61,18 @@ import com.sun.identity.sm.SMSException;
 import com.sun.identity.sm.SMSSchema;
 import com.sun.identity.sm.ServiceManager;
 import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
 import java.util.Iterator;
 import java.util.Set;
 import javax.security.auth.login.LoginException;
+import javax.xml.stream.XMLStreamException;
 import org.forgerock.openam.ldap.LdifUtils;
 import org.forgerock.opendj.ldap.Connection;
 import org.forgerock.opendj.ldap.LdapException;
@@ -79,6 +84,8 @@ import org.forgerock.opendj.ldif.LDIFChangeRecordReader;
 public class ImportServiceConfiguration extends AuthenticatedCommand {
     private static final String DS_LDIF = "ldif/odsee/odsee_config_schema.ldif";
     private static final String DS_IDX = "ldif/odsee/odsee_config_index.ldif";
+    private static final int PROGRESS_INTERVAL = 10;
+    private static final int HASH_SECRET_TAIL_LENGTH = 1024;
 
     /**
      * Services a Commandline Request.
@@ -263,16 +270,18 @@ public class ImportServiceConfiguration extends AuthenticatedCommand {
                 encKey);
             Crypt.reinitialize();
         }
-        IOutput outputWriter = getOutputWriter();        
-        FileInputStream fis = null;
+        IOutput outputWriter = getOutputWriter();
 
         try {
             AMEncryption encryptObj = new JCEEncryption();
             ((ConfigurableKey)encryptObj).setPassword(encryptSecret);
             
             ServiceManager ssm = new ServiceManager(ssoToken);
-            fis = new FileInputStream(xmlFile);
-            ssm.registerServices(fis, encryptObj);
+            // The file is read one service at a time, in two passes, as the configuration of a service may depend
+            // on the schema of services which come after it in the file.
+            int services = importSchema(ssm, xmlFile, encryptObj);
+            ssm.clearCache();
+            importConfiguration(ssm, xmlFile, encryptObj, services);
             
             InitializeSystem initSys = CommandManager.initSys;
             String instanceName = initSys.getInstanceName();
@@ -289,15 +298,49 @@ public class ImportServiceConfiguration extends AuthenticatedCommand {
             throw new CLIException(e, ExitCodes.REQUEST_CANNOT_BE_PROCESSED);
         } catch (Exception e) {
             throw new CLIException(e, ExitCodes.REQUEST_CANNOT_BE_PROCESSED);
-        } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException ie) {
-                    //ignore if file input stream cannot be closed.
+        }
+    }
+
+    private int importSchema(ServiceManager ssm, String xmlFile, AMEncryption encryptObj)
+        throws IOException, XMLStreamException, SMSException, SSOException {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        try (ServiceConfigurationReader reader = new ServiceConfigurationReader(xmlFile, "Configuration")) {
+            String service;
+            while ((service = reader.nextService()) != null) {
+                ssm.registerServices(new ByteArrayInputStream(service.getBytes(StandardCharsets.UTF_8)),
+                    encryptObj);
+                if (++count % PROGRESS_INTERVAL == 0) {
+                    printProgress("import-service-configuration-schema-progress", start, count, count);
+                }
+            }
+        }
+        printProgress("import-service-configuration-schema-progress", start, count, count);
+        return count;
+    }
+
+    private void importConfiguration(ServiceManager ssm, String xmlFile, AMEncryption encryptObj, int services)
+        throws IOException, XMLStreamException, SMSException, SSOException {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        try (ServiceConfigurationReader reader =
+                 new ServiceConfigurationReader(xmlFile, "Schema", "PluginSchema")) {
+            String service;
+            while ((service = reader.nextService()) != null) {
+                ssm.registerServiceConfigurations(
+                    new ByteArrayInputStream(service.getBytes(StandardCharsets.UTF_8)), encryptObj);
+                if (++count % PROGRESS_INTERVAL == 0) {
+                    printProgress("import-service-configuration-config-progress", start, count, services);
                 }
             }
         }
+        printProgress("import-service-configuration-config-progress", start, count, services);
+    }
+
+    private void printProgress(String key, long start, int count, int total) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        getOutputWriter().printlnMessage(MessageFormat.format(getResourceString(key),
+            Integer.toString(count), Integer.toString(total), Long.toString(count * 1000L / elapsed)));
     }
 
     private Connection getLDAPConnection() throws CLIException {
@@ -348,7 +391,7 @@ public class ImportServiceConfiguration extends AuthenticatedCommand {
 
     private void validateEncryptSecret(String xmlFile, String encryptSecret)
         throws CLIException {
-        String xml = CLIUtil.getFileContent(getCommandManager(), xmlFile);
+        String xml = getFileTail(xmlFile);
         int start = xml.lastIndexOf("<!-- ");
         if (start == -1) {
             throw new CLIException(getResourceString(
@@ -368,4 +411,24 @@ public class ImportServiceConfiguration extends AuthenticatedCommand {
                 ExitCodes.REQUEST_CANNOT_BE_PROCESSED, null);
         }
     }
+
+    /**
+     * Returns the end of the file, which holds the hashed encryption secret, without reading the whole file.
+     */
+    private String getFileTail(String xmlFile) throws CLIException {
+        if (!new File(xmlFile).exists()) {
+            Object[] param = {xmlFile};
+            throw new CLIException(MessageFormat.format(getCommandManager().getResourceBundle().getString(
+                "error-message-file-does-not-exist"), param), ExitCodes.CANNOT_READ_FILE);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(xmlFile, "r")) {
+            long length = file.length();
+            byte[] tail = new byte[(int) Math.min(length, HASH_SECRET_TAIL_LENGTH)];
+            file.seek(length - tail.length);
+            file.readFully(tail);
+            return new String(tail, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new CLIException(e.getMessage(), ExitCodes.CANNOT_READ_FILE);
+        }
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.cli.schema;
+
+import com.sun.identity.sm.ServiceManager;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Reads the services of a service configuration file written by {@code export-svc-cfg} one at a time, so that the
+ * file never has to be held in memory as a whole.
+ * <p>
+ * Each service is returned as a document of its own, in the format read by
+ * {@link ServiceManager#registerServices(InputStream, com.iplanet.services.util.AMEncryption)}. Child elements of
+ * the {@code Service} element can be left out, so that the schema and the configuration of the services can be
+ * imported in separate passes over the file.
+ */
+final class ServiceConfigurationReader implements Closeable {
+
+    private static final String SERVICE = "Service";
+
+    private final InputStream input;
+    private final XMLEventReader reader;
+    private final Set<String> skippedElements;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    /**
+     * Opens a service configuration file.
+     *
+     * @param xmlFile The service configuration file.
+     * @param skippedElements The names of the child elements of each {@code Service} element to leave out.
+     * @throws IOException If the file cannot be opened.
+     * @throws XMLStreamException If the file cannot be parsed.
+     */
+    ServiceConfigurationReader(String xmlFile, String... skippedElements) throws IOException, XMLStreamException {
+        this.skippedElements = new HashSet<>(Arrays.asList(skippedElements));
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        // The DTD is only needed to validate each service when it is registered
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        input = new BufferedInputStream(new FileInputStream(xmlFile));
+        try {
+            reader = inputFactory.createXMLEventReader(input);
+        } catch (XMLStreamException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the next service in the file.
+     *
+     * @return A service configuration document containing only the next service, or {@code null} if there are no
+     * more services.
+     * @throws XMLStreamException If the file cannot be parsed.
+     */
+    String nextService() throws XMLStreamException {
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement() && SERVICE.equals(event.asStartElement().getName().getLocalPart())) {
+                StringWriter buffer = new StringWriter();
+                buffer.append(ServiceManager.SERVICES_CONFIGURATION_START);
+                XMLEventWriter writer = outputFactory.createXMLEventWriter(buffer);
+                writer.add(event);
+                copyService(writer);
+                writer.close();
+                buffer.append('\n').append(ServiceManager.SERVICES_CONFIGURATION_END);
+                return buffer.toString();
+            }
+        }
+        return null;
+    }
+
+    private void copyService(XMLEventWriter writer) throws XMLStreamException {
+        int depth = 1;
+        int skippedDepth = 0;
+        while (depth > 0 && reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+                if (skippedDepth == 0 && depth == 2
+                        && skippedElements.contains(event.asStartElement().getName().getLocalPart())) {
+                    skippedDepth = depth;
+                }
+            }
+            if (skippedDepth == 0) {
+                writer.add(event);
+            }
+            if (event.isEndElement()) {
+                if (depth == skippedDepth) {
+                    skippedDepth = 0;
+                }
+                depth--;
+            }
+        }
+        if (depth > 0) {
+            throw new XMLStreamException("Service configuration file ends within a " + SERVICE + " element");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.cli.schema;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.sun.identity.sm.ServiceManager;
+
+public class ServiceConfigurationReaderTest {
+
+    private static final String SCHEMA = "<Schema serviceHierarchy=\"/DSAMEConfig/test\">"
+            + "<Global><AttributeSchema name=\"enabled\" type=\"single\" syntax=\"boolean\"/></Global></Schema>";
+    private static final String NESTED_CONFIGURATION = "<Configuration>"
+            + "<OrganizationConfiguration name=\"/\"><AttributeValuePair><Attribute name=\"enabled\"/>"
+            + "<Value>true</Value></AttributeValuePair>"
+            + "<SubConfiguration name=\"first\" id=\"level\">"
+            + "<SubConfiguration name=\"second\" id=\"level\">"
+            + "<SubConfiguration name=\"third\" id=\"level\"><AttributeValuePair><Attribute name=\"depth\"/>"
+            + "<Value>3</Value></AttributeValuePair></SubConfiguration>"
+            + "</SubConfiguration>"
+            + "</SubConfiguration>"
+            + "</OrganizationConfiguration></Configuration>";
+    private static final String FIRST_SERVICE = "<Service name=\"firstService\" version=\"1.0\">" + SCHEMA
+            + NESTED_CONFIGURATION + "</Service>";
+    private static final String SECOND_SERVICE = "<Service name=\"secondService\" version=\"1.0\">"
+            + "<Configuration><GlobalConfiguration>"
+            + "<SubConfiguration name=\"a &amp; &quot;b&quot; &lt;c&gt;\" id=\"escaped\">"
+            + "<AttributeValuePair><Attribute name=\"query\"/>"
+            + "<Value>(&amp;(uid=%s)(objectClass=&lt;person&gt;)) 'quoted' \"double\"</Value>"
+            + "<Value><![CDATA[<raw> & text]]></Value>"
+            + "</AttributeValuePair></SubConfiguration></GlobalConfiguration></Configuration></Service>";
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = File.createTempFile("services", ".xml");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void shouldReadBackEveryExportedService() throws Exception {
+        //Given
+        export(FIRST_SERVICE, SECOND_SERVICE);
+
+        //When
+        List<String> services = readServices();
+
+        //Then
+        assertThat(services).hasSize(2);
+        assertThat(getService(services.get(0)).isEqualNode(getService(wrap(FIRST_SERVICE)))).isTrue();
+        assertThat(getService(services.get(1)).isEqualNode(getService(wrap(SECOND_SERVICE)))).isTrue();
+    }
+
+    @Test
+    public void shouldKeepNestedSubConfigurations() throws Exception {
+        //Given
+        export(FIRST_SERVICE);
+
+        //When
+        Element service = getService(readServices().get(0));
+
+        //Then
+        NodeList subConfigurations = service.getElementsByTagName("SubConfiguration");
+        assertThat(subConfigurations.getLength()).isEqualTo(3);
+        Element third = (Element) subConfigurations.item(2);
+        assertThat(third.getAttribute("name")).isEqualTo("third");
+        assertThat(((Element) third.getParentNode()).getAttribute("name")).isEqualTo("second");
+        assertThat(third.getElementsByTagName("Value").item(0).getTextContent()).isEqualTo("3");
+    }
+
+    @Test
+    public void shouldPreserveEscapedValues() throws Exception {
+        //Given
+        export(SECOND_SERVICE);
+
+        //When
+        Element service = getService(readServices().get(0));
+
+        //Then
+        Element subConfiguration = (Element) service.getElementsByTagName("SubConfiguration").item(0);
+        assertThat(subConfiguration.getAttribute("name")).isEqualTo("a & \"b\" <c>");
+        NodeList values = service.getElementsByTagName("Value");
+        assertThat(values.item(0).getTextContent()).isEqualTo("(&(uid=%s)(objectClass=<person>)) 'quoted' \"double\"");
+        assertThat(values.item(1).getTextContent()).isEqualTo("<raw> & text");
+    }
+
+    @Test
+    public void shouldLeaveOutSkippedElements() throws Exception {
+        //Given
+        export(FIRST_SERVICE);
+
+        //When
+        Element schemaOnly = getService(readServices("Configuration").get(0));
+        Element configurationOnly = getService(readServices("Schema", "PluginSchema").get(0));
+
+        //Then
+        assertThat(schemaOnly.getElementsByTagName("Schema").getLength()).isEqualTo(1);
+        assertThat(schemaOnly.getElementsByTagName("Configuration").getLength()).isEqualTo(0);
+        assertThat(configurationOnly.getElementsByTagName("Schema").getLength()).isEqualTo(0);
+        assertThat(configurationOnly.getElementsByTagName("SubConfiguration").getLength()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldReadNoServicesFromEmptyExport() throws Exception {
+        //Given
+        export();
+
+        //When
+        List<String> services = readServices();
+
+        //Then
+        assertThat(services).isEmpty();
+    }
+
+    @Test(expectedExceptions = XMLStreamException.class)
+    public void shouldRejectTruncatedFile() throws Exception {
+        //Given
+        String exported = ServiceManager.SERVICES_CONFIGURATION_START + FIRST_SERVICE + SECOND_SERVICE;
+        write(exported.substring(0, exported.length() - 100));
+
+        //When
+        readServices();
+    }
+
+    @Test(expectedExceptions = XMLStreamException.class)
+    public void shouldRejectMismatchedElements() throws Exception {
+        //Given
+        write(ServiceManager.SERVICES_CONFIGURATION_START + "<Service name=\"broken\" version=\"1.0\"><Configuration>"
+                + "</Service>" + ServiceManager.SERVICES_CONFIGURATION_END);
+
+        //When
+        readServices();
+    }
+
+    /**
+     * Writes the services to the file in the same format as {@code export-svc-cfg}.
+     */
+    private void export(String... services) throws IOException {
+        StringBuilder exported = new StringBuilder(ServiceManager.SERVICES_CONFIGURATION_START);
+        for (String service : services) {
+            exported.append(service);
+        }
+        exported.append(ServiceManager.SERVICES_CONFIGURATION_END).append("<!-- hashedSecret -->");
+        write(exported.toString());
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> readServices(String... skippedElements) throws Exception {
+        List<String> services = new ArrayList<>();
+        try (ServiceConfigurationReader reader = new ServiceConfigurationReader(file.getPath(), skippedElements)) {
+            String service;
+            while ((service = reader.nextService()) != null) {
+                services.add(service);
+            }
+        }
+        return services;
+    }
+
+    private static String wrap(String service) {
+        return ServiceManager.SERVICES_CONFIGURATION_START + service + ServiceManager.SERVICES_CONFIGURATION_END;
+    }
+
+    /**
+     * Parses a services configuration document, which must hold a single service, as the service is parsed when it
+     * is imported.
+     */
+    private static Element getService(String services) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setCoalescing(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document document = builder.parse(new ByteArrayInputStream(services.getBytes(StandardCharsets.UTF_8)));
+        NodeList serviceElements = document.getElementsByTagName("Service");
+        assertThat(serviceElements.getLength()).isEqualTo(1);
+        return (Element) serviceElements.item(0);
+    }
+}
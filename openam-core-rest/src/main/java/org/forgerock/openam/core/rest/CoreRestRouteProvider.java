@@ -31,6 +31,7 @@ import org.forgerock.openam.core.rest.devices.oath.OathDevicesResource;
 import org.forgerock.openam.core.rest.devices.push.PushDevicesResource;
 import org.forgerock.openam.core.rest.docs.api.ApiDocsService;
 import org.forgerock.openam.core.rest.docs.api.ApiService;
+import org.forgerock.openam.core.rest.monitoring.MetricsService;
 import org.forgerock.openam.core.rest.record.RecordConstants;
 import org.forgerock.openam.core.rest.record.RecordResource;
 import org.forgerock.openam.core.rest.server.ServerInfoResource;
@@ -171,5 +172,11 @@ public class CoreRestRouteProvider extends AbstractRestRouteProvider {
                 .authorizeWith(HttpPrivilegeAuthzModule.class)
                 .forVersion(1, 0)
                 .toService(EQUALS, ApiService.class);
+
+        rootRouter.route("metrics")
+                .through(HttpContextFilter.class)
+                .authorizeWith(HttpPrivilegeAuthzModule.class)
+                .forVersion(1, 0)
+                .toService(EQUALS, MetricsService.class);
     }
 }
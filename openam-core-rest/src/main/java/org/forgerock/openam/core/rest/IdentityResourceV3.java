@@ -64,12 +64,12 @@ import org.forgerock.openam.sm.config.ConsoleConfigHandler;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
 import org.forgerock.util.query.QueryFilter;
 
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -203,38 +203,41 @@ public final class IdentityResourceV3 implements CollectionResourceProvider {
         try {
             SSOToken admin = context.asContext(SSOTokenContext.class).getCallerSSOToken();
             IdentityServicesImpl identityServices = getIdentityServices();
-            List<IdentityDetails> userDetails = null;
 
             // If the user specified _queryFilter, then (convert and) use that, otherwise look for _queryID
             // and if that isn't there either, pretend the user gave a _queryID of "*"
             //
             QueryFilter<JsonPointer> queryFilter = request.getQueryFilter();
-            if (queryFilter != null) {
-                CrestQuery crestQuery = new CrestQuery(queryFilter);
-                userDetails = identityServices.searchIdentityDetails(crestQuery,
-                        getIdentityServicesAttributes(realm, objectType),
-                        admin);
-            } else {
-                String queryId = request.getQueryId();
+            String queryId = null;
+            if (queryFilter == null) {
+                queryId = request.getQueryId();
                 if (queryId == null || queryId.isEmpty()) {
                     queryId = "*";
                 }
-                CrestQuery crestQuery = new CrestQuery(queryId);
-                userDetails = identityServices.searchIdentityDetails(crestQuery,
-                        getIdentityServicesAttributes(realm, objectType),
-                        admin);
             }
 
+            // Pages are requested from the data store using the cookie it returned with the previous page, so only
+            // requests without an offset can be paged.
+            int pageSize = request.getPagedResultsOffset() > 0 ? 0 : request.getPageSize();
+            CrestQuery crestQuery = new CrestQuery(queryId, queryFilter, null, pageSize,
+                    request.getPagedResultsCookie());
+
+            String pagedResultsCookie = identityServices.searchIdentityDetails(crestQuery,
+                    getIdentityServicesAttributes(realm, objectType), admin, new ResultHandler<IdentityDetails>() {
+                        @Override
+                        public void handleResult(IdentityDetails userDetail) {
+                            handler.handleResource(identityResourceV2.buildResourceResponse(userDetail.getName(),
+                                    context, userDetail));
+                        }
+                    });
+
             String principalName = PrincipalRestUtils.getPrincipalNameFromServerContext(context);
             logger.message("IdentityResourceV3.queryCollection :: QUERY performed on realm "
                     + realm
                     + " by "
                     + principalName);
 
-            for (IdentityDetails userDetail : userDetails) {
-                handler.handleResource(
-                        this.identityResourceV2.buildResourceResponse(userDetail.getName(), context, userDetail));
-            }
+            return newResultPromise(newQueryResponse(pagedResultsCookie));
 
         } catch (ResourceException resourceException) {
             logger.warning("IdentityResourceV3.queryCollection caught ResourceException", resourceException);
@@ -243,8 +246,6 @@ public final class IdentityResourceV3 implements CollectionResourceProvider {
             logger.error("IdentityResourceV3.queryCollection caught exception", exception);
             return new InternalServerErrorException(exception.getMessage(), exception).asPromise();
         }
-
-        return newResultPromise(newQueryResponse());
     }
 
     /**
@@ -0,0 +1,80 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.core.rest.monitoring;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.openam.http.annotations.Contextual;
+import org.forgerock.openam.http.annotations.Get;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * This service publishes the counters and latency histograms of the {@link MetricsRegistry} in the Prometheus text
+ * exposition format, so that they can be scraped by a monitoring system.
+ *
+ * @since 14.0.0
+ */
+public class MetricsService {
+
+    private static final ContentTypeHeader CONTENT_TYPE = ContentTypeHeader.valueOf(MetricsRegistry.CONTENT_TYPE);
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    private final MetricsRegistry metricsRegistry;
+    private final Debug debug;
+
+    /**
+     * Create an instance of the {@link MetricsService}.
+     *
+     * @param metricsRegistry The registry of metrics to publish.
+     * @param debug The debug instance.
+     */
+    @Inject
+    public MetricsService(MetricsRegistry metricsRegistry, @Named("frRest") Debug debug) {
+        this.metricsRegistry = metricsRegistry;
+        this.debug = debug;
+    }
+
+    /**
+     * Handle a scrape of the metrics.
+     *
+     * @param request The HTTP request.
+     *
+     * @return The {@link Response} containing the current value of every metric.
+     */
+    @Get
+    public Response handle(@Contextual Request request) {
+        StringBuilder metrics = new StringBuilder(INITIAL_CAPACITY);
+        try {
+            metricsRegistry.write(metrics);
+        } catch (IOException e) {
+            debug.error("MetricsService#handle :: Could not write metrics", e);
+            return new Response(Status.INTERNAL_SERVER_ERROR).setCause(e);
+        }
+        Response response = new Response(Status.OK);
+        response.getHeaders().add(CONTENT_TYPE);
+        response.setEntity(metrics.toString());
+        return response;
+    }
+}
@@ -23,7 +23,6 @@ import static org.forgerock.openam.session.SessionConstants.JSON_SESSION_USERNAM
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import javax.inject.Inject;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -77,6 +76,7 @@ import org.forgerock.openam.rest.RestUtils;
 import org.forgerock.openam.rest.resource.SSOTokenContext;
 import org.forgerock.openam.session.SessionConstants;
 import org.forgerock.openam.session.SessionPropertyWhitelist;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.promise.Promise;
@@ -362,17 +362,19 @@ public class SessionResourceV2 implements CollectionResourceProvider {
     )
     @Override
     public Promise<QueryResponse, ResourceException> queryCollection(Context context, QueryRequest request,
-            QueryResourceHandler handler) {
+            final QueryResourceHandler handler) {
         CrestQuery crestQuery = new CrestQuery(request.getQueryId(), request.getQueryFilter(), request.getFields());
 
         SSOTokenContext ssoTokenContext = context.asContext(SSOTokenContext.class);
         try {
-            final Collection<PartialSession> matchingSessions = sessionService.getMatchingSessions(
-                    ssoTokenContext.getCallerSession(), crestQuery);
-            for (PartialSession matchingSession : matchingSessions) {
-                handler.handleResource(newResourceResponse(null, String.valueOf(matchingSession.hashCode()),
-                        matchingSession.asJson()));
-            }
+            sessionService.getMatchingSessions(ssoTokenContext.getCallerSession(), crestQuery,
+                    new SessionQueryHandler<PartialSession>() {
+                        @Override
+                        public boolean handleResult(PartialSession matchingSession) {
+                            return handler.handleResource(newResourceResponse(null,
+                                    String.valueOf(matchingSession.hashCode()), matchingSession.asJson()));
+                        }
+                    });
         } catch (IllegalArgumentException iae) {
             return new BadRequestException(iae.getMessage()).asPromise();
         } catch (SessionException se) {
@@ -33,10 +33,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.Serializable;
 import java.net.URL;
-import java.security.AccessController;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -46,11 +46,10 @@ import org.forgerock.openam.utils.StringUtils;
 import org.forgerock.util.Reject;
 
 import com.iplanet.am.util.SystemProperties;
+import com.iplanet.dpro.session.service.InternalSessionCodec;
 import com.iplanet.dpro.session.service.SessionServerConfig;
 import com.iplanet.dpro.session.share.SessionEncodeURL;
 import com.iplanet.services.naming.WebtopNaming;
-import com.iplanet.services.util.Crypt;
-import com.sun.identity.security.EncodeAction;
 import com.sun.identity.shared.Constants;
 import com.sun.identity.shared.debug.Debug;
 import com.sun.identity.shared.encode.Base64;
@@ -367,24 +366,17 @@ public class SessionID implements Serializable {
         }
         String serverID = null;
         try {
-            String sidString = encryptedString;
-            // sidString would have * if it has been c66 encoded
-            if (isC66Encoded()) {
-                sidString = c66DecodeCookieString(encryptedString);
-            }
-            int outerIndex = sidString.lastIndexOf("@");
-            if (outerIndex == -1) {
+            SessionIDCodec.Parsed parsed = SessionIDCodec.parse(encryptedString);
+            if (!parsed.hasOuter()) {
                 isParsed = true;
                 return;
             }
 
-            String outer = sidString.substring(outerIndex + 1);
-            int tailIndex = outer.indexOf("#");
-            tail = outer.substring(tailIndex + 1);
+            tail = parsed.getTail();
 
-            if (tailIndex != -1) {
-                String extensionPart = outer.substring(0, tailIndex);
-                extensions = new DynamicSessionIDExtensions(new LegacySessionIDExtensions(extensionPart));
+            if (parsed.getExtensions() != null) {
+                extensions = new DynamicSessionIDExtensions(
+                        new LegacySessionIDExtensions(new HashMap<>(parsed.getExtensions())));
             } else {
                 extensions = new LegacySessionIDExtensions();
             }
@@ -615,7 +607,7 @@ public class SessionID implements Serializable {
      * first occurence of star with @
      * subsequent occurence of star with #
      */
-    private static String c66DecodeCookieString(String urlEncodedString) {
+    static String c66DecodeCookieString(String urlEncodedString) {
         if (urlEncodedString == null || urlEncodedString.length() == 0) {
             return urlEncodedString;
         }
@@ -688,8 +680,7 @@ public class SessionID implements Serializable {
         // which knew too much about the structure of the session id
         // newer clients will mostly treat session id as opaque
         //
-        return AccessController.doPrivileged(new EncodeAction(r + "@"
-                + serverConfig.getPrimaryServerID(), Crypt.getHardcodedKeyEncryptor()));
+        return SessionIDCodec.encryptID(r + "@" + serverConfig.getPrimaryServerID());
     }
 
     /**
@@ -758,6 +749,79 @@ public class SessionID implements Serializable {
         sessionDomain = domain;
     }
 
+    /**
+     * Writes the state of this session ID as the fields of a binary encoded session. Empty values are not written.
+     * Tags must never be reused, see {@link InternalSessionCodec}.
+     *
+     * @param out The output of the session being encoded.
+     */
+    public void writeTo(InternalSessionCodec.Output out) {
+        writeIfNotEmpty(out, 1, encryptedString);
+        if (comingFromAuth) {
+            out.writeVarint(2, 1);
+        }
+        if (cookieMode != null) {
+            out.writeVarint(3, cookieMode ? 1 : 0);
+        }
+        writeIfNotEmpty(out, 4, sessionDomain);
+        writeIfNotEmpty(out, 5, sessionServerID);
+        writeIfNotEmpty(out, 6, sessionServerProtocol);
+        writeIfNotEmpty(out, 7, sessionServer);
+        writeIfNotEmpty(out, 8, sessionServerPort);
+        writeIfNotEmpty(out, 9, sessionServerURI);
+    }
+
+    private static void writeIfNotEmpty(InternalSessionCodec.Output out, int tag, String value) {
+        if (!isNull(value)) {
+            out.writeString(tag, value);
+        }
+    }
+
+    /**
+     * Reads a session ID written by {@link #writeTo(InternalSessionCodec.Output)}. Used during session
+     * deserialization only.
+     *
+     * @param in The input of the session being decoded, positioned at the first field of the session ID.
+     * @return The session ID.
+     */
+    public static SessionID readFrom(InternalSessionCodec.Input in) {
+        SessionID sid = new SessionID();
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (tag) {
+            case 1:
+                sid.encryptedString = in.readString();
+                break;
+            case 2:
+                sid.comingFromAuth = in.readVarint() != 0;
+                break;
+            case 3:
+                sid.cookieMode = in.readVarint() != 0;
+                break;
+            case 4:
+                sid.sessionDomain = in.readString();
+                break;
+            case 5:
+                sid.sessionServerID = in.readString();
+                break;
+            case 6:
+                sid.sessionServerProtocol = in.readString();
+                break;
+            case 7:
+                sid.sessionServer = in.readString();
+                break;
+            case 8:
+                sid.sessionServerPort = in.readString();
+                break;
+            case 9:
+                sid.sessionServerURI = in.readString();
+                break;
+            default:
+                in.skipField();
+            }
+        }
+        return sid;
+    }
+
     /**
      * This method validates that the received session ID points to an existing server ID, and the site ID also
      * corresponds to the server ID found in the session. Within this method two "extensions" are of interest: SITE_ID
@@ -0,0 +1,240 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.dpro.session;
+
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.openam.utils.collections.LeastRecentlyUsed;
+import org.forgerock.util.annotations.VisibleForTesting;
+
+import com.iplanet.am.util.SystemProperties;
+import com.iplanet.services.util.Crypt;
+import com.sun.identity.security.EncodeAction;
+import com.sun.identity.shared.Constants;
+import com.sun.identity.shared.debug.Debug;
+import com.sun.identity.shared.encode.Base64;
+
+/**
+ * Encodes and decodes the parts of a session ID string which do not depend on the naming table.
+ * <p>
+ * Session ID strings are parsed on every request which carries an SSO token, and the same strings arrive over and
+ * over. The result of decoding the extensions and tail of a session ID string is therefore kept in a bounded least
+ * recently used memo, split into segments so that concurrent requests rarely contend. Only the decoded values are
+ * kept: the site and server lookups, which depend on the naming table, are still made for every {@link SessionID}.
+ * <p>
+ * The encrypted ID at the start of a newly generated session ID is encrypted with the hardcoded key by default, for
+ * compatibility with old clients. When {@link Constants#SESSION_ID_AEAD_ENABLED} is set it is instead encrypted with
+ * AES-GCM under a key derived once from the encryption password, after a leading version byte which tells it apart
+ * from the legacy format. The server never decrypts the encrypted ID, as sessions are stored under the whole session ID
+ * and routed by its extensions.
+ */
+final class SessionIDCodec {
+
+    private static final Debug DEBUG = Debug.getInstance("amSession");
+    private static final int SEGMENTS = 16;
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final byte AEAD_VERSION = 2;
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final byte[] KEY_SALT = "openam-session-id".getBytes(StandardCharsets.UTF_8);
+    private static final int KEY_ITERATIONS = 10000;
+    private static final String ENCRYPTION_PASSWORD_PROPERTY = "am.encryption.pwd";
+
+    private static final Map<String, Parsed>[] MEMO =
+            newMemo(SystemProperties.getAsInt(Constants.SESSION_ID_PARSE_CACHE_SIZE, DEFAULT_CACHE_SIZE));
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static volatile SecretKey aeadKey;
+    private static volatile boolean aeadUnavailable;
+
+    private SessionIDCodec() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Parsed>[] newMemo(int size) {
+        if (size <= 0) {
+            return null;
+        }
+        Map<String, Parsed>[] segments = new Map[SEGMENTS];
+        int segmentSize = Math.max(1, size / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = Collections.synchronizedMap(new LeastRecentlyUsed<String, Parsed>(segmentSize));
+        }
+        return segments;
+    }
+
+    /**
+     * Decodes the extensions and tail of a session ID string, reusing the result of an earlier decode of the same
+     * string if there is one.
+     *
+     * @param sid The session ID string, which may be c66 encoded.
+     * @return The decoded parts of the session ID.
+     * @throws Exception If the session ID string cannot be decoded.
+     */
+    static Parsed parse(String sid) throws Exception {
+        if (MEMO == null) {
+            return decode(sid);
+        }
+        Map<String, Parsed> segment = MEMO[(sid.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        Parsed parsed = segment.get(sid);
+        if (parsed == null) {
+            parsed = decode(sid);
+            segment.put(sid, parsed);
+        }
+        return parsed;
+    }
+
+    @VisibleForTesting
+    static Parsed decode(String sid) throws Exception {
+        String sidString = sid;
+        // sidString would have * if it has been c66 encoded
+        if (sid.contains("*")) {
+            sidString = SessionID.c66DecodeCookieString(sid);
+        }
+        int outerIndex = sidString.lastIndexOf("@");
+        if (outerIndex == -1) {
+            return new Parsed(false, null, null);
+        }
+
+        String outer = sidString.substring(outerIndex + 1);
+        int tailIndex = outer.indexOf("#");
+        String tail = outer.substring(tailIndex + 1);
+        Map<String, String> extensions = null;
+        if (tailIndex != -1) {
+            extensions = new LegacySessionIDExtensions(outer.substring(0, tailIndex)).asMap();
+        }
+        return new Parsed(true, extensions, tail);
+    }
+
+    /**
+     * Encrypts the random part and server ID of a new session ID.
+     *
+     * @param clearText The value to encrypt.
+     * @return The encrypted ID.
+     */
+    static String encryptID(String clearText) {
+        if (SystemProperties.getAsBoolean(Constants.SESSION_ID_AEAD_ENABLED, false)) {
+            SecretKey key = getAeadKey();
+            if (key != null) {
+                try {
+                    return aeadEncrypt(key, clearText);
+                } catch (GeneralSecurityException e) {
+                    DEBUG.error("SessionIDCodec: unable to encrypt session ID with AES-GCM, using legacy encryption",
+                            e);
+                }
+            }
+        }
+        return AccessController.doPrivileged(new EncodeAction(clearText, Crypt.getHardcodedKeyEncryptor()));
+    }
+
+    private static String aeadEncrypt(SecretKey key, String clearText) throws GeneralSecurityException {
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        byte[] encrypted = cipher.doFinal(clearText.getBytes(StandardCharsets.UTF_8));
+        byte[] result = new byte[1 + GCM_IV_LENGTH + encrypted.length];
+        result[0] = AEAD_VERSION;
+        System.arraycopy(iv, 0, result, 1, GCM_IV_LENGTH);
+        System.arraycopy(encrypted, 0, result, 1 + GCM_IV_LENGTH, encrypted.length);
+        return Base64.encode(result);
+    }
+
+    /**
+     * The AES key is derived from the encryption password once, rather than for each session ID.
+     */
+    private static SecretKey getAeadKey() {
+        SecretKey key = aeadKey;
+        if (key != null || aeadUnavailable) {
+            return key;
+        }
+        synchronized (SessionIDCodec.class) {
+            if (aeadKey == null && !aeadUnavailable) {
+                String password = SystemProperties.get(ENCRYPTION_PASSWORD_PROPERTY);
+                if (password == null) {
+                    DEBUG.error("SessionIDCodec: no encryption password, AES-GCM session IDs are not available");
+                    aeadUnavailable = true;
+                    return null;
+                }
+                try {
+                    byte[] keyBytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1")
+                            .generateSecret(new PBEKeySpec(password.toCharArray(), KEY_SALT, KEY_ITERATIONS, 128))
+                            .getEncoded();
+                    aeadKey = new SecretKeySpec(keyBytes, "AES");
+                } catch (GeneralSecurityException e) {
+                    DEBUG.error("SessionIDCodec: unable to derive key, AES-GCM session IDs are not available", e);
+                    aeadUnavailable = true;
+                }
+            }
+            return aeadKey;
+        }
+    }
+
+    /**
+     * The parts of a session ID string which are decoded without reference to the naming table. Instances are shared
+     * between session IDs and are immutable.
+     */
+    static final class Parsed {
+        private final boolean hasOuter;
+        private final Map<String, String> extensions;
+        private final String tail;
+
+        private Parsed(boolean hasOuter, Map<String, String> extensions, String tail) {
+            this.hasOuter = hasOuter;
+            this.extensions = extensions;
+            this.tail = tail;
+        }
+
+        /**
+         * Whether the session ID string has an extensions and tail part, after an {@code @}.
+         *
+         * @return {@code true} if the session ID has extensions or a tail.
+         */
+        boolean hasOuter() {
+            return hasOuter;
+        }
+
+        /**
+         * The decoded extensions, as an unmodifiable map.
+         *
+         * @return The extensions, or {@code null} if the session ID string has no extensions part.
+         */
+        Map<String, String> getExtensions() {
+            return extensions;
+        }
+
+        /**
+         * The opaque tail of the session ID.
+         *
+         * @return The tail, or {@code null} if the session ID string has no extensions or tail part.
+         */
+        String getTail() {
+            return tail;
+        }
+    }
+}
@@ -15,10 +15,10 @@
 */
 package com.iplanet.dpro.session.monitoring;
 
-import java.util.Collection;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.forgerock.openam.dpro.session.PartialSession;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.utils.CrestQuery;
 
 import com.iplanet.dpro.session.Session;
@@ -93,8 +93,9 @@ public class MonitoredOperations implements SessionOperations {
     }
 
     @Override
-    public Collection<PartialSession> getMatchingSessions(CrestQuery crestQuery) throws SessionException {
-        return sessionOperations.getMatchingSessions(crestQuery);
+    public void getMatchingSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
+            throws SessionException {
+        sessionOperations.getMatchingSessions(crestQuery, handler);
     }
 
     @Override
@@ -118,7 +119,13 @@ public class MonitoredOperations implements SessionOperations {
 
     @Override
     public SessionInfo getSessionInfo(SessionID sid, boolean reset) throws SessionException {
-        return sessionOperations.getSessionInfo(sid, reset); // Not monitored at present
+        final long start = System.nanoTime();
+
+        final SessionInfo response = sessionOperations.getSessionInfo(sid, reset);
+
+        sessionMonitoringStore.storeValidateTime(System.nanoTime() - start, monitorType);
+
+        return response;
     }
 
     @Override
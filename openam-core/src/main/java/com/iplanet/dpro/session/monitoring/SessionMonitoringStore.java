@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 package com.iplanet.dpro.session.monitoring;
 
@@ -21,6 +21,8 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+
 /**
  * The store for session monitoring information. Each of the operations which can be applied to sessions
  * (refresh, setProperty, destroy and logout) have their own store, which maps the session type (e.g. REMOTE or LOCAL)
@@ -28,7 +30,8 @@ import javax.inject.Singleton;
  * {@link SessionTimingEntry} samples, which can be used to calculate e.g. the slowest, or average speed of a given
  * operation.
  *
- * Uses an ExecutorService to perform writes out to the store (which may block).
+ * Uses an ExecutorService to perform writes out to the store (which may block). Every operation is also recorded,
+ * without blocking, in the {@link MetricsRegistry}, along with session creation and validation timings.
  */
 @Singleton
 public class SessionMonitoringStore {
@@ -39,6 +42,7 @@ public class SessionMonitoringStore {
     private final ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> logoutStore;
 
     private final SessionMonitoringTimingStoreFactory sessionMonitoringTimingStoreFactory;
+    private final MetricsRegistry.Timer operationTimer;
 
     //for pushing off our monitoring writes to another thread
     private final ExecutorService executorService;
@@ -50,12 +54,16 @@ public class SessionMonitoringStore {
      * to be pushed in.
      *
      * @param executorService the service to which to offload out writes
+     * @param sessionMonitoringTimingStoreFactory Factory for generating timing stores
+     * @param metricsRegistry The registry in which to record session operation timings
      */
     @Inject
     public SessionMonitoringStore(@Named(EXECUTOR_BINDING_NAME) ExecutorService executorService,
-                                  SessionMonitoringTimingStoreFactory sessionMonitoringTimingStoreFactory) {
+                                  SessionMonitoringTimingStoreFactory sessionMonitoringTimingStoreFactory,
+                                  MetricsRegistry metricsRegistry) {
         this.executorService = executorService;
         this.sessionMonitoringTimingStoreFactory = sessionMonitoringTimingStoreFactory;
+        this.operationTimer = createOperationTimer(metricsRegistry);
 
         this.refreshStore = new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
         this.propertyStore= new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
@@ -72,15 +80,18 @@ public class SessionMonitoringStore {
      * @param propertyStore Property store
      * @param destroyStore Destroy store
      * @param logoutStore Logout store
+     * @param metricsRegistry Registry for session operation timings
      */
     SessionMonitoringStore(ExecutorService executorService,
                                   SessionMonitoringTimingStoreFactory sessionMonitoringTimingStoreFactory,
                                   ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> refreshStore,
                                   ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> propertyStore,
                                   ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> destroyStore,
-                                  ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> logoutStore) {
+                                  ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> logoutStore,
+                                  MetricsRegistry metricsRegistry) {
         this.executorService = executorService;
         this.sessionMonitoringTimingStoreFactory = sessionMonitoringTimingStoreFactory;
+        this.operationTimer = createOperationTimer(metricsRegistry);
 
         this.refreshStore = refreshStore;
         this.propertyStore = propertyStore;
@@ -88,6 +99,31 @@ public class SessionMonitoringStore {
         this.logoutStore = logoutStore;
     }
 
+    private static MetricsRegistry.Timer createOperationTimer(MetricsRegistry metricsRegistry) {
+        return metricsRegistry.timer("openam_session_operation_seconds",
+                "Time taken by session operations, by operation and session type.", "operation", "type");
+    }
+
+    /**
+     * Records the time taken to create a session.
+     *
+     * @param duration the length of time the session took to create (in nanoseconds)
+     * @param type the type of session created
+     */
+    public void storeCreateTime(long duration, SessionMonitorType type) {
+        operationTimer.record(duration, "create", type.name());
+    }
+
+    /**
+     * Records the time taken to validate a session by reading its session information.
+     *
+     * @param duration the length of time the validation took (in nanoseconds)
+     * @param type the type of session validated
+     */
+    public void storeValidateTime(long duration, SessionMonitorType type) {
+        operationTimer.record(duration, "validate", type.name());
+    }
+
     /**
      * Stores an entry in the refreshStore, offloading the work to another thread.
      *
@@ -95,6 +131,7 @@ public class SessionMonitoringStore {
      * @param type the type of session to which this entry pertains
      */
     public void storeRefreshTime(final long duration, final SessionMonitorType type) {
+        operationTimer.record(duration, "refresh", type.name());
         executorService.submit(new Runnable() {
             @Override
             public void run() {
@@ -129,6 +166,7 @@ public class SessionMonitoringStore {
      * @param type the type of session to which this entry pertains
      */
     public void storeSetPropertyTime(final long duration, final SessionMonitorType type) {
+        operationTimer.record(duration, "setProperty", type.name());
         executorService.submit(new Runnable() {
             @Override
             public void run() {
@@ -163,6 +201,7 @@ public class SessionMonitoringStore {
      * @param type the type of session to which this entry pertains
      */
     public void storeDestroyTime(final long duration, final SessionMonitorType type) {
+        operationTimer.record(duration, "destroy", type.name());
         executorService.submit(new Runnable() {
             @Override
             public void run() {
@@ -198,6 +237,7 @@ public class SessionMonitoringStore {
      * @param type the type of session to which this entry pertains
      */
     public void storeLogoutTime(final long duration, final SessionMonitorType type) {
+        operationTimer.record(duration, "logout", type.name());
         executorService.submit(new Runnable() {
             @Override
             public void run() {
@@ -45,7 +45,7 @@ public class SessionMonitoringTimingStore extends AbstractTimingStore {
      * @param duration the length of time the operation took
      */
     public void addTimingEntry(long duration) {
-        durationStore.add(new SessionTimingEntry(duration));
+        add(new SessionTimingEntry(duration));
     }
 
 }
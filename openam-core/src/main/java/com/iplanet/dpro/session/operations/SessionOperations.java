@@ -15,9 +15,9 @@
  */
 package com.iplanet.dpro.session.operations;
 
-import java.util.Collection;
 
 import org.forgerock.openam.dpro.session.PartialSession;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.utils.CrestQuery;
 
 import com.iplanet.dpro.session.Session;
@@ -167,13 +167,15 @@ public interface SessionOperations {
     SearchResults<SessionInfo> getValidSessions(Session session, String pattern) throws SessionException;
 
     /**
-     * Returns partial sessions from the session service backend that matches the provided CREST query. The resultset
-     * size is limited by the session service's "iplanet-am-session-max-session-list-size" attribute. The returned
-     * sessions are only "partial" sessions, meaning that they do not represent the full session state.
+     * Passes partial sessions from the session service backend that match the provided CREST query to the handler as
+     * they are read. The number of results is limited by the session service's
+     * "iplanet-am-session-max-session-list-size" attribute. The sessions are only "partial" sessions, meaning that they
+     * do not represent the full session state.
      *
      * @param crestQuery The CREST query based on which we should look for matching sessions.
-     * @return The collection of matching partial sessions.
+     * @param handler The handler to receive the matching partial sessions.
      * @throws SessionException If the request fails.
      */
-    Collection<PartialSession> getMatchingSessions(CrestQuery crestQuery) throws SessionException;
+    void getMatchingSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
+            throws SessionException;
 }
@@ -17,12 +17,12 @@ package com.iplanet.dpro.session.operations.strategies;
 
 import java.net.URL;
 import java.text.MessageFormat;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.forgerock.openam.dpro.session.PartialSession;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.session.SessionPLLSender;
 import org.forgerock.openam.session.SessionServiceURLService;
 import org.forgerock.openam.utils.CrestQuery;
@@ -144,7 +144,7 @@ public class ClientSdkOperations implements SessionOperations {
     }
 
     @Override
-    public Collection<PartialSession> getMatchingSessions(CrestQuery crestQuery) {
+    public void getMatchingSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler) {
         throw new UnsupportedOperationException("Querying sessions is currently not supported with the ClientSDK");
     }
 
@@ -21,18 +21,19 @@ import static org.forgerock.openam.session.SessionEventType.MAX_TIMEOUT;
 import static org.forgerock.openam.utils.Time.currentTimeMillis;
 
 import java.text.MessageFormat;
-import java.util.Collection;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.forgerock.openam.dpro.session.InvalidSessionIdException;
 import org.forgerock.openam.dpro.session.PartialSession;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.session.SessionConstants;
 import org.forgerock.openam.session.SessionEventType;
 import org.forgerock.openam.session.authorisation.SessionChangeAuthorizer;
 import org.forgerock.openam.session.service.SessionAccessManager;
 import org.forgerock.openam.session.service.access.SessionQueryManager;
+import org.forgerock.openam.session.service.access.persistence.caching.SessionInfoCache;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.openam.utils.Time;
 import org.forgerock.util.Reject;
@@ -68,6 +69,7 @@ public class LocalOperations implements SessionOperations {
     private final SessionServerConfig serverConfig;
     private final InternalSessionListener sessionEventBroker;
     private final SessionChangeAuthorizer sessionChangeAuthorizer;
+    private final SessionInfoCache sessionInfoCache;
 
     /**
      * Guice initialised constructor.
@@ -78,7 +80,7 @@ public class LocalOperations implements SessionOperations {
      * @param internalSessionEventBroker observer of session events
      * @param sessionChangeAuthorizer class for verifying permissions and authorisation for the current user to
      *                                perform tasks on the session.  Used during deleting a session and getting access
-     *
+     * @param sessionInfoCache cache of session information for answering validation requests
      */
     @Inject
     LocalOperations(@Named(SessionConstants.SESSION_DEBUG) final Debug debug,
@@ -87,7 +89,8 @@ public class LocalOperations implements SessionOperations {
                     final SessionInfoFactory sessionInfoFactory,
                     final SessionServerConfig serverConfig,
                     final InternalSessionEventBroker internalSessionEventBroker,
-                    final SessionChangeAuthorizer sessionChangeAuthorizer) {
+                    final SessionChangeAuthorizer sessionChangeAuthorizer,
+                    final SessionInfoCache sessionInfoCache) {
         this.debug = debug;
         this.sessionAccessManager = sessionAccessManager;
         this.sessionQueryManager = sessionQueryManager;
@@ -95,6 +98,7 @@ public class LocalOperations implements SessionOperations {
         this.serverConfig = serverConfig;
         this.sessionEventBroker = internalSessionEventBroker;
         this.sessionChangeAuthorizer = sessionChangeAuthorizer;
+        this.sessionInfoCache = sessionInfoCache;
     }
 
     /**
@@ -192,11 +196,23 @@ public class LocalOperations implements SessionOperations {
 
     @Override
     public SessionInfo getSessionInfo(SessionID sessionID, boolean reset) throws SessionException {
+        if (!reset) {
+            // Validation only, which can be answered without reading the session
+            SessionInfo cached = sessionInfoCache.get(sessionID);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long generation = sessionInfoCache.getGeneration();
         InternalSession session = resolveToken(sessionID);
         if (reset) {
             session.setLatestAccessTime();
         }
-        return sessionInfoFactory.getSessionInfo(session, sessionID);
+        SessionInfo info = sessionInfoFactory.getSessionInfo(session, sessionID);
+        if (sessionID.equals(session.getID())) {
+            sessionInfoCache.populate(sessionID, info, generation);
+        }
+        return info;
     }
 
     @Override
@@ -326,8 +342,9 @@ public class LocalOperations implements SessionOperations {
     }
 
     @Override
-    public Collection<PartialSession> getMatchingSessions(CrestQuery crestQuery) throws SessionException {
-        return sessionQueryManager.getMatchingValidSessions(crestQuery);
+    public void getMatchingSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
+            throws SessionException {
+        sessionQueryManager.getMatchingValidSessions(crestQuery, handler);
     }
 
     private void logoutInternalSession(final InternalSession session) {
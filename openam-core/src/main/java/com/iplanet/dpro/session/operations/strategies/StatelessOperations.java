@@ -18,7 +18,6 @@ package com.iplanet.dpro.session.operations.strategies;
 
 import static org.forgerock.openam.utils.Time.currentTimeMillis;
 
-import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -26,6 +25,7 @@ import javax.inject.Inject;
 import org.forgerock.openam.blacklist.Blacklist;
 import org.forgerock.openam.blacklist.BlacklistException;
 import org.forgerock.openam.dpro.session.PartialSession;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.session.SessionEventType;
 import org.forgerock.openam.session.authorisation.SessionChangeAuthorizer;
 import org.forgerock.openam.sso.providers.stateless.StatelessSession;
@@ -105,12 +105,13 @@ public class StatelessOperations implements SessionOperations {
      * Since stateless sessions are not tracked by OpenAM, it is not possible to query for them.
      *
      * @param crestQuery {@inheritDoc}
-     * @return {@inheritDoc}
+     * @param handler {@inheritDoc}
      * @throws SessionException {@inheritDoc}
      */
     @Override
-    public Collection<PartialSession> getMatchingSessions(CrestQuery crestQuery) throws SessionException {
-        return localOperations.getMatchingSessions(crestQuery);
+    public void getMatchingSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
+            throws SessionException {
+        localOperations.getMatchingSessions(crestQuery, handler);
     }
 
     @Override
@@ -98,6 +98,37 @@ public class InternalSession implements Serializable, AMSession, SessionPersiste
     private static final String SESSION_TIMED_OUT = "SessionTimedOut";
     private static final Set<String> protectedProperties = initialiseProtectedProperties();
 
+    /*
+     * Field tags of the binary session format, see InternalSessionCodec. Tags must never be reused, and the codes of
+     * enum values are positions in the code arrays, which may only be appended to.
+     */
+    private static final int SESSION_ID_TAG = 1;
+    private static final int SESSION_TYPE_TAG = 2;
+    private static final int SESSION_STATE_TAG = 3;
+    private static final int CLIENT_ID_TAG = 4;
+    private static final int CLIENT_DOMAIN_TAG = 5;
+    private static final int PROPERTY_TAG = 6;
+    private static final int FLAGS_TAG = 7;
+    private static final int COOKIE_STRING_TAG = 8;
+    private static final int CREATION_TIME_TAG = 9;
+    private static final int LATEST_ACCESS_TIME_TAG = 10;
+    private static final int MAX_SESSION_TIME_TAG = 11;
+    private static final int MAX_IDLE_TIME_TAG = 12;
+    private static final int MAX_CACHING_TIME_TAG = 13;
+    private static final int TIMED_OUT_AT_TAG = 14;
+    private static final int RESTRICTED_TOKEN_TAG = 15;
+    private static final int SESSION_EVENT_URL_TAG = 16;
+    private static final int SESSION_HANDLE_TAG = 17;
+    private static final int ENTRY_KEY_TAG = 1;
+    private static final int ENTRY_VALUE_TAG = 2;
+    private static final int WILL_EXPIRE_FLAG = 1;
+    private static final int SESSION_UPGRADE_FLAG = 1 << 1;
+    private static final int COOKIE_MODE_SET_FLAG = 1 << 2;
+    private static final int COOKIE_MODE_FLAG = 1 << 3;
+    private static final SessionType[] SESSION_TYPE_CODES = {SessionType.USER, SessionType.APPLICATION};
+    private static final SessionState[] SESSION_STATE_CODES =
+            {SessionState.INVALID, SessionState.VALID, SessionState.DESTROYED};
+
     /*
      * Support objects (do not serialize)
      */
@@ -383,6 +414,15 @@ public class InternalSession implements Serializable, AMSession, SessionPersiste
         return currentTimeInSeconds - latestAccessTimeInSeconds;
     }
 
+    /**
+     * Returns the time(in seconds since midnight January 1, 1970 GMT) at which the Internal Session was last
+     * accessed.
+     * @return latest access time
+     */
+    public long getLatestAccessTime() {
+        return latestAccessTimeInSeconds;
+    }
+
     /**
      * Returns the total time left(in seconds) for the Internal Session. Returns 0 if the time left is negative.
      * @return Time left for the internal session to be invalid
@@ -912,6 +952,187 @@ public class InternalSession implements Serializable, AMSession, SessionPersiste
         }
     }
 
+    /**
+     * Writes the state of this session as the fields of a binary encoded session. Times which are close to the
+     * creation time are written relative to it, as they then take fewer bytes.
+     *
+     * @param out The output of the session being encoded.
+     */
+    void writeTo(InternalSessionCodec.Output out) {
+        out.writeSessionID(SESSION_ID_TAG, sessionID);
+        out.writeVarint(SESSION_TYPE_TAG, codeOf(SESSION_TYPE_CODES, sessionType));
+        out.writeVarint(SESSION_STATE_TAG, codeOf(SESSION_STATE_CODES, sessionState));
+        out.writeString(CLIENT_ID_TAG, clientID);
+        out.writeString(CLIENT_DOMAIN_TAG, clientDomain);
+        if (sessionProperties != null) {
+            // Hashtable methods lock the table itself, so holding its lock keeps iteration safe from concurrent puts.
+            synchronized (sessionProperties) {
+                for (Map.Entry<Object, Object> property : sessionProperties.entrySet()) {
+                    out.writeProperty(PROPERTY_TAG, String.valueOf(property.getKey()),
+                            String.valueOf(property.getValue()));
+                }
+            }
+        }
+        int flags = (willExpireFlag ? WILL_EXPIRE_FLAG : 0) | (isSessionUpgrade ? SESSION_UPGRADE_FLAG : 0);
+        if (cookieMode != null) {
+            flags |= COOKIE_MODE_SET_FLAG | (cookieMode ? COOKIE_MODE_FLAG : 0);
+        }
+        out.writeVarint(FLAGS_TAG, flags);
+        out.writeString(COOKIE_STRING_TAG, cookieStr);
+        out.writeVarint(CREATION_TIME_TAG, creationTimeInSeconds);
+        out.writeSignedVarint(LATEST_ACCESS_TIME_TAG, latestAccessTimeInSeconds - creationTimeInSeconds);
+        out.writeVarint(MAX_SESSION_TIME_TAG, maxSessionTimeInMinutes);
+        out.writeVarint(MAX_IDLE_TIME_TAG, maxIdleTimeInMinutes);
+        out.writeVarint(MAX_CACHING_TIME_TAG, maxCachingTimeInMinutes);
+        long timedOutAt = timedOutTimeInSeconds;
+        if (timedOutAt != 0) {
+            out.writeSignedVarint(TIMED_OUT_AT_TAG, timedOutAt - creationTimeInSeconds);
+        }
+        for (Map.Entry<SessionID, TokenRestriction> entry : restrictedTokensBySid.entrySet()) {
+            out.startGroup(RESTRICTED_TOKEN_TAG);
+            out.writeSessionID(ENTRY_KEY_TAG, entry.getKey());
+            out.writeRestriction(ENTRY_VALUE_TAG, entry.getValue());
+            out.endGroup();
+        }
+        for (Map.Entry<String, Set<SessionID>> entry : sessionEventURLs.entrySet()) {
+            out.startGroup(SESSION_EVENT_URL_TAG);
+            out.writeString(ENTRY_KEY_TAG, entry.getKey());
+            for (SessionID sid : entry.getValue()) {
+                out.writeSessionID(ENTRY_VALUE_TAG, sid);
+            }
+            out.endGroup();
+        }
+        out.writeString(SESSION_HANDLE_TAG, sessionHandle);
+    }
+
+    /**
+     * Restores the state of this session from a binary encoded session. Used during session deserialization only.
+     *
+     * @param in The input of the session being decoded, positioned at the first field of the session.
+     */
+    void readFrom(InternalSessionCodec.Input in) {
+        sessionProperties = new Properties();
+        long latestAccessTimeOffset = 0;
+        long timedOutAtOffset = 0;
+        boolean timedOut = false;
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            switch (tag) {
+            case SESSION_ID_TAG:
+                sessionID = in.readSessionID();
+                break;
+            case SESSION_TYPE_TAG:
+                sessionType = fromCode(SESSION_TYPE_CODES, in.readVarint());
+                break;
+            case SESSION_STATE_TAG:
+                sessionState = fromCode(SESSION_STATE_CODES, in.readVarint());
+                break;
+            case CLIENT_ID_TAG:
+                clientID = in.readString();
+                break;
+            case CLIENT_DOMAIN_TAG:
+                clientDomain = in.readString();
+                break;
+            case PROPERTY_TAG:
+                in.readProperty(sessionProperties);
+                break;
+            case FLAGS_TAG:
+                long flags = in.readVarint();
+                willExpireFlag = (flags & WILL_EXPIRE_FLAG) != 0;
+                isSessionUpgrade = (flags & SESSION_UPGRADE_FLAG) != 0;
+                cookieMode = (flags & COOKIE_MODE_SET_FLAG) != 0 ? (flags & COOKIE_MODE_FLAG) != 0 : null;
+                break;
+            case COOKIE_STRING_TAG:
+                cookieStr = in.readString();
+                break;
+            case CREATION_TIME_TAG:
+                creationTimeInSeconds = in.readVarint();
+                break;
+            case LATEST_ACCESS_TIME_TAG:
+                latestAccessTimeOffset = in.readSignedVarint();
+                break;
+            case MAX_SESSION_TIME_TAG:
+                maxSessionTimeInMinutes = in.readVarint();
+                break;
+            case MAX_IDLE_TIME_TAG:
+                maxIdleTimeInMinutes = in.readVarint();
+                break;
+            case MAX_CACHING_TIME_TAG:
+                maxCachingTimeInMinutes = in.readVarint();
+                break;
+            case TIMED_OUT_AT_TAG:
+                timedOutAtOffset = in.readSignedVarint();
+                timedOut = true;
+                break;
+            case RESTRICTED_TOKEN_TAG:
+                readRestrictedToken(in);
+                break;
+            case SESSION_EVENT_URL_TAG:
+                readSessionEventURL(in);
+                break;
+            case SESSION_HANDLE_TAG:
+                sessionHandle = in.readString();
+                break;
+            default:
+                in.skipField();
+            }
+        }
+        latestAccessTimeInSeconds = creationTimeInSeconds + latestAccessTimeOffset;
+        timedOutTimeInSeconds = timedOut ? creationTimeInSeconds + timedOutAtOffset : 0;
+    }
+
+    private void readRestrictedToken(InternalSessionCodec.Input in) {
+        in.readGroup();
+        SessionID sid = null;
+        TokenRestriction restriction = null;
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            if (tag == ENTRY_KEY_TAG) {
+                sid = in.readSessionID();
+            } else if (tag == ENTRY_VALUE_TAG) {
+                restriction = in.readRestriction();
+            } else {
+                in.skipField();
+            }
+        }
+        if (sid != null && restriction != null) {
+            restrictedTokensBySid.put(sid, restriction);
+            restrictedTokensByRestriction.put(restriction, sid);
+        }
+    }
+
+    private void readSessionEventURL(InternalSessionCodec.Input in) {
+        in.readGroup();
+        String url = null;
+        Set<SessionID> sids = Collections.newSetFromMap(new ConcurrentHashMap<SessionID, Boolean>());
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            if (tag == ENTRY_KEY_TAG) {
+                url = in.readString();
+            } else if (tag == ENTRY_VALUE_TAG) {
+                sids.add(in.readSessionID());
+            } else {
+                in.skipField();
+            }
+        }
+        if (url != null) {
+            sessionEventURLs.put(url, sids);
+        }
+    }
+
+    private static int codeOf(Object[] codes, Object value) {
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No binary session code for " + value);
+    }
+
+    private static <T> T fromCode(T[] codes, long code) {
+        if (code < 0 || code >= codes.length) {
+            throw new IllegalStateException("Unknown binary session code " + code);
+        }
+        return codes[(int) code];
+    }
+
     /**
      * Returns the value of willExpireFlag.
      *
@@ -0,0 +1,489 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.dpro.session.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.forgerock.openam.cts.utils.JSONSerialisation;
+
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.TokenRestriction;
+
+/**
+ * Encodes {@link InternalSession}s in a compact, versioned binary format, as an alternative to storing them as JSON.
+ * <p>
+ * A record starts with a header of two magic bytes, {@code 0x00 'S'}, followed by the format version. As JSON session
+ * blobs always start with <code>{</code>, {@link #isEncoded(byte[])} can tell the two formats apart.
+ * <p>
+ * The header is followed by fields, each made of a key and a value. The key combines the field tag and the wire type
+ * of the value, which is either a variable length integer, a length delimited UTF-8 string, a reference to a string
+ * which appeared earlier in the record, or a group of nested fields. Groups, like the record itself, end with the tag
+ * {@code 0}. Strings are only referenced when they are long enough for the reference to be shorter, which is
+ * worthwhile as sessions repeat the same identifiers, such as the session ID and the user DN, in several fields. The
+ * tags of each record are defined alongside the class whose state they hold, and the following rules keep the format
+ * compatible across releases:
+ * <ul>
+ *     <li>Fields may be added with new tags. Readers skip fields with tags they do not know.</li>
+ *     <li>Fields which are absent are read as their default value, so fields may be omitted and removed. The tag of
+ *     a removed field must never be reused.</li>
+ *     <li>The wire type of a tag never changes.</li>
+ *     <li>The version is only increased for changes which older readers cannot handle, and records with a newer
+ *     version are rejected.</li>
+ * </ul>
+ * Session properties with commonly used names are written as an index into a dictionary of names, which is part of
+ * the format and may only be appended to.
+ */
+@Singleton
+public class InternalSessionCodec {
+
+    /**
+     * The version of the format written by this codec.
+     */
+    static final int VERSION = 1;
+
+    private static final byte MAGIC = 0x00;
+    private static final byte MAGIC_SESSION = 'S';
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_STRING = 1;
+    private static final int WIRE_GROUP = 2;
+    private static final int WIRE_STRING_REFERENCE = 3;
+    private static final int WIRE_TYPE_BITS = 2;
+    private static final int END = 0;
+    private static final int MIN_REFERENCED_LENGTH = 8;
+
+    private static final int PROPERTY_NAME_INDEX = 1;
+    private static final int PROPERTY_NAME = 2;
+    private static final int PROPERTY_VALUE = 3;
+
+    private static final List<String> PROPERTY_NAMES = Arrays.asList(
+            "Host", "HostName", "AMCtxId", "UserId", "UserToken", "Principal", "Principals", "Organization", "Locale",
+            "CharSet", "clientType", "AuthLevel", "AuthType", "Service", "authInstant", "FullLoginURL", "loginURL",
+            "successURL", "sun.am.UniversalIdentifier", "UserProfile", "IndexType", "Role", "moduleAuthTime",
+            "cookieSupport", "PostAuthProcessInstance", "SessionTimedOut", "AMMaxIdleTime", "AMMaxSessionTime",
+            "SessionHandle", "amlbcookie");
+    private static final Map<String, Integer> PROPERTY_NAME_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < PROPERTY_NAMES.size(); i++) {
+            PROPERTY_NAME_INDEXES.put(PROPERTY_NAMES.get(i), i);
+        }
+    }
+
+    private final JSONSerialisation serialisation;
+
+    /**
+     * Creates the codec.
+     *
+     * @param serialisation The JSON serialisation used for values which have no binary form, such as token
+     * restrictions.
+     */
+    @Inject
+    public InternalSessionCodec(JSONSerialisation serialisation) {
+        this.serialisation = serialisation;
+    }
+
+    /**
+     * Determines whether the given data was written by this codec, rather than being a JSON session.
+     *
+     * @param data The stored session, may be null.
+     * @return {@code true} if the data starts with the header of this format.
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == MAGIC && data[1] == MAGIC_SESSION;
+    }
+
+    /**
+     * Encodes the session.
+     *
+     * @param session Non null session.
+     * @return The encoded session.
+     */
+    public byte[] encode(InternalSession session) {
+        Output out = new Output();
+        out.writeRaw(MAGIC);
+        out.writeRaw(MAGIC_SESSION);
+        out.writeRawVarint(VERSION);
+        session.writeTo(out);
+        out.writeRawVarint(END);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a session written by {@link #encode(InternalSession)}.
+     *
+     * @param data The encoded session.
+     * @return The decoded session, without its service dependencies.
+     * @throws IllegalStateException If the data is not a session in a version of the format this codec can read.
+     */
+    public InternalSession decode(byte[] data) {
+        if (!isEncoded(data)) {
+            throw new IllegalStateException("Not a binary encoded session");
+        }
+        Input in = new Input(data, 2);
+        long version = in.readRawVarint();
+        if (version > VERSION) {
+            throw new IllegalStateException("Unsupported binary session version " + version);
+        }
+        InternalSession session = new InternalSession();
+        session.readFrom(in);
+        return session;
+    }
+
+    /**
+     * Writes the fields of a record.
+     */
+    public final class Output {
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private byte[] buffer = new byte[512];
+        private int position;
+
+        private Output() {
+        }
+
+        /**
+         * Writes an integer field. Negative values take ten bytes, use {@link #writeSignedVarint(int, long)} for
+         * values which may be negative.
+         *
+         * @param tag The field tag.
+         * @param value The value.
+         */
+        public void writeVarint(int tag, long value) {
+            writeKey(tag, WIRE_VARINT);
+            writeRawVarint(value);
+        }
+
+        /**
+         * Writes an integer field which may be negative.
+         *
+         * @param tag The field tag.
+         * @param value The value.
+         */
+        public void writeSignedVarint(int tag, long value) {
+            writeVarint(tag, (value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Writes a string field. Null values are not written.
+         *
+         * @param tag The field tag.
+         * @param value The value, may be null.
+         */
+        public void writeString(int tag, String value) {
+            if (value != null) {
+                if (value.length() >= MIN_REFERENCED_LENGTH) {
+                    Integer index = strings.get(value);
+                    if (index != null) {
+                        writeKey(tag, WIRE_STRING_REFERENCE);
+                        writeRawVarint(index);
+                        return;
+                    }
+                    strings.put(value, strings.size());
+                }
+                writeKey(tag, WIRE_STRING);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeRawVarint(bytes.length);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, position, bytes.length);
+                position += bytes.length;
+            }
+        }
+
+        /**
+         * Starts a group of nested fields, which must be ended with {@link #endGroup()}.
+         *
+         * @param tag The field tag of the group.
+         */
+        public void startGroup(int tag) {
+            writeKey(tag, WIRE_GROUP);
+        }
+
+        /**
+         * Ends the current group.
+         */
+        public void endGroup() {
+            writeRawVarint(END);
+        }
+
+        /**
+         * Writes a session ID as a group. Null values are not written.
+         *
+         * @param tag The field tag.
+         * @param sessionID The session ID, may be null.
+         */
+        void writeSessionID(int tag, SessionID sessionID) {
+            if (sessionID != null) {
+                startGroup(tag);
+                sessionID.writeTo(this);
+                endGroup();
+            }
+        }
+
+        /**
+         * Writes a token restriction as a JSON string, which carries the type of the restriction.
+         *
+         * @param tag The field tag.
+         * @param restriction The restriction.
+         */
+        void writeRestriction(int tag, TokenRestriction restriction) {
+            writeString(tag, serialisation.serialise(restriction));
+        }
+
+        /**
+         * Writes a session property as a group.
+         *
+         * @param tag The field tag.
+         * @param name The property name.
+         * @param value The property value.
+         */
+        void writeProperty(int tag, String name, String value) {
+            startGroup(tag);
+            Integer index = PROPERTY_NAME_INDEXES.get(name);
+            if (index != null) {
+                writeVarint(PROPERTY_NAME_INDEX, index);
+            } else {
+                writeString(PROPERTY_NAME, name);
+            }
+            writeString(PROPERTY_VALUE, value);
+            endGroup();
+        }
+
+        private void writeKey(int tag, int wireType) {
+            writeRawVarint(((long) tag << WIRE_TYPE_BITS) | wireType);
+        }
+
+        private void writeRawVarint(long value) {
+            ensureCapacity(10);
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            buffer[position++] = (byte) remaining;
+        }
+
+        private void writeRaw(byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+        }
+
+        private void ensureCapacity(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    /**
+     * Reads the fields of a record.
+     * <p>
+     * Fields are read by calling {@link #readTag()} until it returns {@code 0}, reading the value of each known tag
+     * with the method matching its type and passing any other tag to {@link #skipField()}.
+     */
+    public final class Input {
+
+        private final List<String> strings = new ArrayList<>();
+        private final byte[] data;
+        private int position;
+        private int wireType = -1;
+
+        private Input(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        /**
+         * Reads the key of the next field of the current record or group.
+         *
+         * @return The tag of the field, or {@code 0} if the record or group has ended.
+         */
+        public int readTag() {
+            long key = readRawVarint();
+            wireType = (int) (key & ((1 << WIRE_TYPE_BITS) - 1));
+            return (int) (key >>> WIRE_TYPE_BITS);
+        }
+
+        /**
+         * Reads the value of an integer field.
+         *
+         * @return The value.
+         */
+        public long readVarint() {
+            checkWireType(WIRE_VARINT);
+            return readRawVarint();
+        }
+
+        /**
+         * Reads the value of an integer field written by {@link Output#writeSignedVarint(int, long)}.
+         *
+         * @return The value.
+         */
+        public long readSignedVarint() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads the value of a string field.
+         *
+         * @return The value.
+         */
+        public String readString() {
+            if (wireType == WIRE_STRING_REFERENCE) {
+                long index = readRawVarint();
+                if (index < 0 || index >= strings.size()) {
+                    throw new IllegalStateException("Unknown string reference " + index + " in binary session");
+                }
+                return strings.get((int) index);
+            }
+            checkWireType(WIRE_STRING);
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            if (value.length() >= MIN_REFERENCED_LENGTH) {
+                strings.add(value);
+            }
+            return value;
+        }
+
+        /**
+         * Checks that the current field is a group, whose fields are read next.
+         */
+        public void readGroup() {
+            checkWireType(WIRE_GROUP);
+        }
+
+        /**
+         * Skips the value of the current field, including all the fields of a group.
+         */
+        public void skipField() {
+            switch (wireType) {
+            case WIRE_VARINT:
+                readRawVarint();
+                break;
+            case WIRE_STRING:
+            case WIRE_STRING_REFERENCE:
+                // Skipped strings are read all the same, as later fields may refer to them.
+                readString();
+                break;
+            case WIRE_GROUP:
+                while (readTag() != END) {
+                    skipField();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown wire type " + wireType + " in binary session");
+            }
+        }
+
+        /**
+         * Reads the value of a session ID field.
+         *
+         * @return The session ID.
+         */
+        SessionID readSessionID() {
+            readGroup();
+            return SessionID.readFrom(this);
+        }
+
+        /**
+         * Reads the value of a token restriction field.
+         *
+         * @return The restriction.
+         */
+        TokenRestriction readRestriction() {
+            return serialisation.deserialise(readString(), TokenRestriction.class);
+        }
+
+        /**
+         * Reads the value of a session property field into the given properties.
+         *
+         * @param properties The properties to add the property to.
+         */
+        void readProperty(Properties properties) {
+            readGroup();
+            String name = null;
+            String value = null;
+            for (int tag = readTag(); tag != END; tag = readTag()) {
+                switch (tag) {
+                case PROPERTY_NAME_INDEX:
+                    long index = readVarint();
+                    if (index >= PROPERTY_NAMES.size()) {
+                        throw new IllegalStateException("Unknown session property name index " + index);
+                    }
+                    name = PROPERTY_NAMES.get((int) index);
+                    break;
+                case PROPERTY_NAME:
+                    name = readString();
+                    break;
+                case PROPERTY_VALUE:
+                    value = readString();
+                    break;
+                default:
+                    skipField();
+                }
+            }
+            if (name != null && value != null) {
+                properties.put(name, value);
+            }
+        }
+
+        private void checkWireType(int expected) {
+            if (wireType != expected) {
+                throw new IllegalStateException("Expected wire type " + expected + " but found " + wireType
+                        + " in binary session");
+            }
+        }
+
+        private int readLength() {
+            long length = readRawVarint();
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalStateException("Truncated binary session");
+            }
+            return (int) length;
+        }
+
+        private long readRawVarint() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalStateException("Truncated binary session");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in binary session");
+        }
+    }
+}
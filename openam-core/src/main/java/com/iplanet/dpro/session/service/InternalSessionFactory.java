@@ -41,6 +41,8 @@ import org.forgerock.openam.session.service.SessionAccessManager;
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.SessionException;
 import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.monitoring.SessionMonitorType;
+import com.iplanet.dpro.session.monitoring.SessionMonitoringStore;
 import com.sun.identity.monitoring.Agent;
 import com.sun.identity.monitoring.MonitoringUtil;
 import com.sun.identity.monitoring.SsoServerSessSvcImpl;
@@ -67,18 +69,21 @@ public class InternalSessionFactory {
     private final SessionServerConfig serverConfig;
     private final AuthenticationSessionStore authenticationSessionStore;
     private final SessionAccessManager sessionAccessManager;
+    private final SessionMonitoringStore sessionMonitoringStore;
 
     @Inject
     public InternalSessionFactory(
             @Named(SessionConstants.SESSION_DEBUG) Debug sessionDebug,
             SessionServerConfig serverConfig,
             AuthenticationSessionStore authenticationSessionStore,
-            SessionAccessManager sessionAccessManager) {
+            SessionAccessManager sessionAccessManager,
+            SessionMonitoringStore sessionMonitoringStore) {
 
         this.sessionDebug = sessionDebug;
         this.serverConfig = serverConfig;
         this.authenticationSessionStore = authenticationSessionStore;
         this.sessionAccessManager = sessionAccessManager;
+        this.sessionMonitoringStore = sessionMonitoringStore;
     }
 
     /**
@@ -88,9 +93,13 @@ public class InternalSessionFactory {
      * @param stateless   Indicates whether or not this session should be issued as a stateless session.
      */
     public InternalSession newInternalSession(String domain, boolean stateless) {
+        final long start = System.nanoTime();
         try {
             final SessionID sessionID = generateSessionId(domain);
-            return generateInternalSession(sessionID, stateless);
+            final InternalSession session = generateInternalSession(sessionID, stateless);
+            sessionMonitoringStore.storeCreateTime(System.nanoTime() - start,
+                    stateless ? SessionMonitorType.STATELESS : SessionMonitorType.LOCAL);
+            return session;
         } catch (SessionException e) {
             sessionDebug.error("Error creating new session", e);
             return null;
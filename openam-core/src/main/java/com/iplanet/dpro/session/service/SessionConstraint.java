@@ -37,7 +37,7 @@ import java.util.Set;
 
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.session.service.DestroyOldestAction;
-import org.forgerock.openam.session.service.access.SessionQueryManager;
+import org.forgerock.openam.session.service.access.UserSessionIndex;
 
 import com.iplanet.sso.SSOToken;
 import com.sun.identity.authentication.util.ISAuthConstants;
@@ -126,12 +126,17 @@ public class SessionConstraint {
         // Step 1: get constraints for the given user via IDRepo
         int quota = getSessionQuota(internalSession);
 
-        // Step 2: get the information (session id and expiration
-        // time) of all sessions for the given user from all
-        // AM servers and/or session repository
-        Map sessions = null;
+        // Step 2: count the sessions the given user has on all AM
+        // servers, using the local index of the session repository
+        UserSessionIndex userSessionIndex = InjectorHolder.getInstance(UserSessionIndex.class);
+        Map<String, Long> sessions = null;
         try {
-            sessions = InjectorHolder.getInstance(SessionQueryManager.class).getAllSessionsByUUID(internalSession.getUUID());
+            sessionCount = userSessionIndex.getSessionCount(internalSession.getUUID());
+            // The session id and expiration time of each session are only needed once the quota is exhausted
+            if (sessionCount >= quota) {
+                sessions = userSessionIndex.getSessions(internalSession.getUUID());
+                sessionCount = sessions.size();
+            }
         } catch (Exception e) {
             if (InjectorHolder.getInstance(SessionServiceConfig.class).isDenyLoginIfDBIsDown()) {
                 if (debug.messageEnabled()) {
@@ -154,10 +159,6 @@ public class SessionConstraint {
             }
         }
 
-        if (sessions != null) {
-            sessionCount = sessions.size();
-        }
-
         // Step 3: checking the constraints
         if (sessionCount >= quota) {
             // If the session quota internalSession exhausted, invoke the
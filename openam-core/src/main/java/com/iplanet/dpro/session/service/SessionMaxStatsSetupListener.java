@@ -31,6 +31,9 @@ package com.iplanet.dpro.session.service;
 import static com.iplanet.dpro.session.service.SessionConstants.SESSION_DEBUG;
 import static com.iplanet.dpro.session.service.SessionConstants.STATS_MASTER_TABLE;
 
+import java.util.Collections;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 
@@ -38,21 +41,29 @@ import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.session.service.SessionAccessManager;
 
 import com.sun.identity.setup.SetupListener;
+import com.sun.identity.setup.SetupPhase;
 import com.sun.identity.shared.debug.Debug;
 import com.sun.identity.shared.stats.Stats;
 
 /**
- * Responsible for initialising {@link SessionMaxStats} on server start-up if {@link Stats} are enabled.
+ * Responsible for initialising {@link SessionMaxStats} on server start-up if {@link Stats} are enabled. This runs in
+ * the background, as server start-up does not need to wait for it.
  */
-public class SessionMaxStatsSetupListener implements SetupListener {
+public class SessionMaxStatsSetupListener implements SetupPhase {
 
     @Override
     public void setupComplete() {
-        inBackgroundThread(initializeMaxSessionStats());
+        initializeMaxSessionStats().run();
     }
 
-    private void inBackgroundThread(Runnable runnable) {
-        new Thread(runnable).start();
+    @Override
+    public Set<Class<? extends SetupListener>> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean isBackground() {
+        return true;
     }
 
     private Runnable initializeMaxSessionStats() {
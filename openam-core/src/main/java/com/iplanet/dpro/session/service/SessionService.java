@@ -28,7 +28,6 @@
  */
 package com.iplanet.dpro.session.service;
 
-import java.util.Collection;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,6 +35,7 @@ import javax.inject.Singleton;
 
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.dpro.session.PartialSession;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.session.SessionConstants;
 import org.forgerock.openam.session.SessionEventType;
 import org.forgerock.openam.session.service.SessionAccessManager;
@@ -208,21 +208,22 @@ public class SessionService {
     }
 
     /**
-     * Returns partial (stateful) sessions matching the provided CREST query. The resultset size is limited by the
-     * "iplanet-am-session-max-session-list-size" attribute. The returned sessions are only "partial" sessions, meaning
-     * that they do not represent the full session state.
+     * Passes partial (stateful) sessions matching the provided CREST query to the handler as they are read. The number
+     * of results is limited by the "iplanet-am-session-max-session-list-size" attribute. The sessions are only
+     * "partial" sessions, meaning that they do not represent the full session state.
      *
      * @param caller The session that initiated the query request. May not be null.
      * @param crestQuery The CREST query based on which we should look for matching sessions. May not be null.
-     * @return The collection of matching partial sessions.
+     * @param handler The handler to receive the matching partial sessions. May not be null.
      * @throws SessionException If the request fails.
-     * @see com.iplanet.dpro.session.operations.SessionOperations#getMatchingSessions(CrestQuery)
+     * @see com.iplanet.dpro.session.operations.SessionOperations#getMatchingSessions(CrestQuery, SessionQueryHandler)
      */
-    public Collection<PartialSession> getMatchingSessions(Session caller, CrestQuery crestQuery)
+    public void getMatchingSessions(Session caller, CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
             throws SessionException {
         Reject.ifNull(caller, "Caller may not be null");
         Reject.ifNull(crestQuery, "CREST query may not be null");
-        return sessionOperationStrategy.getOperation(caller.getSessionID()).getMatchingSessions(crestQuery);
+        Reject.ifNull(handler, "Handler may not be null");
+        sessionOperationStrategy.getOperation(caller.getSessionID()).getMatchingSessions(crestQuery, handler);
     }
 
     /**
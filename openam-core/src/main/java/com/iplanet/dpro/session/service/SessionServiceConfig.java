@@ -86,6 +86,7 @@ public class SessionServiceConfig {
      */
 
     private static final int DEFAULT_MAX_SESSION_CACHE_SIZE = 5000;
+    private static final int DEFAULT_OFF_HEAP_SESSION_CACHE_SIZE_MB = 0;
 
     private static final String LOGSTATUS_ACTIVE = "ACTIVE";
     private final boolean logStatus;
@@ -428,6 +429,18 @@ public class SessionServiceConfig {
         return SystemProperties.getAsInt(AM_SESSION_MAX_CACHE_SIZE, DEFAULT_MAX_SESSION_CACHE_SIZE);
     }
 
+    /**
+     * The size of the off-heap tier of the internal session cache, which holds encoded sessions evicted from the
+     * internal session cache outside of the Java heap. Read once, when the session cache is created.
+     *
+     * @return SystemProperty "org.forgerock.openam.session.service.access.persistence.caching.offHeapSizeMB" in bytes.
+     * Default 0, which disables the off-heap tier.
+     */
+    public long getOffHeapSessionCacheSize() {
+        return SystemProperties.getAsLong(AM_SESSION_OFF_HEAP_CACHE_SIZE, DEFAULT_OFF_HEAP_SESSION_CACHE_SIZE_MB)
+                * 1024L * 1024L;
+    }
+
     /**
      * Returns true if SystemProperty "com.iplanet.am.logstatus" is "ACTIVE" (case insensitive).
      *
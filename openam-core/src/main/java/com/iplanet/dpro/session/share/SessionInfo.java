@@ -68,6 +68,27 @@ public class SessionInfo {
     public SessionInfo() {
     }
 
+    /**
+     * Constructs a copy of the given <code>SessionInfo</code>, with its own copy of the session properties.
+     *
+     * @param info The <code>SessionInfo</code> to copy.
+     */
+    @SuppressWarnings("unchecked")
+    public SessionInfo(final SessionInfo info) {
+        this.sid = info.sid;
+        this.secret = info.secret;
+        this.stype = info.stype;
+        this.cid = info.cid;
+        this.cdomain = info.cdomain;
+        this.maxtime = info.maxtime;
+        this.maxidle = info.maxidle;
+        this.maxcaching = info.maxcaching;
+        this.expiryTimeSeconds = info.expiryTimeSeconds;
+        this.lastActivityTimeSeconds = info.lastActivityTimeSeconds;
+        this.state = info.state;
+        this.properties = (Hashtable<String, String>) info.properties.clone();
+    }
+
     /**
      * translates the <code>Session</code> Information to an XML document
      * String based
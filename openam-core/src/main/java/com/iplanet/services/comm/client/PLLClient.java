@@ -39,10 +39,8 @@ import com.iplanet.services.naming.WebtopNaming.SiteMonitor;
 import com.sun.identity.shared.Constants;
 import com.sun.identity.shared.debug.Debug;
 import com.sun.identity.common.HttpURLConnectionManager;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -147,7 +145,7 @@ public class PLLClient {
             HashMap cookieTable) throws SendRequestException {
         HttpURLConnection conn = null;
         OutputStream out = null;
-        BufferedReader in = null;
+        InputStream in = null;
         try {
             if ((SiteMonitor.keepMonitoring == true) &&
                 !SiteMonitor.isAvailable(url)) {
@@ -191,25 +189,20 @@ public class PLLClient {
             conn.setRequestProperty(TransactionIdHeader.NAME, AuditRequestContext.createSubTransactionIdValue());
 
             // Output ...
-            String xml = set.toXMLString();
-            // compute and set length, just in case iWS set arbitrary length
-            int requestLength = xml.getBytes("UTF-8").length;
-            conn.setRequestProperty("Content-Length", Integer
-                    .toString(requestLength));
+            byte[] xml = set.toXMLString().getBytes("UTF-8");
+            // set the length explicitly, just in case iWS set arbitrary
+            // length, and stream the body instead of buffering it again
+            conn.setFixedLengthStreamingMode(xml.length);
             out = conn.getOutputStream();
-            out.write(xml.getBytes("UTF-8"));
+            out.write(xml);
             out.flush();
 
-            // Input ...
-            in = new BufferedReader(new InputStreamReader(conn
-                    .getInputStream(), "UTF-8"));
-            StringBuilder in_buf = new StringBuilder();
-            int len;
-            char[] buf = new char[1024];
-            while ((len = in.read(buf, 0, buf.length)) != -1) {
-                in_buf.append(buf, 0, len);
-            }
-            String in_string = in_buf.toString();
+            // Input ... the ResponseSet is parsed as it is read
+            in = conn.getInputStream();
+            ResponseSet resset = ResponseSet.parseXML(in);
+            // the connection only goes back to the keep-alive cache for
+            // re-use once the response has been read to the end
+            drain(in);
 
             // retrieves cookies from the response
             Map headers = conn.getHeaderFields();
@@ -217,7 +210,9 @@ public class PLLClient {
                 parseCookies(headers, cookieTable);
             }
 
-            ResponseSet resset = ResponseSet.parseXML(in_string);
+            if (resset == null) {
+                throw new SendRequestException(PLLBundle.getString("invalidResponseSet"));
+            }
             return resset.getResponses();
         } catch (Exception e) {
             debug.warning("PLLClient.send URL=" + url + " : exception: ", e);
@@ -234,12 +229,21 @@ public class PLLClient {
                         debug.warning("Error stream content is " + IOUtils.readStream(errorStream));
                     } catch (IOException ioe) {
                         debug.warning("Error while reading the error stream", ioe);
+                    } finally {
+                        IOUtils.closeIfNotNull(errorStream);
                     }
                 }
             }
         }
     }
 
+    private static void drain(InputStream in) throws IOException {
+        byte[] buf = new byte[512];
+        while (in.read(buf) != -1) {
+            // discard anything after the end of the document
+        }
+    }
+
     /**
      * Parses the cookies from the response header and stores them in
      * in cookieTable
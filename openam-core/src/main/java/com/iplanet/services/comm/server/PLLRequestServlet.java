@@ -24,7 +24,7 @@
  *
  * $Id: PLLRequestServlet.java,v 1.9 2009/02/12 17:24:13 bina Exp $
  *
- * Portions Copyrighted 2012-2015 ForgeRock AS.
+ * Portions Copyrighted 2012-2016 ForgeRock AS.
  */
 package com.iplanet.services.comm.server;
 
@@ -39,9 +39,12 @@ import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.audit.AuditEventFactory;
 import org.forgerock.openam.audit.AuditEventPublisher;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Hashtable;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
@@ -127,25 +130,21 @@ public class PLLRequestServlet extends HttpServlet {
                 rlength += r;
                 offset += r;
             }
-            String xml = new String(reqData, 0, length, "UTF-8");
-
-            RequestSet set = RequestSet.parseXML(xml);
-            String svcid = set.getServiceID();
-            if(!AUTH_SVC_ID.equalsIgnoreCase(svcid)) {
+            RequestSet set = RequestSet.parseXML(new ByteArrayInputStream(reqData, 0, length));
+            if (set != null && !AUTH_SVC_ID.equalsIgnoreCase(set.getServiceID())) {
                 if (PLLServer.pllDebug.messageEnabled()) {
-                    PLLServer.pllDebug.message("\nReceived RequestSet XML :\n" + xml);
+                    PLLServer.pllDebug.message("\nReceived RequestSet XML :\n"
+                            + new String(reqData, 0, length, "UTF-8"));
                 }
             }
 
-            String responseXML = handleRequest(auditor, set, req, res);
-            res.setContentLength(responseXML.getBytes("UTF-8").length);
-            OutputStreamWriter out = new OutputStreamWriter(res.getOutputStream(),
-                    "UTF-8");
+            ResponseSet responseSet = handleRequest(auditor, set, req, res);
+            // the response is written as it is serialised, the container
+            // sets the content length when the response fits in its buffer
+            Writer out = new BufferedWriter(new OutputStreamWriter(res.getOutputStream(), "UTF-8"));
             try {
-                out.write(responseXML);
+                responseSet.writeXML(out);
                 out.flush();
-            } catch (IOException e) {
-                throw e;
             } finally {
                 try {
                     out.close();
@@ -185,12 +184,13 @@ public class PLLRequestServlet extends HttpServlet {
      * 
      * @param String XML RequestSet String - Conforming to RequestSet.dtd @param
      * req HttpServletRequest object @param res HttpServletResponse object
-     * @return String XML ResponseSet String - Conforming to ResponseSet.dtd
+     * @return ResponseSet The ResponseSet to be written back, conforming to
+     * ResponseSet.dtd
      * 
      * @see sunir.share.profile.service.server.http.RequestProcessor
      */
-    private String handleRequest(PLLAuditor auditor, RequestSet set, HttpServletRequest req, HttpServletResponse res)
-            throws ServletException {
+    private ResponseSet handleRequest(PLLAuditor auditor, RequestSet set, HttpServletRequest req,
+            HttpServletResponse res) throws ServletException {
         if (!isValid(set)) {
             throw servletException("invalidRequestSet");
         }
@@ -201,7 +201,7 @@ public class PLLRequestServlet extends HttpServlet {
         }
         ResponseSet rset = handler.process(auditor, set.getRequests(), req, res, getServletConfig().getServletContext());
         rset.setRequestSetID(set.getRequestSetID());
-        return rset.toXMLString();
+        return rset;
     }
 
     /*
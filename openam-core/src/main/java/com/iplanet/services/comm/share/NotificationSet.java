@@ -24,10 +24,11 @@
  *
  * $Id: NotificationSet.java,v 1.2 2008/06/25 05:41:35 qcheng Exp $
  *
- * Portions Copyrighted 2011-2014 ForgeRock AS.
+ * Portions Copyrighted 2011-2016 ForgeRock AS.
  */
 package com.iplanet.services.comm.share;
 
+import java.io.InputStream;
 import java.util.Vector;
 
 /**
@@ -119,6 +120,20 @@ public class NotificationSet {
         return parser.parseXML();
     }
 
+    /**
+     * Reconstructs a NotificationSet object by parsing the XML document as it
+     * is read from the given stream. The stream is not closed.
+     * 
+     * @param in
+     *            The stream to read the NotificationSet XML document from.
+     * @return The NotificationSet, or null if the document could not be
+     *         parsed.
+     */
+    public static NotificationSet parseXML(InputStream in) {
+        NotificationSetParser parser = new NotificationSetParser(in);
+        return parser.parseXML();
+    }
+
     /**
      * Gets the service ID of the NotificationSet request.
      * 
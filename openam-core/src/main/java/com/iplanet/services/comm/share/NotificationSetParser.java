@@ -26,113 +26,89 @@
  *
  */
 
+/*
+ * Portions Copyrighted 2016 ForgeRock AS.
+ */
+
 package com.iplanet.services.comm.share;
 
-import com.sun.identity.shared.xml.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 class NotificationSetParser {
 
     /**
-     * Document to be parsed
+     * Reader over the NotificationSet document
      */
-    Document document;
+    private XMLStreamReader reader;
 
-    public NotificationSetParser(Document xmlDoc) {
-        document = xmlDoc;
+    public NotificationSetParser(String xmlString) {
+        reader = PLLXMLStreams.newReader(xmlString, RequestSetParser.debug);
     }
 
-    public NotificationSetParser(String xmlString) {
-        document = XMLUtils.toDOMDocument(xmlString, RequestSetParser.debug);
+    public NotificationSetParser(InputStream in) {
+        reader = PLLXMLStreams.newReader(in, RequestSetParser.debug);
     }
 
     /**
-     * Parses the tree from root element. Please see NotificationSet.java for
-     * the corresponding DTD of the NotificationSet.
+     * Parses the document from the root element. Please see
+     * NotificationSet.java for the corresponding DTD of the NotificationSet.
      * 
-     * @return a NotificationSet object.
+     * @return a NotificationSet object, or null if the document could not be
+     *         parsed.
      */
     public NotificationSet parseXML() {
-        if (document == null) {
+        if (reader == null) {
             return null;
         }
-
-        // get NotificationSet element
-        Element notifSetElem = document.getDocumentElement();
-        NotificationSet notificationSet = new NotificationSet();
-        // set notification set attributes
-        setNotificationSetAttributes(notifSetElem, notificationSet);
-
-        // get Nofifications
-        NodeList notifs = notifSetElem.getElementsByTagName("Notification");
-        if (notifs == null) {
+        try {
+            // get NotificationSet element
+            if (!PLLXMLStreams.nextElement(reader)) {
+                return null;
+            }
+            NotificationSet notificationSet = new NotificationSet();
+            // set notification set attributes
+            setNotificationSetAttributes(notificationSet);
+
+            // go through each notifications, and add them to the notif set
+            while (PLLXMLStreams.nextElement(reader)) {
+                if ("Notification".equals(reader.getLocalName())) {
+                    notificationSet.addNotification(parseNotificationElement());
+                }
+            }
             return notificationSet;
+        } catch (XMLStreamException e) {
+            RequestSetParser.debug.error("NotificationSetParser.parseXML: unable to parse NotificationSet", e);
+            return null;
+        } finally {
+            PLLXMLStreams.close(reader);
         }
-
-        // go through each notifications, and add them to the notif set
-        int nodeLen = notifs.getLength();
-        for (int i = 0; i < nodeLen; i++) {
-            notificationSet
-                    .addNotification(parseNotificationElement((Element) notifs
-                            .item(i)));
-        }
-
-        return notificationSet;
     }
 
     /**
      * This method is an internal method used by parseXML method.
      */
-    public void setNotificationSetAttributes(Element elem,
-            NotificationSet notifSet) {
-        // get vers attribute
-        String temp = elem.getAttribute("vers");
-        if (temp != null) {
-            notifSet.setNotificationSetVersion(temp);
-        }
-
-        // get service id
-        temp = elem.getAttribute("svcid");
-        if (temp != null) {
-            notifSet.setServiceID(temp);
-        }
-
-        // get notification id
-        temp = elem.getAttribute("notid");
-        if (temp != null) {
-            notifSet.setNotificationSetID(temp);
-        }
+    private void setNotificationSetAttributes(NotificationSet notifSet) {
+        notifSet.setNotificationSetVersion(PLLXMLStreams.getAttribute(reader, "vers"));
+        notifSet.setServiceID(PLLXMLStreams.getAttribute(reader, "svcid"));
+        notifSet.setNotificationSetID(PLLXMLStreams.getAttribute(reader, "notid"));
     }
 
     /**
-     * function to parse a single notification element. Notification contain a
-     * text element and dtdid attribute
+     * This method is an internal method used by parseXML method to parse a
+     * single Notification element.
      */
-    private Notification parseNotificationElement(Element elem) {
+    private Notification parseNotificationElement() throws XMLStreamException {
         Notification notif = new Notification();
-        // process request attributes
-        String temp = elem.getAttribute("dtdid");
-        if (temp != null) {
-            notif.setDtdID(temp);
-        }
+        // process notification attributes
+        notif.setDtdID(PLLXMLStreams.getAttribute(reader, "dtdid"));
 
         // process TEXT child element
-        Node text = null;
-        NodeList nlist = elem.getChildNodes();
-        int nodeLen = nlist.getLength();
-        for (int i = 0; i < nodeLen; i++) {
-            Node n = nlist.item(i);
-            if (n.getNodeType() == Node.CDATA_SECTION_NODE) {
-                text = n;
-                break;
-            }
-        }
-
+        String text = PLLXMLStreams.readContent(reader);
         if (text != null) {
-            notif.setContent(text.getNodeValue());
+            notif.setContent(text);
         }
         return notif;
     }
@@ -0,0 +1,173 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.services.comm.share;
+
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Helpers shared by the PLL set parsers, which read RequestSet, ResponseSet and NotificationSet documents with a
+ * streaming StAX reader rather than building a DOM first.
+ * <p>
+ * The PLL DTDs are flat: a set element carrying a few attributes, and one level of child elements each holding an
+ * optional CDATA payload. DTDs and external entities are never resolved.
+ */
+final class PLLXMLStreams {
+
+    private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+    private PLLXMLStreams() {
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Creates a reader over an XML document held as a string.
+     *
+     * @param xml The XML document.
+     * @param debug The debug instance to log parse failures to.
+     * @return The reader, or {@code null} if the document could not be read.
+     */
+    static XMLStreamReader newReader(String xml, Debug debug) {
+        if (xml == null) {
+            return null;
+        }
+        try {
+            return INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+        } catch (XMLStreamException e) {
+            debug.error("PLLXMLStreams.newReader: unable to read XML document", e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a reader over an XML document read from a stream. The encoding is taken from the XML declaration.
+     *
+     * @param in The stream to read the XML document from. It is not closed by the reader.
+     * @param debug The debug instance to log parse failures to.
+     * @return The reader, or {@code null} if the document could not be read.
+     */
+    static XMLStreamReader newReader(InputStream in, Debug debug) {
+        if (in == null) {
+            return null;
+        }
+        try {
+            return INPUT_FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            debug.error("PLLXMLStreams.newReader: unable to read XML document", e);
+            return null;
+        }
+    }
+
+    /**
+     * Moves the reader to the start of the next element.
+     *
+     * @param reader The reader.
+     * @return {@code true} if the reader is positioned on a start element, {@code false} if the document ended.
+     * @throws XMLStreamException If the document is not well formed.
+     */
+    static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of an attribute of the current element, or an empty string if it has no such attribute, as
+     * {@link org.w3c.dom.Element#getAttribute(String)} does.
+     *
+     * @param reader The reader, positioned on a start element.
+     * @param name The name of the attribute.
+     * @return The attribute value.
+     */
+    static String getAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Reads the text content of the current element and leaves the reader positioned on its end element.
+     *
+     * @param reader The reader, positioned on a start element.
+     * @return The text content, or {@code null} if the element is empty.
+     * @throws XMLStreamException If the document is not well formed.
+     */
+    static String readContent(XMLStreamReader reader) throws XMLStreamException {
+        String content = null;
+        StringBuilder builder = null;
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                if (depth > 1) {
+                    break;
+                }
+                if (content == null) {
+                    content = reader.getText();
+                } else {
+                    if (builder == null) {
+                        builder = new StringBuilder(content);
+                    }
+                    builder.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return builder == null ? content : builder.toString();
+    }
+
+    /**
+     * Closes the reader, ignoring any failure.
+     *
+     * @param reader The reader, which may be {@code null}.
+     */
+    static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // nothing more can be done with the document
+            }
+        }
+    }
+}
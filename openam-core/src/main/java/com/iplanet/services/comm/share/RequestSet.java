@@ -27,11 +27,12 @@
  */
 
 /*
- * Portions Copyrighted 2011 ForgeRock AS
+ * Portions Copyrighted 2011-2016 ForgeRock AS.
  */
 
 package com.iplanet.services.comm.share;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -125,6 +126,20 @@ public class RequestSet {
         return parser.parseXML();
     }
 
+    /**
+     * Reconstructs a RequestSet object by parsing the XML document as it is
+     * read from the given stream, without buffering the whole document first.
+     * The stream is not closed.
+     * 
+     * @param in
+     *            The stream to read the RequestSet XML document from.
+     * @return The RequestSet, or null if the document could not be parsed.
+     */
+    public static RequestSet parseXML(InputStream in) {
+        RequestSetParser parser = new RequestSetParser(in);
+        return parser.parseXML();
+    }
+
     /**
      * Gets the version of the RequestSet.
      *
@@ -26,109 +26,97 @@
  *
  */
 
+/*
+ * Portions Copyrighted 2016 ForgeRock AS.
+ */
+
 package com.iplanet.services.comm.share;
 
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import com.sun.identity.shared.debug.Debug;
-import com.sun.identity.shared.xml.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 class RequestSetParser {
     /**
-     * Document
+     * Reader over the RequestSet document
      */
-    private Document document;
+    private XMLStreamReader reader;
 
     /**
      * Debug instance
      */
     protected static Debug debug = Debug.getInstance("amComm");
 
-    public RequestSetParser(Document xmlDoc) {
-        document = xmlDoc;
+    public RequestSetParser(String xmlString) {
+        reader = PLLXMLStreams.newReader(xmlString, debug);
     }
 
-    public RequestSetParser(String xmlString) {
-        document = XMLUtils.toDOMDocument(xmlString, debug);
+    public RequestSetParser(InputStream in) {
+        reader = PLLXMLStreams.newReader(in, debug);
     }
 
     /**
-     * Parses the tree from root element. Please see RequestSet.java for the
-     * corresponding DTD of the RequestSet.
+     * Parses the document from the root element. Please see RequestSet.java
+     * for the corresponding DTD of the RequestSet.
      * 
-     * @return a RequestSet object.
+     * @return a RequestSet object, or null if the document could not be
+     *         parsed.
      */
     public RequestSet parseXML() {
-        if (document == null) {
+        if (reader == null) {
             return null;
         }
-        // get request set element
-        Element reqSetElem = document.getDocumentElement();
-        RequestSet reqSet = new RequestSet();
-
-        // set request set attributes
-        setRequestSetAttributes(reqSetElem, reqSet);
-
-        // get all requests
-        NodeList requests = reqSetElem.getElementsByTagName("Request");
-        if (requests == null) {
+        try {
+            // get request set element
+            if (!PLLXMLStreams.nextElement(reader)) {
+                return null;
+            }
+            RequestSet reqSet = new RequestSet();
+
+            // set request set attributes
+            setRequestSetAttributes(reqSet);
+
+            // go through each request, and add them to the request set
+            while (PLLXMLStreams.nextElement(reader)) {
+                if ("Request".equals(reader.getLocalName())) {
+                    reqSet.addRequest(parseRequestElement());
+                }
+            }
             return reqSet;
+        } catch (XMLStreamException e) {
+            debug.error("RequestSetParser.parseXML: unable to parse RequestSet", e);
+            return null;
+        } finally {
+            PLLXMLStreams.close(reader);
         }
-
-        // go through each request, and add them to the request set
-        int nodeLen = requests.getLength();
-        for (int i = 0; i < nodeLen; i++) {
-            reqSet.addRequest(parseRequestElement((Element) requests.item(i)));
-        }
-
-        return reqSet;
     }
 
     /**
      * This method is an internal method used by parseXML method.
      */
-    private void setRequestSetAttributes(Element elem, RequestSet requestSet) {
-        // get vers attribute
-        String temp = elem.getAttribute("vers");
-        if (temp != null) {
-            requestSet.setRequestSetVersion(temp);
-        }
-
-        // get service id
-        temp = elem.getAttribute("svcid");
-        if (temp != null) {
-            requestSet.setServiceID(temp);
-        }
-
-        // get request id
-        temp = elem.getAttribute("reqid");
-        if (temp != null) {
-            requestSet.setRequestSetID(temp);
-        }
+    private void setRequestSetAttributes(RequestSet requestSet) {
+        requestSet.setRequestSetVersion(PLLXMLStreams.getAttribute(reader, "vers"));
+        requestSet.setServiceID(PLLXMLStreams.getAttribute(reader, "svcid"));
+        requestSet.setRequestSetID(PLLXMLStreams.getAttribute(reader, "reqid"));
     }
 
     /**
      * function to parse a single request element. Request contain a text
      * element and several attributes
      */
-    private Request parseRequestElement(Element elem) {
+    private Request parseRequestElement() throws XMLStreamException {
         Request req = new Request();
         // process request attributes
-        String temp = elem.getAttribute("dtdid");
-        if (temp != null) {
-            req.setDtdID(temp);
-        }
-        temp = elem.getAttribute("sid");
-        if (temp != null) {
-            req.setSessionID(temp);
-        }
+        req.setDtdID(PLLXMLStreams.getAttribute(reader, "dtdid"));
+        req.setSessionID(PLLXMLStreams.getAttribute(reader, "sid"));
 
         // process TEXT child element
-        Node text = elem.getFirstChild();
+        String text = PLLXMLStreams.readContent(reader);
         if (text != null) {
-            req.setContent(text.getNodeValue());
+            req.setContent(text);
         }
         return req;
     }
@@ -27,10 +27,13 @@
  */
 
 /**
- * Portions Copyrighted [2011] [ForgeRock AS]
+ * Portions Copyrighted 2011-2016 ForgeRock AS.
  */
 package com.iplanet.services.comm.share;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 import java.util.Vector;
 
 /**
@@ -119,6 +122,20 @@ public class ResponseSet {
         return parser.parseXML();
     }
 
+    /**
+     * Reconstructs a ResponseSet object by parsing the XML document as it is
+     * read from the given stream, without buffering the whole document first.
+     * The stream is not closed.
+     * 
+     * @param in
+     *            The stream to read the ResponseSet XML document from.
+     * @return The ResponseSet, or null if the document could not be parsed.
+     */
+    public static ResponseSet parseXML(InputStream in) {
+        ResponseSetParser parser = new ResponseSetParser(in);
+        return parser.parseXML();
+    }
+
     /**
      * Sets the original RequestSet ID for this object.
      * 
@@ -155,6 +172,28 @@ public class ResponseSet {
      */
     public String toXMLString() {
         StringBuilder xml = new StringBuilder(300);
+        try {
+            appendXML(xml);
+        } catch (IOException e) {
+            // a StringBuilder never throws IOException
+            throw new IllegalStateException(e);
+        }
+        return xml.toString();
+    }
+
+    /**
+     * Writes the XML ResponseSet document returned by {@link #toXMLString()}
+     * to the given writer, without building the document in memory first.
+     * The writer is neither flushed nor closed.
+     * 
+     * @param out The writer to write the XML ResponseSet document to.
+     * @throws IOException If the document cannot be written.
+     */
+    public void writeXML(Writer out) throws IOException {
+        appendXML(out);
+    }
+
+    private void appendXML(Appendable xml) throws IOException {
         xml.append("<?xml version=").append(QUOTE).append("1.0").append(QUOTE)
                 .append(" encoding=").append(QUOTE).append("UTF-8").append(
                         QUOTE).append(" standalone=").append(QUOTE).append(
@@ -178,7 +217,6 @@ public class ResponseSet {
             xml.append("</Response>").append(NL);
         }
         xml.append("</ResponseSet>");
-        return (xml.toString());
     }
 
     /*
@@ -26,105 +26,89 @@
  *
  */
 
+/*
+ * Portions Copyrighted 2016 ForgeRock AS.
+ */
+
 package com.iplanet.services.comm.share;
 
-import com.sun.identity.shared.xml.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 class ResponseSetParser {
 
     /**
-     * Document being parsed
+     * Reader over the ResponseSet document
      */
-    Document document;
+    private XMLStreamReader reader;
 
-    public ResponseSetParser(Document xmlDoc) {
-        document = xmlDoc;
+    public ResponseSetParser(String xmlString) {
+        reader = PLLXMLStreams.newReader(xmlString, RequestSetParser.debug);
     }
 
-    public ResponseSetParser(String xmlString) {
-        document = XMLUtils.toDOMDocument(xmlString, RequestSetParser.debug);
+    public ResponseSetParser(InputStream in) {
+        reader = PLLXMLStreams.newReader(in, RequestSetParser.debug);
     }
 
     /**
-     * Parses the tree from root element. Please see ResponseSet.java for the
-     * corresponding DTD of the ResponseSet.
+     * Parses the document from the root element. Please see ResponseSet.java
+     * for the corresponding DTD of the ResponseSet.
      * 
-     * @return a ResponseSet object.
+     * @return a ResponseSet object, or null if the document could not be
+     *         parsed.
      */
     public ResponseSet parseXML() {
-        if (document == null) {
+        if (reader == null) {
             return null;
         }
-
-        // get ResponseSet element
-        Element responseSetElem = document.getDocumentElement();
-        ResponseSet responseSet = new ResponseSet();
-        // set response set attributes
-        setResponseSetAttributes(responseSetElem, responseSet);
-
-        // get Responses
-        NodeList responses = responseSetElem.getElementsByTagName("Response");
-        if (responses == null) {
+        try {
+            // get ResponseSet element
+            if (!PLLXMLStreams.nextElement(reader)) {
+                return null;
+            }
+            ResponseSet responseSet = new ResponseSet();
+            // set response set attributes
+            setResponseSetAttributes(responseSet);
+
+            // go through each response, and add them to the response set
+            while (PLLXMLStreams.nextElement(reader)) {
+                if ("Response".equals(reader.getLocalName())) {
+                    responseSet.addResponse(parseResponseElement());
+                }
+            }
             return responseSet;
+        } catch (XMLStreamException e) {
+            RequestSetParser.debug.error("ResponseSetParser.parseXML: unable to parse ResponseSet", e);
+            return null;
+        } finally {
+            PLLXMLStreams.close(reader);
         }
-
-        // go through each response, and add them to the response set
-        int nodeLen = responses.getLength();
-        for (int i = 0; i < nodeLen; i++) {
-            responseSet.addResponse(parseResponseElement((Element) responses
-                    .item(i)));
-        }
-
-        return responseSet;
     }
 
     /**
      * This method is an internal method used by parseXML method.
-     *
-     * @param elem XML element object.
-     * @param responseSet Response Set.
      */
-    public void setResponseSetAttributes(Element elem, ResponseSet responseSet) 
-    {
-        // get vers attribute
-        String temp = elem.getAttribute("vers");
-        if (temp != null) {
-            responseSet.setResponseSetVersion(temp);
-        }
-
-        // get service id
-        temp = elem.getAttribute("svcid");
-        if (temp != null) {
-            responseSet.setServiceID(temp);
-        }
-
-        // get request id
-        temp = elem.getAttribute("reqid");
-        if (temp != null) {
-            responseSet.setRequestSetID(temp);
-        }
+    private void setResponseSetAttributes(ResponseSet responseSet) {
+        responseSet.setResponseSetVersion(PLLXMLStreams.getAttribute(reader, "vers"));
+        responseSet.setServiceID(PLLXMLStreams.getAttribute(reader, "svcid"));
+        responseSet.setRequestSetID(PLLXMLStreams.getAttribute(reader, "reqid"));
     }
 
     /**
-     * function to parse a single response element. Response contain a text
-     * element and dtdid attribute
+     * This method is an internal method used by parseXML method to parse a
+     * single Response element.
      */
-    private Response parseResponseElement(Element elem) {
+    private Response parseResponseElement() throws XMLStreamException {
         Response response = new Response();
-        // process request attributes
-        String temp = elem.getAttribute("dtdid");
-        if (temp != null) {
-            response.setDtdID(temp);
-        }
+        // process response attributes
+        response.setDtdID(PLLXMLStreams.getAttribute(reader, "dtdid"));
 
         // process TEXT child element
-        Node text = elem.getFirstChild();
+        String text = PLLXMLStreams.readContent(reader);
         if (text != null) {
-            response.setContent(text.getNodeValue());
+            response.setContent(text);
         }
         return response;
     }
@@ -224,7 +224,7 @@ class AMAccountLockout {
 
     /**
      * Checks if the account is locked out and needs to be unlocked. this is for memory locking. If duration has passed
-     * then the user is removed from the <code>loginFailHash</code> Map.
+     * then the user is no longer tracked as locked out.
      *
      * @return <code>true</code> if account is locked.
      */
@@ -236,7 +236,7 @@ class AMAccountLockout {
 
     /**
      * Checks if the account is locked out and needs to be unlocked. this is for memory locking. If duration has passed
-     * then the user is removed from the <code>loginFailHash</code> Map.
+     * then the user is no longer tracked as locked out.
      *
      * @param userName is the user name.
      * @return <code>true</code> if account is locked.
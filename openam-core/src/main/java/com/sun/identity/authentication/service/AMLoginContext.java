@@ -60,6 +60,7 @@ import org.forgerock.openam.audit.AuditConstants.AuthenticationFailureReason;
 import org.forgerock.openam.authentication.service.JAASModuleDetector;
 import org.forgerock.openam.authentication.service.LoginContext;
 import org.forgerock.openam.authentication.service.LoginContextFactory;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.utils.StringUtils;
 import org.forgerock.util.Reject;
 
@@ -144,6 +145,9 @@ public class AMLoginContext {
     private final AuthenticationProcessEventAuditor auditor;
 
     private static SsoServerAuthSvcImpl authImpl;
+    private static final MetricsRegistry.Counter CHAIN_OUTCOME_COUNTER = MetricsRegistry.getInstance().counter(
+            "openam_authentication_total", "Authentication outcomes by index type and chain or module instance.",
+            "index_type", "index_name", "outcome");
     private static Configuration defaultConfig = null;
     private static AuthD ad;
     private static Debug debug;
@@ -770,6 +774,8 @@ public class AMLoginContext {
         }
         debug.message("Came to before if Failed loop");
 
+        CHAIN_OUTCOME_COUNTER.increment(getMetricsIndexType(), getMetricsIndexName(),
+                isFailed ? "failure" : "success");
         if (isFailed) {
             if (MonitoringUtil.isRunning()) {
                 if (authImpl == null) {
@@ -1937,6 +1943,24 @@ public class AMLoginContext {
         return moduleListSet;
     }
 
+    /**
+     * Returns the index type of this login as a metrics label, or {@code default} for the default chain.
+     */
+    private String getMetricsIndexType() {
+        return indexType == null ? "default" : indexType.toString();
+    }
+
+    /**
+     * Returns the chain or module instance name of this login as a metrics label. Other index names, such as user
+     * names, are not used so that the number of series stays bounded.
+     */
+    private String getMetricsIndexName() {
+        if (indexType == IndexType.SERVICE || indexType == IndexType.MODULE_INSTANCE) {
+            return indexName;
+        }
+        return "";
+    }
+
     /* return the failure module list */
     private String getFailureModuleList(String orgDN) {
 
@@ -30,10 +30,11 @@
 package com.sun.identity.authentication.service;
 
 import java.security.AccessController;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.forgerock.openam.core.realms.RealmStateCache;
+
 import com.iplanet.sso.SSOException;
 import com.iplanet.sso.SSOToken;
 import com.sun.identity.authentication.config.AMAuthConfigUtils;
@@ -45,11 +46,13 @@ import com.sun.identity.sm.ServiceConfigManager;
 import com.sun.identity.sm.ServiceListener;
 
 /**
- * This class is a cache for Authentication Configuration Service.
+ * This class is a cache for Authentication Configuration Service. Configurations are read when first used, and
+ * evicted as configured for the {@link RealmStateCache}.
  */
 public class AuthenticationServiceAttributeCache implements ServiceListener {
     private static final String AUTHCONFIG_SERVICE = "iPlanetAMAuthConfiguration";
-    private static Map<String, Map<String, Set<String>>> serviceAttributeCache = new HashMap<>();
+    private static final RealmStateCache<Map<String, Set<String>>> serviceAttributeCache =
+            new RealmStateCache<>("auth_configuration");
     private static Debug debug = Debug.getInstance("amAuth");
     private static AuthenticationServiceAttributeCache serviceListener = new AuthenticationServiceAttributeCache();
 
@@ -79,17 +82,28 @@ public class AuthenticationServiceAttributeCache implements ServiceListener {
      *            auth configuration service name.
      * @return service attributes.
      */
-    public static Map<String, Set<String>> getServiceAttribute(String orgDN, String serviceName)
+    public static Map<String, Set<String>> getServiceAttribute(final String orgDN, final String serviceName)
             throws SMSException, AMConfigurationException, SSOException {
-        String key = key(serviceName, orgDN);
-        if (!serviceAttributeCache.containsKey(key)) {
-            Map<String, Set<String>> serviceAttributes =
-                    AMAuthConfigUtils.getNamedConfig(serviceName, orgDN, AuthD.getAuth().getSSOAuthSession());
-            serviceAttributeCache.put(key(serviceName, orgDN), serviceAttributes);
-            debug.message("AuthServiceListener.setServiceAttributeCache(): Cache after add={}, orgDN={}",
-                    serviceAttributeCache, orgDN);
+        Map<String, Set<String>> retVal;
+        try {
+            retVal = serviceAttributeCache.get(key(serviceName, orgDN),
+                    new RealmStateCache.Loader<Map<String, Set<String>>, Exception>() {
+                        @Override
+                        public Map<String, Set<String>> load(String key)
+                                throws SMSException, AMConfigurationException, SSOException {
+                            Map<String, Set<String>> serviceAttributes = AMAuthConfigUtils.getNamedConfig(serviceName,
+                                    orgDN, AuthD.getAuth().getSSOAuthSession());
+                            debug.message("AuthServiceListener.setServiceAttributeCache(): Added to cache={}, "
+                                    + "orgDN={}", serviceAttributes, orgDN);
+                            return serviceAttributes;
+                        }
+                    });
+        } catch (SMSException | AMConfigurationException | SSOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // The loader throws nothing else
+            throw new IllegalStateException(e);
         }
-        Map<String, Set<String>> retVal = serviceAttributeCache.get(key(serviceName, orgDN));
         debug.message("AuthServiceListener.getServiceAttribute(): Returning from cache={}, orgDN={}", retVal,
                 orgDN);
 
@@ -129,7 +143,7 @@ public class AuthenticationServiceAttributeCache implements ServiceListener {
             int componentSlash = serviceComponent.lastIndexOf('/');
             if (componentSlash != -1) {
                 String componentName = serviceComponent.substring(componentSlash + 1);
-                serviceAttributeCache.remove(key(componentName, orgName));
+                serviceAttributeCache.invalidate(key(componentName, orgName));
             }
         }
     }
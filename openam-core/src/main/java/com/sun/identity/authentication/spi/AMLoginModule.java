@@ -67,6 +67,7 @@ import org.forgerock.openam.authentication.callbacks.PollingWaitCallback;
 import org.forgerock.openam.identity.idm.IdentityUtils;
 import org.forgerock.openam.ldap.LDAPUtils;
 import org.forgerock.openam.session.service.access.SessionQueryManager;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 
 import com.iplanet.am.sdk.AMException;
 import com.iplanet.am.sdk.AMUser;
@@ -243,7 +244,14 @@ public abstract class AMLoginModule implements LoginModule {
     private Map options = null;
     
     private static Debug debug = Debug.getInstance("amLoginModule");
-    
+
+    private static final MetricsRegistry.Timer MODULE_PROCESS_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_authentication_module_process_seconds",
+            "Time taken by authentication module instances to process submitted callbacks.", "module");
+    private static final MetricsRegistry.Counter MODULE_OUTCOME_COUNTER = MetricsRegistry.getInstance().counter(
+            "openam_authentication_module_total",
+            "Authentication module instance outcomes.", "module", "outcome");
+
     private int currentState = ISAuthConstants.LOGIN_START;
     
     private final String EMPTY_STRING = "";
@@ -1037,6 +1045,7 @@ public abstract class AMLoginModule implements LoginModule {
      */
     private int wrapProcess(Callback[] callbacks, int state)
     throws AuthLoginException {
+        final long start = System.nanoTime();
         try {
             if (callbacks != null) {
                 for (int i = 0; i < callbacks.length; i++) {
@@ -1072,6 +1081,8 @@ public abstract class AMLoginModule implements LoginModule {
         } catch (RuntimeException re) {
             setFailureState();
             throw re;
+        } finally {
+            MODULE_PROCESS_TIMER.recordSince(start, moduleName);
         }
     }
 
@@ -2116,6 +2127,7 @@ public abstract class AMLoginModule implements LoginModule {
             loginState.saveAuthenticatedPrincipal(getPrincipal().getName());
         }
 
+        MODULE_OUTCOME_COUNTER.increment(moduleName, "success");
         auditor.auditModuleSuccess(loginState, getPrincipal(), getAuditEntryDetail());
     }
     
@@ -2301,6 +2313,7 @@ public abstract class AMLoginModule implements LoginModule {
         loginState.setFailureModuleName(moduleName);
         loginState.saveSharedStateAttributes();
 
+        MODULE_OUTCOME_COUNTER.increment(moduleName, "failure");
         auditor.auditModuleFailure(loginState, getPrincipal(), getAuditEntryDetail());
     }
     
@@ -0,0 +1,282 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static java.util.Locale.ROOT;
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+import static org.forgerock.openam.utils.Time.getCalendarInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.CTSOptions;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.openam.utils.TimeUtils;
+import org.forgerock.util.Options;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Failed authentication counters shared by every server of the cluster, so that a lockout happens after the
+ * configured number of failures whichever servers the failed attempts reached.
+ * <p>
+ * The failures of each user are counted in a CTS token, which expires once its failures no longer count towards a
+ * lockout, and which each server updates with an optimistic concurrency check so that concurrent failures on
+ * different servers are all counted. Concurrent failures of the same user on one server are coalesced: they join
+ * the update of the first of them, which writes them all in a single CTS round trip.
+ * <p>
+ * The fields used by this class are:
+ * <ul>
+ *     <li>{@link CoreTokenField#USER_ID} - the DN of the user.</li>
+ *     <li>{@link CoreTokenField#INTEGER_ONE} - the number of failures of the user.</li>
+ *     <li>{@link CoreTokenField#DATE_ONE} - the time of the last failure of the user.</li>
+ * </ul>
+ */
+final class AccountLockoutCounters {
+
+    private static final Debug DEBUG = Debug.getInstance("amAccountLockout");
+    private static final CoreTokenField FAILURE_COUNT_FIELD = CoreTokenField.INTEGER_ONE;
+    private static final CoreTokenField LAST_FAILURE_FIELD = CoreTokenField.DATE_ONE;
+    private static final String TOKEN_ID_PREFIX = "lockout-";
+    private static final int MAX_ATTEMPTS = 8;
+    private static final int BACKOFF_MILLIS = 5;
+
+    private final CTSPersistentStore cts;
+    private final ConcurrentMap<String, Batch> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the counters.
+     *
+     * @param cts The CTS holding the counters.
+     */
+    AccountLockoutCounters(CTSPersistentStore cts) {
+        this.cts = cts;
+    }
+
+    /**
+     * Counts a failed authentication of the given user.
+     *
+     * @param userDN The DN of the user.
+     * @param failureWindow The time in milliseconds during which a failure counts towards a lockout.
+     * @return The number of failures of the user within the window, including this one, or {@code -1} if the
+     * failure could not be counted.
+     */
+    int recordFailure(String userDN, long failureWindow) {
+        Batch batch;
+        int position;
+        do {
+            batch = pending.get(userDN);
+            if (batch == null) {
+                Batch created = new Batch();
+                batch = pending.putIfAbsent(userDN, created);
+                if (batch == null) {
+                    batch = created;
+                }
+            }
+            position = batch.join();
+        } while (position < 0);
+
+        if (position == 0) {
+            batch.complete(write(userDN, batch, failureWindow));
+        }
+        int previousFailures = batch.awaitPreviousFailures();
+        return previousFailures < 0 ? -1 : previousFailures + position + 1;
+    }
+
+    /**
+     * Returns the failures of the given user which still count towards a lockout.
+     *
+     * @param userDN The DN of the user.
+     * @param failureWindow The time in milliseconds during which a failure counts towards a lockout.
+     * @return Lockout information holding the failure count and last failure time of the user, or {@code null} if
+     * the user has no such failures.
+     * @throws CoreTokenException If the CTS could not be read.
+     */
+    AccountLockoutInfo read(String userDN, long failureWindow) throws CoreTokenException {
+        Token token = cts.read(tokenId(userDN));
+        if (token == null || getLastFailure(token) + failureWindow <= currentTimeMillis()) {
+            return null;
+        }
+        AccountLockoutInfo info = new AccountLockoutInfo();
+        info.setFailCount(getFailureCount(token));
+        info.setLastFailTime(getLastFailure(token));
+        return info;
+    }
+
+    /**
+     * Forgets the failures of the given user.
+     *
+     * @param userDN The DN of the user.
+     * @throws CoreTokenException If the CTS could not be updated.
+     */
+    void reset(String userDN) throws CoreTokenException {
+        cts.delete(tokenId(userDN));
+    }
+
+    /**
+     * Adds the failures of the batch to the counter of the user, retrying with a random back off when another server
+     * updates the counter concurrently. The batch is closed to further failures once the counter has been read, so
+     * that the failures which arrived during the read are written along with the first.
+     *
+     * @return The number of failures counted before those of the batch, or {@code -1} if the counter could not be
+     * updated.
+     */
+    private int write(String userDN, Batch batch, long failureWindow) {
+        String tokenId = tokenId(userDN);
+        int failures = -1;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                Token token = cts.read(tokenId);
+                if (failures < 0) {
+                    pending.remove(userDN, batch);
+                    failures = batch.close();
+                }
+                long now = currentTimeMillis();
+                int previousFailures = 0;
+                if (token != null && getLastFailure(token) + failureWindow > now) {
+                    previousFailures = getFailureCount(token);
+                }
+                Token updated = new Token(tokenId, TokenType.ACCOUNT_LOCKOUT);
+                updated.setUserId(userDN);
+                updated.setAttribute(FAILURE_COUNT_FIELD, previousFailures + failures);
+                updated.setAttribute(LAST_FAILURE_FIELD, calendarAt(now));
+                updated.setExpiryTimestamp(calendarAt(now + failureWindow));
+                if (token == null) {
+                    // Fails if another server created the counter since it was read
+                    cts.create(updated);
+                } else {
+                    String etag = token.getAttribute(CoreTokenField.ETAG);
+                    cts.update(updated, Options.defaultOptions()
+                            .set(CTSOptions.OPTIMISTIC_CONCURRENCY_CHECK_OPTION, etag));
+                }
+                return previousFailures;
+            } catch (CoreTokenException e) {
+                DEBUG.message("AccountLockoutCounters: Failed to update the failures of {}, attempt {}", userDN,
+                        attempt + 1, e);
+            }
+            if (attempt + 1 < MAX_ATTEMPTS && !backOff(attempt)) {
+                break;
+            }
+        }
+        if (failures < 0) {
+            pending.remove(userDN, batch);
+            batch.close();
+        }
+        DEBUG.error("AccountLockoutCounters: Could not count the failures of {}", userDN);
+        return -1;
+    }
+
+    /**
+     * Waits for a random time, which grows with each attempt, so that servers updating the same counter stop
+     * colliding.
+     *
+     * @return {@code false} if the thread was interrupted while waiting.
+     */
+    private static boolean backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(BACKOFF_MILLIS << attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static int getFailureCount(Token token) {
+        Integer failures = token.getAttribute(FAILURE_COUNT_FIELD);
+        return failures == null ? 0 : failures;
+    }
+
+    private static long getLastFailure(Token token) {
+        Calendar lastFailure = token.getAttribute(LAST_FAILURE_FIELD);
+        return lastFailure == null ? 0 : lastFailure.getTimeInMillis();
+    }
+
+    private static Calendar calendarAt(long millis) {
+        Calendar calendar = getCalendarInstance(TimeUtils.UTC, ROOT);
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    /**
+     * Returns the ID of the counter token of the user, which is derived from the DN of the user so that every
+     * server finds the same token.
+     */
+    static String tokenId(String userDN) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(userDN.getBytes(StandardCharsets.UTF_8));
+            StringBuilder id = new StringBuilder(TOKEN_ID_PREFIX.length() + hash.length * 2).append(TOKEN_ID_PREFIX);
+            for (byte b : hash) {
+                id.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return id.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Failures of one user which are written to the CTS together.
+     */
+    private static final class Batch {
+        private final CountDownLatch written = new CountDownLatch(1);
+        private int failures;
+        private boolean closed;
+        private volatile int previousFailures;
+
+        /**
+         * Adds a failure to the batch.
+         *
+         * @return The number of failures which joined the batch before this one, or {@code -1} if the batch has
+         * already been closed.
+         */
+        synchronized int join() {
+            return closed ? -1 : failures++;
+        }
+
+        synchronized int close() {
+            closed = true;
+            return failures;
+        }
+
+        void complete(int previousFailures) {
+            this.previousFailures = previousFailures;
+            written.countDown();
+        }
+
+        int awaitPreviousFailures() {
+            try {
+                written.await();
+                return previousFailures;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+
+/**
+ * Bounded, expiring store of the in-memory account lockout information of users who have recently failed to
+ * authenticate.
+ * <p>
+ * Users are spread over a fixed number of shards, each guarded by its own lock, so that failed logins of different
+ * users seldom contend. Each entry expires at a time chosen by the caller, after which the failures it records no
+ * longer count towards a lockout, and each shard evicts its least recently used failure counts once full, so that a
+ * flood of failed logins for distinct user names cannot exhaust the heap. Active lockouts are never evicted, so such a
+ * flood cannot unlock a user either: a shard holding nothing but active lockouts grows beyond its capacity instead.
+ * Expired entries are removed when read, and by {@link #purgeExpired()}.
+ * <p>
+ * The tracker also counts lockout checks, failed attempts, lockouts and evictions, and publishes them along with the
+ * number of tracked users through the {@link MetricsRegistry}.
+ */
+final class AccountLockoutTracker {
+
+    private static final int SHARDS = 16;
+    private static final String CHECK = "check";
+    private static final String FAILURE = "failure";
+    private static final String LOCKOUT = "lockout";
+
+    private final Shard[] shards = new Shard[SHARDS];
+    private final MetricsRegistry.Counter events;
+    private final MetricsRegistry.Counter evictions;
+
+    /**
+     * Creates a tracker.
+     *
+     * @param maxEntries The maximum number of users tracked at any time.
+     * @param metricsRegistry The registry to publish the statistics of the tracker to.
+     */
+    AccountLockoutTracker(int maxEntries, MetricsRegistry metricsRegistry) {
+        int shardCapacity = Math.max(1, maxEntries / SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(shardCapacity);
+        }
+        events = metricsRegistry.counter("openam_account_lockout_events_total",
+                "Number of account lockout checks, failed authentications and lockouts", "event");
+        evictions = metricsRegistry.counter("openam_account_lockout_evictions_total",
+                "Number of users whose failures were evicted from memory before they expired");
+        metricsRegistry.gauge("openam_account_lockout_tracked_users",
+                "Number of users whose account lockout information is held in memory", new MetricsRegistry.Gauge() {
+                    @Override
+                    public long getValue() {
+                        purgeExpired();
+                        return size();
+                    }
+                });
+    }
+
+    /**
+     * Returns the lockout information of the given user.
+     *
+     * @param userDN The normalised DN or name of the user.
+     * @return The lockout information, or {@code null} if the user is not tracked or their entry has expired.
+     */
+    AccountLockoutInfo get(String userDN) {
+        Shard shard = shardFor(userDN);
+        synchronized (shard) {
+            TrackedUser tracked = shard.get(userDN);
+            if (tracked == null) {
+                return null;
+            }
+            if (tracked.expiryTime < currentTimeMillis()) {
+                shard.remove(userDN);
+                return null;
+            }
+            return tracked.info;
+        }
+    }
+
+    /**
+     * Starts tracking, or extends the tracking of, the lockout information of the given user.
+     *
+     * @param userDN The normalised DN or name of the user.
+     * @param info The lockout information.
+     * @param expiryTime The time in milliseconds after which the information no longer needs to be kept.
+     */
+    void put(String userDN, AccountLockoutInfo info, long expiryTime) {
+        Shard shard = shardFor(userDN);
+        synchronized (shard) {
+            shard.put(userDN, new TrackedUser(info, expiryTime));
+            shard.evictOverCapacity(userDN);
+        }
+    }
+
+    /**
+     * Stops tracking the given user.
+     *
+     * @param userDN The normalised DN or name of the user.
+     */
+    void remove(String userDN) {
+        Shard shard = shardFor(userDN);
+        synchronized (shard) {
+            shard.remove(userDN);
+        }
+    }
+
+    /**
+     * Removes the expired entries of every shard.
+     */
+    void purgeExpired() {
+        long now = currentTimeMillis();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Iterator<TrackedUser> users = shard.values().iterator(); users.hasNext();) {
+                    if (users.next().expiryTime < now) {
+                        users.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of users currently tracked, including expired entries not yet purged.
+     *
+     * @return The number of tracked users.
+     */
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    void recordCheck() {
+        events.increment(CHECK);
+    }
+
+    void recordFailure() {
+        events.increment(FAILURE);
+    }
+
+    void recordLockout() {
+        events.increment(LOCKOUT);
+    }
+
+    long getCheckCount() {
+        return events.getValue(CHECK);
+    }
+
+    long getFailureCount() {
+        return events.getValue(FAILURE);
+    }
+
+    long getLockoutCount() {
+        return events.getValue(LOCKOUT);
+    }
+
+    long getEvictionCount() {
+        return evictions.getValue();
+    }
+
+    private Shard shardFor(String userDN) {
+        int hash = userDN.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+    }
+
+    private static final class TrackedUser {
+        private final AccountLockoutInfo info;
+        private final long expiryTime;
+
+        private TrackedUser(AccountLockoutInfo info, long expiryTime) {
+            this.info = info;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    /**
+     * Access ordered map which evicts its least recently used failure counts once full.
+     */
+    private final class Shard extends LinkedHashMap<String, TrackedUser> {
+        private final int capacity;
+
+        private Shard(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        /**
+         * Removes expired entries, and then the least recently used entries which do not hold a lockout, until the
+         * shard is back within its capacity. Neither active lockouts nor the entry just written are evicted, as
+         * evicting the latter would stop the failures of its user from ever leading to a lockout.
+         */
+        private void evictOverCapacity(String written) {
+            long now = currentTimeMillis();
+            for (Iterator<Map.Entry<String, TrackedUser>> users = entrySet().iterator();
+                    size() > capacity && users.hasNext();) {
+                Map.Entry<String, TrackedUser> user = users.next();
+                if (user.getValue().expiryTime < now) {
+                    users.remove();
+                } else if (!user.getValue().info.isLockout() && !user.getKey().equals(written)) {
+                    users.remove();
+                    evictions.increment();
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,7 @@ package com.sun.identity.common;
 import static org.forgerock.openam.utils.Time.*;
 
 import com.iplanet.am.util.AMSendMail;
+import com.iplanet.am.util.SystemProperties;
 import javax.mail.MessagingException;
 import com.iplanet.sso.SSOException;
 import com.sun.identity.authentication.spi.AMAuthCallBackImpl;
@@ -48,6 +49,10 @@ import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.StringTokenizer;
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 
 public class ISAccountLockout {
     private static final String USER_STATUS_ATTR="inetuserstatus";
@@ -76,6 +81,9 @@ public class ISAccountLockout {
     private static final String ACTUAL_LOCKOUT_DURATION_END =
         "</ActualLockoutDuration>";
     private static final String END_XML="</InvalidPassword>";
+    private static final String MAX_TRACKED_USERS_PROPERTY =
+        "org.forgerock.openam.authentication.lockout.maxTrackedUsers";
+    private static final int DEFAULT_MAX_TRACKED_USERS = 100000;
     
     private boolean failureLockoutMode = false;
     private boolean memoryLocking = false;
@@ -95,7 +103,19 @@ public class ISAccountLockout {
     private boolean needToSetInvalidAttemptsObjectClass = true;
     static Debug debug = Debug.getInstance("amAccountLockout");
     private AMAuthCallBackImpl callbackImpl = null;
-    static Map loginFailHash = Collections.synchronizedMap(new HashMap());
+    static final AccountLockoutTracker loginFailures = new AccountLockoutTracker(
+        SystemProperties.getAsInt(MAX_TRACKED_USERS_PROPERTY, DEFAULT_MAX_TRACKED_USERS),
+        MetricsRegistry.getInstance());
+
+    /**
+     * Holds the cluster-wide failure counters, which are only created when
+     * invalid attempts are stored in the data store.
+     */
+    private static final class ClusterFailures {
+        private static final AccountLockoutCounters INSTANCE =
+            new AccountLockoutCounters(
+                InjectorHolder.getInstance(CTSPersistentStore.class));
+    }
     
     
     /**
@@ -207,8 +227,8 @@ public class ISAccountLockout {
         if (acInfo == null) {
             acInfo = new AccountLockoutInfo();
             acInfo.setActualLockoutDuration(failureLockoutDuration);
-            loginFailHash.put(userDN,acInfo);
         }
+        loginFailures.recordFailure();
         
         if (debug.messageEnabled()) {
             debug.message(
@@ -221,15 +241,24 @@ public class ISAccountLockout {
         long lastFailTime = acInfo.getLastFailTime();
         long lockedAt = acInfo.getLockoutAt();
         
-        if((lastFailTime + failureLockoutTime) > now) {
+        if (storeInvalidAttemptsInDS) {
+            // Count the failures of every server, so that the lockout
+            // happens whichever servers the attempts reach
+            fail_count = ClusterFailures.INSTANCE.recordFailure(userDN,
+                failureLockoutTime);
+            if (fail_count < 0) {
+                return -1;
+            }
+        } else if((lastFailTime + failureLockoutTime) > now) {
             fail_count = fail_count +1;
         } else {
             fail_count = 1;
         }        
         
-        if (((lastFailTime + failureLockoutTime) > now) &&
-            (fail_count == failureLockoutCount)
-        ) {
+        // A first failure restarts the count, and never locks the account
+        boolean lockingOut =
+            (fail_count > 1) && (fail_count == failureLockoutCount);
+        if (lockingOut) {
             lockedAt = now;
         }
         if (debug.messageEnabled()) {
@@ -237,7 +266,9 @@ public class ISAccountLockout {
                  +fail_count);
         }
        
-        if (storeInvalidAttemptsInDS) {
+        // The failure counts are kept in the CTS, so the profile is only
+        // written when the account is locked
+        if (storeInvalidAttemptsInDS && lockingOut) {
             Map attrMap = new HashMap();
             Set invalidAttempts = new HashSet();
             String invalidXML = createInvalidAttemptsXML(
@@ -270,8 +301,13 @@ public class ISAccountLockout {
             acInfo.setLockout(true);
         }
         acInfo.setUserToken(userName);
+        if (!storeInvalidAttemptsInDS) {
+            // Only memory lockout reads the tracked information back
+            loginFailures.put(userDN, acInfo, getTrackingExpiry(acInfo, now));
+        }
         
         if (fail_count == failureLockoutCount) {
+            loginFailures.recordLockout();
             if (!memoryLocking) {
                 inactivateUserAccount(amIdentity);
             }
@@ -348,6 +384,24 @@ public class ISAccountLockout {
                 }
             }
             
+            if (locked_out_at == 0) {
+                // Until the account is locked, the failures are only counted
+                // in the CTS
+                invalid_attempts = 0;
+                last_failed = 0;
+                try {
+                    AccountLockoutInfo failures = ClusterFailures.INSTANCE
+                        .read(userDN, failureLockoutTime);
+                    if (failures != null) {
+                        invalid_attempts = failures.getFailCount();
+                        last_failed = failures.getLastFailTime();
+                    }
+                } catch (CoreTokenException e) {
+                    debug.error("ISAccoutLockout.getAcInfo", e);
+                    return null;
+                }
+            }
+            
             acInfo.setLastFailTime(last_failed);
             acInfo.setFailCount(invalid_attempts);
             acInfo.setLockoutAt(locked_out_at);
@@ -359,7 +413,7 @@ public class ISAccountLockout {
             setWarningCount(invalid_attempts,failureLockoutCount);
             acInfo.setWarningCount(userWarningCount);
         } else {
-            acInfo = (AccountLockoutInfo) loginFailHash.get(userDN);
+            acInfo = loginFailures.get(userDN);
         }
         return acInfo;
     }
@@ -532,6 +586,7 @@ public class ISAccountLockout {
      * @return <code>true</code> if account is locked.
      */
     public boolean isLockedOut(AccountLockoutInfo acInfo) {
+        loginFailures.recordCheck();
         // has this user been locked out.
         boolean isLockedOut = acInfo.isLockout();
         
@@ -625,6 +680,7 @@ public class ISAccountLockout {
      */
     
     public boolean isAccountLocked(AMIdentity amIdentity) {
+        loginFailures.recordCheck();
         boolean isLocked=false;
         if (!memoryLocking) {
             try {
@@ -706,7 +762,11 @@ public class ISAccountLockout {
 
         if (storeInvalidAttemptsInDS) {
             try {
-                if ((fail_count !=0)||(lastFailTime !=0)||(locked_out_at !=0)||
+                if ((fail_count !=0)||(lastFailTime !=0)) {
+                    ClusterFailures.INSTANCE.reset(userDN);
+                }
+                // The profile only holds failures once the account is locked
+                if ((locked_out_at !=0)||
                     (actualLockoutDuration != currentLockoutDuration)) {
                     Map attrMap = new HashMap();
                     Set invalidAttempts = new HashSet();
@@ -724,13 +784,31 @@ public class ISAccountLockout {
                 debug.message("error reseting Lockout Attempts");
             }
         } 
-        //loginFailHash.remove(userDN);
         acInfo.setFailCount(0);
         acInfo.setLastFailTime(0);
         acInfo.setLockoutAt(0);
         acInfo.setLockout(false);
         acInfo.setActualLockoutDuration(actualLockoutDuration);
-        
+        if (!storeInvalidAttemptsInDS) {
+            if (actualLockoutDuration == failureLockoutDuration) {
+                // Nothing left to remember about this user
+                loginFailures.remove(userDN);
+            } else {
+                // Keep the multiplied lockout duration for the next lockout
+                loginFailures.put(userDN, acInfo,
+                    getTrackingExpiry(acInfo, currentTimeMillis()));
+            }
+        }
+    }
+
+    /**
+     * Returns the time until which the in-memory lockout information of a
+     * user must be kept: until failures no longer count towards a lockout,
+     * and until any lockout has ended.
+     */
+    private long getTrackingExpiry(AccountLockoutInfo acInfo, long now) {
+        return now + Math.max(failureLockoutTime,
+            acInfo.getActualLockoutDuration());
     }
     
     /**
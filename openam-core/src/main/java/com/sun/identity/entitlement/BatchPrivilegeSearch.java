@@ -0,0 +1,179 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.entitlement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.Subject;
+
+import org.forgerock.util.annotations.VisibleForTesting;
+
+/**
+ * Searches the policy index once for all of the resources of a batch evaluation request made for a single subject,
+ * instead of once per resource.
+ * <p>
+ * The search is made with the union of the search indexes of every resource. Each {@link PrivilegeEvaluator} is then
+ * given only the privileges whose save indexes match the search indexes of its own resource, which are the privileges
+ * a search for that resource alone would have returned. The evaluators of the batch also share a subject decision
+ * cache, so that the subject of a privilege matching several resources is only evaluated once.
+ */
+final class BatchPrivilegeSearch {
+
+    private final boolean recursive;
+    private final Map<String, ResourceSearchIndexes> resourceIndexes = new HashMap<>();
+    private final List<IPrivilege> privileges = new ArrayList<>();
+    private final Map<IPrivilege, ResourceSaveIndexes> privilegeIndexes = new HashMap<>();
+    private final Map<String, SubjectDecision> subjectDecisionCache = new ConcurrentHashMap<>();
+
+    /**
+     * Searches for the privileges which may apply to any of the given resources.
+     *
+     * @param adminSubject Administrator subject which is used for evaluation.
+     * @param realm Realm name.
+     * @param subject Subject to be evaluated.
+     * @param application The application the resources belong to.
+     * @param normalisedResourceNames The normalised names of the resources to be evaluated.
+     * @param recursive <code>true</code> for sub tree evaluation.
+     * @return the search.
+     * @throws EntitlementException if the search fails.
+     */
+    static BatchPrivilegeSearch search(Subject adminSubject, String realm, Subject subject, Application application,
+            Set<String> normalisedResourceNames, boolean recursive) throws EntitlementException {
+        Map<String, ResourceSearchIndexes> resourceIndexes = new HashMap<>();
+        ResourceSearchIndexes combinedIndexes = new ResourceSearchIndexes(null, null, null);
+        for (String resourceName : normalisedResourceNames) {
+            ResourceSearchIndexes indexes = application.getResourceSearchIndex(resourceName, realm);
+            resourceIndexes.put(resourceName, indexes);
+            combinedIndexes.addAll(indexes);
+        }
+
+        SubjectAttributesManager sam = SubjectAttributesManager.getInstance(adminSubject, realm);
+        Set<String> subjectIndexes = sam.getSubjectSearchFilter(subject, application.getName());
+        PrivilegeIndexStore indexStore = PrivilegeIndexStore.getInstance(adminSubject, realm);
+        Iterator<IPrivilege> policyIterator = indexStore.search(realm, combinedIndexes, subjectIndexes, recursive);
+        return new BatchPrivilegeSearch(adminSubject, realm, resourceIndexes, policyIterator, recursive);
+    }
+
+    /**
+     * Creates a search from the privileges found for the combined search indexes of all the resources.
+     *
+     * @param adminSubject Administrator subject which is used for evaluation.
+     * @param realm Realm name.
+     * @param resourceIndexes The search indexes of each normalised resource name.
+     * @param policyIterator The privileges found for the combined search indexes.
+     * @param recursive <code>true</code> for sub tree evaluation.
+     * @throws EntitlementException if the save indexes of a privilege cannot be read.
+     */
+    @VisibleForTesting
+    BatchPrivilegeSearch(Subject adminSubject, String realm, Map<String, ResourceSearchIndexes> resourceIndexes,
+            Iterator<IPrivilege> policyIterator, boolean recursive) throws EntitlementException {
+        this.recursive = recursive;
+        this.resourceIndexes.putAll(resourceIndexes);
+
+        while (policyIterator.hasNext()) {
+            IPrivilege policy = policyIterator.next();
+            if (policy instanceof ReferralPrivilege) {
+                // We want to ignore referrals - deprecated.
+                continue;
+            }
+            privileges.add(policy);
+            if (policy instanceof Privilege) {
+                Entitlement entitlement = ((Privilege) policy).getEntitlement();
+                if (entitlement != null) {
+                    privilegeIndexes.put(policy, entitlement.getResourceSaveIndexes(adminSubject, realm));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the privileges which a search for the given resource alone would have returned.
+     *
+     * @param normalisedResourceName One of the normalised resource names the search was made for.
+     * @return an iterator of the matching privileges.
+     */
+    Iterator<IPrivilege> search(String normalisedResourceName) {
+        ResourceSearchIndexes indexes = resourceIndexes.get(normalisedResourceName);
+        if (indexes == null) {
+            return Collections.<IPrivilege>emptyList().iterator();
+        }
+
+        List<IPrivilege> matching = new ArrayList<>();
+        for (IPrivilege privilege : privileges) {
+            ResourceSaveIndexes saveIndexes = privilegeIndexes.get(privilege);
+            if (saveIndexes == null || matches(saveIndexes, indexes)) {
+                matching.add(privilege);
+            }
+        }
+        return matching.iterator();
+    }
+
+    /**
+     * Returns whether the search is for sub tree evaluation.
+     *
+     * @return <code>true</code> for sub tree evaluation.
+     */
+    boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Returns the subject decision cache shared by the evaluations of all resources in the batch.
+     *
+     * @return the thread safe subject decision cache.
+     */
+    Map<String, SubjectDecision> getSubjectDecisionCache() {
+        return subjectDecisionCache;
+    }
+
+    private boolean matches(ResourceSaveIndexes saveIndexes, ResourceSearchIndexes searchIndexes) {
+        if (!intersects(saveIndexes.getHostIndexes(), searchIndexes.getHostIndexes())) {
+            return false;
+        }
+        if (recursive) {
+            return intersects(saveIndexes.getParentPathIndexes(), searchIndexes.getParentPathIndexes());
+        }
+        return intersects(saveIndexes.getPathIndexes(), searchIndexes.getPathIndexes());
+    }
+
+    /**
+     * Index caches and data store searches compare indexes case insensitively, so this does too.
+     */
+    private static boolean intersects(Set<String> saved, Set<String> searched) {
+        if (saved == null || searched == null) {
+            return false;
+        }
+        Set<String> lowerCaseSaved = new HashSet<>(saved.size());
+        for (String index : saved) {
+            lowerCaseSaved.add(index.toLowerCase());
+        }
+        for (String index : searched) {
+            if (lowerCaseSaved.contains(index.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
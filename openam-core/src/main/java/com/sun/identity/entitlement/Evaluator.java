@@ -35,6 +35,8 @@ import static org.forgerock.openam.utils.Time.*;
 import com.sun.identity.shared.Constants;
 import com.sun.identity.shared.configuration.SystemPropertiesManager;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -131,6 +133,9 @@ public class Evaluator {
 
     /**
      * Returns a list of entitlements for a given subject, resource names and environment.
+     * <p>
+     * The policies of all the resources are searched for once, and the subject conditions of policies applying to
+     * several of the resources are only evaluated once.
      *
      * @param realm Realm Name.
      * @param subject Subject who is under evaluation.
@@ -151,14 +156,40 @@ public class Evaluator {
             throw new EntitlementException(424);
         }
 
-        List<Entitlement> results = new ArrayList<Entitlement>();
+        if (resourceNames.size() == 1) {
+            return evaluate(realm, subject, resourceNames.iterator().next(), environment, false);
+        }
 
+        long searchStartTime = currentTimeMillis();
+        Application application = getApplication(realm);
+
+        // Normalise the incoming resource URLs, and search once for the policies of all of them.
+        Map<String, String> normalisedResourceNames = new LinkedHashMap<String, String>();
         for (String res : resourceNames) {
-            List<Entitlement> r = evaluate(realm, subject, res, environment,
-                false);
+            normalisedResourceNames.put(res, application.getResourceComparator().canonicalize(res));
+        }
+        BatchPrivilegeSearch batchSearch = BatchPrivilegeSearch.search(adminSubject, realm, subject, application,
+                new HashSet<String>(normalisedResourceNames.values()), false);
+        long searchDuration = currentTimeMillis() - searchStartTime;
+
+        List<Entitlement> results = new ArrayList<Entitlement>();
+
+        for (Map.Entry<String, String> res : normalisedResourceNames.entrySet()) {
+            long startTime = currentTimeMillis();
+
+            PrivilegeEvaluator evaluator = new PrivilegeEvaluator();
+            List<Entitlement> r = evaluator.evaluate(realm, adminSubject, subject, applicationName,
+                    res.getValue(), res.getKey(), environment, batchSearch);
             if ((r != null) && !r.isEmpty()) {
                 results.addAll(r);
             }
+
+            if (configWrapper.isMonitoringRunning()) {
+                // The shared search is attributed evenly to the resources of the batch
+                long duration = currentTimeMillis() - startTime + searchDuration / normalisedResourceNames.size();
+                policyMonitor.addEvaluation(duration, realm, applicationName, res.getKey(), subject,
+                        PolicyMonitoringType.SELF);
+            }
         }
         return results;
     }
@@ -186,14 +217,7 @@ public class Evaluator {
     ) throws EntitlementException {
 
         long startTime = currentTimeMillis();
-
-        // Delegation to applications is currently not configurable, passing super admin (see AME-4959)
-        Application application = getApplicationService(SUPER_ADMIN_SUBJECT, realm).getApplication(applicationName);
-
-        if (application == null) {
-            // App retrieval error.
-            throw new EntitlementException(EntitlementException.APP_RETRIEVAL_ERROR, new String[] {realm});
-        }
+        Application application = getApplication(realm);
 
         // Normalise the incoming resource URL.
         String normalisedResourceName = application.getResourceComparator().canonicalize(resourceName);
@@ -210,6 +234,17 @@ public class Evaluator {
         return results;
     }
 
+    private Application getApplication(String realm) throws EntitlementException {
+        // Delegation to applications is currently not configurable, passing super admin (see AME-4959)
+        Application application = getApplicationService(SUPER_ADMIN_SUBJECT, realm).getApplication(applicationName);
+
+        if (application == null) {
+            // App retrieval error.
+            throw new EntitlementException(EntitlementException.APP_RETRIEVAL_ERROR, new String[] {realm});
+        }
+        return application;
+    }
+
     /**
      * Returns application name.
      * 
@@ -24,7 +24,7 @@
  *
  * $Id: Privilege.java,v 1.14 2010/01/08 22:20:47 veiming Exp $
  *
- * Portions Copyrighted 2010-2015 ForgeRock AS.
+ * Portions Copyrighted 2010-2016 ForgeRock AS.
  */
 
 package com.sun.identity.entitlement;
@@ -36,6 +36,7 @@ import com.sun.identity.sm.SMSEntry;
 
 import org.forgerock.openam.entitlement.CachingEntitlementCondition;
 import org.forgerock.openam.entitlement.PolicyConstants;
+import org.forgerock.openam.entitlement.PrivilegeEvaluatorContext;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -665,8 +666,7 @@ public abstract class Privilege implements IPrivilege {
         SubjectDecision decision;
 
         if (getSubject() != null) {
-            SubjectAttributesManager mgr = SubjectAttributesManager.getInstance(adminSubject, realm);
-            decision = getSubject().evaluate(realm, mgr, subject, resourceName, environment);
+            decision = evaluateSubject(adminSubject, realm, subject, resourceName, environment);
         } else {
             decision = new SubjectDecision(true, Collections.<String, Set<String>>emptyMap());
         }
@@ -682,6 +682,36 @@ public abstract class Privilege implements IPrivilege {
         return decision;
     }
 
+    /**
+     * Evaluates the subject of this privilege, reusing the decision already made for the same subject while
+     * evaluating another resource of the same batch request, as held by the {@link PrivilegeEvaluatorContext}. Every
+     * resource of a batch is evaluated for the same subject and environment; decisions are not reused outside a batch.
+     */
+    private SubjectDecision evaluateSubject(Subject adminSubject, String realm, Subject subject, String resourceName,
+            Map<String, Set<String>> environment) throws EntitlementException {
+        EntitlementSubject eSubject = getSubject();
+        PrivilegeEvaluatorContext context = PrivilegeEvaluatorContext.getCurrent();
+        Map<String, SubjectDecision> cache = context == null ? null : context.getSubjectDecisionCache();
+        String cacheKey = null;
+        if (cache != null) {
+            cacheKey = eSubject.getClass().getName() + eSubject.getState();
+            SubjectDecision cached = cache.get(cacheKey);
+            if (cached != null) {
+                if (PolicyConstants.DEBUG.messageEnabled()) {
+                    PolicyConstants.DEBUG.message("[PolicyEval] Privilege.doesSubjectMatch: returning cached decision");
+                }
+                return cached;
+            }
+        }
+
+        SubjectAttributesManager mgr = SubjectAttributesManager.getInstance(adminSubject, realm);
+        SubjectDecision decision = eSubject.evaluate(realm, mgr, subject, resourceName, environment);
+        if (cacheKey != null) {
+            cache.put(cacheKey, decision);
+        }
+        return decision;
+    }
+
     protected ConditionDecision doesConditionMatch(
         String realm,
         Subject subject,
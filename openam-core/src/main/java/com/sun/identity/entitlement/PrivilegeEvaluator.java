@@ -66,6 +66,7 @@ class PrivilegeEvaluator {
     private String requestedResourceName;
     private Map<String, Set<String>> envParameters;
     private ResourceSearchIndexes indexes;
+    private BatchPrivilegeSearch batchSearch;
     private List<List<Entitlement>> resultQ = new
         LinkedList<List<Entitlement>>();
     private Application application;
@@ -253,6 +254,39 @@ class PrivilegeEvaluator {
 
     }
 
+    /**
+     * Returns list of entitlements which is entitled to a subject, for one of the resources of a batch request.
+     *
+     * @param realm Realm Name.
+     * @param adminSubject Administrator subject which is used for evaluation.
+     * @param subject Subject to be evaluated.
+     * @param applicationName Application Name.
+     * @param normalisedResourceName The normalised resource name, which must be one of those searched for by the
+     * batch search.
+     * @param requestedResourceName The requested resource name.
+     * @param envParameters Environment parameters.
+     * @param batchSearch The privilege search shared by all resources of the batch.
+     * @return list of entitlements for the resource.
+     * @throws com.sun.identity.entitlement.EntitlementException if
+     * evaluation fails.
+     */
+    public List<Entitlement> evaluate(
+        String realm,
+        Subject adminSubject,
+        Subject subject,
+        String applicationName,
+        String normalisedResourceName,
+        String requestedResourceName,
+        Map<String, Set<String>> envParameters,
+        BatchPrivilegeSearch batchSearch
+    ) throws EntitlementException {
+        init(adminSubject, subject, realm, applicationName,
+            normalisedResourceName, requestedResourceName, null, envParameters, batchSearch.isRecursive());
+        this.batchSearch = batchSearch;
+
+        return evaluate(realm);
+    }
+
     /**
      * Responsible for the core evaluation of policies associated with the request resource.
      *
@@ -266,11 +300,20 @@ class PrivilegeEvaluator {
     private List<Entitlement> evaluate(String realm) throws EntitlementException {
         final Debug debug = PolicyConstants.DEBUG;
 
-        // Search for relevant policies.
-        final SubjectAttributesManager sam = SubjectAttributesManager.getInstance(adminSubject, realm);
-        final Set<String> subjectIndexes = sam.getSubjectSearchFilter(subject, applicationName);
-        final PrivilegeIndexStore indexStore = PrivilegeIndexStore.getInstance(adminSubject, realm);
-        final Iterator<IPrivilege> policyIterator = indexStore.search(realm, indexes, subjectIndexes, recursive);
+        // Search for relevant policies, and define an evaluation context.
+        final Iterator<IPrivilege> policyIterator;
+        final PrivilegeEvaluatorContext context;
+        if (batchSearch == null) {
+            final SubjectAttributesManager sam = SubjectAttributesManager.getInstance(adminSubject, realm);
+            final Set<String> subjectIndexes = sam.getSubjectSearchFilter(subject, applicationName);
+            final PrivilegeIndexStore indexStore = PrivilegeIndexStore.getInstance(adminSubject, realm);
+            policyIterator = indexStore.search(realm, indexes, subjectIndexes, recursive);
+            context = new PrivilegeEvaluatorContext(realm, normalisedResourceName, applicationName);
+        } else {
+            policyIterator = batchSearch.search(normalisedResourceName);
+            context = new PrivilegeEvaluatorContext(realm, normalisedResourceName, applicationName,
+                    batchSearch.getSubjectDecisionCache());
+        }
 
         int totalCount = 0;
         IPrivilege policy;
@@ -294,9 +337,6 @@ class PrivilegeEvaluator {
             totalCount++;
         }
 
-        // Define an evaluation context.
-        final PrivilegeEvaluatorContext context =
-                new PrivilegeEvaluatorContext(realm, normalisedResourceName, applicationName);
         final Object appToken = AppTokenHandler.getAndClear();
 
         // Submit additional policies to be executed by worker threads.
@@ -416,6 +456,8 @@ class PrivilegeEvaluator {
         }
 
         public void run() {
+            // The task may run on the thread of the caller, whose own context must be restored afterwards
+            PrivilegeEvaluatorContext previous = PrivilegeEvaluatorContext.getCurrent();
             PrivilegeEvaluatorContext.setCurrent(ctx);
             
             try {
@@ -454,6 +496,8 @@ class PrivilegeEvaluator {
                 } else {
                     parent.eException = ex;
                 }
+            } finally {
+                PrivilegeEvaluatorContext.setCurrent(previous);
             }
         }
     }
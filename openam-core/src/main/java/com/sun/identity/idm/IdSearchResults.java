@@ -27,7 +27,7 @@
  */
 
 /*
- * Portions Copyrighted [2011] [ForgeRock AS]
+ * Portions Copyrighted 2011-2016 ForgeRock AS.
  */
 package com.sun.identity.idm;
 
@@ -74,6 +74,8 @@ public class IdSearchResults {
 
     private String org;
 
+    private String pagedResultsCookie;
+
     public IdSearchResults(IdType type, String orgName) {
         searchType = type;
         org = orgName;
@@ -145,6 +147,26 @@ public class IdSearchResults {
         errorCode = error;
     }
 
+    /**
+     * Returns the cookie identifying the next page of results, when a single page of results was requested.
+     *
+     * @return The paged results cookie, or <code>null</code> if there are no more results or the search was not
+     *         paged.
+     */
+    public String getPagedResultsCookie() {
+        return pagedResultsCookie;
+    }
+
+    /**
+     * Sets the cookie identifying the next page of results.
+     *
+     * @param pagedResultsCookie
+     *            The paged results cookie, or <code>null</code> if there are no more results.
+     */
+    public void setPagedResultsCookie(String pagedResultsCookie) {
+        this.pagedResultsCookie = pagedResultsCookie;
+    }
+
     protected IdType getType() {
         return searchType;
     }
@@ -24,6 +24,7 @@
  *
  * $Id: RepoSearchResults.java,v 1.3 2008/06/25 05:43:29 qcheng Exp $
  *
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 
 package com.sun.identity.idm;
@@ -71,6 +72,8 @@ public class RepoSearchResults {
 
     private IdType searchType;
 
+    private String pagedResultsCookie;
+
     /**
      * Constructs the <code>RepoSearchResults</code> object.
      * 
@@ -133,4 +136,24 @@ public class RepoSearchResults {
         return searchType;
     }
 
+    /**
+     * Returns the cookie identifying the next page of results, when a single page of results was requested.
+     *
+     * @return The paged results cookie, or <code>null</code> if there are no more results or the search was not
+     *         paged.
+     */
+    public String getPagedResultsCookie() {
+        return pagedResultsCookie;
+    }
+
+    /**
+     * Sets the cookie identifying the next page of results.
+     *
+     * @param pagedResultsCookie
+     *            The paged results cookie, or <code>null</code> if there are no more results.
+     */
+    public void setPagedResultsCookie(String pagedResultsCookie) {
+        this.pagedResultsCookie = pagedResultsCookie;
+    }
+
 }
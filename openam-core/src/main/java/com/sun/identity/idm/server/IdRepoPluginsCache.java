@@ -29,20 +29,29 @@
 
 package com.sun.identity.idm.server;
 
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
 import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.audit.context.AMExecutorServiceFactory;
+import org.forgerock.openam.core.realms.RealmStateCache;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.sso.SSOException;
@@ -70,12 +79,21 @@ import com.sun.identity.sm.ServiceManager;
 import com.sun.identity.sm.ServiceSchemaManager;
 
 /**
+ * Caches the IdRepo plugins of each organization, which are created when the organization is first used.
+ * <p>
+ * When {@link RealmStateCache#MAX_RESIDENT_PROPERTY} or {@link RealmStateCache#IDLE_MINUTES_PROPERTY} is set, the
+ * plugins of organizations which have not been used for a while are shut down, least recently used first, to
+ * release their connections. The plugins of the root organization and of organizations used within the last minute
+ * are kept.
  *
  * @author aravind
  */
 public class IdRepoPluginsCache implements ServiceListener {
     
     static Debug debug = Debug.getInstance("amIdm");
+    private static final long MIN_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final MetricsRegistry.Counter EVICTIONS = MetricsRegistry.getInstance().counter(
+            "openam_realm_state_evictions_total", "Number of realms whose state has been evicted", "cache", "cause");
     static boolean initializedListeners;
     static ServiceConfigManager idRepoServiceConfigManager;
     private static int svcRevisionNumber;
@@ -85,6 +103,8 @@ public class IdRepoPluginsCache implements ServiceListener {
     private Map idrepoPlugins = new HashMap();
     // Needs to synchronized for get(), put() and clear()
     private Map readonlyPlugins = new Hashtable();
+    // Time each organization's plugins were last requested
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
 
     private final ScheduledExecutorService scheduler;
     
@@ -98,6 +118,22 @@ public class IdRepoPluginsCache implements ServiceListener {
                 .createScheduledService(1, "IdRepoPlugin");
 
         initializeListeners();
+
+        int maxResident = SystemProperties.getAsInt(RealmStateCache.MAX_RESIDENT_PROPERTY, 0);
+        int idleMinutes = SystemProperties.getAsInt(RealmStateCache.IDLE_MINUTES_PROPERTY, 0);
+        if (maxResident > 0 || idleMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(new EvictIdleOrganizations(maxResident, idleMinutes), 1, 1,
+                    TimeUnit.MINUTES);
+        }
+        MetricsRegistry.getInstance().gauge("openam_realm_state_idrepo_resident",
+                "Number of realms whose idrepo state is resident", new MetricsRegistry.Gauge() {
+                    @Override
+                    public long getValue() {
+                        synchronized (idrepoPlugins) {
+                            return idrepoPlugins.size();
+                        }
+                    }
+                });
     }
 
     @SuppressWarnings("unchecked")
@@ -110,6 +146,7 @@ public class IdRepoPluginsCache implements ServiceListener {
         // Check the cache
         Map orgRepos = null;
         orgName = DNUtils.normalizeDN(orgName);
+        lastUsed.put(orgName, currentTimeMillis());
         Set readOrgRepos = (Set) readonlyPlugins.get(orgName);
         if ((readOrgRepos != null) && !readOrgRepos.isEmpty()) {
             return (readOrgRepos);
@@ -293,6 +330,10 @@ public class IdRepoPluginsCache implements ServiceListener {
             clearReadOnlyPlugins(orgName);
             idrepos = (Map) idrepoPlugins.remove(orgName);
         }
+        lastUsed.remove(orgName);
+        if (idrepos == null) {
+            return;
+        }
         if (debug.messageEnabled()) {
             debug.message("IdRepoPluginsCache.removeIdRepo for " +
                 "OrgName: " + orgName + " Repo Names: " + idrepos.keySet());
@@ -317,6 +358,7 @@ public class IdRepoPluginsCache implements ServiceListener {
             idrepoPlugins.clear();
             readonlyPlugins.clear();
         }
+        lastUsed.clear();
         // Iterate throught the orgName and shutdown the repos
         for (Iterator onames = cache.keySet().iterator(); onames.hasNext();) {
             Map repos = (Map) cache.get(onames.next());
@@ -687,6 +729,72 @@ public class IdRepoPluginsCache implements ServiceListener {
         clearIdRepoPluginsCache();
     }
     
+    /**
+     * Shuts down the plugins of organizations which have been idle for too long, and of the least recently used
+     * organizations while more organizations than allowed have plugins.
+     */
+    private class EvictIdleOrganizations implements Runnable {
+
+        private final int maxResident;
+        private final long idleMillis;
+
+        EvictIdleOrganizations(int maxResident, int idleMinutes) {
+            this.maxResident = maxResident;
+            this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        }
+
+        @Override
+        public void run() {
+            try {
+                String rootOrg = DNUtils.normalizeDN(ServiceManager.getBaseDN());
+                List<String> resident;
+                synchronized (idrepoPlugins) {
+                    resident = new ArrayList<String>(idrepoPlugins.keySet());
+                }
+                final Map<String, Long> lastUsedSnapshot = new HashMap<>();
+                for (String orgName : resident) {
+                    Long used = lastUsed.get(orgName);
+                    lastUsedSnapshot.put(orgName, used == null ? 0L : used);
+                }
+                resident.remove(rootOrg);
+                Collections.sort(resident, new Comparator<String>() {
+                    @Override
+                    public int compare(String first, String second) {
+                        return Long.compare(lastUsedSnapshot.get(first), lastUsedSnapshot.get(second));
+                    }
+                });
+                long now = currentTimeMillis();
+                int residentCount = lastUsedSnapshot.size();
+                for (String orgName : resident) {
+                    long idle = now - lastUsedSnapshot.get(orgName);
+                    String cause;
+                    if (idleMillis > 0 && idle >= idleMillis) {
+                        cause = "expired";
+                    } else if (maxResident > 0 && residentCount > maxResident && idle >= MIN_IDLE_MILLIS) {
+                        cause = "size";
+                    } else {
+                        // Organizations are in least recently used order, so none of the others can be evicted
+                        break;
+                    }
+                    Long used = lastUsed.get(orgName);
+                    if (used != null && used != lastUsedSnapshot.get(orgName).longValue()) {
+                        // Used since the snapshot was taken
+                        continue;
+                    }
+                    if (debug.messageEnabled()) {
+                        debug.message("IdRepoPluginsCache.EvictIdleOrganizations: shutting down plugins of "
+                                + orgName + ", idle for " + idle + "ms");
+                    }
+                    removeIdRepo(orgName);
+                    EVICTIONS.increment("idrepo", cause);
+                    residentCount--;
+                }
+            } catch (RuntimeException e) {
+                debug.error("IdRepoPluginsCache.EvictIdleOrganizations: unable to evict idle organizations", e);
+            }
+        }
+    }
+
     // Timer task to shutdown IdRepo plugins
      private class ShutdownIdRepoPlugin implements Runnable {
          
@@ -71,6 +71,7 @@ import com.sun.identity.sm.ServiceManager;
 import com.sun.identity.sm.ServiceSchema;
 import com.sun.identity.sm.ServiceSchemaManager;
 import org.forgerock.openam.ldap.LDAPUtils;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.utils.CollectionUtils;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.util.thread.listener.ShutdownListener;
@@ -92,6 +93,10 @@ public class IdServicesImpl implements IdServices {
 
    protected static final Debug DEBUG = Debug.getInstance("amIdm");
 
+   private static final MetricsRegistry.Timer IDREPO_TIMER = MetricsRegistry.getInstance().timer(
+           "openam_idrepo_operation_seconds", "Duration of calls to identity repository plugins",
+           "plugin", "operation");
+
    // Cache to hold special identities stored in SpecialRepo
    protected Set specialIdentityNames;
    protected IdSearchResults specialIdentities;
@@ -138,6 +143,13 @@ public class IdServicesImpl implements IdServices {
        idrepoCache = new IdRepoPluginsCache();
    }
 
+   /**
+    * Records the duration of a call to an identity repository plugin, labelled by the class of the plugin.
+    */
+   private static void recordIdRepoTime(IdRepo idRepo, String operation, long startTime) {
+       IDREPO_TIMER.recordSince(startTime, idRepo.getClass().getName(), operation);
+   }
+
    public void reinitialize() {
        idrepoCache.initializeListeners();
    }
@@ -295,6 +307,7 @@ public class IdServicesImpl implements IdServices {
                    DEBUG.message("IdServicesImpl.authenticate: AuthN to {} in org: {}",
                        idRepo.getClass().getName(), orgName);
                }
+               long startTime = System.nanoTime();
                try {
                    if (idRepo.authenticate(credentials)) {
                        // Successfully authenticated
@@ -314,6 +327,8 @@ public class IdServicesImpl implements IdServices {
                    if (authException == null) {
                        authException = authex;
                    }
+               } finally {
+                   recordIdRepoTime(idRepo, "authenticate", startTime);
                }
            } else if (DEBUG.messageEnabled()) {
                DEBUG.message("IdServicesImpl.authenticate: AuthN not supported by " + idRepo.getClass().getName());
@@ -416,6 +431,7 @@ public class IdServicesImpl implements IdServices {
        IdRepo idRepo;
        while (it.hasNext()) {
            idRepo = (IdRepo) it.next();
+           long startTime = System.nanoTime();
            try {
 
                Map cMap = idRepo.getConfiguration(); // do stuff to map attr
@@ -455,6 +471,8 @@ public class IdServicesImpl implements IdServices {
                }
                noOfSuccess--;
                origEx = (origEx == null) ? ide : origEx;
+           } finally {
+               recordIdRepoTime(idRepo, "create", startTime);
            }
        }
        AMIdentity id = new AMIdentity(token, name, type, amOrgName, amsdkdn);
@@ -532,6 +550,7 @@ public class IdServicesImpl implements IdServices {
        IdRepo idRepo;
        while (it.hasNext()) {
            idRepo = (IdRepo) it.next();
+           long startTime = System.nanoTime();
            try {
                if (idRepo.getClass().getName()
                    .equals(IdConstants.AMSDK_PLUGIN) && amsdkDN != null) {
@@ -566,6 +585,8 @@ public class IdServicesImpl implements IdServices {
                if (!ide.getErrorCode().equalsIgnoreCase(IdRepoErrorCode.UNABLE_FIND_ENTRY)) {
                    origEx = ide;
                }
+           } finally {
+               recordIdRepoTime(idRepo, "delete", startTime);
            }
        }
        if ((noOfSuccess <= 0) && (origEx != null)) {
@@ -657,6 +678,7 @@ public class IdServicesImpl implements IdServices {
        IdRepo idRepo;
        while (it.hasNext()) {
            idRepo = (IdRepo) it.next();
+           long startTime = System.nanoTime();
            try {
                Map cMap = idRepo.getConfiguration();
                // do stuff to map attr names.
@@ -706,6 +728,8 @@ public class IdServicesImpl implements IdServices {
                }
                noOfSuccess--;
                origEx = (origEx == null) ? ide : origEx;
+           } finally {
+               recordIdRepoTime(idRepo, "getAttributes", startTime);
            }
        }
 
@@ -769,6 +793,7 @@ public class IdServicesImpl implements IdServices {
 
        while (it.hasNext()) {
            IdRepo idRepo = (IdRepo) it.next();
+           long startTime = System.nanoTime();
            try {
                Map cMap = idRepo.getConfiguration();
                Map aMap = null;
@@ -818,6 +843,8 @@ public class IdServicesImpl implements IdServices {
                }
                noOfSuccess--;
                origEx = (origEx == null) ? ide : origEx;
+           } finally {
+               recordIdRepoTime(idRepo, "getAttributes", startTime);
            }
        }
        if (noOfSuccess == 0) {
@@ -1087,7 +1114,12 @@ public class IdServicesImpl implements IdServices {
        try {
            while (it.hasNext()) {
                IdRepo idRepo = (IdRepo) it.next();
-               exists = idRepo.isExists(token, type, name);
+               long startTime = System.nanoTime();
+               try {
+                   exists = idRepo.isExists(token, type, name);
+               } finally {
+                   recordIdRepoTime(idRepo, "isExists", startTime);
+               }
                if (exists) {
                    break;
                }
@@ -1143,14 +1175,24 @@ public class IdServicesImpl implements IdServices {
            try {
                if (idRepo.getClass().getName().equals(
                    IdConstants.AMSDK_PLUGIN) && (amsdkDN != null)) {
-                   active = idRepo.isActive(token, type, amsdkDN);
+                   long startTime = System.nanoTime();
+                   try {
+                       active = idRepo.isActive(token, type, amsdkDN);
+                   } finally {
+                       recordIdRepoTime(idRepo, "isActive", startTime);
+                   }
                } else if (idRepo.getClass().getName().equals(
                    IdConstants.SPECIAL_PLUGIN)) {
                    // Already checked above
                    noOfSuccess--;
                    continue;
                } else {
-                   active = idRepo.isActive(token, type, name);
+                   long startTime = System.nanoTime();
+                   try {
+                       active = idRepo.isActive(token, type, name);
+                   } finally {
+                       recordIdRepoTime(idRepo, "isActive", startTime);
+                   }
                }
                if (!active) {
                    break;
@@ -1475,6 +1517,12 @@ public class IdServicesImpl implements IdServices {
            throw new IdRepoException(IdRepoBundle.BUNDLE_NAME, IdRepoErrorCode.NO_PLUGINS_CONFIGURED, null);
        }
 
+       // A paged results cookie identifies a position in the results of a single data store, so when several data
+       // stores are searched all of their results are returned at once.
+       if (crestQuery.isPaged() && configuredPluginClasses.size() > 1) {
+           crestQuery = crestQuery.withoutPaging();
+       }
+
        Iterator it = configuredPluginClasses.iterator();
        int noOfSuccess = configuredPluginClasses.size();
        IdRepo idRepo;
@@ -1501,6 +1549,7 @@ public class IdServicesImpl implements IdServices {
 
        while (it.hasNext()) {
            idRepo = (IdRepo) it.next();
+           long startTime = System.nanoTime();
            try {
                Map cMap = idRepo.getConfiguration();
                RepoSearchResults results;
@@ -1543,6 +1592,8 @@ public class IdServicesImpl implements IdServices {
                }
                noOfSuccess--;
                origEx = (origEx == null) ? ide :origEx;
+           } finally {
+               recordIdRepoTime(idRepo, "search", startTime);
            }
        }
 
@@ -1559,6 +1610,9 @@ public class IdServicesImpl implements IdServices {
 
        IdSearchResults res = combineSearchResults(token, arrayOfResult, iterNo, type, amOrgName,
                amsdkIncluded, amsdkResults);
+       if (crestQuery.isPaged() && iterNo == 1 && !amsdkIncluded) {
+           res.setPagedResultsCookie(((RepoSearchResults) arrayOfResult[0][0]).getPagedResultsCookie());
+       }
 
        if (checkPermissionOnObjects) {
            IdSearchResults newRes = new IdSearchResults(type, amOrgName);
@@ -1573,6 +1627,7 @@ public class IdServicesImpl implements IdServices {
                    // Ignore & continue
                }
            }
+           newRes.setPagedResultsCookie(res.getPagedResultsCookie());
            res = newRes;
        }
        return res;
@@ -1684,6 +1739,7 @@ public class IdServicesImpl implements IdServices {
        IdRepo idRepo;
        while (it.hasNext()) {
            idRepo = (IdRepo) it.next();
+           long startTime = System.nanoTime();
            try {
                Map cMap = idRepo.getConfiguration();
                // do stuff to map attr names.
@@ -1738,6 +1794,8 @@ public class IdServicesImpl implements IdServices {
                        || (origEx == null)) {
                    origEx = ide;
                }
+           } finally {
+               recordIdRepoTime(idRepo, "setAttributes", startTime);
            }
        }
        if (noOfSuccess == 0) {
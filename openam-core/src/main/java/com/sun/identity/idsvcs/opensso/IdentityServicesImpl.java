@@ -55,6 +55,7 @@ import org.forgerock.openam.ldap.LDAPUtils;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.openam.utils.StringUtils;
 import org.forgerock.util.Reject;
+import org.forgerock.util.promise.ResultHandler;
 
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.sso.SSOException;
@@ -496,6 +497,32 @@ public class IdentityServicesImpl implements com.sun.identity.idsvcs.IdentitySer
                                                        SSOToken admin)
             throws ResourceException {
 
+        final List<IdentityDetails> result = new ArrayList<>();
+        searchIdentityDetails(crestQuery.withoutPaging(), searchModifiers, admin, new ResultHandler<IdentityDetails>() {
+            @Override
+            public void handleResult(IdentityDetails identityDetails) {
+                result.add(identityDetails);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Searches the identity repository to find the identities that match the search criteria and passes each of them
+     * to the handler. If the CREST query requests a single page of results and the identities are held in a single
+     * data store which supports paging, only that page is read from the data store.
+     *
+     * @param crestQuery A CREST Query object which will contain either a _queryId or a _queryFilter, and optionally
+     * the page size and paged results cookie.
+     * @param searchModifiers The search modifiers
+     * @param admin Your SSO token.
+     * @param handler The handler to pass the matching identities to.
+     * @return The cookie identifying the next page of results, or {@code null} if there are no more results.
+     * @throws ResourceException
+     */
+    public String searchIdentityDetails(CrestQuery crestQuery, Map<String, Set<String>> searchModifiers,
+            SSOToken admin, ResultHandler<IdentityDetails> handler) throws ResourceException {
+
         try {
             String realm = "/";
             String objectType = "User";
@@ -507,12 +534,14 @@ public class IdentityServicesImpl implements com.sun.identity.idsvcs.IdentitySer
             IdType idType = getIdType(objectType);
 
             if (idType != null) {
-                List<AMIdentity> identities = fetchAMIdentities(idType, crestQuery, true, repo, searchModifiers);
-                List<IdentityDetails> result = new ArrayList<>();
-                for (AMIdentity identity : identities) {
-                    result.add(convertToIdentityDetails(identity, null));
+                IdSearchResults searchResults = searchIdentities(idType, crestQuery, true, repo, searchModifiers);
+                if (searchResults == null) {
+                    return null;
+                }
+                for (AMIdentity identity : (Set<AMIdentity>) searchResults.getSearchResults()) {
+                    handler.handleResult(convertToIdentityDetails(identity, null));
                 }
-                return result;
+                return searchResults.getPagedResultsCookie();
             }
             debug.error("IdentityServicesImpl.searchIdentities unsupported IdType " + objectType);
             throw new BadRequestException("searchIdentities: unsupported IdType " + objectType);
@@ -992,35 +1021,31 @@ public class IdentityServicesImpl implements com.sun.identity.idsvcs.IdentitySer
                                             boolean fetchAllAttrs, AMIdentityRepository repo, Map searchModifiers)
             throws IdRepoException, ObjectNotFound, SSOException {
 
-        IdSearchControl searchControl = new IdSearchControl();
-        IdSearchResults searchResults;
-        List<AMIdentity> identities;
-
-        if (isOperationSupported(repo, type, IdOperation.READ)) {
-            Set<AMIdentity> resultSet;
-
-            if (fetchAllAttrs) {
-                searchControl.setAllReturnAttributes(true);
-            } else {
-                searchControl.setAllReturnAttributes(false);
-            }
-
-            if (searchModifiers != null) {
-                searchControl.setSearchModifiers(IdSearchOpModifier.AND, searchModifiers);
-            }
-
-            searchResults = repo.searchIdentities(type, crestQuery, searchControl);
-            resultSet = searchResults.getSearchResults();
-            identities = new ArrayList<>(resultSet);
-        } else {
+        IdSearchResults searchResults = searchIdentities(type, crestQuery.withoutPaging(), fetchAllAttrs, repo,
+                searchModifiers);
+        if (searchResults == null) {
             // A list is expected back
             /*
              * TODO: throw an exception instead of returning an empty list
              */
-            identities = new ArrayList<>();
+            return new ArrayList<>();
         }
+        return new ArrayList<AMIdentity>(searchResults.getSearchResults());
+    }
 
-        return identities;
+    private IdSearchResults searchIdentities(IdType type, CrestQuery crestQuery, boolean fetchAllAttrs,
+            AMIdentityRepository repo, Map searchModifiers) throws IdRepoException, ObjectNotFound, SSOException {
+
+        if (!isOperationSupported(repo, type, IdOperation.READ)) {
+            return null;
+        }
+
+        IdSearchControl searchControl = new IdSearchControl();
+        searchControl.setAllReturnAttributes(fetchAllAttrs);
+        if (searchModifiers != null) {
+            searchControl.setSearchModifiers(IdSearchOpModifier.AND, searchModifiers);
+        }
+        return repo.searchIdentities(type, crestQuery, searchControl);
     }
 
    private AMIdentity getAMIdentity(SSOToken ssoToken, AMIdentityRepository repo, String guid, IdType idType)
@@ -0,0 +1,447 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.policy.client;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.util.annotations.VisibleForTesting;
+
+/**
+ * Concurrent store of the policy decisions cached by the client SDK, keyed by service name, resource name, session
+ * token ID and scope.
+ * <p>
+ * Reads never block: every level of the cache is a {@link ConcurrentHashMap}, and each cached decision is an
+ * immutable {@link CachedDecision} carrying its own expiry time, which is replaced as a whole rather than updated in
+ * place. An index of the resources cached for each session token allows the decisions of a single token to be
+ * removed on logout without visiting every cached resource. A decision is indexed before it is cached, and indexed
+ * again until its index entry is seen to be in place afterwards, while removals take index entries away before the
+ * decisions, so a decision cached while the token is being removed is either removed too or indexed afresh.
+ * <p>
+ * The number of resources cached per service, and the number of tokens cached per resource, are bounded by the
+ * configured caps. When a cap is exceeded, expired decisions are purged first and then the least recently used
+ * entries are evicted until the cap is respected again, with some headroom. Evicted decisions are removed from the
+ * index of their token.
+ */
+final class PolicyDecisionCache {
+
+    private static final int EVICTION_DIVISOR = 10;
+    // Access times are recorded to about a millisecond, so that hot entries are not written on every read
+    private static final int ACCESS_TIME_SHIFT = 20;
+
+    //serviceName -> resourceName -> tokenID -> scope -> decision
+    private final ConcurrentMap<String, ConcurrentMap<String, Node<Node<CachedDecision>>>> decisions
+            = new ConcurrentHashMap<>();
+
+    //tokenID -> serviceName -> resourceNames
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> tokenIndex
+            = new ConcurrentHashMap<>();
+
+    private volatile int resourceCap;
+    private volatile int sessionCap;
+
+    /**
+     * Constructs a new cache.
+     *
+     * @param resourceCap Maximum number of resources cached per service.
+     * @param sessionCap Maximum number of session tokens cached per resource.
+     */
+    PolicyDecisionCache(int resourceCap, int sessionCap) {
+        setCaps(resourceCap, sessionCap);
+    }
+
+    /**
+     * Updates the caps of the cache. The new caps are enforced as further decisions are cached.
+     *
+     * @param resourceCap Maximum number of resources cached per service.
+     * @param sessionCap Maximum number of session tokens cached per resource.
+     */
+    void setCaps(int resourceCap, int sessionCap) {
+        this.resourceCap = Math.max(1, resourceCap);
+        this.sessionCap = Math.max(1, sessionCap);
+    }
+
+    /**
+     * Returns the cached decision, whether or not it has expired.
+     *
+     * @param serviceName Service name.
+     * @param resourceName Resource name.
+     * @param tokenID Session token ID of the subject.
+     * @param scope Scope of the decision.
+     * @return The cached decision, or {@code null} if none is cached.
+     */
+    CachedDecision get(String serviceName, String resourceName, String tokenID, String scope) {
+        Map<String, Node<Node<CachedDecision>>> resources = decisions.get(serviceName);
+        if (resources == null) {
+            return null;
+        }
+        Node<Node<CachedDecision>> tokens = resources.get(resourceName);
+        if (tokens == null) {
+            return null;
+        }
+        Node<CachedDecision> scopes = tokens.children.get(tokenID);
+        if (scopes == null) {
+            return null;
+        }
+        CachedDecision decision = scopes.children.get(scope);
+        if (decision != null) {
+            long now = accessTime();
+            tokens.touch(now);
+            scopes.touch(now);
+        }
+        return decision;
+    }
+
+    /**
+     * Caches a decision, replacing any decision cached for the same key.
+     *
+     * @param serviceName Service name.
+     * @param resourceName Resource name.
+     * @param tokenID Session token ID of the subject.
+     * @param scope Scope of the decision.
+     * @param decision The decision to cache.
+     * @return {@code true} if no decisions were previously cached for the token, in which case the caller should
+     * arrange for {@link #removeToken(String)} to be called when the token becomes invalid.
+     */
+    boolean put(String serviceName, String resourceName, String tokenID, String scope, CachedDecision decision) {
+        ConcurrentMap<String, Node<Node<CachedDecision>>> resources = getOrCreate(decisions, serviceName,
+                new ConcurrentHashMap<String, Node<Node<CachedDecision>>>());
+        Node<Node<CachedDecision>> tokens = getOrCreate(resources, resourceName, new Node<Node<CachedDecision>>());
+        boolean newToken;
+        ConcurrentMap<String, Set<String>> indexed;
+        do {
+            newToken = false;
+            indexed = tokenIndex.get(tokenID);
+            if (indexed == null) {
+                ConcurrentMap<String, Set<String>> created = new ConcurrentHashMap<>();
+                indexed = tokenIndex.putIfAbsent(tokenID, created);
+                if (indexed == null) {
+                    indexed = created;
+                    newToken = true;
+                }
+            }
+            index(indexed, serviceName, resourceName);
+            Node<CachedDecision> scopes = getOrCreate(tokens.children, tokenID, new Node<CachedDecision>());
+            scopes.children.put(scope, decision);
+            long now = accessTime();
+            tokens.touch(now);
+            scopes.touch(now);
+            // Index again if the token was removed, or the resource unindexed, while the decision was being cached
+        } while (tokenIndex.get(tokenID) != indexed || !isIndexed(indexed, serviceName, resourceName));
+
+        for (String evicted : evict(tokens.children, sessionCap).keySet()) {
+            unindex(evicted, serviceName, resourceName);
+        }
+        for (Map.Entry<String, Node<Node<CachedDecision>>> evicted : evict(resources, resourceCap).entrySet()) {
+            for (String evictedToken : evicted.getValue().children.keySet()) {
+                unindex(evictedToken, serviceName, evicted.getKey());
+            }
+        }
+        return newToken;
+    }
+
+    /**
+     * Removes all decisions cached for the given session token.
+     *
+     * @param tokenID Session token ID.
+     * @return {@code true} if any decisions were cached for the token.
+     */
+    boolean removeToken(String tokenID) {
+        Map<String, Set<String>> indexed = tokenIndex.remove(tokenID);
+        if (indexed == null) {
+            return false;
+        }
+        for (Map.Entry<String, Set<String>> service : indexed.entrySet()) {
+            Map<String, Node<Node<CachedDecision>>> resources = decisions.get(service.getKey());
+            if (resources == null) {
+                continue;
+            }
+            for (String resourceName : service.getValue()) {
+                Node<Node<CachedDecision>> tokens = resources.get(resourceName);
+                if (tokens != null) {
+                    tokens.children.remove(tokenID);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets that decisions are cached for the given token, without removing them, so that the next
+     * {@link #put} for the token reports it as new again.
+     *
+     * @param tokenID Session token ID.
+     */
+    void untrackToken(String tokenID) {
+        tokenIndex.remove(tokenID);
+    }
+
+    /**
+     * Returns a snapshot of the names of the resources with cached decisions for the given service.
+     *
+     * @param serviceName Service name.
+     * @return The resource names.
+     */
+    Set<String> getResourceNames(String serviceName) {
+        Map<String, ?> resources = decisions.get(serviceName);
+        if (resources == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(resources.keySet()));
+    }
+
+    /**
+     * Removes all decisions cached for the given resource of the given service, for every token.
+     *
+     * @param serviceName Service name.
+     * @param resourceName Resource name.
+     * @return {@code true} if any decisions were cached for the resource.
+     */
+    boolean removeResource(String serviceName, String resourceName) {
+        Map<String, Node<Node<CachedDecision>>> resources = decisions.get(serviceName);
+        if (resources == null) {
+            return false;
+        }
+        Node<Node<CachedDecision>> tokens = resources.remove(resourceName);
+        if (tokens == null) {
+            return false;
+        }
+        for (String tokenID : tokens.children.keySet()) {
+            unindex(tokenID, serviceName, resourceName);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all decisions cached for the given service.
+     *
+     * @param serviceName Service name.
+     */
+    void removeService(String serviceName) {
+        Map<String, Node<Node<CachedDecision>>> resources = decisions.remove(serviceName);
+        if (resources == null) {
+            return;
+        }
+        for (Map.Entry<String, Node<Node<CachedDecision>>> resource : resources.entrySet()) {
+            for (String tokenID : resource.getValue().children.keySet()) {
+                unindex(tokenID, serviceName, resource.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the names of the resources indexed for the given token and service.
+     *
+     * @param tokenID Session token ID.
+     * @param serviceName Service name.
+     * @return The resource names.
+     */
+    @VisibleForTesting
+    Set<String> getIndexedResourceNames(String tokenID, String serviceName) {
+        Map<String, Set<String>> indexed = tokenIndex.get(tokenID);
+        Set<String> resourceNames = indexed == null ? null : indexed.get(serviceName);
+        return resourceNames == null ? Collections.<String>emptySet() : new HashSet<>(resourceNames);
+    }
+
+    /**
+     * Removes a resource from the index of a token, unless a decision has been cached for them again since it was
+     * removed. The index entry of the token itself is kept, as the token is still being listened to.
+     */
+    private void unindex(String tokenID, String serviceName, String resourceName) {
+        ConcurrentMap<String, Set<String>> indexed = tokenIndex.get(tokenID);
+        Set<String> resourceNames = indexed == null ? null : indexed.get(serviceName);
+        if (resourceNames == null || !resourceNames.remove(resourceName)) {
+            return;
+        }
+        if (isCached(serviceName, resourceName, tokenID)) {
+            // A decision was cached for the resource again while it was being unindexed
+            index(indexed, serviceName, resourceName);
+        } else {
+            // Only removes the resource names of the service if no resource has been indexed for it meanwhile
+            indexed.remove(serviceName, Collections.<String>emptySet());
+        }
+    }
+
+    private static void index(ConcurrentMap<String, Set<String>> indexed, String serviceName, String resourceName) {
+        getOrCreate(indexed, serviceName, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()))
+                .add(resourceName);
+    }
+
+    private static boolean isIndexed(Map<String, Set<String>> indexed, String serviceName, String resourceName) {
+        Set<String> resourceNames = indexed.get(serviceName);
+        return resourceNames != null && resourceNames.contains(resourceName);
+    }
+
+    private boolean isCached(String serviceName, String resourceName, String tokenID) {
+        Map<String, Node<Node<CachedDecision>>> resources = decisions.get(serviceName);
+        Node<Node<CachedDecision>> tokens = resources == null ? null : resources.get(resourceName);
+        return tokens != null && tokens.children.containsKey(tokenID);
+    }
+
+    private static <K, V> V getOrCreate(ConcurrentMap<K, V> map, K key, V created) {
+        V existing = map.get(key);
+        if (existing == null) {
+            existing = map.putIfAbsent(key, created);
+            if (existing == null) {
+                existing = created;
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Removes expired entries from the given map if it exceeds the cap, and then the least recently used entries until
+     * it is below the cap.
+     *
+     * @return The removed entries.
+     */
+    private static <N extends Node<?>> Map<String, N> evict(ConcurrentMap<String, N> map, int cap) {
+        if (map.size() <= cap) {
+            return Collections.emptyMap();
+        }
+        Map<String, N> evicted = new HashMap<>();
+        List<Candidate<N>> candidates = new ArrayList<>();
+        long now = currentTimeMillis();
+        for (Map.Entry<String, N> entry : map.entrySet()) {
+            if (!isExpired(entry.getValue(), now)) {
+                candidates.add(new Candidate<>(entry.getKey(), entry.getValue()));
+            } else if (map.remove(entry.getKey(), entry.getValue())) {
+                evicted.put(entry.getKey(), entry.getValue());
+            }
+        }
+        // Evict below the cap so that the cost of a purge is spread over the following puts
+        int excess = map.size() - (cap - cap / EVICTION_DIVISOR);
+        if (excess > 0) {
+            Collections.sort(candidates, LEAST_RECENTLY_USED);
+            for (int i = 0; i < candidates.size() && excess > 0; i++) {
+                Candidate<N> candidate = candidates.get(i);
+                if (map.remove(candidate.key, candidate.node)) {
+                    evicted.put(candidate.key, candidate.node);
+                    excess--;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    private static boolean isExpired(Object value, long now) {
+        if (value instanceof CachedDecision) {
+            return ((CachedDecision) value).getExpiryTime() < now;
+        }
+        if (value instanceof Node) {
+            for (Object child : ((Node<?>) value).children.values()) {
+                if (!isExpired(child, now)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static long accessTime() {
+        return System.nanoTime() >> ACCESS_TIME_SHIFT;
+    }
+
+    private static final Comparator<Candidate<?>> LEAST_RECENTLY_USED = new Comparator<Candidate<?>>() {
+        @Override
+        public int compare(Candidate<?> first, Candidate<?> second) {
+            return Long.compare(first.lastAccess, second.lastAccess);
+        }
+    };
+
+    /**
+     * A level of the cache, together with the time it was last accessed.
+     */
+    private static final class Node<V> {
+        private final ConcurrentMap<String, V> children = new ConcurrentHashMap<>();
+        private volatile long lastAccess = accessTime();
+
+        private void touch(long now) {
+            if (lastAccess != now) {
+                lastAccess = now;
+            }
+        }
+    }
+
+    /**
+     * An entry considered for eviction, with its access time read once so that it is stable while sorting.
+     */
+    private static final class Candidate<N extends Node<?>> {
+        private final String key;
+        private final N node;
+        private final long lastAccess;
+
+        private Candidate(String key, N node) {
+            this.key = key;
+            this.node = node;
+            this.lastAccess = ((Node<?>) node).lastAccess;
+        }
+    }
+
+    /**
+     * An immutable cached policy decision, together with the request parameters it was obtained for.
+     */
+    static final class CachedDecision {
+
+        private final Set resourceResults;
+        private final Map env;
+        private final long expiryTime;
+        private final Set actionNames;
+
+        /**
+         * Constructs a cached decision. The caller must not modify the given collections after caching the decision.
+         *
+         * @param resourceResults Resource results returned by the policy service.
+         * @param env Environment map the decision was requested with.
+         * @param expiryTime Time in milliseconds after which the decision must no longer be used.
+         * @param actionNames Action names the decision was requested for.
+         */
+        CachedDecision(Set resourceResults, Map env, long expiryTime, Set actionNames) {
+            this.resourceResults = resourceResults;
+            this.env = env;
+            this.expiryTime = expiryTime;
+            this.actionNames = actionNames;
+        }
+
+        Set getResourceResults() {
+            return resourceResults;
+        }
+
+        Map getEnv() {
+            return env;
+        }
+
+        long getExpiryTime() {
+            return expiryTime;
+        }
+
+        Set getActionNames() {
+            return actionNames;
+        }
+    }
+}
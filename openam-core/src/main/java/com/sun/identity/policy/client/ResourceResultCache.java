@@ -31,7 +31,6 @@ package com.sun.identity.policy.client;
 
 import static org.forgerock.openam.utils.Time.*;
 
-import com.iplanet.am.util.Cache;
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionException;
@@ -60,6 +59,7 @@ import com.sun.identity.policy.PolicyUtils;
 import com.sun.identity.policy.ResBundleUtils;
 import com.sun.identity.policy.ResourceMatch;
 import com.sun.identity.policy.ResourceResult;
+import com.sun.identity.policy.client.PolicyDecisionCache.CachedDecision;
 import com.sun.identity.policy.interfaces.ResourceName;
 import com.sun.identity.policy.remote.AdvicesHandleableByAMRequest;
 import com.sun.identity.policy.remote.AdvicesHandleableByAMResponse;
@@ -113,11 +113,9 @@ class ResourceResultCache implements SSOTokenListener {
             = Collections.synchronizedSet(new HashSet(10));
 
     //serviceName -> resourceName -> sessionId -> scope -> result
-    private Map resultCache = new HashMap(10); 
+    private final PolicyDecisionCache decisionCache;
 
     private PolicyNotificationHandler notificationHandler;
-    private Set tokenRegistry = 
-        Collections.synchronizedSet(new HashSet(10000));
     private int        cacheTtl;
     private Set        advicesHandleableByAM; 
 
@@ -168,6 +166,9 @@ class ResourceResultCache implements SSOTokenListener {
         this.policyProperties = policyProperties;
         notificationHandler = new PolicyNotificationHandler(this);
         cacheTtl = policyProperties.getCacheTtl();
+        decisionCache = new PolicyDecisionCache(
+                policyProperties.getResultsCacheResourceCap(),
+                policyProperties.getResultsCacheSessionCap());
 
         if (policyProperties.notificationEnabled()){
             //register notification handler with PLLClient
@@ -204,6 +205,9 @@ class ResourceResultCache implements SSOTokenListener {
         }  else {
             resourceResultCache.policyProperties = policyProperties;
             resourceResultCache.cacheTtl = policyProperties.getCacheTtl();
+            resourceResultCache.decisionCache.setCaps(
+                    policyProperties.getResultsCacheResourceCap(),
+                    policyProperties.getResultsCacheSessionCap());
         }
         return resourceResultCache;
     } 
@@ -436,130 +440,70 @@ class ResourceResultCache implements SSOTokenListener {
                     + ":entering ");
         }
 
-        Map resourceTokenIDsMap = null;
-        // resultCache -> serviceName -> resourceName -> sessionId -> scope -> result
-        synchronized(resultCache) {
-            // resourceName -> sessionId -> scope -> result
-            resourceTokenIDsMap = (Map)resultCache.get(serviceName);
-            if (resourceTokenIDsMap == null) {
-                // changed to fix 4295 Policy cache causes frequent 
-                // full gc or out of memory issues
-                resourceTokenIDsMap 
-                        = new Cache(policyProperties.getResultsCacheResourceCap());
-                resultCache.put(serviceName, resourceTokenIDsMap);
-            }
-        }
-
-        Map tokenIDScopesMap = null;
-        // resourceTokenIDsMap -> resourceName -> sessionId -> scope -> result
-        synchronized(resourceTokenIDsMap) {
-            // sessionId -> scope -> result
-            tokenIDScopesMap = (Map)resourceTokenIDsMap.get(resourceName);
-            if (tokenIDScopesMap == null) {
-                // changed to fix 4295 Policy cache causes frequent full 
-                // gc or out of memory issues
-                tokenIDScopesMap  
-                        = new Cache(policyProperties.getResultsCacheSessionCap());
-                resourceTokenIDsMap.put(resourceName, tokenIDScopesMap);
-            }
-        }
-
-        Map scopeResultsMap= null;
         String tokenID =  token.getTokenID().toString();
-        // tokenIDScopesMap -> sessionId -> scope -> result
-        synchronized(tokenIDScopesMap) {
-            scopeResultsMap = (Map)tokenIDScopesMap.get(tokenID);
-            if (scopeResultsMap == null) {
-                scopeResultsMap = new HashMap();
-                tokenIDScopesMap.put(tokenID, scopeResultsMap);
-                if (!tokenRegistry.contains(tokenID)) {
-                    try {
-                        token.addSSOTokenListener(this);
-                        tokenRegistry.add(tokenID);
-                    } catch (SSOTokenListenersUnsupportedException ex) {
-                        // Catching exception to avoid adding tokenID to tokenRegistry
-                        // scopeResultsMap will be populated and returned to the caller but not cached
-                        debug.message("ResourceResultCache.getResourceResults(): could not add sso listener: {}", ex.getMessage());
-                    }
-                }
-            }
-        }
-
-        Object[] results = null;
+        CachedDecision cached
+                = decisionCache.get(serviceName, resourceName, tokenID, scope);
         boolean fetchResultsFromServer = false;
-        // scopeResultsMap -> scope -> result
-        synchronized(scopeResultsMap) {
-            results = (Object[])scopeResultsMap.get(scope);
-            if ( results == null) {
 
-                //array elements:resourceResults, env, ttl, actionNames
-                results = new Object[4];
-                scopeResultsMap.put(scope, results);
+        if ( !useCache ) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since useCache is false");
             }
-
-            if ( !useCache ) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since useCache is false");
-                }
-                fetchResultsFromServer = true;
-            } else if (results[0] == null) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server "
-                            + " since results not in cache");
-                }
-                fetchResultsFromServer = true;
-            } else if ((env == null) && (results[1] != null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since env does not match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((env != null) && !env.equals(results[1])) { 
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since env does not Match");
-                }
-                fetchResultsFromServer = true;
-            } else if (((Long) results[2]).longValue()
-                    < currentTimeMillis()) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since results ttl has "
-                            + " expired");
-                }
-                fetchResultsFromServer = true;
-            } else if ((actionNames == null) && (results[3] != null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since action names do not "
-                            + " match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((actionNames != null) &&  (results[3] == null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since action names do not "
-                            + " Match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((results[3] !=null) &&!((Set)results[3]).containsAll(
-                    actionNames))  {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since cached action names "
-                            + " do not cover request action names");
-                }
-                fetchResultsFromServer = true;
-            } else if (resourceResultsHasAdvices((Set)(results[0]))
-                    && PolicyProperties.SELF.equals(cacheMode)) { 
-                //get from server if there were advices in the cached decision
-                //we do this only if cacheMode is self
-                fetchResultsFromServer = true;
-
+            fetchResultsFromServer = true;
+        } else if (cached == null) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server "
+                        + " since results not in cache");
             }
-
+            fetchResultsFromServer = true;
+        } else if ((env == null) && (cached.getEnv() != null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since env does not match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((env != null) && !env.equals(cached.getEnv())) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since env does not Match");
+            }
+            fetchResultsFromServer = true;
+        } else if (cached.getExpiryTime() < currentTimeMillis()) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since results ttl has "
+                        + " expired");
+            }
+            fetchResultsFromServer = true;
+        } else if ((actionNames == null) && (cached.getActionNames() != null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since action names do not "
+                        + " match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((actionNames != null) && (cached.getActionNames() == null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since action names do not "
+                        + " Match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((cached.getActionNames() != null)
+                && !cached.getActionNames().containsAll(actionNames))  {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since cached action names "
+                        + " do not cover request action names");
+            }
+            fetchResultsFromServer = true;
+        } else if (resourceResultsHasAdvices(cached.getResourceResults())
+                && PolicyProperties.SELF.equals(cacheMode)) { 
+            //get from server if there were advices in the cached decision
+            //we do this only if cacheMode is self
+            fetchResultsFromServer = true;
         }
 
         // changed to fix 4205 Policy client code has bottleneck when processing notificati 
@@ -575,22 +519,31 @@ class ResourceResultCache implements SSOTokenListener {
                         serviceName, token, resourceName, scope, 
                         actionNames, env);
             }
-            results[0] = resourceResults;
 
             if (env != null) {
                 env = PolicyUtils.cloneMap(env);
             }
-            results[1] = env;
-
-            results[2] 
-                    = new Long(currentTimeMillis() + cacheTtl);
 
             if (actionNames != null) {
                 Set actionNames1 = actionNames;
                 actionNames = new HashSet();
                 actionNames.addAll(actionNames1);
             }
-            results[3] = actionNames;
+
+            cached = new CachedDecision(resourceResults, env,
+                    currentTimeMillis() + cacheTtl, actionNames);
+            if (decisionCache.put(serviceName, resourceName, tokenID, scope,
+                    cached)) {
+                try {
+                    token.addSSOTokenListener(this);
+                } catch (SSOTokenListenersUnsupportedException ex) {
+                    // Untracking the token so that registration is retried
+                    // the next time a decision is cached for it
+                    debug.message("ResourceResultCache.getResourceResults(): could not add sso listener: {}",
+                            ex.getMessage());
+                    decisionCache.untrackToken(tokenID);
+                }
+            }
         } else {
             if (debug.messageEnabled()) {
                 debug.message("ResourceResultCache.getResourceResults():"
@@ -600,7 +553,7 @@ class ResourceResultCache implements SSOTokenListener {
         }
 
 
-        resourceResults = (Set)(results[0]);
+        resourceResults = cached.getResourceResults();
         if (debug.messageEnabled()) {
             debug.message("ResourceResultCache.getResourceResults("
                     + serviceName + ","
@@ -1232,42 +1185,12 @@ class ResourceResultCache implements SSOTokenListener {
         }
 
         try {
-            synchronized(resultCache) {
-                Set services = (Set)resultCache.keySet();
-                Iterator serviceIter = services.iterator();
-                while (serviceIter.hasNext()) {
-                    String serviceName = (String)serviceIter.next();
-                    Map resourceTokenIDsMap = (Map)resultCache.get(serviceName);
-                    synchronized(resourceTokenIDsMap) {
-                        Set resources = (Set)resourceTokenIDsMap.keySet();
-                        Iterator resourceIter = resources.iterator();
-                        while (resourceIter.hasNext()) {
-                            String resource = (String)resourceIter.next();
-                            Map tokenIDScopesMap 
-                                    = (Map)resourceTokenIDsMap.get(resource);
-                            if (tokenIDScopesMap != null) {
-                                tokenIDScopesMap.remove(tokenID);
-                            }
-                            
-                            boolean tokenPresent = tokenRegistry.remove(tokenID);
-                            if ( (tokenPresent == false) &&
-                                (debug.messageEnabled()) ) {
-                                debug.message("ResourceResultCache. tokenID= "
-                                    + SECRET_MASK
-                                    + " not found in Token Registry.");
-                            }
-
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                    + "ssoTokenChanged():"
-                                    + "removing cache results for "
-                                    + "tokenID=" + SECRET_MASK //mask tokenID
-                                    + ":serviceName=" + serviceName 
-                                    + ":resource=" + resource);
-                            }
-                        }
-                    }
-                }
+            boolean tokenPresent = decisionCache.removeToken(tokenID);
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.ssoTokenChanged():"
+                    + "removed cache results for "
+                    + "tokenID=" + SECRET_MASK //mask tokenID
+                    + ":tokenPresent=" + tokenPresent);
             }
         } catch (Throwable t) {
             if (debug.warningEnabled()) {
@@ -1289,10 +1212,10 @@ class ResourceResultCache implements SSOTokenListener {
             return;
         }  
 
-        Map resourceTokenIDsMap 
-                = (Map)(resourceResultCache.resultCache).get(serviceName);
-        if ((resourceTokenIDsMap == null)
-                || resourceTokenIDsMap.isEmpty()) {
+        PolicyDecisionCache decisionCache = resourceResultCache.decisionCache;
+        Set<String> cachedResourceNames
+                = decisionCache.getResourceNames(serviceName);
+        if (cachedResourceNames.isEmpty()) {
             return;
         } 
 
@@ -1307,65 +1230,38 @@ class ResourceResultCache implements SSOTokenListener {
                         + "clearCacheForResourceNames():"
                         + "affectedResourceName=" + affectedRN);
             }
-            synchronized (resourceTokenIDsMap) {
-                Set cachedResourceNames = resourceTokenIDsMap.keySet();
-                Iterator crIter = cachedResourceNames.iterator();
-                while (crIter.hasNext()) {
-                    String cachedRN = (String)crIter.next();
-                    if (debug.messageEnabled()) {
-                        debug.message("ResourceResultCache."
-                                + "clearCacheForResourceNames():"
-                                + "affectedResourceName=" + affectedRN
-                                + ":cachedResourceName=" + cachedRN);
-                    }
-                    if (affectedRN.equals(cachedRN)) {
-                        crIter.remove();
-                        if (debug.messageEnabled()) {
-                            debug.message("ResourceResultCache."
-                                    + "clearCacheForResourceNames():"
-                                    + "cleared cached results for "
-                                    + "resourceName=" + cachedRN
-                                    + ":affectedResourceName=" + affectedRN
-                                    + ":match=SAME RESOURCE NAME");
-                        }
-                    } else {
-                        ResourceMatch rm 
-                                = resourceComparator.compare( cachedRN, 
-                                affectedRN, true); //wildcard compare
-                        if (rm.equals(ResourceMatch.EXACT_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=EXACT_MATCH");
-                            }
-                        } else if (rm.equals(ResourceMatch.WILDCARD_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=WILD_CARD_MATCH");
-                            }
-                        } else if (rm.equals(
-                                ResourceMatch.SUB_RESOURCE_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=SUB_RESOURCE_MACTH");
-                            }
-                        }
+            for (String cachedRN : cachedResourceNames) {
+                if (debug.messageEnabled()) {
+                    debug.message("ResourceResultCache."
+                            + "clearCacheForResourceNames():"
+                            + "affectedResourceName=" + affectedRN
+                            + ":cachedResourceName=" + cachedRN);
+                }
+                String match = null;
+                if (affectedRN.equals(cachedRN)) {
+                    match = "SAME RESOURCE NAME";
+                } else {
+                    ResourceMatch rm 
+                            = resourceComparator.compare( cachedRN, 
+                            affectedRN, true); //wildcard compare
+                    if (rm.equals(ResourceMatch.EXACT_MATCH)) {
+                        match = "EXACT_MATCH";
+                    } else if (rm.equals(ResourceMatch.WILDCARD_MATCH)) {
+                        match = "WILD_CARD_MATCH";
+                    } else if (rm.equals(ResourceMatch.SUB_RESOURCE_MATCH)) {
+                        match = "SUB_RESOURCE_MACTH";
                     }
                 }
+                if ((match != null) 
+                        && decisionCache.removeResource(serviceName, cachedRN)
+                        && debug.messageEnabled()) {
+                    debug.message("ResourceResultCache."
+                            + "clearCacheForResourceNames():"
+                            + "cleared cached results for "
+                            + "resourceName=" + cachedRN
+                            + ":affectedResourceName=" + affectedRN
+                            + ":match=" + match);
+                }
             }
         }
     }
@@ -1567,9 +1463,7 @@ class ResourceResultCache implements SSOTokenListener {
                     + "clearCachedDecisionsForService():"
                     + "serviceName=" + serviceName);
         } 
-        synchronized(resultCache) {
-            resultCache.remove(serviceName);
-        }
+        decisionCache.removeService(serviceName);
     }
 
     /**
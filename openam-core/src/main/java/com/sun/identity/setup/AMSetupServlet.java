@@ -203,12 +203,17 @@ public class AMSetupServlet extends HttpServlet {
         if (servletCtx == null ) {
             servletCtx = config.getServletContext();
         }
+        StartupProfiler profiler = new StartupProfiler();
+        StartupProfiler.Phase bootstrap = profiler.begin("Bootstrap", false,
+                Collections.<StartupProfiler.Phase>emptyList());
         checkOpenDJUpgrade();
         checkConfigProperties();
+        profiler.end(bootstrap);
         LoginLogoutMapping.setProductInitialized(isConfiguredFlag);
-        registerListeners();
+        List<StartupProfiler.Phase> listenerPhases = registerListeners(profiler, bootstrap);
         
         if (isConfiguredFlag) {
+            StartupProfiler.Phase serverConfigSync = profiler.begin("ServerConfigSync", false, listenerPhases);
             // this will sync up bootstrap file will serverconfig.xml
             // due startup; and also register the observer.
             ServerConfigXMLObserver.getInstance().update(true);
@@ -218,6 +223,11 @@ public class AMSetupServlet extends HttpServlet {
                 Debug.getInstance(SetupConstants.DEBUG_NAME)
                         .error("AMSetupServlet.init: embedded replication sync failed.");
             }
+            profiler.end(serverConfigSync);
+        }
+        Debug setupDebug = Debug.getInstance(SetupConstants.DEBUG_NAME);
+        if (setupDebug.messageEnabled()) {
+            setupDebug.message("AMSetupServlet.init: " + profiler.getReport());
         }
         
         isVersionNewer();
@@ -2066,11 +2076,27 @@ public class AMSetupServlet extends HttpServlet {
    }
 
     private static void registerListeners() {
-        if (isCurrentConfigurationValid()) {
-            ServiceLoader<SetupListener> listeners = ServiceLoader.load(SetupListener.class);
-            for (SetupListener p : listeners) {
-                p.setupComplete();
-            }
+        registerListeners(new StartupProfiler(), null);
+    }
+
+    /**
+     * Notifies the setup listeners, running independent {@link SetupPhase}s concurrently.
+     *
+     * @return The phases recorded for the listeners which startup waited for.
+     */
+    private static List<StartupProfiler.Phase> registerListeners(StartupProfiler profiler,
+            StartupProfiler.Phase previousPhase) {
+        if (!isCurrentConfigurationValid()) {
+            return Collections.emptyList();
+        }
+        ServiceLoader<SetupListener> listeners = ServiceLoader.load(SetupListener.class);
+        SetupListenerRunner runner = new SetupListenerRunner(profiler, previousPhase);
+        try {
+            runner.run(listeners);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Debug.getInstance(SetupConstants.DEBUG_NAME).error("AMSetupServlet.registerListeners: interrupted", e);
         }
+        return runner.getWaitedForPhases();
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.setup;
+
+import java.security.AccessController;
+import java.util.Collections;
+import java.util.Set;
+
+import org.forgerock.openam.utils.RealmUtils;
+
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.security.AdminTokenAction;
+import com.sun.identity.shared.debug.Debug;
+import com.sun.identity.sm.SMSException;
+
+/**
+ * A background {@link SetupPhase} which loads a cache of every realm, so that the first requests after startup do
+ * not have to. Warming is disabled unless the {@value #WARM_CACHES_PROPERTY} property is {@code true}, as it loads
+ * state of realms which may never be used.
+ * <p>
+ * A realm whose cache cannot be loaded is logged and skipped, and will be loaded on first use as it would have been
+ * without warming.
+ */
+public abstract class CacheWarmingSetupPhase implements SetupPhase {
+
+    /**
+     * The property which enables warming caches in the background at startup.
+     */
+    public static final String WARM_CACHES_PROPERTY = "org.forgerock.openam.startup.warmCaches";
+
+    private static final Debug DEBUG = Debug.getInstance(SetupConstants.DEBUG_NAME);
+
+    @Override
+    public final void setupComplete() {
+        if (!SystemProperties.getAsBoolean(WARM_CACHES_PROPERTY, false)) {
+            return;
+        }
+        Set<String> realms;
+        try {
+            realms = RealmUtils.getRealmNames(AccessController.doPrivileged(AdminTokenAction.getInstance()));
+        } catch (SMSException e) {
+            DEBUG.error("{}: Could not list the realms whose caches to warm", getClass().getSimpleName(), e);
+            return;
+        }
+        for (String realm : realms) {
+            try {
+                warm(realm);
+            } catch (Exception e) {
+                DEBUG.warning("{}: Could not warm the cache of realm {}", getClass().getSimpleName(), realm, e);
+            }
+        }
+    }
+
+    @Override
+    public Set<Class<? extends SetupListener>> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public final boolean isBackground() {
+        return true;
+    }
+
+    /**
+     * Loads the cache of the given realm.
+     *
+     * @param realm The realm, for example {@code /} or {@code /sub}.
+     * @throws Exception If the cache could not be loaded.
+     */
+    protected abstract void warm(String realm) throws Exception;
+}
@@ -0,0 +1,275 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.setup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Notifies {@link SetupListener}s that setup is complete.
+ * <p>
+ * Plain listeners are notified on the calling thread, one after another in the order given. Each {@link SetupPhase}
+ * is notified on a thread pool as soon as the listeners it depends on have been notified, concurrently with
+ * the other listeners. {@link #run(Iterable)} returns once every listener other than the background phases has been
+ * notified. If the dependencies of the phases form a cycle, every listener is notified on the calling thread in the
+ * order given.
+ * <p>
+ * A runner notifies one set of listeners only.
+ */
+final class SetupListenerRunner {
+
+    private static final Debug DEBUG = Debug.getInstance(SetupConstants.DEBUG_NAME);
+
+    private final StartupProfiler profiler;
+    private final StartupProfiler.Phase previousPhase;
+    private final List<StartupProfiler.Phase> waitedForPhases = new ArrayList<>();
+    private final AtomicInteger outstandingPhases = new AtomicInteger();
+    private ExecutorService executor;
+    private CountDownLatch phasesComplete;
+
+    /**
+     * Creates a runner.
+     *
+     * @param profiler The profiler which records the time taken to notify each listener.
+     * @param previousPhase The phase of startup which completed before the listeners are notified, or {@code null}.
+     */
+    SetupListenerRunner(StartupProfiler profiler, StartupProfiler.Phase previousPhase) {
+        this.profiler = profiler;
+        this.previousPhase = previousPhase;
+    }
+
+    /**
+     * Returns the phases recorded for the listeners {@link #run(Iterable)} waited for.
+     *
+     * @return The phases of the plain listeners and of the phases which do not run in the background.
+     */
+    List<StartupProfiler.Phase> getWaitedForPhases() {
+        synchronized (waitedForPhases) {
+            return new ArrayList<>(waitedForPhases);
+        }
+    }
+
+    /**
+     * Notifies the listeners.
+     *
+     * @param listeners The listeners, in the order plain listeners are to be notified.
+     * @throws InterruptedException If interrupted while waiting for phases to complete.
+     */
+    void run(Iterable<SetupListener> listeners) throws InterruptedException {
+        List<Node> nodes = new ArrayList<>();
+        Map<Class<?>, Node> nodesByClass = new HashMap<>();
+        for (SetupListener listener : listeners) {
+            Node node = new Node(listener);
+            nodes.add(node);
+            nodesByClass.put(listener.getClass(), node);
+        }
+        for (Node node : nodes) {
+            if (node.listener instanceof SetupPhase) {
+                for (Class<? extends SetupListener> dependency : ((SetupPhase) node.listener).getDependencies()) {
+                    Node dependencyNode = nodesByClass.get(dependency);
+                    if (dependencyNode == null) {
+                        DEBUG.message("SetupListenerRunner: {} depends on {}, which is not installed",
+                                node.getName(), dependency.getName());
+                    } else if (dependencyNode != node) {
+                        node.dependencies.add(dependencyNode);
+                        dependencyNode.dependents.add(node);
+                    }
+                }
+                node.remaining.set(node.dependencies.size());
+            }
+        }
+        if (hasCycle(nodes)) {
+            DEBUG.error("SetupListenerRunner: dependencies of setup phases form a cycle, notifying in order");
+            StartupProfiler.Phase previous = previousPhase;
+            for (Node node : nodes) {
+                node.phase = begin(node, false, listOf(previous));
+                node.listener.setupComplete();
+                profiler.end(node.phase);
+                previous = node.phase;
+            }
+            return;
+        }
+
+        int waitedFor = 0;
+        for (Node node : nodes) {
+            if (isPhase(node)) {
+                outstandingPhases.incrementAndGet();
+                if (!((SetupPhase) node.listener).isBackground()) {
+                    waitedFor++;
+                }
+            }
+        }
+        phasesComplete = new CountDownLatch(waitedFor);
+        // There are few phases, so each runnable phase gets a thread rather than waiting behind a background phase
+        executor = Executors.newCachedThreadPool(new SetupThreadFactory());
+        if (outstandingPhases.get() == 0) {
+            executor.shutdown();
+        }
+        boolean notified = false;
+        try {
+            StartupProfiler.Phase previousPlain = previousPhase;
+            for (Node node : nodes) {
+                if (isPhase(node) && node.dependencies.isEmpty()) {
+                    schedule(node);
+                }
+            }
+            for (Node node : nodes) {
+                if (!isPhase(node)) {
+                    node.phase = begin(node, false, listOf(previousPlain));
+                    try {
+                        node.listener.setupComplete();
+                    } finally {
+                        profiler.end(node.phase);
+                    }
+                    completed(node);
+                    previousPlain = node.phase;
+                }
+            }
+            phasesComplete.await();
+            notified = true;
+        } finally {
+            if (!notified) {
+                // Phases depending on a listener which failed will never run
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void schedule(final Node node) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean background = ((SetupPhase) node.listener).isBackground();
+                List<StartupProfiler.Phase> dependencies = listOf(previousPhase);
+                for (Node dependency : node.dependencies) {
+                    dependencies.add(dependency.phase);
+                }
+                node.phase = begin(node, background, dependencies);
+                try {
+                    node.listener.setupComplete();
+                } catch (RuntimeException e) {
+                    DEBUG.error("SetupListenerRunner: {} failed", node.getName(), e);
+                } finally {
+                    profiler.end(node.phase);
+                    completed(node);
+                    if (!background) {
+                        phasesComplete.countDown();
+                    }
+                    if (outstandingPhases.decrementAndGet() == 0) {
+                        // Every phase, including background phases, has completed, so the threads can exit
+                        executor.shutdown();
+                    }
+                }
+            }
+        });
+    }
+
+    private void completed(Node node) {
+        for (Node dependent : node.dependents) {
+            if (dependent.remaining.decrementAndGet() == 0) {
+                try {
+                    schedule(dependent);
+                } catch (RejectedExecutionException e) {
+                    DEBUG.warning("SetupListenerRunner: {} not run as setup failed", dependent.getName());
+                }
+            }
+        }
+    }
+
+    private static boolean isPhase(Node node) {
+        return node.listener instanceof SetupPhase;
+    }
+
+    private static boolean hasCycle(List<Node> nodes) {
+        Map<Node, Integer> remaining = new HashMap<>();
+        List<Node> ready = new ArrayList<>();
+        for (Node node : nodes) {
+            remaining.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) {
+                ready.add(node);
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.remove(ready.size() - 1);
+            visited++;
+            for (Node dependent : node.dependents) {
+                int left = remaining.get(dependent) - 1;
+                remaining.put(dependent, left);
+                if (left == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return visited < nodes.size();
+    }
+
+    private StartupProfiler.Phase begin(Node node, boolean background, List<StartupProfiler.Phase> dependencies) {
+        StartupProfiler.Phase phase = profiler.begin(node.getName(), background, dependencies);
+        if (!background) {
+            synchronized (waitedForPhases) {
+                waitedForPhases.add(phase);
+            }
+        }
+        return phase;
+    }
+
+    private static List<StartupProfiler.Phase> listOf(StartupProfiler.Phase phase) {
+        List<StartupProfiler.Phase> phases = new ArrayList<>();
+        if (phase != null) {
+            phases.add(phase);
+        }
+        return phases;
+    }
+
+    private static final class Node {
+        private final SetupListener listener;
+        private final List<Node> dependencies = new ArrayList<>();
+        private final List<Node> dependents = new ArrayList<>();
+        private final AtomicInteger remaining = new AtomicInteger();
+        private volatile StartupProfiler.Phase phase;
+
+        private Node(SetupListener listener) {
+            this.listener = listener;
+        }
+
+        private String getName() {
+            return listener.getClass().getSimpleName();
+        }
+    }
+
+    private static final class SetupThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SetupPhase-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.setup;
+
+import java.util.Set;
+
+/**
+ * A {@link SetupListener} which declares the listeners it depends on, so that it can run concurrently with the
+ * listeners it does not depend on once setup is complete.
+ * <p>
+ * Listeners which do not implement this interface are notified one after another, in the order they are loaded, as
+ * they always have been. A phase is notified as soon as all of its dependencies have been notified, on a thread of
+ * its own, and must therefore not rely on being notified on the thread which completed setup.
+ */
+public interface SetupPhase extends SetupListener {
+
+    /**
+     * Returns the classes of the setup listeners which must have been notified before this phase is. Dependencies
+     * which are not installed are ignored.
+     *
+     * @return The classes of the listeners this phase depends on, which may be empty but not {@code null}.
+     */
+    Set<Class<? extends SetupListener>> getDependencies();
+
+    /**
+     * Whether server startup may complete before this phase has completed, for instance because it only warms
+     * caches which would otherwise be loaded on first use.
+     *
+     * @return {@code true} if this phase runs in the background.
+     */
+    boolean isBackground();
+}
@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.setup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+
+/**
+ * Records how long each phase of server startup takes, and which phases it waited for, to report the time spent in
+ * each phase and the critical path: the chain of phases, each waiting for the next, which determined when startup
+ * completed.
+ * <p>
+ * The duration of each phase is also recorded in the {@code openam_startup_phase_seconds} metric.
+ */
+final class StartupProfiler {
+
+    private static final MetricsRegistry.Timer PHASE_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_startup_phase_seconds", "Time taken by each phase of server startup.", "phase");
+
+    private final long startTime = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Records the start of a phase.
+     *
+     * @param name The name of the phase.
+     * @param background Whether startup does not wait for the phase.
+     * @param dependencies The phases which had to complete before this phase could start.
+     * @return The phase, to be passed to {@link #end(Phase)} once it has completed.
+     */
+    Phase begin(String name, boolean background, Collection<Phase> dependencies) {
+        Phase phase = new Phase(name, background, dependencies, System.nanoTime());
+        synchronized (phases) {
+            phases.add(phase);
+        }
+        return phase;
+    }
+
+    /**
+     * Records the end of a phase.
+     *
+     * @param phase The phase.
+     */
+    void end(Phase phase) {
+        phase.endTime = System.nanoTime();
+        PHASE_TIMER.record(phase.endTime - phase.startTime, phase.name);
+    }
+
+    /**
+     * Returns a report of the time spent in each phase recorded so far, in the order the phases started, followed by
+     * the critical path of the phases startup waited for.
+     *
+     * @return The report.
+     */
+    String getReport() {
+        List<Phase> recorded;
+        synchronized (phases) {
+            recorded = new ArrayList<>(phases);
+        }
+        Collections.sort(recorded, new Comparator<Phase>() {
+            @Override
+            public int compare(Phase first, Phase second) {
+                return Long.compare(first.startTime, second.startTime);
+            }
+        });
+        StringBuilder report = new StringBuilder("Startup phases (start ms, duration ms):");
+        Phase last = null;
+        for (Phase phase : recorded) {
+            report.append("\n  ").append(phase.name).append(": ").append(toMillis(phase.startTime - startTime))
+                    .append(", ");
+            if (phase.endTime == 0) {
+                report.append("running");
+            } else {
+                report.append(toMillis(phase.endTime - phase.startTime));
+                if (!phase.background && (last == null || phase.endTime > last.endTime)) {
+                    last = phase;
+                }
+            }
+            if (phase.background) {
+                report.append(" (background)");
+            }
+        }
+        if (last != null) {
+            List<String> criticalPath = new ArrayList<>();
+            for (Phase phase = last; phase != null; phase = phase.getLastDependency()) {
+                criticalPath.add(0, phase.name);
+            }
+            report.append("\nCritical path (").append(toMillis(last.endTime - startTime)).append(" ms): ");
+            for (int i = 0; i < criticalPath.size(); i++) {
+                report.append(i == 0 ? "" : " -> ").append(criticalPath.get(i));
+            }
+        }
+        return report.toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * A phase of startup.
+     */
+    static final class Phase {
+        private final String name;
+        private final boolean background;
+        private final List<Phase> dependencies;
+        private final long startTime;
+        private volatile long endTime;
+
+        private Phase(String name, boolean background, Collection<Phase> dependencies, long startTime) {
+            this.name = name;
+            this.background = background;
+            this.dependencies = new ArrayList<>(dependencies);
+            this.startTime = startTime;
+        }
+
+        /**
+         * Returns the dependency which completed last, and so delayed the start of this phase the most.
+         */
+        private Phase getLastDependency() {
+            Phase last = null;
+            for (Phase dependency : dependencies) {
+                if (dependency.endTime != 0 && (last == null || dependency.endTime > last.endTime)) {
+                    last = dependency;
+                }
+            }
+            return last;
+        }
+    }
+}
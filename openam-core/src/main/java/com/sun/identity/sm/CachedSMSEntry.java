@@ -34,12 +34,15 @@ import static org.forgerock.openam.utils.Time.currentTimeMillis;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.forgerock.guava.common.collect.Ordering;
 import org.forgerock.opendj.ldap.DN;
@@ -57,8 +60,11 @@ import com.sun.identity.shared.Constants;
 public class CachedSMSEntry implements SMSEventListener {
 
     // Cache of CachedSMSEntries (static)
-    private static Map smsEntries = Collections.synchronizedMap(
-        new HashMap(1000));
+    private static final ConcurrentMap<String, CachedSMSEntry> smsEntries = new ConcurrentHashMap<>(1000);
+
+    // Property to disable re-reading changed entries in the background
+    private static final String BACKGROUND_REFRESH_PROPERTY = "org.forgerock.openam.sm.cache.backgroundRefresh";
+    private static boolean backgroundRefresh = true;
 
     // Instance variables
 
@@ -82,12 +88,30 @@ public class CachedSMSEntry implements SMSEventListener {
     protected SMSEntry smsEntry;
 
     // Flag that determines if this object can be used
-    private boolean valid;
+    private volatile boolean valid;
     
-    // Flag to determine if the cached entry is dirty and 
-    // must be refreshed along with the last update time & TTL
-    private boolean dirty;
-    private Object dirtyLock = new Object();
+    // Determines if the cached entry is dirty and must be refreshed
+    private final ChangeTracker changes = new ChangeTracker();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Number of reads started, so that threads which waited for another
+    // thread's read to complete need not read the entry again
+    private volatile long readsStarted;
+
+    // Time of the earliest change notification not yet read
+    private final AtomicLong pendingNotificationTime = new AtomicLong();
+
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final Runnable backgroundRefreshTask = new Runnable() {
+        @Override
+        public void run() {
+            refreshScheduled.set(false);
+            if (valid && isDirty()) {
+                refresh();
+            }
+        }
+    };
+
     static boolean ttlEnabled;
     static long lastUpdate;
     static long ttl = 1800000;  // 30 minutes
@@ -125,13 +149,11 @@ public class CachedSMSEntry implements SMSEventListener {
     
     // Used by JAXRPCObjectImpl
     public boolean isDirty() {
-        if (ttlEnabled && !dirty &&
+        if (ttlEnabled && !changes.isDirty() &&
             ((currentTimeMillis() - lastUpdate) > ttl)) {
-            synchronized (dirtyLock) {
-                dirty = true;
-            }
+            changes.changed();
         }
-        return dirty;
+        return changes.isDirty();
     }
 
     /**
@@ -144,25 +166,36 @@ public class CachedSMSEntry implements SMSEventListener {
             SMSEntry.debug.message("CachedSMSEntry: update "
                     + "method called: " + dn2Str );
         }
-        synchronized (dirtyLock) {
-            dirty = true;
-        }
+        changes.changed();
     }
     
     /**
      * Reads the attributes from the datastore and send notifications to
      * objects caching this entry. Used by JAXRPCObjectImpl
+     * <p>
+     * Threads which have waited for a read started by another thread after
+     * they called this method, and completed without any change having been
+     * notified since, return without reading the entry again.
      */
     public void refresh() {
-        synchronized (dirtyLock) {
+        long readsBeforeCall = readsStarted;
+        refreshLock.lock();
+        try {
+            if (!changes.isDirty() && readsStarted > readsBeforeCall) {
+                return;
+            }
             if (SMSEntry.debug.messageEnabled()) {
                 SMSEntry.debug.message("CachedSMSEntry: refresh "
                     + "method called: " + dn2Str );
             }
 
+            readsStarted++;
+            long changesBeforeRead = changes.readStarting();
+            long notificationTime = pendingNotificationTime.getAndSet(0);
+            long start = System.nanoTime();
+
             // Read the LDAP attributes and update listeners
             boolean updated = false;
-            dirty = true;
             try {
                 SSOToken t = getValidSSOToken();
                 if (t != null) {
@@ -191,7 +224,13 @@ public class CachedSMSEntry implements SMSEventListener {
             }
 
             updateServiceListeners();
-            dirty = false;
+            if (updated) {
+                // Changes notified during the read might not have been read
+                changes.readCompleted(changesBeforeRead);
+            }
+            SMSCacheStats.getInstance().recordRefresh(dnRFCStr, System.nanoTime() - start, notificationTime);
+        } finally {
+            refreshLock.unlock();
         }
     }
     
@@ -202,10 +241,14 @@ public class CachedSMSEntry implements SMSEventListener {
      * @throws com.sun.identity.sm.SMSException
      */
     void refresh(SMSEntry e) throws SMSException {
-        synchronized (dirtyLock) {
+        refreshLock.lock();
+        try {
+            long changesBeforeRefresh = changes.readStarting();
             smsEntry.refresh(e);
             updateServiceListeners();
-            dirty = false;
+            changes.readCompleted(changesBeforeRefresh);
+        } finally {
+            refreshLock.unlock();
         }
     }
     
@@ -226,12 +269,10 @@ public class CachedSMSEntry implements SMSEventListener {
         // this entry is no long valid, remove from cache
         subscription.cancel();
         valid = false;
-        synchronized(dirtyLock) {
-            dirty = true;
-        }
-        // Remove from cache
+        changes.changed();
+        // Remove from cache, unless already replaced
         if (removeFromCache) {
-            smsEntries.remove(dnRFCStr);
+            smsEntries.remove(dnRFCStr, this);
         }
     }
     
@@ -354,20 +395,29 @@ public class CachedSMSEntry implements SMSEventListener {
             SMSEntry.debug.message("CachedSMSEntry::getInstance: " + dn);
         }
         String cacheEntry = DN.valueOf(dn).toString().toLowerCase();
-        CachedSMSEntry answer = (CachedSMSEntry) smsEntries.get(cacheEntry);
+        CachedSMSEntry answer = smsEntries.get(cacheEntry);
         if ((answer == null) || !answer.isValid()) {
-            // Construct the SMS entry. Should be outside the synchronized
-            // block since SMSEntry call delegation which in turn calls
+            // Construct the SMS entry. Should be done before adding to the
+            // cache since SMSEntry call delegation which in turn calls
             // policy, idrepo, special repo and SMS again
             CachedSMSEntry tmp = new CachedSMSEntry(new SMSEntry(t, dn));
-            synchronized (smsEntries) {
-                if (((answer = (CachedSMSEntry) smsEntries.get(cacheEntry))
-                    == null) || !answer.isValid()) {
-                    // Add it to cache
+            while ((answer == null) || !answer.isValid()) {
+                if (answer == null) {
+                    answer = smsEntries.putIfAbsent(cacheEntry, tmp);
+                    if (answer == null) {
+                        answer = tmp;
+                    }
+                } else if (smsEntries.replace(cacheEntry, answer, tmp)) {
                     answer = tmp;
-                    smsEntries.put(cacheEntry, answer);
+                } else {
+                    answer = smsEntries.get(cacheEntry);
                 }
             }
+            if (answer != tmp) {
+                // Another thread added an entry first, stop listening for
+                // notifications to the unused one
+                tmp.clear(false);
+            }
         }
         
         // Check if user has permissions
@@ -406,19 +456,17 @@ public class CachedSMSEntry implements SMSEventListener {
                 }
             }
         }
+        backgroundRefresh = Boolean.valueOf(SystemProperties.get(BACKGROUND_REFRESH_PROPERTY, "true"));
     }
 
     // Clears the cache
     static void clearCache() {
-        synchronized (smsEntries) {
-            for (Iterator items = smsEntries.values().iterator();
-                items.hasNext();) {
-                CachedSMSEntry cEntry = (CachedSMSEntry) items.next();
-                // this entry is no long valid
-                cEntry.clear(false);
-            }
-            // Remove all entries from cache
-            smsEntries.clear();
+        for (Iterator<CachedSMSEntry> items = smsEntries.values().iterator(); items.hasNext();) {
+            CachedSMSEntry cEntry = items.next();
+            // this entry is no long valid
+            cEntry.clear(false);
+            // Remove from cache
+            items.remove();
         }
     }
 
@@ -459,9 +507,72 @@ public class CachedSMSEntry implements SMSEventListener {
         }
     }
 
+    /**
+     * Marks the entry as dirty, and unless the entry has been deleted, schedules
+     * it to be read again in the background so that readers seldom have to wait
+     * for the change to be read. Further notifications received before the
+     * scheduled read starts are covered by the same read.
+     */
     @Override
     public void notifySMSEvent(DN dn, int event) {
+        pendingNotificationTime.compareAndSet(0, currentTimeMillis());
         update();
+        if (backgroundRefresh && event != SMSObjectListener.DELETE && !serviceObjects.isEmpty()
+                && refreshScheduled.compareAndSet(false, true)) {
+            if (!SMSThreadPool.scheduleTask(backgroundRefreshTask)) {
+                // The entry will be read by the next reader instead
+                refreshScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Tracks whether changes have been notified since the entry was last read. A completed read only marks as read
+     * the changes notified before it started, so a change notified while the entry is being read is never lost,
+     * whichever order the notification and the end of the read happen in.
+     */
+    static final class ChangeTracker {
+
+        // Number of changes notified
+        private final AtomicLong notified = new AtomicLong();
+
+        // Number of changes notified before the start of the latest completed read
+        private final AtomicLong read = new AtomicLong();
+
+        /**
+         * Records that the entry has changed.
+         */
+        void changed() {
+            notified.incrementAndGet();
+        }
+
+        /**
+         * Called before the entry is read.
+         *
+         * @return The number of changes the read will cover, to be passed to {@link #readCompleted(long)}.
+         */
+        long readStarting() {
+            return notified.get();
+        }
+
+        /**
+         * Marks the changes notified before a read started as read.
+         *
+         * @param changesBeforeRead The value returned by {@link #readStarting()} before the read.
+         */
+        void readCompleted(long changesBeforeRead) {
+            long current = read.get();
+            while (current < changesBeforeRead && !read.compareAndSet(current, changesBeforeRead)) {
+                current = read.get();
+            }
+        }
+
+        /**
+         * @return {@code true} if changes have been notified since the start of the latest completed read.
+         */
+        boolean isDirty() {
+            return notified.get() != read.get();
+        }
     }
 
     /**
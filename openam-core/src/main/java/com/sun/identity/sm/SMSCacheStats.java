@@ -0,0 +1,209 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.sm;
+
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.identity.shared.stats.Stats;
+import com.sun.identity.shared.stats.StatsListener;
+
+/**
+ * Records, per service, how long it takes to re-read cached SMS entries from the configuration store, and how long
+ * it takes for a change notification to become visible to readers of the cache. The statistics are written to the
+ * {@code amSMSCache} stats file when statistics are enabled.
+ *
+ * @since 14.0.0
+ */
+public final class SMSCacheStats implements StatsListener {
+
+    private static final String SERVICES_RDN = ",ou=services,";
+    private static final String OTHER = "other";
+    private static final SMSCacheStats INSTANCE = new SMSCacheStats(Stats.getInstance("amSMSCache"));
+
+    private final ConcurrentMap<String, ServiceStats> services = new ConcurrentHashMap<>();
+    private final Stats stats;
+
+    private SMSCacheStats(Stats stats) {
+        this.stats = stats;
+        stats.addStatsListener(this);
+    }
+
+    /**
+     * Returns the SMS cache statistics of this server.
+     *
+     * @return The singleton instance.
+     */
+    public static SMSCacheStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records that a cached entry has been re-read from the configuration store.
+     *
+     * @param dn The normalised DN of the entry.
+     * @param refreshNanos How long the entry took to read and publish, in nanoseconds.
+     * @param notificationTime The time in milliseconds of the earliest change notification the read was made for,
+     * or zero if the read was not caused by a notification.
+     */
+    void recordRefresh(String dn, long refreshNanos, long notificationTime) {
+        String serviceName = getServiceName(dn);
+        ServiceStats serviceStats = services.get(serviceName);
+        if (serviceStats == null) {
+            ServiceStats created = new ServiceStats();
+            serviceStats = services.putIfAbsent(serviceName, created);
+            if (serviceStats == null) {
+                serviceStats = created;
+            }
+        }
+        serviceStats.recordRefresh(refreshNanos);
+        if (notificationTime > 0) {
+            serviceStats.recordNotification(currentTimeMillis() - notificationTime);
+        }
+    }
+
+    /**
+     * Returns the statistics recorded so far, keyed by lower case service name. Entries which do not belong to a
+     * service, such as realm entries, are recorded under {@code other}.
+     *
+     * @return An unmodifiable view of the statistics.
+     */
+    public Map<String, ServiceStats> getServiceStats() {
+        return Collections.unmodifiableMap(services);
+    }
+
+    /**
+     * Returns the name of the service a normalised SMS DN belongs to, which is the value of the RDN directly below
+     * the first {@code ou=services} RDN of the DN.
+     */
+    static String getServiceName(String dn) {
+        int index = dn.indexOf(SERVICES_RDN);
+        if (index < 0) {
+            return OTHER;
+        }
+        String parent = dn.substring(0, index);
+        String rdn = parent.substring(parent.lastIndexOf(',') + 1);
+        if (!rdn.startsWith("ou=")) {
+            return OTHER;
+        }
+        return rdn.substring(3);
+    }
+
+    @Override
+    public void printStats() {
+        StringBuilder sb = new StringBuilder(100);
+        sb.append("SMS cache statistics:");
+        sb.append("\n-----------------------------");
+        for (Map.Entry<String, ServiceStats> entry : new TreeMap<>(services).entrySet()) {
+            ServiceStats serviceStats = entry.getValue();
+            sb.append("\nService: ").append(entry.getKey());
+            sb.append("\nRefreshes: ").append(serviceStats.getRefreshCount());
+            sb.append("\nAverage refresh time(ms): ").append(serviceStats.getAverageRefreshMillis());
+            sb.append("\nMaximum refresh time(ms): ").append(serviceStats.getMaxRefreshMillis());
+            sb.append("\nNotifications applied: ").append(serviceStats.getNotificationCount());
+            sb.append("\nAverage notification latency(ms): ")
+                    .append(serviceStats.getAverageNotificationLatencyMillis());
+            sb.append("\nMaximum notification latency(ms): ").append(serviceStats.getMaxNotificationLatencyMillis());
+            sb.append("\n-----------------------------");
+        }
+        sb.append("\n");
+        stats.record(sb.toString());
+    }
+
+    /**
+     * The cache statistics of a single service, across all realms.
+     */
+    public static final class ServiceStats {
+
+        private final AtomicLong refreshCount = new AtomicLong();
+        private final AtomicLong totalRefreshNanos = new AtomicLong();
+        private final AtomicLong maxRefreshNanos = new AtomicLong();
+        private final AtomicLong notificationCount = new AtomicLong();
+        private final AtomicLong totalNotificationLatency = new AtomicLong();
+        private final AtomicLong maxNotificationLatency = new AtomicLong();
+
+        private void recordRefresh(long nanos) {
+            refreshCount.incrementAndGet();
+            totalRefreshNanos.addAndGet(nanos);
+            updateMax(maxRefreshNanos, nanos);
+        }
+
+        private void recordNotification(long latency) {
+            notificationCount.incrementAndGet();
+            totalNotificationLatency.addAndGet(latency);
+            updateMax(maxNotificationLatency, latency);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * @return The number of times entries of the service have been read from the configuration store.
+         */
+        public long getRefreshCount() {
+            return refreshCount.get();
+        }
+
+        /**
+         * @return The average time taken to read and publish an entry, in milliseconds.
+         */
+        public long getAverageRefreshMillis() {
+            long count = refreshCount.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalRefreshNanos.get() / count);
+        }
+
+        /**
+         * @return The longest time taken to read and publish an entry, in milliseconds.
+         */
+        public long getMaxRefreshMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxRefreshNanos.get());
+        }
+
+        /**
+         * @return The number of reads made because of change notifications.
+         */
+        public long getNotificationCount() {
+            return notificationCount.get();
+        }
+
+        /**
+         * @return The average time between a change notification and the change being visible, in milliseconds.
+         */
+        public long getAverageNotificationLatencyMillis() {
+            long count = notificationCount.get();
+            return count == 0 ? 0 : totalNotificationLatency.get() / count;
+        }
+
+        /**
+         * @return The longest time between a change notification and the change being visible, in milliseconds.
+         */
+        public long getMaxNotificationLatencyMillis() {
+            return maxNotificationLatency.get();
+        }
+    }
+}
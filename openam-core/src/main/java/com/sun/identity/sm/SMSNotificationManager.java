@@ -24,7 +24,7 @@
  *
  * $Id: SMSNotificationManager.java,v 1.14 2009/11/10 21:49:44 hengming Exp $
  *
- * Portions Copyrighted 2014 ForgeRock AS.
+ * Portions Copyrighted 2014-2016 ForgeRock AS.
  */
 package com.sun.identity.sm;
 
@@ -40,13 +40,12 @@ import com.sun.identity.sm.jaxrpc.SMSJAXRPCObject;
 import com.sun.identity.sm.jaxrpc.SMSJAXRPCObjectImpl;
 import java.net.URL;
 import java.security.AccessController;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles all the notification events for SMS.
@@ -68,8 +67,7 @@ import java.util.StringTokenizer;
 public class SMSNotificationManager implements SMSObjectListener {
     
     private static SMSNotificationManager instance;
-    private static Map changeListeners = Collections.synchronizedMap(
-        new HashMap());
+    private static Map<String, SMSObjectListener> changeListeners = new ConcurrentHashMap<>();
     // SMS objects listener should be called first
     private static SMSEventListenerManager internalEventListener;
     private static Debug debug = Debug.getInstance("amSMSEvent");
@@ -268,14 +266,9 @@ public class SMSNotificationManager implements SMSObjectListener {
         // SMSLdapObject, SMSJAXRPCObjectImpl or LocalChangeNotifications
         // which are all called by individual threads.
         // Iterate over changeListeners and send notifications
-        Set listenerIds = (Set) changeListeners.keySet();
-        Set nlists = new HashSet();
-        synchronized (changeListeners) {
-            // Make a local copy of the change listeners
-            for (Iterator items = listenerIds.iterator(); items.hasNext();) {
-                nlists.add(changeListeners.get(items.next()));
-            }
-        }
+        // Make a local copy of the change listeners, without blocking
+        // registrations while notifications are being sent
+        Set nlists = new HashSet(changeListeners.values());
         // Change listeners could be one of the following
         // OrganizationConfigManager, ServiceSchemaManager
         // ServiceConfigManager
@@ -328,14 +321,9 @@ public class SMSNotificationManager implements SMSObjectListener {
         }
         
         // Iterate over changeListeners and send notifications
-        Set listenerIds = (Set) changeListeners.keySet();
-        Set nlists = new HashSet();
-        synchronized (changeListeners) {
-            // Make a local copy of the change listeners
-            for (Iterator items = listenerIds.iterator(); items.hasNext();) {
-                nlists.add(changeListeners.get(items.next()));
-            }
-        }
+        // Make a local copy of the change listeners, without blocking
+        // registrations while notifications are being sent
+        Set nlists = new HashSet(changeListeners.values());
         // Change listeners could be one of the following
         // SMSEventListnerManager c,s -- will be executed by this thread
         // SMSLdapObject (s) -- will be exectuted by this thread 
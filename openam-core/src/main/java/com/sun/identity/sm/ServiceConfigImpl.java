@@ -76,20 +76,14 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
 
     private String compName;
 
-    private String configID;
-
-    private int priority;
-
-    private Map<String, Set<String>> attributes;
-
-    private Map<String, Set<String>> attributesWithoutDefaults;
+    // Values read from the entry, replaced as a whole so that readers never
+    // see a partially updated configuration and need not synchronize
+    private volatile ConfigSnapshot snapshot = new ConfigSnapshot(null, null, 0, null, null);
 
     private CachedSMSEntry smsEntry;
 
     private CachedSubEntries subEntries;
 
-    private String labeledUri;
-    
     private String serviceSchemaManagerListernerID;
 
     /**
@@ -145,7 +139,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
      * Returns the configuration's schema ID
      */
     String getSchemaID() {
-        return (configID);
+        return (snapshot.configID);
     }
 
     /**
@@ -166,18 +160,20 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
      * Returns the priority assigned to the service configuration.
      */
     int getPriority() {
-        return (priority);
+        return (snapshot.priority);
     }
 
     /**
      * Returns the labeled uri assigned to the service configuration.
      */
     String getLabeledUri() {
-        return (labeledUri);
+        return (snapshot.labeledUri);
     }
 
-    void setLabeledUri(String labeledUri) {
-        this.labeledUri = labeledUri;
+    synchronized void setLabeledUri(String labeledUri) {
+        ConfigSnapshot current = snapshot;
+        snapshot = new ConfigSnapshot(current.attributes, current.attributesWithoutDefaults, current.priority,
+                current.configID, labeledUri);
     }
 
     /**
@@ -244,7 +240,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
             // Read the entry, since it should not be cached
             smsEntry.refresh();
         }
-        return (SMSUtils.copyAttributes(attributes));
+        return (SMSUtils.copyAttributes(snapshot.attributes));
     }
 
     /**
@@ -258,7 +254,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
             // Read the entry, since it should not be cached
             smsEntry.refresh();
         }
-        return (attributes);
+        return (snapshot.attributes);
     }
 
     /**
@@ -273,7 +269,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
             // Read the entry, since it should not be cached
             smsEntry.refresh();
         }
-        return (SMSUtils.copyAttributes(attributesWithoutDefaults));
+        return (SMSUtils.copyAttributes(snapshot.attributesWithoutDefaults));
     }
 
     /**
@@ -290,7 +286,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
             // Read the entry, since it should not be cached
             smsEntry.refresh();
         }
-        return (attributesWithoutDefaults);
+        return (snapshot.attributesWithoutDefaults);
     }
 
     /**
@@ -373,6 +369,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
         hash = 41 * hash + (orgName != null ? orgName.hashCode() : 0);
         hash = 41 * hash + (groupName != null ? groupName.hashCode() : 0);
         hash = 41 * hash + (compName != null ? compName.hashCode() : 0);
+        String configID = snapshot.configID;
         hash = 41 * hash + (configID != null ? configID.hashCode() : 0);
         return hash;
     }
@@ -384,7 +381,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
                 s.orgName.equalsIgnoreCase(orgName) &&
                 s.groupName.equalsIgnoreCase(groupName) &&
                 s.compName.equalsIgnoreCase(compName) &&
-                s.configID.equalsIgnoreCase(configID) &&
+                s.getSchemaID().equalsIgnoreCase(getSchemaID()) &&
                 s.scm.getName().equalsIgnoreCase(scm.getName())) {
                 return true;
             }
@@ -394,7 +391,8 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
 
     // Method gets called by local changes and also by changes from
     // notification thread. Hence it synchornized to avoid data being
-    // corrupted
+    // corrupted. Readers are not blocked, they see the previous snapshot
+    // until the new one is published
     public synchronized void update() {
         // Check if entry is still valid
         if (!smsEntry.isValid()) {
@@ -439,7 +437,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
         } // if (validate....)
 
         // Read the priority
-        priority = 0;
+        int priority = 0;
         String priorities[] = entry.getAttributeValues(SMSEntry.ATTR_PRIORITY);
         if (priorities != null) {
             try {
@@ -450,6 +448,7 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
         }
 
         // Read the service ID
+        String configID;
         String[] ids = entry.getAttributeValues(SMSEntry.ATTR_SERVICE_ID);
         if (ids != null) {
             configID = ids[0];
@@ -458,15 +457,15 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
         }
 
         // Read the labeled uri
+        String labeledUri = snapshot.labeledUri;
         String[] lUri = entry.getAttributeValues(SMSEntry.ATTR_LABELED_URI);
         if (lUri != null) {
             labeledUri = lUri[0];
         }
 
-        // Replace the class instance attribute Maps
-        attributes = Collections.unmodifiableMap(origAttributes);
-        attributesWithoutDefaults = Collections.unmodifiableMap(
-            origAttributesWithoutDefaults);
+        // Publish the new values to readers in a single write
+        snapshot = new ConfigSnapshot(Collections.unmodifiableMap(origAttributes),
+                Collections.unmodifiableMap(origAttributesWithoutDefaults), priority, configID, labeledUri);
     }
 
     // ------------------------------------------------------------------
@@ -731,6 +730,8 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
             orgAttributes = ocm.getAttributes(scm.getName());
         }
 
+        ConfigSnapshot current = snapshot;
+        Map<String, Set<String>> attributesWithoutDefaults = current.attributesWithoutDefaults;
         if (((attributesWithoutDefaults == null) ||
             attributesWithoutDefaults.isEmpty()) &&
             ((serviceConfigNames == null) ||
@@ -774,13 +775,13 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
                     .append(compName).append("\"");
             }
         
-            if ((configID != null) && (configID.length() > 0)) {
+            if ((current.configID != null) && (current.configID.length() > 0)) {
                 buff.append(" ").append(SMSUtils.SERVICE_ID).append("=\"")
-                    .append(configID).append("\"");
+                    .append(current.configID).append("\"");
             }
-            if (priority > 0) {
+            if (current.priority > 0) {
                 buff.append(" ").append(SMSUtils.PRIORITY).append("=\"")
-                    .append(Integer.toString(priority)).append("\"");
+                    .append(Integer.toString(current.priority)).append("\"");
             }
         }
         
@@ -814,4 +815,24 @@ class ServiceConfigImpl implements ServiceListener, CachedSMSEntry.SMSEntryUpdat
         buff.append("</").append(nodeName).append(">");
         return buff.toString();
     }
+
+    /**
+     * Immutable view of the values read from the configuration entry.
+     */
+    private static final class ConfigSnapshot {
+        private final Map<String, Set<String>> attributes;
+        private final Map<String, Set<String>> attributesWithoutDefaults;
+        private final int priority;
+        private final String configID;
+        private final String labeledUri;
+
+        ConfigSnapshot(Map<String, Set<String>> attributes, Map<String, Set<String>> attributesWithoutDefaults,
+                int priority, String configID, String labeledUri) {
+            this.attributes = attributes;
+            this.attributesWithoutDefaults = attributesWithoutDefaults;
+            this.priority = priority;
+            this.configID = configID;
+            this.labeledUri = labeledUri;
+        }
+    }
 }
@@ -502,6 +502,40 @@ public class ServiceManager {
         return sNames;
     }
     
+    /**
+     * Stores the service configuration, defined by the XML input stream that follows the SMS DTD, of services whose
+     * schema has already been registered. Unlike {@link #registerServices(InputStream, AMEncryption)}, the caches are
+     * not cleared, so that a large configuration can be stored one service at a time; callers registering the schema
+     * of these services must call {@link #clearCache()} once before storing their configuration. Realms referred to
+     * by the configuration are created if they do not exist.
+     *
+     * @param xmlServiceConfiguration the input stream of service configuration in XML conforming to SMS DTD.
+     * @param decryptObj Object to decrypt the password in the XML.
+     * @throws SMSException if an error occurred while performing the operation, for instance if the configuration
+     *         of the service already exists.
+     * @throws SSOException if the user's single sign on token is invalid or expired.
+     */
+    public void registerServiceConfigurations(InputStream xmlServiceConfiguration, AMEncryption decryptObj)
+            throws SMSException, SSOException {
+        SMSEntry.validateToken(token);
+        Document doc = SMSSchema.getXMLDocument(xmlServiceConfiguration);
+        if (!validSMSDtdDocType(doc)) {
+            throw new SMSException(IUMSConstants.UMS_BUNDLE_NAME,
+                    IUMSConstants.SMS_xml_invalid_doc_type, null);
+        }
+        NodeList nodes = doc.getElementsByTagName(SMSUtils.SERVICE);
+        for (int i = 0; (nodes != null) && (i < nodes.getLength()); i++) {
+            Node serviceNode = nodes.item(i);
+            Node configNode = XMLUtils.getChildNode(serviceNode, SMSUtils.CONFIGURATION);
+            if (configNode != null) {
+                CreateServiceConfig.createService(this,
+                        XMLUtils.getNodeAttributeValue(serviceNode, SMSUtils.NAME),
+                        XMLUtils.getNodeAttributeValue(serviceNode, SMSUtils.VERSION),
+                        configNode, true, decryptObj);
+            }
+        }
+    }
+
     public Document parseServicesFile(InputStream xmlServiceSchema)
     throws SMSException, SSOException {
         return parseServicesFile(xmlServiceSchema, null);
@@ -1331,17 +1365,25 @@ public class ServiceManager {
         }
     }
     
+    /**
+     * The start of the document returned by {@link #toXML(AMEncryption)}, up to the first {@code Service} element.
+     */
+    public static final String SERVICES_CONFIGURATION_START = SMSSchema.XML_ENC + "\n"
+            + "<!DOCTYPE ServicesConfiguration\n"
+            + "PUBLIC \"=//iPlanet//Service Management Services (SMS) 1.0 DTD//EN\"\n"
+            + "\"jar://com/sun/identity/sm/sms.dtd\">\n\n"
+            + "<ServicesConfiguration>\n";
+
+    /**
+     * The end of the document returned by {@link #toXML(AMEncryption)}, after the last {@code Service} element.
+     */
+    public static final String SERVICES_CONFIGURATION_END = "</ServicesConfiguration>\n";
+
     public String toXML(AMEncryption encryptObj)
         throws SMSException, SSOException
     {
         StringBuilder buff = new StringBuilder();
-        buff.append(SMSSchema.XML_ENC)
-            .append("\n")
-            .append("<!DOCTYPE ServicesConfiguration\n")
-            .append(
-       "PUBLIC \"=//iPlanet//Service Management Services (SMS) 1.0 DTD//EN\"\n")
-            .append("\"jar://com/sun/identity/sm/sms.dtd\">\n\n");
-        buff.append("<ServicesConfiguration>\n");
+        buff.append(SERVICES_CONFIGURATION_START);
 
         Set serviceNames = getServiceNames();
         
@@ -1351,20 +1393,33 @@ public class ServiceManager {
         
             for (Iterator j = versions.iterator(); j.hasNext(); ) {
                 String version = (String)j.next();
-                ServiceSchemaManager ssm = new 
-                    ServiceSchemaManager(token, serviceName, version);
-                String xml = ssm.toXML(encryptObj);
-                ServiceConfigManager scm = new ServiceConfigManager(
-                    serviceName, token);
-                int idx = xml.lastIndexOf("</" + SMSUtils.SERVICE + ">");
-                xml = xml.substring(0, idx) + scm.toXML(encryptObj) + "</" + 
-                    SMSUtils.SERVICE + ">";
-                buff.append(xml).append("\n");
+                buff.append(toXML(serviceName, version, encryptObj));
             }
         }
 
-        buff.append("</ServicesConfiguration>\n");
-        return buff.toString().replaceAll("&amp;#160;", "&#160;");
+        buff.append(SERVICES_CONFIGURATION_END);
+        return buff.toString();
+    }
+
+    /**
+     * Returns the schema and configuration of one version of a service as the {@code Service} element of the
+     * document returned by {@link #toXML(AMEncryption)}, so that the document can be written one service at a time.
+     *
+     * @param serviceName The name of the service.
+     * @param version The version of the service.
+     * @param encryptObj Object to encrypt the passwords in the XML.
+     * @return The {@code Service} element, followed by a new line.
+     * @throws SMSException if an error occurred while reading the service.
+     * @throws SSOException if the user's single sign on token is invalid or expired.
+     */
+    public String toXML(String serviceName, String version, AMEncryption encryptObj)
+        throws SMSException, SSOException {
+        ServiceSchemaManager ssm = new ServiceSchemaManager(token, serviceName, version);
+        String xml = ssm.toXML(encryptObj);
+        ServiceConfigManager scm = new ServiceConfigManager(serviceName, token);
+        int idx = xml.lastIndexOf("</" + SMSUtils.SERVICE + ">");
+        xml = xml.substring(0, idx) + scm.toXML(encryptObj) + "</" + SMSUtils.SERVICE + ">";
+        return xml.replaceAll("&amp;#160;", "&#160;") + "\n";
     }
 
     /**
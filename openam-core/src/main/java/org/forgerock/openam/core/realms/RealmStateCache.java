@@ -0,0 +1,262 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.core.realms;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.RemovalCause;
+import org.forgerock.guava.common.cache.RemovalListener;
+import org.forgerock.guava.common.cache.RemovalNotification;
+import org.forgerock.guava.common.util.concurrent.ExecutionError;
+import org.forgerock.guava.common.util.concurrent.UncheckedExecutionException;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+
+import com.iplanet.am.util.SystemProperties;
+
+/**
+ * Holds runtime state which a service builds per realm, such as parsed configuration or index structures, so that
+ * the state of a realm is only built when the realm is first used and can be dropped again while the realm is idle.
+ * <p>
+ * Concurrent requests for the state of a realm which is not resident share a single load. The number of resident
+ * realms can be bounded with the {@value #MAX_RESIDENT_PROPERTY} system property, in which case the least recently
+ * used realms are evicted first, and realms which have not been used for {@value #IDLE_MINUTES_PROPERTY} minutes can
+ * be evicted. Both are unbounded by default. State which does not need to be released can also be reclaimed by the
+ * garbage collector when memory runs low.
+ * <p>
+ * The number of resident realms, loads and evictions of each cache are published to the {@link MetricsRegistry}.
+ *
+ * @param <V> The type of the state.
+ * @since 14.0.0
+ */
+public final class RealmStateCache<V> {
+
+    /** The system property which limits the number of realms each cache holds state for. */
+    public static final String MAX_RESIDENT_PROPERTY = "org.forgerock.openam.realms.state.maxResident";
+    /** The system property which sets after how many minutes of disuse the state of a realm is evicted. */
+    public static final String IDLE_MINUTES_PROPERTY = "org.forgerock.openam.realms.state.idleMinutes";
+
+    private static final MetricsRegistry.Timer LOAD_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_realm_state_load_seconds", "Time taken to load the state of a realm", "cache");
+    private static final MetricsRegistry.Counter EVICTIONS = MetricsRegistry.getInstance().counter(
+            "openam_realm_state_evictions_total", "Number of realms whose state has been evicted", "cache", "cause");
+
+    private final String name;
+    private final Cache<String, V> cache;
+
+    /**
+     * Creates a cache whose state may be reclaimed by the garbage collector, limited by the system properties.
+     *
+     * @param name The name of the cache, used as the label of its metrics.
+     */
+    public RealmStateCache(String name) {
+        this(name, null);
+    }
+
+    /**
+     * Creates a cache limited by the system properties.
+     *
+     * @param name The name of the cache, used as the label of its metrics.
+     * @param releaser Releases state when it is evicted or invalidated, or {@code null} if the state holds nothing
+     * which needs releasing, in which case it may also be reclaimed by the garbage collector.
+     */
+    public RealmStateCache(String name, Releaser<V> releaser) {
+        this(name, SystemProperties.getAsInt(MAX_RESIDENT_PROPERTY, 0),
+                SystemProperties.getAsInt(IDLE_MINUTES_PROPERTY, 0), releaser);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param name The name of the cache, used as the label of its metrics.
+     * @param maxResident The maximum number of realms to hold state for, or zero for no limit.
+     * @param idleMinutes The number of minutes after which the state of an unused realm is evicted, or zero to keep it.
+     * @param releaser Releases state when it is evicted or invalidated, or {@code null} if the state holds nothing
+     * which needs releasing, in which case it may also be reclaimed by the garbage collector.
+     */
+    public RealmStateCache(final String name, int maxResident, int idleMinutes, final Releaser<V> releaser) {
+        this.name = name;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (maxResident > 0) {
+            builder.maximumSize(maxResident);
+        }
+        if (idleMinutes > 0) {
+            builder.expireAfterAccess(idleMinutes, TimeUnit.MINUTES);
+        }
+        if (releaser == null) {
+            // Values collected by the garbage collector are no longer available to a releaser
+            builder.softValues();
+        }
+        this.cache = builder.removalListener(new RemovalListener<String, V>() {
+            @Override
+            public void onRemoval(RemovalNotification<String, V> notification) {
+                RemovalCause cause = notification.getCause();
+                if (cause == RemovalCause.REPLACED) {
+                    return;
+                }
+                if (cause != RemovalCause.EXPLICIT) {
+                    EVICTIONS.increment(name, cause.name().toLowerCase(Locale.ROOT));
+                }
+                if (releaser != null && notification.getValue() != null) {
+                    releaser.release(notification.getKey(), notification.getValue());
+                }
+            }
+        }).build();
+        MetricsRegistry.getInstance().gauge("openam_realm_state_" + name + "_resident",
+                "Number of realms whose " + name + " state is resident", new MetricsRegistry.Gauge() {
+                    @Override
+                    public long getValue() {
+                        return cache.size();
+                    }
+                });
+    }
+
+    /**
+     * Returns the state of a realm, loading it if it is not resident. If another thread is already loading the state
+     * of the realm, waits for that load to complete instead.
+     *
+     * @param realm The realm, or any key qualified by the realm.
+     * @param loader Loads the state of the realm.
+     * @param <E> The type of exception thrown by the loader.
+     * @return The state, or {@code null} if the loader returned {@code null}, which is not cached.
+     * @throws E If the loader failed.
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends Exception> V get(final String realm, final Loader<V, E> loader) throws E {
+        V state = cache.getIfPresent(realm);
+        if (state != null) {
+            return state;
+        }
+        try {
+            return cache.get(realm, new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    long start = System.nanoTime();
+                    try {
+                        V loaded = loader.load(realm);
+                        if (loaded == null) {
+                            throw NotFoundException.INSTANCE;
+                        }
+                        return loaded;
+                    } finally {
+                        LOAD_TIMER.recordSince(start, name);
+                    }
+                }
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() == NotFoundException.INSTANCE) {
+                return null;
+            }
+            // The loader only throws E or unchecked exceptions
+            throw (E) e.getCause();
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Returns the state of a realm if it is resident.
+     *
+     * @param realm The realm, or any key qualified by the realm.
+     * @return The state, or {@code null} if it is not resident.
+     */
+    public V getIfPresent(String realm) {
+        return cache.getIfPresent(realm);
+    }
+
+    /**
+     * Drops the state of a realm, for instance because its configuration has changed.
+     *
+     * @param realm The realm, or any key qualified by the realm.
+     */
+    public void invalidate(String realm) {
+        cache.invalidate(realm);
+    }
+
+    /**
+     * Drops the state of every realm.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the number of realms whose state is resident.
+     *
+     * @return The number of resident realms.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Loads the state of a realm.
+     *
+     * @param <V> The type of the state.
+     * @param <E> The type of exception thrown when the state cannot be loaded.
+     */
+    public interface Loader<V, E extends Exception> {
+
+        /**
+         * Loads the state of a realm.
+         *
+         * @param realm The realm, or key qualified by the realm, passed to {@link RealmStateCache#get}.
+         * @return The state, or {@code null} if the realm has no state, in which case nothing is cached.
+         * @throws E If the state cannot be loaded.
+         */
+        V load(String realm) throws E;
+    }
+
+    /**
+     * Releases resources held by the state of a realm which is no longer resident.
+     *
+     * @param <V> The type of the state.
+     */
+    public interface Releaser<V> {
+
+        /**
+         * Releases the state of a realm. Called on the thread which evicted or invalidated the state, so should not
+         * block.
+         *
+         * @param realm The realm, or key qualified by the realm.
+         * @param state The state.
+         */
+        void release(String realm, V state);
+    }
+
+    /**
+     * Marks a load which found no state, since the cache cannot hold {@code null}. Does not fill in its stack trace as
+     * it is only used for flow control.
+     */
+    private static final class NotFoundException extends Exception {
+        private static final NotFoundException INSTANCE = new NotFoundException();
+
+        @Override
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
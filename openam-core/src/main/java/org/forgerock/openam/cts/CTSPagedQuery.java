@@ -0,0 +1,50 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts;
+
+import java.util.Collection;
+
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+
+/**
+ * The results of a query against the Core Token Service, read from the persistent store a page at a time.
+ * <p>
+ * Each page is only requested from the store when {@link #nextPage()} is called, so callers can process results of
+ * any size while holding no more than one page. The query holds a connection to the store until the last page has
+ * been read, so callers that stop early must {@link #close()} the query, preferably from a try-with-resources
+ * statement.
+ *
+ * @param <T> The type of the results.
+ * @see CTSPersistentStore#pagedQuery(org.forgerock.openam.cts.api.filter.TokenFilter, int)
+ * @see CTSPersistentStore#pagedAttributeQuery(org.forgerock.openam.cts.api.filter.TokenFilter, int)
+ */
+public interface CTSPagedQuery<T> extends AutoCloseable {
+
+    /**
+     * Reads the next page of results.
+     *
+     * @return Non empty collection of results, or null if there are no further results.
+     * @throws CoreTokenException If the page could not be read. The query is closed.
+     */
+    Collection<T> nextPage() throws CoreTokenException;
+
+    /**
+     * Stops the query, releasing its connection. Further calls to {@link #nextPage()} return null.
+     */
+    @Override
+    void close();
+}
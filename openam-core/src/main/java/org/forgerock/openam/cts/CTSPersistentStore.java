@@ -314,6 +314,34 @@ public interface CTSPersistentStore {
      */
     Collection<PartialToken> attributeQuery(TokenFilter tokenFilter) throws CoreTokenException;
 
+    /**
+     * Performs a query against the persistent store, reading the matching Tokens a page at a time as the caller
+     * requests them, so that the caller never holds more than one page of Tokens.
+     *
+     * The size limit of the filter applies to the results as a whole, and the query can be stopped early by closing
+     * it.
+     *
+     * @see CTSPagedQuery
+     *
+     * @param filter Non null filter.
+     * @param pageSize The maximum number of Tokens in each page.
+     * @return Non null query, which must be closed if not all of its pages are read.
+     */
+    CTSPagedQuery<Token> pagedQuery(TokenFilter filter, int pageSize);
+
+    /**
+     * Performs a partial Token query against the persistent store, reading the matching PartialTokens a page at a
+     * time as the caller requests them.
+     *
+     * @see #attributeQuery(TokenFilter)
+     * @see CTSPagedQuery
+     *
+     * @param tokenFilter Non null TokenFilter, with the return attributes defined.
+     * @param pageSize The maximum number of PartialTokens in each page.
+     * @return Non null query, which must be closed if not all of its pages are read.
+     */
+    CTSPagedQuery<PartialToken> pagedAttributeQuery(TokenFilter tokenFilter, int pageSize);
+
     /**
      * Performs an asynchronous query against the persistent store using the provided TokenFilter and then deletes the
      * matching tokens from the store.
@@ -33,6 +33,7 @@ import org.forgerock.openam.cts.continuous.ContinuousQueryListener;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.cts.exceptions.DeleteFailedException;
 import org.forgerock.openam.cts.impl.CoreTokenAdapter;
+import org.forgerock.openam.cts.impl.query.CTSPagedQueryFactory;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
 import org.forgerock.openam.tokens.CoreTokenField;
@@ -52,17 +53,21 @@ import org.forgerock.util.Options;
 public class CTSPersistentStoreImpl implements CTSPersistentStore {
 
     private final CoreTokenAdapter adapter;
+    private final CTSPagedQueryFactory pagedQueryFactory;
     private final Debug debug;
 
     /**
      * Creates a default implementation of the CTSPersistentStoreImpl.
      *
      * @param adapter Required for CTS operations.
+     * @param pagedQueryFactory Required for paged queries.
      * @param debug Required for debugging.
      */
     @Inject
-    public CTSPersistentStoreImpl(CoreTokenAdapter adapter, @Named(CoreTokenConstants.CTS_DEBUG) Debug debug) {
+    public CTSPersistentStoreImpl(CoreTokenAdapter adapter, CTSPagedQueryFactory pagedQueryFactory,
+            @Named(CoreTokenConstants.CTS_DEBUG) Debug debug) {
         this.adapter = adapter;
+        this.pagedQueryFactory = pagedQueryFactory;
         this.debug = debug;
     }
 
@@ -247,6 +252,18 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
         return adapter.attributeQuery(tokenFilter);
     }
 
+    @Override
+    public CTSPagedQuery<Token> pagedQuery(TokenFilter tokenFilter, int pageSize) {
+        debug("PagedQuery: {0} in pages of {1}", tokenFilter.toString(), String.valueOf(pageSize));
+        return pagedQueryFactory.createQuery(tokenFilter, pageSize);
+    }
+
+    @Override
+    public CTSPagedQuery<PartialToken> pagedAttributeQuery(TokenFilter tokenFilter, int pageSize) {
+        debug("PagedAttributeQuery: {0} in pages of {1}", tokenFilter.toString(), String.valueOf(pageSize));
+        return pagedQueryFactory.createAttributeQuery(tokenFilter, pageSize);
+    }
+
     @Override
     public void deleteOnQueryAsync(TokenFilter tokenFilter) throws CoreTokenException {
         debug("DeleteOnQuery: with query {0}", tokenFilter.toString());
@@ -51,6 +51,7 @@ public class CoreTokenConfig {
     private volatile boolean tokensEncrypted;
     private volatile boolean tokensCompressed;
     private volatile boolean attributeNamesCompressed;
+    private volatile boolean sessionsBinaryEncoded;
 
     /**
      * Create a new default instance of the CoreTokenConfig.
@@ -67,6 +68,7 @@ public class CoreTokenConfig {
                 Constants.SESSION_REPOSITORY_COMPRESSION,
                 Constants.SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION,
                 Constants.SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION,
+                Constants.SESSION_REPOSITORY_BINARY_ENCODING,
                 Constants.CORE_TOKEN_RESOURCE_ENABLED,
                 CLEANUP_PERIOD,
                 HEALTH_CHECK_PERIOD
@@ -114,6 +116,9 @@ public class CoreTokenConfig {
         // Control Attribute Name Compression.
         attributeNamesCompressed = SystemProperties.getAsBoolean(Constants.SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION);
 
+        // Control the binary Session encoding.
+        sessionsBinaryEncoded = SystemProperties.getAsBoolean(Constants.SESSION_REPOSITORY_BINARY_ENCODING);
+
         // Controls the size of pages requested for CTS Reaper
         cleanupPageSize = 1000;
 
@@ -226,6 +231,13 @@ public class CoreTokenConfig {
         return attributeNamesCompressed;
     }
 
+    /**
+     * @return True if Sessions should be stored in the binary format rather than as JSON. False by default.
+     */
+    public boolean isSessionBinaryEncoded() {
+        return sessionsBinaryEncoded;
+    }
+
     /**
      * @return The LDAP Query Page size in Tokens that will be deleted by the CTS Reaper.
      */
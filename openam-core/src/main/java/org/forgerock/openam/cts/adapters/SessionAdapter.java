@@ -41,6 +41,7 @@ import org.forgerock.util.annotations.VisibleForTesting;
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionID;
 import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionCodec;
 
 /**
  * SessionAdapter is responsible for providing conversions to and from InternalSession
@@ -54,6 +55,7 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
     private final JSONSerialisation serialisation;
     private final TokenBlobUtils blobUtils;
     private final DNWrapper dnWrapper;
+    private final InternalSessionCodec codec;
 
     /**
      * The field name Pattern is required for internal Session JSON fudging.
@@ -67,15 +69,18 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
      * @param config Non null.
      * @param serialisation Non null.
      * @param blobUtils A collection of Binary Object utilities.
+     * @param dnWrapper Non null.
+     * @param codec The binary session codec, used when configured and to read binary encoded sessions.
      */
     @Inject
     public SessionAdapter(TokenIdFactory tokenIdFactory, CoreTokenConfig config, JSONSerialisation serialisation,
-            TokenBlobUtils blobUtils, DNWrapper dnWrapper) {
+            TokenBlobUtils blobUtils, DNWrapper dnWrapper, InternalSessionCodec codec) {
         this.tokenIdFactory = tokenIdFactory;
         this.config = config;
         this.serialisation = serialisation;
         this.blobUtils = blobUtils;
         this.dnWrapper = dnWrapper;
+        this.codec = codec;
     }
 
     /**
@@ -128,12 +133,18 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
         token.setAttribute(SessionTokenField.SESSION_ID.getField(), session.getID().toString());
 
         // Binary data
-        String jsonBlob = serialisation.serialise(session);
-        blobUtils.setBlobFromString(token, jsonBlob);
-
-        String latestAccessTime = filterLatestAccessTime(token);
-        if (latestAccessTime != null) {
-            token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), latestAccessTime);
+        if (config.isSessionBinaryEncoded()) {
+            token.setBlob(codec.encode(session));
+            token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(),
+                    String.valueOf(session.getLatestAccessTime()));
+        } else {
+            String jsonBlob = serialisation.serialise(session);
+            blobUtils.setBlobFromString(token, jsonBlob);
+
+            String latestAccessTime = filterLatestAccessTime(token);
+            if (latestAccessTime != null) {
+                token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), latestAccessTime);
+            }
         }
 
         // Restricted Tokens
@@ -161,12 +172,17 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
     /**
      * Convert from a Token to an Internal Session.
      *
-     * Simply deserialise the InternalSession from the JSON blob.
+     * Sessions stored in the binary format are decoded directly, otherwise the InternalSession is deserialised from
+     * the JSON blob, so that sessions stored before the binary format was enabled can still be read.
      *
      * @param token Token to be converted back to its original format.
      * @return Non null InternalSession.
      */
     public InternalSession fromToken(Token token) {
+        if (InternalSessionCodec.isEncoded(token.getBlob())) {
+            return codec.decode(token.getBlob());
+        }
+
         String jsonBlob = blobUtils.getBlobAsString(token);
         int index = findIndexOfValidField(jsonBlob);
 
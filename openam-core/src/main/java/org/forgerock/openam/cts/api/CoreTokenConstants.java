@@ -126,6 +126,18 @@ public final class CoreTokenConstants {
      */
     public static final String CTS_ASYNC_QUEUE_SIZE = "org.forgerock.services.cts.async.queue.size";
 
+    /**
+     * The maximum number of connections used by paged queries, which each hold a connection until all their pages
+     * have been read or they are closed.
+     */
+    public static final String CTS_PAGED_QUERY_MAX_CONNECTIONS =
+            "org.forgerock.services.cts.paged.query.max.connections";
+
+    /**
+     * The default maximum number of connections used by paged queries.
+     */
+    public static final int CTS_PAGED_QUERY_MAX_CONNECTIONS_DEFAULT = 4;
+
     /**
      * Binding constant for the CTS Jackson Object Mapper.
      */
@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.impl.query;
+
+import static org.forgerock.openam.sm.datalayer.api.ConnectionType.CTS_PAGED_QUERY;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.inject.Inject;
+
+import org.forgerock.openam.cts.CTSPagedQuery;
+import org.forgerock.openam.cts.api.filter.TokenFilter;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.utils.blob.TokenBlobStrategy;
+import org.forgerock.openam.cts.utils.blob.TokenStrategyFailedException;
+import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
+import org.forgerock.openam.sm.datalayer.api.DataLayer;
+import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
+import org.forgerock.openam.sm.datalayer.api.query.QueryBuilder;
+import org.forgerock.openam.sm.datalayer.api.query.QueryFactory;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.util.Reject;
+
+/**
+ * Creates {@link CTSPagedQuery} instances, which read their results a page at a time over connections reserved for
+ * paged queries, so that long running queries do not hold up the asynchronous CTS work queues.
+ */
+public class CTSPagedQueryFactory {
+
+    private final ConnectionFactory connectionFactory;
+    private final QueryFactory queryFactory;
+    private final TokenBlobStrategy strategy;
+
+    /**
+     * Guice initialised constructor.
+     *
+     * @param connectionFactory Factory for the connections used by paged queries.
+     * @param queryFactory Factory for the queries.
+     * @param strategy Required for reversing the binary object transformations of returned Tokens.
+     */
+    @Inject
+    public CTSPagedQueryFactory(@DataLayer(CTS_PAGED_QUERY) ConnectionFactory connectionFactory,
+            @DataLayer(CTS_PAGED_QUERY) QueryFactory queryFactory, TokenBlobStrategy strategy) {
+        this.connectionFactory = connectionFactory;
+        this.queryFactory = queryFactory;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Creates a paged query for the Tokens matching the filter.
+     *
+     * @param filter Non null filter.
+     * @param pageSize The maximum number of Tokens in each page.
+     * @return The query, which has not yet read any results.
+     */
+    @SuppressWarnings("unchecked")
+    public CTSPagedQuery<Token> createQuery(TokenFilter filter, int pageSize) {
+        return new PagedTokenQuery<Closeable, Token>(connectionFactory, createQueryBuilder(filter, pageSize),
+                Token.class, filter) {
+            @Override
+            protected Collection<Token> convert(Collection<Token> tokens) throws CoreTokenException {
+                for (Token token : tokens) {
+                    token.setBlob(reverse(token.getBlob()));
+                }
+                return tokens;
+            }
+        };
+    }
+
+    /**
+     * Creates a paged query for the requested attributes of the Tokens matching the filter.
+     *
+     * @param filter Non null filter, with the return attributes defined.
+     * @param pageSize The maximum number of PartialTokens in each page.
+     * @return The query, which has not yet read any results.
+     * @throws IllegalArgumentException If the filter did not define any return fields.
+     */
+    @SuppressWarnings("unchecked")
+    public CTSPagedQuery<PartialToken> createAttributeQuery(final TokenFilter filter, int pageSize) {
+        Reject.ifTrue(filter.getReturnFields().isEmpty(), "Must define return fields for attribute query.");
+        QueryBuilder query = createQueryBuilder(filter, pageSize).returnTheseAttributes(filter.getReturnFields());
+        return new PagedTokenQuery<Closeable, PartialToken>(connectionFactory, query, PartialToken.class, filter) {
+            @Override
+            protected Collection<PartialToken> convert(Collection<PartialToken> partialTokens)
+                    throws CoreTokenException {
+                if (!filter.getReturnFields().contains(CoreTokenField.BLOB)) {
+                    return partialTokens;
+                }
+                Collection<PartialToken> results = new ArrayList<>(partialTokens.size());
+                for (PartialToken partialToken : partialTokens) {
+                    byte[] value = partialToken.getValue(CoreTokenField.BLOB);
+                    results.add(new PartialToken(partialToken, CoreTokenField.BLOB, reverse(value)));
+                }
+                return results;
+            }
+        };
+    }
+
+    private QueryBuilder createQueryBuilder(TokenFilter filter, int pageSize) {
+        Reject.ifTrue(pageSize <= 0, "Page size must be positive.");
+        return queryFactory.createInstance()
+                .pageResultsBy(pageSize)
+                .limitResultsTo(filter.getSizeLimit())
+                .within(filter.getTimeLimit())
+                .withFilter(filter.getQuery().accept(queryFactory.createFilterConverter(), null));
+    }
+
+    private byte[] reverse(byte[] blob) throws CoreTokenException {
+        try {
+            return strategy.reverse(blob);
+        } catch (TokenStrategyFailedException e) {
+            throw new CoreTokenException("Failed to reverse Token Blob strategy.", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.impl.query;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.forgerock.openam.cts.CTSPagedQuery;
+import org.forgerock.openam.cts.api.filter.TokenFilter;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.exceptions.QueryFailedException;
+import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.DataLayerRuntimeException;
+import org.forgerock.openam.sm.datalayer.api.query.QueryBuilder;
+import org.forgerock.openam.utils.IOUtils;
+
+/**
+ * A {@link CTSPagedQuery} which reads each page with its own connection to the store, taken from the connection
+ * factory when the first page is read and returned once the last page has been read or the query is closed.
+ * <p>
+ * The size limit of the filter is applied to the results as a whole, rather than to each page.
+ *
+ * @param <C> The type of connection.
+ * @param <T> The type of the results.
+ */
+abstract class PagedTokenQuery<C extends Closeable, T> implements CTSPagedQuery<T> {
+
+    private final ConnectionFactory<C> connectionFactory;
+    private final QueryBuilder<C, ?> query;
+    private final Class<T> returnType;
+    private final TokenFilter filter;
+    private Iterator<Collection<T>> results;
+    private C connection;
+    private int remaining;
+    private boolean complete;
+
+    PagedTokenQuery(ConnectionFactory<C> connectionFactory, QueryBuilder<C, ?> query, Class<T> returnType,
+            TokenFilter filter) {
+        this.connectionFactory = connectionFactory;
+        this.query = query;
+        this.returnType = returnType;
+        this.filter = filter;
+        this.remaining = filter.getSizeLimit() > 0 ? filter.getSizeLimit() : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Collection<T> nextPage() throws CoreTokenException {
+        if (complete) {
+            return null;
+        }
+        Collection<T> page = null;
+        try {
+            if (connection == null) {
+                connection = connectionFactory.create();
+                results = query.executeRawResults(connection, returnType);
+            }
+            while (page == null && results.hasNext()) {
+                Collection<T> next = results.next();
+                if (!next.isEmpty()) {
+                    page = limit(next);
+                }
+            }
+        } catch (DataLayerException | DataLayerRuntimeException e) {
+            close();
+            throw new QueryFailedException(filter, e);
+        }
+        if (page == null || remaining == 0 || !results.hasNext()) {
+            close();
+        }
+        if (page == null) {
+            return null;
+        }
+        try {
+            return convert(page);
+        } catch (CoreTokenException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private Collection<T> limit(Collection<T> page) {
+        if (page.size() <= remaining) {
+            remaining -= page.size();
+            return page;
+        }
+        Collection<T> limited = new ArrayList<>(remaining);
+        Iterator<T> iterator = page.iterator();
+        while (limited.size() < remaining) {
+            limited.add(iterator.next());
+        }
+        remaining = 0;
+        return limited;
+    }
+
+    /**
+     * Converts a page of results as read from the store into the results returned to the caller.
+     *
+     * @param page Non empty page of results.
+     * @return The converted results.
+     * @throws CoreTokenException If the results could not be converted.
+     */
+    protected abstract Collection<T> convert(Collection<T> page) throws CoreTokenException;
+
+    @Override
+    public void close() {
+        complete = true;
+        IOUtils.closeIfNotNull(connection);
+        connection = null;
+        results = null;
+    }
+}
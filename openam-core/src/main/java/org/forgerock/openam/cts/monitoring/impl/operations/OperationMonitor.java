@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring.impl.operations;
@@ -67,7 +67,7 @@ class OperationMonitor {
      * Increments the cumulative count for an operation and recalculates the rate at which the operation
      * has been made.
      * <br/>
-     * Only synchronizes the count increment, NOT the whole method.
+     * Neither the count nor the rate window take a lock.
      */
     void increment() {
         count.incrementAndGet();
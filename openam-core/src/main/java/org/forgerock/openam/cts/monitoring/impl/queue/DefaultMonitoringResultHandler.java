@@ -11,12 +11,13 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.monitoring.impl.queue;
 
 import org.forgerock.openam.cts.CTSOperation;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 
 /**
@@ -28,16 +29,21 @@ public class DefaultMonitoringResultHandler<T, E extends Exception> implements R
     private final ResultHandler<T, E> handler;
     private final CTSOperationsMonitoringStore store;
     private final CTSOperation operation;
+    private final MetricsRegistry.Timer timer;
+    private final long startTime = System.nanoTime();
 
     /**
      * @param handler The result handler being wrapped.
      * @param store The monitoring store to notify.
      * @param operation The CTS Operation to report to the store.
+     * @param timer The timer to record the duration of the operation to, from the creation of this handler.
      */
-    public DefaultMonitoringResultHandler(ResultHandler<T, E> handler, CTSOperationsMonitoringStore store, CTSOperation operation) {
+    public DefaultMonitoringResultHandler(ResultHandler<T, E> handler, CTSOperationsMonitoringStore store,
+            CTSOperation operation, MetricsRegistry.Timer timer) {
         this.handler = handler;
         this.store = store;
         this.operation = operation;
+        this.timer = timer;
     }
 
     /**
@@ -57,6 +63,7 @@ public class DefaultMonitoringResultHandler<T, E extends Exception> implements R
     @Override
     public void processResults(T result) {
         store.addTokenOperation(null, operation, true);
+        timer.recordSince(startTime, operation.name(), "success");
         handler.processResults(result);
     }
 
@@ -67,6 +74,7 @@ public class DefaultMonitoringResultHandler<T, E extends Exception> implements R
     @Override
     public void processError(Exception error) {
         store.addTokenOperation(null, operation, false);
+        timer.recordSince(startTime, operation.name(), "failure");
         handler.processError(error);
     }
 }
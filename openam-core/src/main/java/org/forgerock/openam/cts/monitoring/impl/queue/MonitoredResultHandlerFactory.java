@@ -23,6 +23,7 @@ import org.forgerock.openam.cts.impl.queue.AsyncResultHandlerFactory;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.cts.impl.queue.ResultHandlerFactory;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -34,15 +35,20 @@ import java.util.Collection;
 public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
     private final AsyncResultHandlerFactory factory;
     private final CTSOperationsMonitoringStore store;
+    private final MetricsRegistry.Timer timer;
 
     /**
      * @param factory Non null implementation to delegate to.
      * @param store Non null store to report operations to.
+     * @param metricsRegistry Non null registry in which to record the duration of each operation.
      */
     @Inject
-    public MonitoredResultHandlerFactory(AsyncResultHandlerFactory factory, CTSOperationsMonitoringStore store) {
+    public MonitoredResultHandlerFactory(AsyncResultHandlerFactory factory, CTSOperationsMonitoringStore store,
+            MetricsRegistry metricsRegistry) {
         this.factory = factory;
         this.store = store;
+        this.timer = metricsRegistry.timer("openam_cts_operation_seconds",
+                "Duration of CTS operations, from being queued to their result", "operation", "outcome");
     }
 
     /**
@@ -50,7 +56,7 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
      */
     @Override
     public ResultHandler<Token, CoreTokenException> getCreateHandler() {
-        return new TokenMonitoringResultHandler(factory.getCreateHandler(), store, CTSOperation.CREATE);
+        return new TokenMonitoringResultHandler(factory.getCreateHandler(), store, CTSOperation.CREATE, timer);
     }
 
     /**
@@ -58,7 +64,7 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
      */
     @Override
     public ResultHandler<Token, CoreTokenException> getReadHandler() {
-        return new TokenMonitoringResultHandler(factory.getReadHandler(), store, CTSOperation.READ);
+        return new TokenMonitoringResultHandler(factory.getReadHandler(), store, CTSOperation.READ, timer);
     }
 
     /**
@@ -66,7 +72,7 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
      */
     @Override
     public ResultHandler<Token, CoreTokenException> getUpdateHandler() {
-        return new TokenMonitoringResultHandler(factory.getUpdateHandler(), store, CTSOperation.UPDATE);
+        return new TokenMonitoringResultHandler(factory.getUpdateHandler(), store, CTSOperation.UPDATE, timer);
     }
 
     /**
@@ -74,7 +80,7 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
      */
     @Override
     public ResultHandler<PartialToken, CoreTokenException> getDeleteHandler() {
-        return new DefaultMonitoringResultHandler<>(factory.getDeleteHandler(), store, CTSOperation.DELETE);
+        return new DefaultMonitoringResultHandler<>(factory.getDeleteHandler(), store, CTSOperation.DELETE, timer);
     }
 
     /**
@@ -83,7 +89,7 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
     @Override
     public ResultHandler<Collection<Token>, CoreTokenException> getQueryHandler() {
         return new DefaultMonitoringResultHandler<>(
-                factory.getQueryHandler(), store, CTSOperation.LIST);
+                factory.getQueryHandler(), store, CTSOperation.LIST, timer);
     }
 
     /**
@@ -92,7 +98,7 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
     @Override
     public ResultHandler<Collection<PartialToken>, CoreTokenException> getPartialQueryHandler() {
         return new DefaultMonitoringResultHandler<>(
-                factory.getPartialQueryHandler(), store, CTSOperation.LIST);
+                factory.getPartialQueryHandler(), store, CTSOperation.LIST, timer);
     }
 
     /**
@@ -101,6 +107,6 @@ public class MonitoredResultHandlerFactory implements ResultHandlerFactory {
     @Override
     public ResultHandler<Collection<PartialToken>, CoreTokenException> getDeleteOnQueryHandler() {
         return new DefaultMonitoringResultHandler<>(
-                factory.getDeleteOnQueryHandler(), store, CTSOperation.LIST);
+                factory.getDeleteOnQueryHandler(), store, CTSOperation.LIST, timer);
     }
 }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.monitoring.impl.queue;
 
@@ -20,6 +20,7 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 
 /**
  * A monitoring based handler suitable for monitoring token based operations.
@@ -28,17 +29,21 @@ public class TokenMonitoringResultHandler implements ResultHandler<Token, CoreTo
     private final ResultHandler<Token, CoreTokenException> handler;
     private final CTSOperationsMonitoringStore store;
     private final CTSOperation operation;
+    private final MetricsRegistry.Timer timer;
+    private final long startTime = System.nanoTime();
 
     /**
      * @param handler Non null handler to delegate to.
      * @param store Non null store to report operations to.
      * @param operation Non null operation type to signal to the store.
+     * @param timer Non null timer to record the duration of the operation to, from the creation of this handler.
      */
     public TokenMonitoringResultHandler(ResultHandler<Token, CoreTokenException> handler, CTSOperationsMonitoringStore store,
-                                        CTSOperation operation) {
+                                        CTSOperation operation, MetricsRegistry.Timer timer) {
         this.handler = handler;
         this.store = store;
         this.operation = operation;
+        this.timer = timer;
     }
 
     /**
@@ -56,6 +61,7 @@ public class TokenMonitoringResultHandler implements ResultHandler<Token, CoreTo
     @Override
     public void processResults(Token result) {
         store.addTokenOperation(result, operation, true);
+        timer.recordSince(startTime, operation.name(), "success");
         handler.processResults(result);
     }
 
@@ -65,6 +71,7 @@ public class TokenMonitoringResultHandler implements ResultHandler<Token, CoreTo
     @Override
     public void processError(Exception error) {
         store.addTokenOperation(null, operation, false);
+        timer.recordSince(startTime, operation.name(), "failure");
         handler.processError(error);
     }
 }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.utils.blob.strategies;
 
@@ -99,7 +99,8 @@ public class AttributeCompressionStrategy implements BlobStrategy {
      */
     @SuppressWarnings("unchecked")
     private boolean isTokenValidForCompression(byte[] blob) {
-        if (blob == null) {
+        // Binary encoded sessions, and anything else which is not a JSON object, are rejected without decoding.
+        if (blob == null || blob.length == 0 || blob[0] != '{') {
             return false;
         }
 
@@ -0,0 +1,256 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.worker.process;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+import static org.forgerock.util.query.QueryFilter.and;
+import static org.forgerock.util.query.QueryFilter.equalTo;
+import static org.forgerock.util.query.QueryFilter.lessThanOrEqualTo;
+import static org.forgerock.util.query.QueryFilter.or;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.forgerock.openam.audit.context.AMExecutorServiceFactory;
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.CoreTokenConfig;
+import org.forgerock.openam.cts.api.CoreTokenConstants;
+import org.forgerock.openam.cts.api.fields.SessionTokenField;
+import org.forgerock.openam.cts.api.filter.TokenFilterBuilder;
+import org.forgerock.openam.cts.api.tokens.TokenIdFactory;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.impl.query.worker.CTSWorkerConstants;
+import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.openam.utils.TimeUtils;
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.query.QueryFilter;
+
+import com.iplanet.am.util.SystemProperties;
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.SessionState;
+import com.sun.identity.shared.Constants;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Times out the sessions stored by this server as they expire, instead of leaving them for the next run of the
+ * {@link SessionIdleTimeExpiredProcess} and {@link MaxSessionTimeExpiredProcess} workers.
+ * <p>
+ * The idle and maximum expiry times of every valid session are held in {@link TimingWheel}s, which are updated
+ * whenever the session is stored, so refreshing the idle time of a session costs a constant amount of work. The wheels
+ * are sharded by session ID so that concurrent requests rarely contend for the same lock. Each tick, the sessions
+ * which have expired are read back from the CTS in batches, keeping only those whose stored expiry time has passed, and
+ * passed to the {@link SessionExpiryBatchHandler}s used by the CTS workers. The CTS therefore remains the authority on
+ * whether a session has expired: a session updated by another server since it was stored here is left alone, and the
+ * optimistic concurrency check made for idle timeouts still applies.
+ * <p>
+ * The CTS workers continue to run, and time out the sessions of servers which have stopped.
+ */
+@Singleton
+public class SessionExpiryScheduler {
+
+    private static final int DEFAULT_TICK_MILLIS = 1000;
+
+    private final Debug debug;
+    private final SessionExpiryBatchHandler idleTimeoutHandler;
+    private final SessionExpiryBatchHandler maxTimeoutHandler;
+    private final CTSPersistentStore store;
+    private final TokenIdFactory tokenIdFactory;
+    private final int batchSize;
+    private final long tickMillis;
+    private final Shard[] shards;
+
+    /**
+     * Creates the scheduler, and starts it if it has been enabled.
+     *
+     * @param debug The CTS debug instance.
+     * @param idleTimeoutHandler The handler which times out sessions whose idle time has expired.
+     * @param maxTimeoutHandler The handler which times out sessions whose maximum session time has expired.
+     * @param store The CTS.
+     * @param tokenIdFactory The factory for the CTS token IDs of sessions.
+     * @param config The CTS configuration.
+     * @param executorServiceFactory The factory for the thread which advances the scheduler.
+     */
+    @Inject
+    public SessionExpiryScheduler(@Named(CoreTokenConstants.CTS_DEBUG) Debug debug,
+            @Named(CTSWorkerConstants.SESSION_IDLE_TIME_EXPIRED) SessionExpiryBatchHandler idleTimeoutHandler,
+            @Named(CTSWorkerConstants.MAX_SESSION_TIME_EXPIRED) SessionExpiryBatchHandler maxTimeoutHandler,
+            CTSPersistentStore store, TokenIdFactory tokenIdFactory, CoreTokenConfig config,
+            AMExecutorServiceFactory executorServiceFactory) {
+        this(debug, idleTimeoutHandler, maxTimeoutHandler, store, tokenIdFactory, config.getCleanupPageSize(),
+                SystemProperties.getAsBoolean(Constants.AM_SESSION_EXPIRY_SCHEDULER_ENABLED, false)
+                        ? SystemProperties.getAsInt(Constants.AM_SESSION_EXPIRY_SCHEDULER_TICK, DEFAULT_TICK_MILLIS)
+                        : 0,
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 4);
+        if (isEnabled()) {
+            executorServiceFactory.createScheduledService(1, "SessionExpiryScheduler").scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            expire(currentTimeMillis());
+                        }
+                    }, tickMillis, tickMillis, MILLISECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    SessionExpiryScheduler(Debug debug, SessionExpiryBatchHandler idleTimeoutHandler,
+            SessionExpiryBatchHandler maxTimeoutHandler, CTSPersistentStore store, TokenIdFactory tokenIdFactory,
+            int batchSize, long tickMillis, int shardCount) {
+        this.debug = debug;
+        this.idleTimeoutHandler = idleTimeoutHandler;
+        this.maxTimeoutHandler = maxTimeoutHandler;
+        this.store = store;
+        this.tokenIdFactory = tokenIdFactory;
+        this.batchSize = batchSize;
+        this.tickMillis = tickMillis;
+        if (tickMillis <= 0) {
+            this.shards = null;
+            return;
+        }
+        this.shards = new Shard[shardCount];
+        long now = currentTimeMillis();
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(tickMillis, now);
+        }
+    }
+
+    /**
+     * @return {@code true} if sessions are timed out by this scheduler.
+     */
+    public boolean isEnabled() {
+        return shards != null;
+    }
+
+    /**
+     * Schedules the timeout of a session which has just been stored, replacing any earlier schedule.
+     *
+     * @param session The stored session.
+     */
+    public void schedule(InternalSession session) {
+        if (!isEnabled()) {
+            return;
+        }
+        SessionID sessionID = session.getID();
+        if (session.getState() != SessionState.VALID || !session.willExpire() || session.isTimedOut()) {
+            cancel(sessionID);
+            return;
+        }
+        long idleExpiryTime = session.getMaxIdleExpirationTime(MILLISECONDS);
+        long maxExpiryTime = session.getMaxSessionExpirationTime(MILLISECONDS);
+        Shard shard = shardOf(sessionID);
+        synchronized (shard) {
+            shard.idleTimeouts.schedule(sessionID, idleExpiryTime);
+            shard.maxTimeouts.schedule(sessionID, maxExpiryTime);
+        }
+    }
+
+    /**
+     * Cancels the timeout of a session which has been removed.
+     *
+     * @param session The removed session.
+     */
+    public void cancel(InternalSession session) {
+        if (isEnabled()) {
+            cancel(session.getID());
+        }
+    }
+
+    private void cancel(SessionID sessionID) {
+        Shard shard = shardOf(sessionID);
+        synchronized (shard) {
+            shard.idleTimeouts.cancel(sessionID);
+            shard.maxTimeouts.cancel(sessionID);
+        }
+    }
+
+    /**
+     * Times out every scheduled session which has expired by the given time.
+     *
+     * @param nowMillis The current time, in milliseconds.
+     */
+    @VisibleForTesting
+    void expire(long nowMillis) {
+        List<SessionID> idleExpired = new ArrayList<>();
+        List<SessionID> maxExpired = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                idleExpired.addAll(shard.idleTimeouts.advance(nowMillis));
+                maxExpired.addAll(shard.maxTimeouts.advance(nowMillis));
+            }
+        }
+        try {
+            timeout(idleExpired, SessionTokenField.MAX_IDLE_EXPIRATION_TIME, idleTimeoutHandler, nowMillis);
+            timeout(maxExpired, SessionTokenField.MAX_SESSION_EXPIRATION_TIME, maxTimeoutHandler, nowMillis);
+        } catch (CoreTokenException e) {
+            debug.error("Session expiry scheduler failed to time out sessions", e);
+        } catch (InterruptedException e) {
+            debug.warning("Session expiry scheduler was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void timeout(List<SessionID> sessionIDs, SessionTokenField expiryField, SessionExpiryBatchHandler handler,
+            long nowMillis) throws CoreTokenException, InterruptedException {
+        for (int start = 0; start < sessionIDs.size(); start += batchSize) {
+            List<QueryFilter<CoreTokenField>> tokenIds = new ArrayList<>();
+            for (SessionID sessionID : sessionIDs.subList(start, Math.min(start + batchSize, sessionIDs.size()))) {
+                tokenIds.add(equalTo(CoreTokenField.TOKEN_ID, tokenIdFactory.toSessionTokenId(sessionID)));
+            }
+            Collection<PartialToken> expired = store.attributeQuery(new TokenFilterBuilder()
+                    .withQuery(and(
+                            or(tokenIds),
+                            lessThanOrEqualTo(expiryField.getField(), TimeUtils.fromUnixTime(nowMillis, MILLISECONDS)),
+                            equalTo(SessionTokenField.SESSION_STATE.getField(), SessionState.VALID.toString()),
+                            equalTo(CoreTokenField.TOKEN_TYPE, TokenType.SESSION)))
+                    .returnAttribute(CoreTokenField.TOKEN_ID)
+                    .returnAttribute(CoreTokenField.ETAG)
+                    .returnAttribute(SessionTokenField.SESSION_ID.getField())
+                    .build());
+            if (debug.messageEnabled()) {
+                debug.message("Session expiry scheduler: {} of {} sessions due to time out have {}",
+                        expired.size(), tokenIds.size(), expiryField.name());
+            }
+            if (!expired.isEmpty()) {
+                handler.timeoutBatch(expired).await();
+            }
+        }
+    }
+
+    private Shard shardOf(SessionID sessionID) {
+        int hash = sessionID.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    private static final class Shard {
+        private final TimingWheel<SessionID> idleTimeouts;
+        private final TimingWheel<SessionID> maxTimeouts;
+
+        private Shard(long tickMillis, long nowMillis) {
+            this.idleTimeouts = new TimingWheel<>(tickMillis, nowMillis);
+            this.maxTimeouts = new TimingWheel<>(tickMillis, nowMillis);
+        }
+    }
+}
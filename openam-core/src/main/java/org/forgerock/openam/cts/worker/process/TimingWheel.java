@@ -0,0 +1,200 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.worker.process;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel which holds one deadline per key.
+ * <p>
+ * Time is divided into ticks. The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots, and each slot of a level
+ * spans all the slots of the level below it, so with one second ticks the wheel covers more than six months. A key is
+ * held in a doubly linked list in the slot of the lowest level which its deadline falls within, so scheduling,
+ * rescheduling and cancelling a key are constant time however many keys are held. When a slot of a higher level is
+ * reached its keys are moved down a level, and when a slot of the lowest level is reached its keys have expired. Each
+ * key is moved at most once per level.
+ * <p>
+ * Deadlines are rounded up to the next tick, so keys expire no earlier than their deadline and no more than one tick
+ * after it. Deadlines beyond the range of the wheel are held in the highest level until they come within range.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <K> The type of the keys.
+ */
+final class TimingWheel<K> {
+
+    static final int LEVELS = 4;
+    static final int SLOTS = 64;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final Node<K>[][] slots;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * Creates an empty timing wheel.
+     *
+     * @param tickMillis The length of a tick, in milliseconds.
+     * @param nowMillis The current time, in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new Node[LEVELS][SLOTS];
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Sets the deadline of the given key, replacing any deadline it already has.
+     *
+     * @param key The key.
+     * @param deadlineMillis The time at which the key expires, in milliseconds.
+     */
+    void schedule(K key, long deadlineMillis) {
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+        } else if (node.deadlineTick == deadlineTick) {
+            return;
+        } else {
+            unlink(node);
+        }
+        node.deadlineTick = deadlineTick;
+        insert(node);
+    }
+
+    /**
+     * Removes the deadline of the given key.
+     *
+     * @param key The key.
+     * @return {@code true} if the key had a deadline.
+     */
+    boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Moves the wheel on to the given time, removing every key which has expired by then.
+     *
+     * @param nowMillis The current time, in milliseconds.
+     * @return The expired keys, in no particular order.
+     */
+    List<K> advance(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        List<K> expired = new ArrayList<>();
+        for (; currentTick <= nowTick; currentTick++) {
+            if (nodes.isEmpty()) {
+                currentTick = nowTick + 1;
+                break;
+            }
+            cascade(1);
+            for (Node<K> node = takeSlot(0, (int) (currentTick & SLOT_MASK)); node != null; node = node.next) {
+                nodes.remove(node.key);
+                expired.add(node.key);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return The number of keys with a deadline.
+     */
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Moves the keys of the slot of the given level which the current tick has reached down to lower levels, starting
+     * with the highest level whose slot has just been reached.
+     */
+    private void cascade(int level) {
+        if (level >= LEVELS || (currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+            return;
+        }
+        cascade(level + 1);
+        Node<K> node = takeSlot(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+        while (node != null) {
+            Node<K> next = node.next;
+            insert(node);
+            node = next;
+        }
+    }
+
+    private void insert(Node<K> node) {
+        long ticks = Math.max(0, node.deadlineTick - currentTick);
+        long slotTick = currentTick + Math.min(ticks, MAX_TICKS - 1);
+        int level = 0;
+        while (level < LEVELS - 1 && ticks >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((slotTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Node<K> head = slots[level][slot];
+        node.level = level;
+        node.slot = slot;
+        node.previous = null;
+        node.next = head;
+        if (head != null) {
+            head.previous = node;
+        }
+        slots[level][slot] = node;
+    }
+
+    private void unlink(Node<K> node) {
+        if (node.previous == null) {
+            slots[node.level][node.slot] = node.next;
+        } else {
+            node.previous.next = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        }
+        node.previous = null;
+        node.next = null;
+    }
+
+    private Node<K> takeSlot(int level, int slot) {
+        Node<K> head = slots[level][slot];
+        slots[level][slot] = null;
+        return head;
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private long deadlineTick;
+        private int level;
+        private int slot;
+        private Node<K> previous;
+        private Node<K> next;
+
+        private Node(K key) {
+            this.key = key;
+        }
+    }
+}
@@ -21,11 +21,13 @@
  * your own identifying information:
  * "Portions Copyrighted [year] [name of copyright owner]"
  *
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement;
 
 import com.sun.identity.entitlement.ConditionDecision;
+import com.sun.identity.entitlement.SubjectDecision;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,6 +49,12 @@ public class PrivilegeEvaluatorContext implements Serializable {
      * representation.
      */
     private Map<String, ConditionDecision> conditionDecisionCache = new HashMap<String, ConditionDecision>();
+    /**
+     * An entitlement subject decision cache, where the subject decisions are cached based on the subject's JSON
+     * representation. Unlike the condition decision cache, it is shared by the contexts of all the resources
+     * evaluated for the same subject and environment in a single batch request, and is {@code null} otherwise.
+     */
+    private final Map<String, SubjectDecision> subjectDecisionCache;
     private static ThreadLocal <PrivilegeEvaluatorContext> currentCtx = new ThreadLocal();
 
     /**
@@ -59,9 +67,26 @@ public class PrivilegeEvaluatorContext implements Serializable {
     public PrivilegeEvaluatorContext(String realm,
                                      String resourceName,
                                      String applicationName) {
+        this(realm, resourceName, applicationName, null);
+    }
+
+    /**
+     * Creates a new Privilege Evaluator Context sharing the given subject decision cache.
+     *
+     * @param realm The realm of the policy evaluation
+     * @param resourceName The resource being evaluated
+     * @param applicationName The application being evaluated
+     * @param subjectDecisionCache The thread safe subject decision cache, shared by all evaluations of the subject
+     *                             in the batch
+     */
+    public PrivilegeEvaluatorContext(String realm,
+                                     String resourceName,
+                                     String applicationName,
+                                     Map<String, SubjectDecision> subjectDecisionCache) {
         this.realm = realm;
         this.resourceName = resourceName;
         this.applicationName = applicationName;
+        this.subjectDecisionCache = subjectDecisionCache;
     }
 
    /**
@@ -135,4 +160,13 @@ public class PrivilegeEvaluatorContext implements Serializable {
     public Map<String, ConditionDecision> getConditionDecisionCache() {
         return conditionDecisionCache;
     }
+
+    /**
+     * Return the subject decision cache of the batch request being evaluated. The returned map is thread safe.
+     *
+     * @return the subject decision cache, or {@code null} if this is not the evaluation of a batch request.
+     */
+    public Map<String, SubjectDecision> getSubjectDecisionCache() {
+        return subjectDecisionCache;
+    }
 }
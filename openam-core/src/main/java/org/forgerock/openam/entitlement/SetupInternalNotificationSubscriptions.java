@@ -42,9 +42,17 @@ public final class SetupInternalNotificationSubscriptions implements SetupListen
 
     public static final Topic TOPIC_INTERNAL_POLICYSET = Topic.of("/internal/policySet");
 
+    /**
+     * Topic on which every change to a policy is published, whichever API it was made through.
+     */
+    public static final Topic TOPIC_INTERNAL_POLICY = Topic.of("/internal/policy");
+
     public static final String MESSAGE_ATTR_EVENT_TYPE = "eventType";
     public static final String MESSAGE_ATTR_REALM = "realm";
     public static final String MESSAGE_ATTR_NAME = "name";
+    public static final String MESSAGE_ATTR_POLICY_SET = "policySet";
+    public static final String MESSAGE_ATTR_RESOURCE_TYPES = "resourceTypes";
+    public static final String MESSAGE_ATTR_REVISION = "revision";
 
     @Override
     public void setupComplete() {
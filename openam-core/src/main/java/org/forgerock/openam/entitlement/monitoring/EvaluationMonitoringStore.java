@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.monitoring;
@@ -60,7 +60,7 @@ class EvaluationMonitoringStore {
      * Increments the cumulative count of evaluations and recalculates the rate.
      *
      * <br/>
-     * Only synchronizes the count increment, NOT the whole method.
+     * Neither the count nor the rate window take a lock.
      */
     public void increment() {
         count.incrementAndGet();
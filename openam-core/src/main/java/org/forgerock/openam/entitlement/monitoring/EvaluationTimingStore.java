@@ -40,7 +40,7 @@ public class EvaluationTimingStore extends AbstractPolicyTimingStore {
      * @param subject The subject against which the evaluation took place
      */
     public void addTiming(long duration, String realm, String applicationName, String resourceName, Subject subject) {
-        durationStore.add(new PolicyTimingEntry(duration, realm, applicationName, resourceName, subject));
+        add(new PolicyTimingEntry(duration, realm, applicationName, resourceName, subject));
     }
 
 }
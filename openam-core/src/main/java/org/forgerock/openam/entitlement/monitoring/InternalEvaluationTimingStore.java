@@ -41,7 +41,7 @@ public class InternalEvaluationTimingStore extends AbstractPolicyTimingStore {
     public void addTiming(String policyName, long duration, String realm, String applicationName,
                           String resourceName, Subject subject) {
 
-        durationStore.add(new PolicyTimingEntry(policyName, duration, realm, applicationName, resourceName, subject));
+        add(new PolicyTimingEntry(policyName, duration, realm, applicationName, resourceName, subject));
 
     }
 
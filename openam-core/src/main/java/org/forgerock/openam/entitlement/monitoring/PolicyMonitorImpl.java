@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 package org.forgerock.openam.entitlement.monitoring;
 
@@ -19,11 +19,14 @@ import com.sun.identity.shared.debug.Debug;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.security.auth.Subject;
 
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+
 /**
  * Singleton through which all access to the policy monitoring stores is achieved.
  *
@@ -50,6 +53,9 @@ public class PolicyMonitorImpl implements PolicyMonitor {
     //internal monitoring store
     private final InternalEvaluationTimingStore internalEvaluationTimingStore;
 
+    //latency histograms published by the metrics endpoint
+    private final MetricsRegistry.Timer evaluationTimer;
+
     //for pushing off our monitoring writes to another thread
     private final ExecutorService executorService;
     public static final String EXECUTOR_BINDING_NAME = "POLICY_MONITORING_EXECUTOR";
@@ -64,6 +70,7 @@ public class PolicyMonitorImpl implements PolicyMonitor {
      * @param subtreeEvaluationMonitoringStore Store for the SUBTREE mode evaluation monitoring
      * @param subtreeEvaluationTimingStore Store for the SELF mode timing monitoring
      * @param internalEvaluationTimingStore Store for the internal privilege evaluation monitoring
+     * @param metricsRegistry Registry in which to record evaluation durations per realm and application
      */
     @Inject
     public PolicyMonitorImpl(@Named(POLICY_MONITOR_DEBUG) Debug debug,
@@ -72,7 +79,8 @@ public class PolicyMonitorImpl implements PolicyMonitor {
                              final EvaluationTimingStore selfEvaluationTimingStore,
                              final EvaluationMonitoringStore subtreeEvaluationMonitoringStore,
                              final EvaluationTimingStore subtreeEvaluationTimingStore,
-                             final InternalEvaluationTimingStore internalEvaluationTimingStore) {
+                             final InternalEvaluationTimingStore internalEvaluationTimingStore,
+                             final MetricsRegistry metricsRegistry) {
         this.debug = debug;
         this.executorService = executorService;
         this.selfEvaluationMonitoringStore = selfEvaluationMonitoringStore;
@@ -80,6 +88,8 @@ public class PolicyMonitorImpl implements PolicyMonitor {
         this.subtreeEvaluationMonitoringStore = subtreeEvaluationMonitoringStore;
         this.subtreeEvaluationTimingStore = subtreeEvaluationTimingStore;
         this.internalEvaluationTimingStore = internalEvaluationTimingStore;
+        this.evaluationTimer = metricsRegistry.timer("openam_policy_evaluation_seconds",
+                "Duration of policy evaluations", "realm", "application", "mode");
     }
 
     /**
@@ -88,6 +98,9 @@ public class PolicyMonitorImpl implements PolicyMonitor {
     @Override
     public void addEvaluation(final long duration, final String realm, final String applicationName,
                               final String resourceName, final Subject subject, final PolicyMonitoringType monitoringType) {
+        evaluationTimer.record(duration, TimeUnit.MILLISECONDS, realm, applicationName,
+                monitoringType == PolicyMonitoringType.SUBTREE ? "SUBTREE" : "SELF");
+
         if (monitoringType == PolicyMonitoringType.SUBTREE) {
 
             try {
@@ -68,6 +68,19 @@ public class SessionConstants {
     public static final String ENABLE_POLLING_PROPERTY =
             "com.iplanet.am.session.client.polling.enable";
 
+    /**
+     * Time in milliseconds for which the ClientSDK holds back a session refresh request, so that it can be sent
+     * together with other refresh requests for the same server. 0 disables coalescing.
+     */
+    public static final String COALESCING_WINDOW_PROPERTY =
+            "org.forgerock.openam.session.client.coalescing.window";
+
+    /**
+     * Maximum number of session refresh requests which the ClientSDK sends in one request set.
+     */
+    public static final String COALESCING_MAX_REQUESTS_PROPERTY =
+            "org.forgerock.openam.session.client.coalescing.maxRequests";
+
     /**
      * The name of the JSON field which describes the session's username.
      */
@@ -23,12 +23,15 @@ import javax.inject.Singleton;
 
 import org.forgerock.guice.core.GuiceModule;
 import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.session.service.access.UserSessionIndex;
 import org.forgerock.openam.session.service.access.persistence.InternalSessionPersistenceStore;
 import org.forgerock.openam.session.service.access.persistence.InternalSessionStore;
 import org.forgerock.openam.session.service.access.persistence.InternalSessionStoreChain;
+import org.forgerock.openam.session.service.access.persistence.SessionExpirySchedulingStep;
 import org.forgerock.openam.session.service.access.persistence.SessionPersistenceManagerStep;
 import org.forgerock.openam.session.service.access.persistence.TimeOutSessionFilterStep;
 import org.forgerock.openam.session.service.access.persistence.caching.InMemoryInternalSessionCacheStep;
+import org.forgerock.openam.session.service.access.persistence.caching.SessionInfoCache;
 import org.forgerock.openam.sso.providers.stateless.StatelessSSOProvider;
 import org.forgerock.openam.utils.Config;
 
@@ -137,10 +140,12 @@ public class SessionGuiceModule extends PrivateModule {
     @Singleton
     InternalSessionStore getInternalSessionStore(TimeOutSessionFilterStep timeOutSessionFilterStep,
                                                  InMemoryInternalSessionCacheStep internalSessionCacheStep,
+                                                 SessionExpirySchedulingStep sessionExpirySchedulingStep,
                                                  SessionPersistenceManagerStep sessionPersistenceManagerStep,
                                                  InternalSessionPersistenceStore internalSessionPersistenceStore) {
         return new InternalSessionStoreChain(
-                Arrays.asList(timeOutSessionFilterStep, internalSessionCacheStep, sessionPersistenceManagerStep),
+                Arrays.asList(timeOutSessionFilterStep, internalSessionCacheStep, sessionExpirySchedulingStep,
+                        sessionPersistenceManagerStep),
                 internalSessionPersistenceStore);
     }
 
@@ -150,11 +155,13 @@ public class SessionGuiceModule extends PrivateModule {
             final SessionAuditor sessionAuditor,
             final SessionNotificationSender sessionNotificationSender,
             final SessionNotificationPublisher sessionNotificationPublisher,
-            final SessionTimeoutHandlerExecutor sessionTimeoutHandlerExecutor) {
+            final SessionTimeoutHandlerExecutor sessionTimeoutHandlerExecutor,
+            final UserSessionIndex userSessionIndex,
+            final SessionInfoCache sessionInfoCache) {
 
         return new InternalSessionEventBroker(
                 sessionLogging, sessionAuditor, sessionNotificationSender, sessionNotificationPublisher,
-                sessionTimeoutHandlerExecutor);
+                sessionTimeoutHandlerExecutor, userSessionIndex, sessionInfoCache);
     }
 
     @Provides
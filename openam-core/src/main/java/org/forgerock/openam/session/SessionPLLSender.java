@@ -22,7 +22,7 @@
  * your own identifying information:
  * "Portions Copyrighted [year] [name of copyright owner]"
  *
- * Portions Copyrighted 2014-2015 ForgeRock AS.
+ * Portions Copyrighted 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.session;
@@ -30,10 +30,15 @@ package org.forgerock.openam.session;
 import static org.forgerock.openam.session.SessionConstants.*;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Vector;
 
 import javax.inject.Inject;
 
+import org.forgerock.util.annotations.VisibleForTesting;
+
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.SessionException;
 import com.iplanet.dpro.session.SessionID;
@@ -48,49 +53,92 @@ import com.iplanet.services.comm.share.Response;
 public class SessionPLLSender {
 
     private final SessionCookies sessionCookies;
+    private final SessionRequestCoalescer sessionRequestCoalescer;
 
     @Inject
     public SessionPLLSender(SessionCookies sessionCookies) {
+        this(sessionCookies, SessionRequestCoalescer.getInstance());
+    }
+
+    @VisibleForTesting
+    SessionPLLSender(SessionCookies sessionCookies, SessionRequestCoalescer sessionRequestCoalescer) {
         this.sessionCookies = sessionCookies;
+        this.sessionRequestCoalescer = sessionRequestCoalescer;
     }
 
     /**
      * Returns a Session Response object based on the XML document received from
      * remote Session Server. This is in response to a request that we send to
      * the session server.
+     * <p>
+     * In ClientSDK mode, session refresh requests may be sent to the server
+     * together with concurrent requests for other sessions.
      *
      * @param svcurl The URL of the Session Service.
      * @param sreq The Session Request XML document.
      * @return a Vector of responses from the remote server
      * @exception com.iplanet.dpro.session.SessionException if there was an error in sending the XML
      *            document or if the response has multiple components.
+     * @see SessionRequestCoalescer
      */
     public SessionResponse sendPLLRequest(URL svcurl, SessionRequest sreq) throws SessionException {
+        if (sessionRequestCoalescer.canCoalesce(sreq)) {
+            return sessionRequestCoalescer.send(this, svcurl, sreq);
+        }
+        return sendPLLRequests(svcurl, Collections.singletonList(sreq)).get(0);
+    }
+
+    /**
+     * Sends the given Session Requests to the remote Session Server in one
+     * request set. The cookies of the first request are replayed, so all the
+     * requests should be for sessions owned by the same server.
+     *
+     * @param svcurl The URL of the Session Service.
+     * @param sreqs The Session Requests.
+     * @return The responses, in the same order as the requests.
+     * @exception com.iplanet.dpro.session.SessionException if there was an error in sending the XML
+     *            document or if the response does not hold one response per request.
+     */
+    List<SessionResponse> sendPLLRequests(URL svcurl, List<SessionRequest> sreqs) throws SessionException {
         try {
+            SessionRequest first = sreqs.get(0);
 
-            String cookies = sessionCookies.getCookieName() + "=" + sreq.getSessionID();
+            String cookies = sessionCookies.getCookieName() + "=" + first.getSessionID();
 
             if (!SystemProperties.isServerMode()) {
-                SessionID sessionID = new SessionID(sreq.getSessionID());
-                cookies = cookies + ";" + sessionCookies.getLBCookie(sessionID);
+                cookies = cookies + ";" + getLBCookie(first);
             }
 
-            final Request req = new Request(sreq.toXMLString());
-
             final RequestSet set = new RequestSet(SESSION_SERVICE);
-            set.addRequest(req);
+            for (SessionRequest sreq : sreqs) {
+                set.addRequest(new Request(sreq.toXMLString()));
+            }
 
             final Vector responses = PLLClient.send(svcurl, cookies, set);
 
-            if (responses.size() != 1) {
+            if (responses.size() != sreqs.size()) {
                 throw new SessionException(SessionBundle.rbName, "unexpectedResponse", null);
             }
 
-            final Response res = (Response) responses.elementAt(0);
-
-            return SessionResponse.parseXML(res.getContent());
+            List<SessionResponse> sessionResponses = new ArrayList<>(responses.size());
+            for (Object response : responses) {
+                sessionResponses.add(SessionResponse.parseXML(((Response) response).getContent()));
+            }
+            return sessionResponses;
         } catch (Exception e) {
             throw new SessionException(e);
         }
     }
+
+    /**
+     * Returns the load balancer cookie which routes the request to the server
+     * owning its session.
+     *
+     * @param sreq The Session Request.
+     * @return The load balancer cookie.
+     * @exception com.iplanet.dpro.session.SessionException if the session ID is invalid.
+     */
+    String getLBCookie(SessionRequest sreq) throws SessionException {
+        return sessionCookies.getLBCookie(new SessionID(sreq.getSessionID()));
+    }
 }
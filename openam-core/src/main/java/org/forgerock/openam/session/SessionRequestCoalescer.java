@@ -0,0 +1,215 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session;
+
+import static org.forgerock.openam.session.SessionConstants.*;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+
+import com.iplanet.am.util.SystemProperties;
+import com.iplanet.dpro.session.SessionException;
+import com.iplanet.dpro.session.share.SessionRequest;
+import com.iplanet.dpro.session.share.SessionResponse;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Coalesces the session refresh requests sent by the ClientSDK into shared PLL request sets.
+ * <p>
+ * The first refresh request for a session server opens a batch and waits for up to the coalescing window for other
+ * threads to add their requests, or until the batch is full, before sending every request in the batch to the server
+ * as one {@link com.iplanet.services.comm.share.RequestSet}. Requests are batched per session service URL and load
+ * balancer cookie, so that each batch is routed to the server which owns all of its sessions.
+ * <p>
+ * A request identical to one which is already batched or in flight, for the same session with the same reset flag
+ * and requester, is not sent again: it receives the response to the earlier request.
+ * <p>
+ * ClientSDK: Coalescing is only enabled in ClientSDK mode, and is disabled by setting
+ * {@link SessionConstants#COALESCING_WINDOW_PROPERTY} to 0.
+ */
+public class SessionRequestCoalescer {
+
+    private static final int DEFAULT_WINDOW_MILLIS = 5;
+    private static final int DEFAULT_MAX_REQUESTS = 50;
+
+    private static SessionRequestCoalescer instance;
+
+    private final Debug debug = Debug.getInstance(SESSION_DEBUG);
+    private final long windowNanos;
+    private final int maxRequests;
+    private final ConcurrentMap<String, Batch> openBatches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Promise<SessionResponse, SessionException>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /**
+     * ClientSDK: Static initialisation required for non-Guice usage.
+     *
+     * @return A singleton SessionRequestCoalescer instance, which does not coalesce requests in server mode.
+     */
+    public static synchronized SessionRequestCoalescer getInstance() {
+        if (instance == null) {
+            int windowMillis = SystemProperties.isServerMode()
+                    ? 0 : SystemProperties.getAsInt(COALESCING_WINDOW_PROPERTY, DEFAULT_WINDOW_MILLIS);
+            instance = new SessionRequestCoalescer(windowMillis,
+                    SystemProperties.getAsInt(COALESCING_MAX_REQUESTS_PROPERTY, DEFAULT_MAX_REQUESTS));
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    SessionRequestCoalescer(int windowMillis, int maxRequests) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(windowMillis, 0));
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * Whether the given request may be coalesced with others. Only session refresh requests are coalesced.
+     *
+     * @param request The session request.
+     * @return {@code true} if the request should be sent through {@link #send}.
+     */
+    public boolean canCoalesce(SessionRequest request) {
+        return windowNanos > 0 && maxRequests > 1 && request.getMethodID() == SessionRequest.GetSession;
+    }
+
+    /**
+     * Sends the request as part of a batch, waiting until the response to the batch has been received.
+     *
+     * @param sender The sender used to send the batch, should this thread be the one to send it.
+     * @param svcurl The URL of the session service.
+     * @param request The session request.
+     * @return The response to the request.
+     * @throws SessionException If the batch could not be sent, or its response could not be read.
+     */
+    public SessionResponse send(SessionPLLSender sender, URL svcurl, SessionRequest request)
+            throws SessionException {
+        String batchKey = svcurl.toString() + '\n' + sender.getLBCookie(request);
+        String requestKey = batchKey + '\n' + request.getMethodID() + '\n' + request.getSessionID() + '\n'
+                + request.getResetFlag() + '\n' + request.getRequester();
+
+        PromiseImpl<SessionResponse, SessionException> promise = PromiseImpl.create();
+        Promise<SessionResponse, SessionException> existing = inFlight.putIfAbsent(requestKey, promise);
+        if (existing != null) {
+            if (debug.messageEnabled()) {
+                debug.message("SessionRequestCoalescer: sharing in flight request for {}", request.getSessionID());
+            }
+            return existing.getOrThrowUninterruptibly();
+        }
+
+        while (true) {
+            Batch batch = openBatches.get(batchKey);
+            if (batch == null) {
+                // The thread which opens a batch waits for it to fill and then sends it
+                batch = new Batch(svcurl, request, requestKey, promise);
+                if (openBatches.putIfAbsent(batchKey, batch) == null) {
+                    batch.awaitAndClose();
+                    openBatches.remove(batchKey, batch);
+                    flush(sender, batch);
+                    break;
+                }
+            } else if (batch.add(request, requestKey, promise)) {
+                break;
+            } else {
+                // The batch has been closed, but not yet removed by the thread sending it
+                openBatches.remove(batchKey, batch);
+            }
+        }
+        return promise.getOrThrowUninterruptibly();
+    }
+
+    private void flush(SessionPLLSender sender, Batch batch) {
+        if (debug.messageEnabled()) {
+            debug.message("SessionRequestCoalescer: sending {} session requests to {}", batch.requests.size(),
+                    batch.svcurl);
+        }
+        List<SessionResponse> responses = null;
+        SessionException failure = null;
+        try {
+            responses = sender.sendPLLRequests(batch.svcurl, batch.requests);
+        } catch (SessionException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new SessionException(e);
+        }
+        for (int i = 0; i < batch.requests.size(); i++) {
+            PromiseImpl<SessionResponse, SessionException> promise = batch.promises.get(i);
+            inFlight.remove(batch.requestKeys.get(i), promise);
+            if (failure == null) {
+                promise.handleResult(responses.get(i));
+            } else {
+                promise.handleException(failure);
+            }
+        }
+    }
+
+    /**
+     * The requests for one session server collected during one coalescing window.
+     */
+    private final class Batch {
+        private final URL svcurl;
+        private final long deadline;
+        private final List<SessionRequest> requests = new ArrayList<>();
+        private final List<String> requestKeys = new ArrayList<>();
+        private final List<PromiseImpl<SessionResponse, SessionException>> promises = new ArrayList<>();
+        private boolean closed;
+
+        private Batch(URL svcurl, SessionRequest request, String requestKey,
+                PromiseImpl<SessionResponse, SessionException> promise) {
+            this.svcurl = svcurl;
+            this.deadline = System.nanoTime() + windowNanos;
+            requests.add(request);
+            requestKeys.add(requestKey);
+            promises.add(promise);
+        }
+
+        private synchronized boolean add(SessionRequest request, String requestKey,
+                PromiseImpl<SessionResponse, SessionException> promise) {
+            if (closed) {
+                return false;
+            }
+            requests.add(request);
+            requestKeys.add(requestKey);
+            promises.add(promise);
+            if (requests.size() >= maxRequests) {
+                closed = true;
+                notifyAll();
+            }
+            return true;
+        }
+
+        private synchronized void awaitAndClose() {
+            long remaining = deadline - System.nanoTime();
+            try {
+                while (!closed && remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closed = true;
+        }
+    }
+}
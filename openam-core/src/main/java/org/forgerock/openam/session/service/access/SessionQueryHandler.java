@@ -0,0 +1,34 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access;
+
+/**
+ * Receives the results of a session query as each page of results is read from the session repository, so that the
+ * results never need to be held in memory together.
+ *
+ * @param <T> The type of the results.
+ */
+public interface SessionQueryHandler<T> {
+
+    /**
+     * Handles a single result of the query.
+     *
+     * @param result The result.
+     * @return {@code true} to continue receiving results, or {@code false} to stop the query.
+     */
+    boolean handleResult(T result);
+}
@@ -18,7 +18,6 @@ package org.forgerock.openam.session.service.access;
 
 import static com.iplanet.dpro.session.service.SessionState.*;
 
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -71,15 +70,17 @@ public class SessionQueryManager {
     }
 
     /**
-     * Return partial sessions matching the provided CREST query filter from the CTS servers.
+     * Passes the partial sessions matching the provided CREST query filter from the CTS servers to the handler as
+     * they are read.
      *
      * @param crestQuery The CREST query based on which we should look for matching sessions.
-     * @return The collection of matching partial sessions.
+     * @param handler The handler to receive the matching partial sessions.
      * @throws SessionException  If the request fails.
      */
-    public Collection<PartialSession> getMatchingValidSessions(CrestQuery crestQuery) throws SessionException {
+    public void getMatchingValidSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
+            throws SessionException {
         try {
-            return sessionPersistenceStore.searchPartialSessions(crestQuery);
+            sessionPersistenceStore.searchPartialSessions(crestQuery, handler);
         } catch (CoreTokenException cte) {
             debug.error("An error occurred whilst querying CTS for matching sessions", cte);
             throw new SessionException(cte);
@@ -108,27 +109,30 @@ public class SessionQueryManager {
      * @param actingSession
      * @throws SessionException
      */
-    public SearchResults<SessionInfo> getValidSessions(Session actingSession, String pattern) throws SessionException {
+    public SearchResults<SessionInfo> getValidSessions(Session actingSession, final String pattern)
+            throws SessionException {
         if (actingSession.getState(false) != VALID) {
             throw new SessionException(SessionBundle.getString("invalidSessionState") + actingSession.getID().toString());
         }
         try {
-            Collection<InternalSession> sessions = sessionPersistenceStore.getValidSessions();
             SessionID actorSessionID = actingSession.getSessionID();
-            boolean isAdmin = sessionChangeAuthorizer.hasTopLevelAdminRole(actorSessionID);
-            Set<String> orgs = sessionChangeAuthorizer.getSessionSubjectOrganisations(actorSessionID);
-            Set<SessionInfo> infos = new HashSet<>(sessions.size());
-            for (InternalSession session : sessions) {
-                boolean include = session.isUserSession() || serviceConfig.isReturnAppSessionEnabled();
-                if(include && sessionClientMatchesPattern(session, pattern)
-                        && actorCanAccessSesion(isAdmin, orgs, session)) {
-                    SessionInfo info = session.toSessionInfo();
-                    // replace session id with session handle to prevent impersonation
-                    info.setSessionID(session.getSessionHandle());
-                    infos.add(info);
+            final boolean isAdmin = sessionChangeAuthorizer.hasTopLevelAdminRole(actorSessionID);
+            final Set<String> orgs = sessionChangeAuthorizer.getSessionSubjectOrganisations(actorSessionID);
+            final Set<SessionInfo> infos = new HashSet<>();
+            sessionPersistenceStore.getValidSessions(new SessionQueryHandler<InternalSession>() {
+                @Override
+                public boolean handleResult(InternalSession session) {
+                    boolean include = session.isUserSession() || serviceConfig.isReturnAppSessionEnabled();
+                    if (include && sessionClientMatchesPattern(session, pattern)
+                            && actorCanAccessSesion(isAdmin, orgs, session)) {
+                        SessionInfo info = session.toSessionInfo();
+                        // replace session id with session handle to prevent impersonation
+                        info.setSessionID(session.getSessionHandle());
+                        infos.add(info);
+                    }
+                    return true;
                 }
-
-            }
+            });
             return new SearchResults<>(infos.size(), infos, SearchResults.SUCCESS);
         } catch (Exception e) {
             throw new SessionException(e);
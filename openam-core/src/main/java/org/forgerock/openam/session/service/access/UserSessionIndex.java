@@ -0,0 +1,314 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.forgerock.openam.utils.Time.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.openam.cts.CoreTokenConfig;
+import org.forgerock.openam.session.SessionConstants;
+import org.forgerock.openam.session.service.access.persistence.watchers.SessionChangeListener;
+import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationWatcher;
+import org.forgerock.util.annotations.VisibleForTesting;
+
+import com.iplanet.am.util.SystemProperties;
+import com.iplanet.dpro.session.SessionException;
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionEvent;
+import com.iplanet.dpro.session.service.InternalSessionListener;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * A local index of the sessions each user has, used to enforce session quotas without searching the session store
+ * on every login.
+ * <p>
+ * The sessions of a user are read from the session store the first time they are needed, and the index is then kept
+ * current from the session events of this server and from the changes to the session store made by every server.
+ * Sessions are held in expiry order, so expired sessions are dropped and the remaining sessions counted in
+ * logarithmic time.
+ * <p>
+ * Changes made while the sessions of a user are being read may be missed, so the sessions of each user are read
+ * again once the refresh interval has passed. All users are read again if the session store reports that changes
+ * may have been lost.
+ */
+@Singleton
+public class UserSessionIndex implements InternalSessionListener, SessionChangeListener {
+
+    /** The maximum number of users whose sessions are indexed. */
+    public static final String MAX_USERS_PROPERTY = "org.forgerock.openam.session.quota.index.maxUsers";
+    /** The number of minutes after which the sessions of a user are read again from the session store. */
+    public static final String REFRESH_MINUTES_PROPERTY = "org.forgerock.openam.session.quota.index.refreshMinutes";
+
+    private static final int DEFAULT_MAX_USERS = 100000;
+    private static final int DEFAULT_REFRESH_MINUTES = 15;
+
+    private final Debug debug;
+    private final Provider<SessionQueryManager> sessionQueryManager;
+    private final CoreTokenConfig tokenConfig;
+    private final Cache<String, UserSessions> users;
+
+    /**
+     * Creates the index, and registers it for changes to the session store.
+     *
+     * @param debug The session debug instance.
+     * @param sessionQueryManager The session query manager, used to read the sessions of a user.
+     * @param tokenConfig The Core Token Service configuration, which determines how user ids are stored.
+     * @param watcher The watcher of changes to the session store.
+     */
+    @Inject
+    public UserSessionIndex(@Named(SessionConstants.SESSION_DEBUG) Debug debug,
+            Provider<SessionQueryManager> sessionQueryManager, CoreTokenConfig tokenConfig,
+            SessionModificationWatcher watcher) {
+        this(debug, sessionQueryManager, tokenConfig,
+                SystemProperties.getAsInt(MAX_USERS_PROPERTY, DEFAULT_MAX_USERS),
+                SystemProperties.getAsInt(REFRESH_MINUTES_PROPERTY, DEFAULT_REFRESH_MINUTES));
+        watcher.addListener(this);
+    }
+
+    @VisibleForTesting
+    UserSessionIndex(Debug debug, Provider<SessionQueryManager> sessionQueryManager, CoreTokenConfig tokenConfig,
+            int maxUsers, int refreshMinutes) {
+        this.debug = debug;
+        this.sessionQueryManager = sessionQueryManager;
+        this.tokenConfig = tokenConfig;
+        this.users = CacheBuilder.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(refreshMinutes, MINUTES)
+                .build();
+    }
+
+    /**
+     * Returns the number of unexpired sessions of a user.
+     *
+     * @param uuid The universal id of the user.
+     * @return The number of sessions.
+     * @throws SessionException If the sessions of the user had to be read, and could not be.
+     */
+    public int getSessionCount(String uuid) throws SessionException {
+        return getUserSessions(uuid).count(currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Returns the unexpired sessions of a user, in the form returned by
+     * {@link SessionQueryManager#getAllSessionsByUUID(String)}.
+     *
+     * @param uuid The universal id of the user.
+     * @return A copy of the session ids of the user, mapped to their expiry times in seconds since the epoch.
+     * @throws SessionException If the sessions of the user had to be read, and could not be.
+     */
+    public Map<String, Long> getSessions(String uuid) throws SessionException {
+        return getUserSessions(uuid).snapshot(currentTimeMillis() / 1000);
+    }
+
+    private UserSessions getUserSessions(final String uuid) throws SessionException {
+        final String userId = normalise(uuid);
+        try {
+            return users.get(userId, new Callable<UserSessions>() {
+                @Override
+                public UserSessions call() throws SessionException {
+                    if (debug.messageEnabled()) {
+                        debug.message("UserSessionIndex: reading sessions of {} from the session store", userId);
+                    }
+                    return new UserSessions(sessionQueryManager.get().getAllSessionsByUUID(userId));
+                }
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SessionException) {
+                throw (SessionException) e.getCause();
+            }
+            throw new SessionException(e.getCause());
+        }
+    }
+
+    @Override
+    public void onEvent(InternalSessionEvent event) {
+        InternalSession session = event.getInternalSession();
+        if (session.getUUID() == null) {
+            return;
+        }
+        switch (event.getType()) {
+        case SESSION_CREATION:
+            long expiryTime = session.getExpirationTime(MILLISECONDS)
+                    + tokenConfig.getSessionExpiryGracePeriod(MILLISECONDS);
+            update(session.getID(), tokenConfig.getUserId(session), MILLISECONDS.toSeconds(expiryTime));
+            break;
+        case IDLE_TIMEOUT:
+        case MAX_TIMEOUT:
+        case LOGOUT:
+        case DESTROY:
+            sessionDeleted(session.getID(), tokenConfig.getUserId(session));
+            break;
+        default:
+            break;
+        }
+    }
+
+    @Override
+    public void sessionAdded(SessionID sessionID, String userId, long expiryTime) {
+        update(sessionID, userId, expiryTime);
+    }
+
+    @Override
+    public void sessionModified(SessionID sessionID, String userId, long expiryTime) {
+        update(sessionID, userId, expiryTime);
+    }
+
+    @Override
+    public void sessionDeleted(SessionID sessionID, String userId) {
+        String sid = sessionID.toString();
+        if (userId != null) {
+            UserSessions sessions = users.getIfPresent(normalise(userId));
+            if (sessions != null) {
+                sessions.remove(sid);
+            }
+        } else {
+            for (UserSessions sessions : users.asMap().values()) {
+                sessions.remove(sid);
+            }
+        }
+    }
+
+    @Override
+    public void changesLost() {
+        debug.warning("UserSessionIndex: session changes may have been missed, all users will be read again");
+        users.invalidateAll();
+    }
+
+    private void update(SessionID sessionID, String userId, long expiryTime) {
+        if (userId == null) {
+            return;
+        }
+        // Only users already indexed are updated: the sessions of any other user are read when first needed.
+        UserSessions sessions = users.getIfPresent(normalise(userId));
+        if (sessions == null) {
+            return;
+        }
+        if (expiryTime < 0) {
+            // Without an expiry time the session cannot be ordered, so read the sessions of the user again.
+            users.invalidate(normalise(userId));
+        } else {
+            sessions.put(sessionID.toString(), expiryTime);
+        }
+    }
+
+    private String normalise(String uuid) {
+        return tokenConfig.isCaseSensitiveUserId() ? uuid : uuid.toLowerCase();
+    }
+
+    /**
+     * The sessions of one user, ordered by expiry time.
+     */
+    private static final class UserSessions {
+        private final Map<String, Long> expiryTimes = new HashMap<>();
+        private final NavigableSet<SessionExpiry> byExpiry = new TreeSet<>();
+
+        private UserSessions(Map<String, Long> sessions) {
+            for (Map.Entry<String, Long> session : sessions.entrySet()) {
+                put(session.getKey(), session.getValue());
+            }
+        }
+
+        private synchronized void put(String sid, long expiryTime) {
+            Long previous = expiryTimes.put(sid, expiryTime);
+            if (previous != null) {
+                byExpiry.remove(new SessionExpiry(previous, sid));
+            }
+            byExpiry.add(new SessionExpiry(expiryTime, sid));
+        }
+
+        private synchronized void remove(String sid) {
+            Long previous = expiryTimes.remove(sid);
+            if (previous != null) {
+                byExpiry.remove(new SessionExpiry(previous, sid));
+            }
+        }
+
+        private synchronized int count(long now) {
+            removeExpired(now);
+            return expiryTimes.size();
+        }
+
+        private synchronized Map<String, Long> snapshot(long now) {
+            removeExpired(now);
+            return new HashMap<>(expiryTimes);
+        }
+
+        private void removeExpired(long now) {
+            Iterator<SessionExpiry> iterator = byExpiry.iterator();
+            while (iterator.hasNext()) {
+                SessionExpiry expiry = iterator.next();
+                if (expiry.expiryTime > now) {
+                    break;
+                }
+                iterator.remove();
+                expiryTimes.remove(expiry.sid);
+            }
+        }
+    }
+
+    /**
+     * A session id with its expiry time, ordered by expiry time and then session id.
+     */
+    private static final class SessionExpiry implements Comparable<SessionExpiry> {
+        private final long expiryTime;
+        private final String sid;
+
+        private SessionExpiry(long expiryTime, String sid) {
+            this.expiryTime = expiryTime;
+            this.sid = sid;
+        }
+
+        @Override
+        public int compareTo(SessionExpiry other) {
+            int result = Long.compare(expiryTime, other.expiryTime);
+            return result != 0 ? result : sid.compareTo(other.sid);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SessionExpiry)) {
+                return false;
+            }
+            SessionExpiry that = (SessionExpiry) o;
+            return expiryTime == that.expiryTime && sid.equals(that.sid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (expiryTime ^ (expiryTime >>> 32)) + sid.hashCode();
+        }
+    }
+}
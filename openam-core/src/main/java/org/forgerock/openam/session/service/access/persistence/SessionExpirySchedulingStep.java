@@ -0,0 +1,48 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access.persistence;
+
+import javax.inject.Inject;
+
+import org.forgerock.openam.cts.worker.process.SessionExpiryScheduler;
+
+import com.iplanet.dpro.session.service.InternalSession;
+
+/**
+ * Keeps the {@link SessionExpiryScheduler} up to date with the expiry times of the sessions stored by this server.
+ */
+public class SessionExpirySchedulingStep extends AbstractInternalSessionStoreStep {
+
+    private final SessionExpiryScheduler scheduler;
+
+    @Inject
+    public SessionExpirySchedulingStep(SessionExpiryScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void store(InternalSession session, InternalSessionStore next) throws SessionPersistenceException {
+        next.store(session);
+        scheduler.schedule(session);
+    }
+
+    @Override
+    public void remove(InternalSession session, InternalSessionStore next) throws SessionPersistenceException {
+        next.remove(session);
+        scheduler.cancel(session);
+    }
+}
@@ -20,7 +20,6 @@ import static org.forgerock.openam.session.SessionConstants.*;
 import static org.forgerock.util.time.Duration.duration;
 
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,6 +34,7 @@ import javax.inject.Named;
 import org.forgerock.guava.common.collect.ImmutableMap;
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.json.JsonPointer;
+import org.forgerock.openam.cts.CTSPagedQuery;
 import org.forgerock.openam.cts.CTSPersistentStore;
 import org.forgerock.openam.cts.adapters.SessionAdapter;
 import org.forgerock.openam.cts.api.fields.SessionTokenField;
@@ -48,6 +48,7 @@ import org.forgerock.openam.dpro.session.PartialSession;
 import org.forgerock.openam.dpro.session.PartialSessionFactory;
 import org.forgerock.openam.identity.idm.IdentityUtils;
 import org.forgerock.openam.session.SessionConstants;
+import org.forgerock.openam.session.service.access.SessionQueryHandler;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
 import org.forgerock.openam.tokens.CoreTokenField;
 import org.forgerock.openam.utils.CollectionUtils;
@@ -76,6 +77,7 @@ import com.sun.identity.shared.debug.Debug;
 public class SessionPersistenceStore {
 
     private static final boolean caseSensitiveUUID = SystemProperties.getAsBoolean(Constants.CASE_SENSITIVE_UUID);
+    private static final int QUERY_PAGE_SIZE = SystemProperties.getAsInt(Constants.SESSION_QUERY_PAGE_SIZE, 100);
 
     private static final Map<String, CoreTokenField> JSON_TO_CTS_MAP = ImmutableMap.<String, CoreTokenField>builder()
             .put(JSON_SESSION_USERNAME, CoreTokenField.USER_ID)
@@ -185,17 +187,21 @@ public class SessionPersistenceStore {
     }
 
     /**
-     * Return partial sessions matching the provided CREST query filter from the CTS servers.
+     * Passes the partial sessions matching the provided CREST query filter from the CTS servers to the handler, a page
+     * at a time as each page is read. The query stops once the maximum session list size has been reached, or when the
+     * handler asks for no further results.
      *
      * @param crestQuery The CREST query based on which we should look for matching sessions.
-     * @return The collection of matching partial sessions.
+     * @param handler The handler to receive the matching partial sessions.
      * @throws CoreTokenException If the partial query CTS call fails.
      */
-    public Collection<PartialSession> searchPartialSessions(CrestQuery crestQuery) throws CoreTokenException {
+    public void searchPartialSessions(CrestQuery crestQuery, SessionQueryHandler<PartialSession> handler)
+            throws CoreTokenException {
         final QueryFilter<JsonPointer> queryFilter = crestQuery.getQueryFilter();
         Reject.ifNull(queryFilter, "Query Filter must be specified in the request");
+        final int sizeLimit = sessionServiceConfig.getMaxSessionListSize();
         FilterAttributeBuilder filterAttributeBuilder = new TokenFilterBuilder()
-                .withSizeLimit(sessionServiceConfig.getMaxSessionListSize())
+                .withSizeLimit(sizeLimit)
                 .withTimeLimit(duration(10, TimeUnit.SECONDS)).and();
         queryFilter.accept(new SessionQueryFilterVisitor(identityUtils), filterAttributeBuilder);
         final TokenFilter tokenFilter = filterAttributeBuilder.build();
@@ -203,14 +209,19 @@ public class SessionPersistenceStore {
 
         filterAttributeBuilder.withAttribute(SessionTokenField.SESSION_STATE.getField(), SessionState.VALID.toString());
         addFieldsToFilter(filterAttributeBuilder, crestQuery.getFields());
-        Collection<PartialSession> results;
-        final Collection<PartialToken> partialTokens = coreTokenService.attributeQuery(
-                tokenFilter);
-        results = new ArrayList<>(partialTokens.size());
-        for (PartialToken partialToken : partialTokens) {
-            results.add(partialSessionFactory.fromPartialToken(partialToken));
+        try (CTSPagedQuery<PartialToken> query = coreTokenService.pagedAttributeQuery(tokenFilter,
+                pageSize(sizeLimit))) {
+            int handled = 0;
+            Collection<PartialToken> page;
+            while ((page = query.nextPage()) != null) {
+                for (PartialToken partialToken : page) {
+                    if (!handler.handleResult(partialSessionFactory.fromPartialToken(partialToken))
+                            || ++handled == sizeLimit) {
+                        return;
+                    }
+                }
+            }
         }
-        return results;
     }
 
     private void addFieldsToFilter(FilterAttributeBuilder filterAttributeBuilder, List<JsonPointer> fields) {
@@ -229,13 +240,23 @@ public class SessionPersistenceStore {
     }
 
     private InternalSession getInternalSessionFromToken(Token token) {
+        return initialiseSession(tokenAdapter.fromToken(token));
+    }
+
+    /**
+     * Gives a deserialised session the service dependencies it needs, as is done for every session read from the
+     * CTS.
+     *
+     * @param session A session which has just been deserialised.
+     * @return The same session.
+     */
+    public InternalSession initialiseSession(InternalSession session) {
 
         /*
          * As a side effect of deserialising an InternalSession, we must trigger
          * the InternalSession to reschedule its timing task to ensure it
          * maintains the session expiry function.
          */
-        InternalSession session = tokenAdapter.fromToken(token);
         session.setSessionServiceDependencies(InjectorHolder.getInstance(SessionService.class),
                 InjectorHolder.getInstance(SessionServiceConfig.class),
                 InjectorHolder.getInstance(InternalSessionEventBroker.class),
@@ -361,22 +382,37 @@ public class SessionPersistenceStore {
     }
 
     /**
-     * Returns all the valid sessions from the CTS server
+     * Passes all the valid sessions from the CTS server to the handler, a page at a time as each page is read. The
+     * query stops once the maximum session list size has been reached, or when the handler asks for no further
+     * results.
      *
-     * @return The collection of all valid sessions
+     * @param handler The handler to receive the valid sessions.
      * @throws CoreTokenException if the call to CTS to get valid session fails
      */
-    public Collection<InternalSession> getValidSessions() throws CoreTokenException {
+    public void getValidSessions(SessionQueryHandler<InternalSession> handler) throws CoreTokenException {
+        final int sizeLimit = sessionServiceConfig.getMaxSessionListSize();
         TokenFilter filter = new TokenFilterBuilder()
-                .withSizeLimit(sessionServiceConfig.getMaxSessionListSize())
+                .withSizeLimit(sizeLimit)
                 .withTimeLimit(duration(10, TimeUnit.SECONDS)).and()
                 .withAttribute(SessionTokenField.SESSION_STATE.getField(), SessionState.VALID.toString())
                 .build();
-        Collection<Token> tokens = coreTokenService.query(filter);
-        List<InternalSession> results = new ArrayList<>(tokens.size());
-        for (Token token : tokens) {
-            results.add(getInternalSessionFromToken(token));
+        try (CTSPagedQuery<Token> query = coreTokenService.pagedQuery(filter, pageSize(sizeLimit))) {
+            int handled = 0;
+            Collection<Token> page;
+            while ((page = query.nextPage()) != null) {
+                for (Token token : page) {
+                    if (!handler.handleResult(getInternalSessionFromToken(token)) || ++handled == sizeLimit) {
+                        return;
+                    }
+                }
+            }
         }
-        return results;
+    }
+
+    /**
+     * Pages are never larger than the whole result may be, so that a small result is read with a single request.
+     */
+    private static int pageSize(int sizeLimit) {
+        return sizeLimit > 0 ? Math.min(QUERY_PAGE_SIZE, sizeLimit) : QUERY_PAGE_SIZE;
     }
 }
@@ -16,31 +16,41 @@
 
 package org.forgerock.openam.session.service.access.persistence.caching;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicStampedReference;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 
 import org.forgerock.guava.common.base.Throwables;
 import org.forgerock.guava.common.cache.Cache;
 import org.forgerock.guava.common.cache.CacheBuilder;
 import org.forgerock.guava.common.cache.CacheStats;
+import org.forgerock.guava.common.cache.RemovalListener;
+import org.forgerock.guava.common.cache.RemovalNotification;
 import org.forgerock.guava.common.cache.Weigher;
 import org.forgerock.guava.common.collect.ImmutableMap;
 import org.forgerock.openam.session.SessionConstants;
 import org.forgerock.openam.session.service.access.persistence.InternalSessionStore;
 import org.forgerock.openam.session.service.access.persistence.InternalSessionStoreStep;
 import org.forgerock.openam.session.service.access.persistence.SessionPersistenceException;
+import org.forgerock.openam.session.service.access.persistence.SessionPersistenceManagerStep;
+import org.forgerock.openam.session.service.access.persistence.SessionPersistenceStore;
 import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationListener;
 import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationWatcher;
 import org.forgerock.openam.utils.StringUtils;
@@ -48,13 +58,28 @@ import org.forgerock.util.annotations.VisibleForTesting;
 
 import com.iplanet.dpro.session.SessionID;
 import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionCodec;
 import com.iplanet.dpro.session.service.SessionServiceConfig;
+import com.iplanet.dpro.session.service.SessionState;
 import com.sun.identity.shared.debug.Debug;
+import com.sun.identity.shared.stats.Stats;
+import com.sun.identity.shared.stats.StatsListener;
 
 /**
  * Session cache implemented using a simple in-memory cache data structure.
+ * <p>
+ * When {@link SessionServiceConfig#getOffHeapSessionCacheSize()} is set, sessions evicted from the in-memory cache
+ * because it is full are encoded into an {@link OffHeapSessionStore}, outside of the Java heap. A session which is
+ * looked up again is decoded from there and returned to the in-memory cache, rather than being read from the CTS.
+ * The in-memory cache does not then use soft references, as the off-heap tier is what keeps old generation small.
+ * <p>
+ * A session can be invalidated while it is being moved off-heap. The IDs of invalidated sessions are therefore
+ * remembered for a while, and a session invalidated before or during its move is not left in the off-heap tier.
  */
-public class InMemoryInternalSessionCacheStep implements InternalSessionStoreStep {
+public class InMemoryInternalSessionCacheStep implements InternalSessionStoreStep, StatsListener {
+
+    private static final int OFF_HEAP_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long INVALIDATED_SESSION_EXPIRY_SECONDS = 60;
 
     /**
      * Atomic stamped reference to the cache. The stamp is the maximum size of the cache. Permits atomic updates of
@@ -63,16 +88,40 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
     private final AtomicStampedReference<Cache<String, InternalSession>> cache;
     private final SessionServiceConfig sessionConfig;
     private final Debug debug;
+    private final InternalSessionCodec codec;
+    private final Provider<SessionPersistenceStore> persistenceStore;
+    private final Provider<SessionPersistenceManagerStep> persistenceManager;
+    private final Stats stats;
+    private final OffHeapSessionStore offHeapStore;
+    private final Set<String> invalidatedSessionIds;
 
     @Inject
     @VisibleForTesting
     InMemoryInternalSessionCacheStep(SessionServiceConfig sessionConfig,
                                      @Named(SessionConstants.SESSION_DEBUG) Debug sessionDebug,
-                                     SessionModificationWatcher watcher) {
+                                     SessionModificationWatcher watcher,
+                                     InternalSessionCodec codec,
+                                     Provider<SessionPersistenceStore> persistenceStore,
+                                     Provider<SessionPersistenceManagerStep> persistenceManager,
+                                     @Named(SessionConstants.STATS_MASTER_TABLE) Stats stats) {
         final int maxCacheSize = sessionConfig.getMaxSessionCacheSize();
+        final long offHeapSize = sessionConfig.getOffHeapSessionCacheSize();
         this.sessionConfig = sessionConfig;
-        this.cache = new AtomicStampedReference<>(buildCache(maxCacheSize), maxCacheSize);
         this.debug = sessionDebug;
+        this.codec = codec;
+        this.persistenceStore = persistenceStore;
+        this.persistenceManager = persistenceManager;
+        this.stats = stats;
+        this.offHeapStore = offHeapSize > 0 ? new OffHeapSessionStore(offHeapSize, OFF_HEAP_SEGMENT_SIZE) : null;
+        this.invalidatedSessionIds = offHeapStore == null ? null : Collections.newSetFromMap(CacheBuilder.newBuilder()
+                .expireAfterWrite(INVALIDATED_SESSION_EXPIRY_SECONDS, TimeUnit.SECONDS)
+                .<String, Boolean>build()
+                .asMap());
+        this.cache = new AtomicStampedReference<>(buildCache(maxCacheSize), maxCacheSize);
+
+        if (stats.isEnabled()) {
+            stats.addStatsListener(this);
+        }
 
         watcher.addListener(new SessionModificationListener() {
             @Override
@@ -139,6 +188,11 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
         // Add all references in a single go. While this is not atomic in the current Guava implementation (as far as
         // I can tell), it provides the opportunity for more sophisticated implementations to optimise the insert.
         getCache().putAll(toAdd);
+
+        // Any copy evicted earlier is now out of date
+        if (offHeapStore != null) {
+            offHeapStore.remove(session.getID().toString());
+        }
     }
 
     @Override
@@ -150,6 +204,10 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
     }
 
     private void invalidateCache(final SessionID sessionID) {
+        if (offHeapStore != null) {
+            // Stops an eviction racing with this invalidation from moving the session off-heap
+            invalidatedSessionIds.add(sessionID.toString());
+        }
         InternalSession session = getCache().getIfPresent(sessionID.toString());
         if (session != null) {
             // Remove all references to this session
@@ -166,6 +224,9 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
 
             getCache().invalidateAll(references);
         }
+        if (offHeapStore != null) {
+            offHeapStore.remove(sessionID.toString());
+        }
     }
 
     @VisibleForTesting
@@ -192,7 +253,10 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
             return getCache().get(key, new Callable<InternalSession>() {
                 @Override
                 public InternalSession call() throws Exception {
-                    InternalSession result = sessionFinder.call();
+                    InternalSession result = findOffHeap(key);
+                    if (result == null) {
+                        result = sessionFinder.call();
+                    }
                     if (result == null) {
                         throw NullResultException.INSTANCE;
                     }
@@ -238,16 +302,108 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
         return currentCache;
     }
 
-    private static Cache<String, InternalSession> buildCache(final int maxCacheSize) {
+    private Cache<String, InternalSession> buildCache(final int maxCacheSize) {
         if (maxCacheSize <= 0) {
             return EmptyCache.INSTANCE;
         }
-        return CacheBuilder.newBuilder()
+        CacheBuilder<String, InternalSession> builder = CacheBuilder.newBuilder()
                     .concurrencyLevel(16)
                     .maximumWeight(maxCacheSize)
                     .weigher(new SessionIDWeigher())
-                    .softValues()
-                    .build();
+                    .recordStats();
+        if (offHeapStore == null) {
+            return builder.softValues().build();
+        }
+        return builder.removalListener(new OffHeapDemotionListener()).build();
+    }
+
+    /**
+     * Decodes a session held by the off-heap tier, restoring the dependencies that a session read from the CTS is
+     * given.
+     *
+     * @param key the id/restricted id/handle of the session to lookup.
+     * @return the session, or {@code null} if the off-heap tier does not hold it.
+     */
+    private InternalSession findOffHeap(final String key) {
+        if (offHeapStore == null) {
+            return null;
+        }
+        byte[] data = offHeapStore.get(key);
+        if (data == null) {
+            return null;
+        }
+        InternalSession session;
+        try {
+            session = codec.decode(data);
+        } catch (RuntimeException e) {
+            debug.warning("InMemoryInternalSessionCacheStep: Unable to decode session held off-heap", e);
+            offHeapStore.remove(key);
+            return null;
+        }
+        persistenceStore.get().initialiseSession(session);
+        session.setPersistenceManager(persistenceManager.get());
+        return session;
+    }
+
+    @Override
+    public void printStats() {
+        StringBuilder message = new StringBuilder("Internal session cache ").append(getCache().stats());
+        if (offHeapStore != null) {
+            long hits = offHeapStore.getHitCount();
+            long requests = hits + offHeapStore.getMissCount();
+            message.append("\nOff-heap session cache sessions/evictions: ")
+                    .append(offHeapStore.getEntryCount()).append('/').append(offHeapStore.getEvictionCount())
+                    .append("\nOff-heap session cache hits/requests: ").append(hits).append('/').append(requests)
+                    .append("\nOff-heap session cache bytes resident/allocated: ")
+                    .append(offHeapStore.getBytesResident()).append('/').append(offHeapStore.getBytesAllocated());
+        }
+        long collections = 0;
+        long collectionMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            collectionMillis += Math.max(0, collector.getCollectionTime());
+        }
+        message.append("\nGarbage collections/milliseconds: ").append(collections).append('/')
+                .append(collectionMillis);
+        stats.record(message.toString());
+    }
+
+    /**
+     * Moves sessions evicted from the in-memory cache because it is full into the off-heap tier. Only the entry for
+     * the master session ID is moved, as the off-heap record holds all of the session's references. Sessions which
+     * are no longer valid, or which have been invalidated, are not moved, and a session invalidated while it is being
+     * moved is removed again.
+     */
+    private class OffHeapDemotionListener implements RemovalListener<String, InternalSession> {
+        @Override
+        public void onRemoval(final @Nonnull RemovalNotification<String, InternalSession> notification) {
+            InternalSession session = notification.getValue();
+            if (!notification.wasEvicted() || session == null
+                    || !StringUtils.isEqualTo(notification.getKey(), session.getID().toString())) {
+                return;
+            }
+            String sessionId = session.getID().toString();
+            if (session.getState() != SessionState.VALID || invalidatedSessionIds.contains(sessionId)) {
+                return;
+            }
+            List<String> keys = new ArrayList<>();
+            keys.add(sessionId);
+            if (session.getSessionHandle() != null) {
+                keys.add(session.getSessionHandle());
+            }
+            for (SessionID restrictedToken : session.getRestrictedTokens()) {
+                keys.add(restrictedToken.toString());
+            }
+            try {
+                if (!offHeapStore.put(keys, codec.encode(session))) {
+                    debug.message("InMemoryInternalSessionCacheStep: Session too large to hold off-heap");
+                } else if (invalidatedSessionIds.contains(sessionId)) {
+                    offHeapStore.remove(sessionId);
+                }
+            } catch (RuntimeException e) {
+                debug.warning("InMemoryInternalSessionCacheStep: Unable to move session off-heap", e);
+            }
+        }
     }
 
     /**
@@ -351,7 +507,7 @@ public class InMemoryInternalSessionCacheStep implements InternalSessionStoreSte
 
         @Override
         public CacheStats stats() {
-            return null;
+            return new CacheStats(0, 0, 0, 0, 0, 0);
         }
 
         @Override
@@ -0,0 +1,385 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access.persistence.caching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds encoded sessions outside of the Java heap, in direct byte buffer segments.
+ * <p>
+ * Records are appended to the current segment. When it is full the next segment in the ring is reused, and every
+ * record still held in it is evicted, so the store never needs compacting. A record holds the session bytes and
+ * every key the session can be looked up by. The on-heap index maps a 64 bit hash of each key to the location of its
+ * record in primitive arrays, so it costs two longs per key however long the session IDs are. A lookup checks the
+ * key held in the record, so a hash collision is only ever a miss.
+ * <p>
+ * Direct memory is allocated one segment at a time, as it is first needed, and counts against
+ * {@code -XX:MaxDirectMemorySize}.
+ */
+final class OffHeapSessionStore {
+
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    private final ByteBuffer[] segments;
+    private final int[] segmentLimits;
+    private final int segmentSize;
+    private final LongIndex index = new LongIndex();
+    private int currentSegment;
+    private long bytesResident;
+    private long entryCount;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a store of the given size. A store smaller than two segments is split into two smaller segments.
+     *
+     * @param capacity The total size of the segments, in bytes.
+     * @param maxSegmentSize The largest size of each segment, in bytes. No record larger than a segment can be stored.
+     */
+    OffHeapSessionStore(long capacity, int maxSegmentSize) {
+        this.segmentSize = (int) Math.max(1, Math.min(maxSegmentSize, capacity / 2));
+        int segmentCount = (int) Math.max(2, (capacity + segmentSize - 1) / segmentSize);
+        this.segments = new ByteBuffer[segmentCount];
+        this.segmentLimits = new int[segmentCount];
+    }
+
+    /**
+     * Stores an encoded session, replacing any session already stored under its first key.
+     *
+     * @param keys The keys the session can be looked up by, starting with its session ID.
+     * @param data The encoded session.
+     * @return {@code false} if the session is too large to be stored.
+     */
+    synchronized boolean put(List<String> keys, byte[] data) {
+        remove(keys.get(0));
+        List<byte[]> encodedKeys = new ArrayList<>(keys.size());
+        int length = RECORD_HEADER_LENGTH + data.length;
+        for (String key : keys) {
+            byte[] encodedKey = key.getBytes(StandardCharsets.UTF_8);
+            encodedKeys.add(encodedKey);
+            length += 4 + encodedKey.length;
+        }
+        if (length > segmentSize) {
+            return false;
+        }
+
+        if (segments[currentSegment] == null) {
+            segments[currentSegment] = ByteBuffer.allocateDirect(segmentSize);
+        } else if (segmentLimits[currentSegment] + length > segmentSize) {
+            currentSegment = (currentSegment + 1) % segments.length;
+            if (segments[currentSegment] == null) {
+                segments[currentSegment] = ByteBuffer.allocateDirect(segmentSize);
+            } else {
+                evictSegment(currentSegment);
+            }
+        }
+
+        int offset = segmentLimits[currentSegment];
+        ByteBuffer segment = segments[currentSegment];
+        segment.position(offset);
+        segment.putInt(length);
+        segment.putInt(encodedKeys.size());
+        for (byte[] encodedKey : encodedKeys) {
+            segment.putInt(encodedKey.length);
+            segment.put(encodedKey);
+        }
+        segment.put(data);
+        segmentLimits[currentSegment] = offset + length;
+
+        long location = location(currentSegment, offset);
+        for (String key : keys) {
+            long hash = hash(key);
+            long displaced = index.get(hash);
+            index.put(hash, location);
+            if (displaced != LongIndex.ABSENT && displaced != location && !isLive(displaced)) {
+                // Every key of the displaced record now refers to a newer record, so it can no longer be found
+                bytesResident -= segments[segmentOf(displaced)].getInt(offsetOf(displaced));
+                entryCount--;
+            }
+        }
+        bytesResident += length;
+        entryCount++;
+        return true;
+    }
+
+    /**
+     * Gets a copy of the encoded session stored under the given key.
+     *
+     * @param key The session ID, session handle or restricted token ID.
+     * @return The encoded session, or {@code null} if none is stored.
+     */
+    synchronized byte[] get(String key) {
+        long location = index.get(hash(key));
+        if (location == LongIndex.ABSENT || !readKeys(location).contains(key)) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        ByteBuffer segment = segments[segmentOf(location)];
+        int offset = offsetOf(location);
+        int length = segment.getInt(offset);
+        int dataOffset = offset + RECORD_HEADER_LENGTH;
+        for (int i = segment.getInt(offset + 4); i > 0; i--) {
+            dataOffset += 4 + segment.getInt(dataOffset);
+        }
+        byte[] data = new byte[offset + length - dataOffset];
+        segment.position(dataOffset);
+        segment.get(data);
+        return data;
+    }
+
+    /**
+     * Removes the session stored under the given key, along with all of its other keys.
+     *
+     * @param key Any key of the session.
+     */
+    synchronized void remove(String key) {
+        long location = index.get(hash(key));
+        if (location == LongIndex.ABSENT) {
+            return;
+        }
+        List<String> keys = readKeys(location);
+        if (keys.contains(key) && removeKeys(keys, location)) {
+            bytesResident -= segments[segmentOf(location)].getInt(offsetOf(location));
+            entryCount--;
+        }
+    }
+
+    private void evictSegment(int segmentIndex) {
+        ByteBuffer segment = segments[segmentIndex];
+        int offset = 0;
+        while (offset < segmentLimits[segmentIndex]) {
+            int length = segment.getInt(offset);
+            long location = location(segmentIndex, offset);
+            if (removeKeys(readKeys(location), location)) {
+                bytesResident -= length;
+                entryCount--;
+                evictionCount++;
+            }
+            offset += length;
+        }
+        segmentLimits[segmentIndex] = 0;
+    }
+
+    /**
+     * Removes the index entries of the given keys which still refer to the given record.
+     *
+     * @return {@code true} if the record was still live.
+     */
+    private boolean removeKeys(List<String> keys, long location) {
+        boolean live = false;
+        for (String key : keys) {
+            long hash = hash(key);
+            if (index.get(hash) == location) {
+                index.remove(hash);
+                live = true;
+            }
+        }
+        return live;
+    }
+
+    private boolean isLive(long location) {
+        for (String key : readKeys(location)) {
+            if (index.get(hash(key)) == location) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> readKeys(long location) {
+        ByteBuffer segment = segments[segmentOf(location)];
+        int position = offsetOf(location) + 4;
+        int keyCount = segment.getInt(position);
+        position += 4;
+        List<String> keys = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            byte[] encodedKey = new byte[segment.getInt(position)];
+            segment.position(position + 4);
+            segment.get(encodedKey);
+            keys.add(new String(encodedKey, StandardCharsets.UTF_8));
+            position += 4 + encodedKey.length;
+        }
+        return keys;
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key. Zero marks an empty slot of the index, so is never returned.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @return The number of lookups which found a session.
+     */
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of lookups which did not find a session.
+     */
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return The number of sessions evicted to make space for others.
+     */
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return The number of sessions held.
+     */
+    synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return The number of bytes held by live sessions.
+     */
+    synchronized long getBytesResident() {
+        return bytesResident;
+    }
+
+    /**
+     * @return The number of bytes of direct memory allocated to segments.
+     */
+    synchronized long getBytesAllocated() {
+        long allocated = 0;
+        for (ByteBuffer segment : segments) {
+            if (segment != null) {
+                allocated += segment.capacity();
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Open addressing hash map from non-zero long keys to long values, using linear probing.
+     */
+    static final class LongIndex {
+
+        static final long ABSENT = -1;
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private long[] values = new long[INITIAL_CAPACITY];
+        private int size;
+
+        long get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return ABSENT;
+        }
+
+        void put(long key, long value) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != key) {
+                if (keys[slot] == 0) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = 0;
+            size--;
+            // Shift back any later entries of the probe sequence which can now sit closer to their home slot
+            int next = (slot + 1) & mask;
+            while (keys[next] != 0) {
+                int home = slot(keys[next], mask);
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    keys[next] = 0;
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        /**
+         * @return The number of slots, which is always a power of two.
+         */
+        int capacity() {
+            return keys.length;
+        }
+
+        static int slot(long key, int mask) {
+            long mixed = key ^ (key >>> 32);
+            mixed *= 0x9e3779b97f4a7c15L;
+            return (int) (mixed >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access.persistence.caching;
+
+import static org.forgerock.json.JsonValue.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.json.JsonValue;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.openam.session.SessionConstants;
+import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationListener;
+import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationWatcher;
+import org.forgerock.util.annotations.VisibleForTesting;
+
+import com.iplanet.am.util.SystemProperties;
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.service.InternalSessionEvent;
+import com.iplanet.dpro.session.service.InternalSessionListener;
+import com.iplanet.dpro.session.service.SessionState;
+import com.iplanet.dpro.session.share.SessionInfo;
+import com.sun.identity.shared.Constants;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Caches the {@link SessionInfo} of valid sessions, so that requests which only validate a session can be answered
+ * without reading and deserialising the whole {@link com.iplanet.dpro.session.service.InternalSession}.
+ * <p>
+ * Entries are kept for no longer than the configured staleness window. A session which is logged out, destroyed,
+ * timed out or has its properties changed on this server is invalidated here and announced over the
+ * {@link NotificationBroker}, which invalidates it on every other server in the cluster. Changes to the stored
+ * session seen by the {@link SessionModificationWatcher} also invalidate it.
+ * <p>
+ * Information loaded while its session was invalidated may already be stale, so it is not cached. Each invalidation
+ * leaves a tombstone recording when the session was invalidated, so that it only discards loads of that session. A
+ * bounded number of tombstones is kept, and loads which started before the latest forgotten tombstone are discarded.
+ * <p>
+ * Only master session IDs are cached, as the restriction of a restricted token must be checked on every use.
+ */
+@Singleton
+public class SessionInfoCache implements InternalSessionListener {
+
+    static final Topic TOPIC = Topic.of("/internal/session");
+    private static final String SOURCE_KEY = "source";
+    private static final String TOKEN_ID_KEY = "tokenId";
+    private static final int DEFAULT_STALENESS_MILLIS = 1000;
+    private static final int DEFAULT_MAX_SESSIONS = 10000;
+
+    private final Debug debug;
+    private final NotificationBroker broker;
+    private final Cache<String, SessionInfo> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<String, Long> tombstones = new LinkedHashMap<>();
+    private final int maxTombstones;
+    private long forgottenGeneration;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Creates an instance of the {@code SessionInfoCache}, configured from system properties.
+     *
+     * @param debug The session debug instance.
+     * @param broker The cluster-wide notification broker.
+     * @param watcher The watcher for changes to stored sessions.
+     */
+    @Inject
+    public SessionInfoCache(@Named(SessionConstants.SESSION_DEBUG) Debug debug, NotificationBroker broker,
+            SessionModificationWatcher watcher) {
+        this(debug, broker, watcher,
+                SystemProperties.getAsInt(Constants.SESSION_INFO_CACHE_STALENESS, DEFAULT_STALENESS_MILLIS),
+                SystemProperties.getAsInt(Constants.SESSION_INFO_CACHE_SIZE, DEFAULT_MAX_SESSIONS));
+    }
+
+    @VisibleForTesting
+    SessionInfoCache(Debug debug, NotificationBroker broker, SessionModificationWatcher watcher,
+            int stalenessMillis, int maxSessions) {
+        this.debug = debug;
+        this.broker = broker;
+        this.maxTombstones = maxSessions;
+        if (stalenessMillis <= 0 || maxSessions <= 0) {
+            this.cache = null;
+            return;
+        }
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(16)
+                .maximumSize(maxSessions)
+                .expireAfterWrite(stalenessMillis, TimeUnit.MILLISECONDS)
+                .build();
+        broker.subscribe(new InvalidationConsumer()).bindTo(TOPIC);
+        watcher.addListener(new SessionModificationListener() {
+            @Override
+            public void sessionChanged(SessionID sessionID) {
+                invalidateLocally(sessionID.toString());
+            }
+        });
+    }
+
+    /**
+     * Gets a copy of the cached information of the given session.
+     *
+     * @param sessionID The session ID.
+     * @return The session information, or {@code null} if it is not cached or the session has since expired.
+     */
+    public SessionInfo get(SessionID sessionID) {
+        if (cache == null) {
+            return null;
+        }
+        SessionInfo info = cache.getIfPresent(sessionID.toString());
+        if (info == null) {
+            return null;
+        }
+        if (info.getTimeLeft() <= 0) {
+            cache.invalidate(sessionID.toString());
+            return null;
+        }
+        if (debug.messageEnabled()) {
+            debug.message("SessionInfoCache: answering from cached session information for {}", sessionID);
+        }
+        return new SessionInfo(info);
+    }
+
+    /**
+     * Gets the current generation of the cache, which changes whenever any session is invalidated. A caller loading
+     * session information must read the generation before starting to load, and pass it to
+     * {@link #populate(SessionID, SessionInfo, long)}, which uses it to tell whether the session was invalidated during
+     * the load.
+     *
+     * @return The current generation.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a copy of the information of a valid session, unless the session has been invalidated since the given
+     * generation, in which case the loaded information may already be stale and is discarded.
+     *
+     * @param sessionID The master session ID.
+     * @param info The session information.
+     * @param loadGeneration The generation read before the session was loaded.
+     */
+    public void populate(SessionID sessionID, SessionInfo info, long loadGeneration) {
+        if (cache == null || !SessionState.VALID.name().equalsIgnoreCase(info.getState())) {
+            return;
+        }
+        String tokenId = sessionID.toString();
+        SessionInfo copy = new SessionInfo(info);
+        synchronized (tombstones) {
+            Long invalidatedGeneration = tombstones.get(tokenId);
+            if (loadGeneration >= forgottenGeneration
+                    && (invalidatedGeneration == null || invalidatedGeneration <= loadGeneration)) {
+                cache.put(tokenId, copy);
+            }
+        }
+    }
+
+    @Override
+    public void onEvent(InternalSessionEvent event) {
+        if (cache == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case IDLE_TIMEOUT:
+            case MAX_TIMEOUT:
+            case LOGOUT:
+            case DESTROY:
+            case PROPERTY_CHANGED:
+            case PROTECTED_PROPERTY:
+            case QUOTA_EXHAUSTED:
+                invalidate(event.getInternalSession().getID());
+                break;
+            default:
+                // a new session cannot have been cached
+        }
+    }
+
+    /**
+     * Removes the given session from the cache on every server in the cluster.
+     *
+     * @param sessionID The master session ID.
+     */
+    public void invalidate(SessionID sessionID) {
+        if (cache == null) {
+            return;
+        }
+        invalidateLocally(sessionID.toString());
+        broker.publish(TOPIC, json(object(field(SOURCE_KEY, instanceId), field(TOKEN_ID_KEY, sessionID.toString()))));
+    }
+
+    private void invalidateLocally(String tokenId) {
+        synchronized (tombstones) {
+            // Reinserting keeps the tombstones in the order of their generations, oldest first
+            tombstones.remove(tokenId);
+            tombstones.put(tokenId, generation.incrementAndGet());
+            Iterator<Long> oldest = tombstones.values().iterator();
+            while (tombstones.size() > maxTombstones) {
+                forgottenGeneration = oldest.next();
+                oldest.remove();
+            }
+            cache.invalidate(tokenId);
+        }
+    }
+
+    private final class InvalidationConsumer implements Consumer {
+
+        @Override
+        public void accept(JsonValue notification) {
+            String tokenId = notification.get(TOKEN_ID_KEY).asString();
+            if (tokenId != null && !instanceId.equals(notification.get(SOURCE_KEY).asString())) {
+                invalidateLocally(tokenId);
+            }
+        }
+    }
+}
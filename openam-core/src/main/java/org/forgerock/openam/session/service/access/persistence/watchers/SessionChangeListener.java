@@ -0,0 +1,58 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access.persistence.watchers;
+
+import com.iplanet.dpro.session.SessionID;
+
+/**
+ * Runs whenever a session is added to, modified in or deleted from the session store, by any server.
+ */
+public interface SessionChangeListener {
+
+    /**
+     * Called when a session has been added.
+     *
+     * @param sessionID The id of the session.
+     * @param userId The user id of the session as stored, or {@code null} if it is not known.
+     * @param expiryTime The time the stored session expires, in seconds since the epoch, or {@code -1} if it is not
+     * known.
+     */
+    void sessionAdded(SessionID sessionID, String userId, long expiryTime);
+
+    /**
+     * Called when a session has been modified.
+     *
+     * @param sessionID The id of the session.
+     * @param userId The user id of the session as stored, or {@code null} if it is not known.
+     * @param expiryTime The time the stored session expires, in seconds since the epoch, or {@code -1} if it is not
+     * known.
+     */
+    void sessionModified(SessionID sessionID, String userId, long expiryTime);
+
+    /**
+     * Called when a session has been deleted.
+     *
+     * @param sessionID The id of the session.
+     * @param userId The user id of the session as stored, or {@code null} if it is not known.
+     */
+    void sessionDeleted(SessionID sessionID, String userId);
+
+    /**
+     * Called when changes may have been missed, as the connection to the session store was lost.
+     */
+    void changesLost();
+}
@@ -18,10 +18,10 @@ package org.forgerock.openam.session.service.access.persistence.watchers;
 
 import static org.forgerock.util.query.QueryFilter.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,10 +36,12 @@ import org.forgerock.openam.cts.api.filter.TokenFilterBuilder;
 import org.forgerock.openam.cts.continuous.ChangeType;
 import org.forgerock.openam.cts.continuous.ContinuousQueryListener;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.utils.LDAPDataConversion;
 import org.forgerock.openam.session.SessionConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.tokens.CoreTokenField;
 import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.openam.utils.TimeUtils;
 import org.forgerock.opendj.ldap.Attribute;
 
 import com.iplanet.dpro.session.SessionID;
@@ -71,10 +73,21 @@ public class SessionModificationWatcher implements SetupListener {
         queryListener.addListener(listener);
     }
 
+    /**
+     * Add a listener which will be told about every session added, modified or deleted.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(SessionChangeListener listener) {
+        queryListener.addChangeListener(listener);
+    }
+
     @Singleton
     private static class SessionModificationContinuousQueryListener implements ContinuousQueryListener<Attribute> {
 
         private final List<SessionModificationListener> listeners;
+        private final List<SessionChangeListener> changeListeners;
+        private final LDAPDataConversion conversion = new LDAPDataConversion();
         private final Debug debug;
         private final Provider<CTSPersistentStore> store;
 
@@ -83,22 +96,62 @@ public class SessionModificationWatcher implements SetupListener {
                                                           Provider<CTSPersistentStore> store) {
             this.debug = sessionDebug;
             this.store = store;
-            this.listeners = new ArrayList<>();
+            this.listeners = new CopyOnWriteArrayList<>();
+            this.changeListeners = new CopyOnWriteArrayList<>();
         }
 
         private void addListener(SessionModificationListener listener) {
             listeners.add(listener);
         }
 
+        private void addChangeListener(SessionChangeListener listener) {
+            changeListeners.add(listener);
+        }
+
         @Override
         public void objectChanged(String tokenId, Map<String, Attribute> changeSet, ChangeType changeType) {
+            SessionID sessionID = new SessionID(
+                    changeSet.get(SessionTokenField.SESSION_ID.getField().toString()).firstValue().toString());
             if (changeType != ChangeType.ADD) {
-                SessionID sessionID = new SessionID(
-                        changeSet.get(SessionTokenField.SESSION_ID.getField().toString()).firstValue().toString());
                 for (SessionModificationListener listener : listeners) {
                     listener.sessionChanged(sessionID);
                 }
             }
+            if (changeListeners.isEmpty()) {
+                return;
+            }
+            String userId = getValue(changeSet, CoreTokenField.USER_ID);
+            long expiryTime = getExpiryTime(changeSet);
+            for (SessionChangeListener listener : changeListeners) {
+                switch (changeType) {
+                case ADD:
+                    listener.sessionAdded(sessionID, userId, expiryTime);
+                    break;
+                case MODIFY:
+                    listener.sessionModified(sessionID, userId, expiryTime);
+                    break;
+                default:
+                    listener.sessionDeleted(sessionID, userId);
+                }
+            }
+        }
+
+        private static String getValue(Map<String, Attribute> changeSet, CoreTokenField field) {
+            Attribute attribute = changeSet.get(field.toString());
+            return attribute == null || attribute.isEmpty() ? null : attribute.firstValueAsString();
+        }
+
+        private long getExpiryTime(Map<String, Attribute> changeSet) {
+            String expiryDate = getValue(changeSet, CoreTokenField.EXPIRY_DATE);
+            if (expiryDate == null) {
+                return -1;
+            }
+            try {
+                return TimeUtils.toUnixTime(conversion.fromLDAPDate(expiryDate));
+            } catch (IllegalArgumentException e) {
+                debug.warning("SessionModificationWatcher: unable to parse session expiry date {}", expiryDate, e);
+                return -1;
+            }
         }
 
         @Override
@@ -109,6 +162,9 @@ public class SessionModificationWatcher implements SetupListener {
         @Override
         public void connectionLost() {
             debug.error("Continuous query listener has lost its connection");
+            for (SessionChangeListener listener : changeListeners) {
+                listener.changesLost();
+            }
         }
 
         @Override
@@ -127,6 +183,8 @@ public class SessionModificationWatcher implements SetupListener {
         private static TokenFilter getTokenFilter() {
             return new TokenFilterBuilder()
                     .returnAttribute(SessionTokenField.SESSION_ID.getField())
+                    .returnAttribute(CoreTokenField.USER_ID)
+                    .returnAttribute(CoreTokenField.EXPIRY_DATE)
                     .withQuery(equalTo(CoreTokenField.TOKEN_TYPE, TokenType.SESSION))
                     .build();
         }
@@ -20,6 +20,7 @@ import javax.inject.Named;
 
 import java.util.Set;
 
+import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.ldap.LDAPURL;
 import org.forgerock.openam.sm.datalayer.api.ConnectionType;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
@@ -27,6 +28,8 @@ import org.forgerock.openam.sm.datalayer.impl.ldap.LdapDataLayerConfiguration;
 import org.forgerock.openam.sm.exceptions.InvalidConfigurationException;
 import org.forgerock.openam.sm.utils.ConfigurationValidator;
 
+import com.iplanet.am.util.SystemProperties;
+
 /**
  * The factory used for acquiring the configuration used by the Service Manager data layer.
  *
@@ -86,6 +89,8 @@ public class ConnectionConfigFactory {
         }
         if (isCtsWorkerConnectionType(connectionType)) {
             configuration = wrapCtsReaperConfiguration(configuration);
+        } else if (ConnectionType.CTS_PAGED_QUERY.equals(connectionType)) {
+            configuration = wrapCtsPagedQueryConfiguration(configuration);
         }
         validator.validate(configuration);
         return configuration;
@@ -124,6 +129,18 @@ public class ConnectionConfigFactory {
         };
     }
 
+    private ConnectionConfig wrapCtsPagedQueryConfiguration(ConnectionConfig configuration) {
+        final int maxConnections = Math.min(configuration.getMaxConnections(), SystemProperties.getAsInt(
+                CoreTokenConstants.CTS_PAGED_QUERY_MAX_CONNECTIONS,
+                CoreTokenConstants.CTS_PAGED_QUERY_MAX_CONNECTIONS_DEFAULT));
+        return new DelegatingConnectionConfig(configuration) {
+            @Override
+            public int getMaxConnections() {
+                return maxConnections;
+            }
+        };
+    }
+
     private static abstract class DelegatingConnectionConfig implements ConnectionConfig {
 
         private final ConnectionConfig delegateConnectionConfig;
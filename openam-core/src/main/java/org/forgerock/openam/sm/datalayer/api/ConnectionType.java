@@ -18,6 +18,7 @@ package org.forgerock.openam.sm.datalayer.api;
 import com.iplanet.am.util.SystemProperties;
 import org.forgerock.openam.cts.impl.CTSAsyncConnectionModule;
 import org.forgerock.openam.cts.impl.CTSConnectionModule;
+import org.forgerock.openam.cts.impl.query.CTSPagedQueryFactory;
 import org.forgerock.openam.cts.impl.query.worker.queries.CTSWorkerPastExpiryDateQuery;
 import org.forgerock.openam.cts.impl.query.worker.queries.MaxSessionTimeExpiredQuery;
 import org.forgerock.openam.cts.impl.query.worker.queries.SessionIdleTimeExpiredQuery;
@@ -63,6 +64,10 @@ public enum ConnectionType {
      * @see CTSWorkerPastExpiryDateQuery
      */
     CTS_EXPIRY_DATE_WORKER(CTSConnectionModule.class),
+    /**
+     * @see CTSPagedQueryFactory
+     */
+    CTS_PAGED_QUERY(CTSConnectionModule.class),
     /**
      * @see org.forgerock.openam.entitlement.indextree.IndexTreeService
      */
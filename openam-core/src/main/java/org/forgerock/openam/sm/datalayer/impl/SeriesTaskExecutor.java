@@ -32,6 +32,7 @@ import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.cts.impl.queue.QueueSelector;
 import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.QueueTimeoutException;
@@ -79,6 +80,7 @@ public class SeriesTaskExecutor implements TaskExecutor {
     private final ThreadMonitor monitor;
     private final CTSQueueConfiguration configuration;
     private final ExecutorService poolService;
+    private final MetricsRegistry metricsRegistry;
 
     /**
      * Create a default instance of the SeriesTaskExecutor.
@@ -88,6 +90,7 @@ public class SeriesTaskExecutor implements TaskExecutor {
      * @param monitor Required to ensure threads are restarted.
      * @param configuration Required to determine runtime configuration options.
      * @param debug Required for debugging.
+     * @param metricsRegistry Required to publish the depth of the task queues.
      */
     @Inject
     public SeriesTaskExecutor(
@@ -95,8 +98,10 @@ public class SeriesTaskExecutor implements TaskExecutor {
             SeriesTaskExecutorThreadFactory processorFactory,
             ThreadMonitor monitor,
             CTSQueueConfiguration configuration,
-            @Named(DataLayerConstants.DATA_LAYER_DEBUG) Debug debug) {
+            @Named(DataLayerConstants.DATA_LAYER_DEBUG) Debug debug,
+            MetricsRegistry metricsRegistry) {
         this.debug = debug;
+        this.metricsRegistry = metricsRegistry;
         this.monitor = monitor;
         this.configuration = configuration;
         this.processorFactory = processorFactory;
@@ -138,6 +143,19 @@ public class SeriesTaskExecutor implements TaskExecutor {
         }
         debug("Created {0} Task Processors", processors);
 
+        final BlockingQueue<Task>[] queues = taskQueues;
+        metricsRegistry.gauge("openam_cts_queue_depth", "Number of CTS tasks waiting to be processed",
+                new MetricsRegistry.Gauge() {
+                    @Override
+                    public long getValue() {
+                        long depth = 0;
+                        for (BlockingQueue<Task> queue : queues) {
+                            depth += queue.size();
+                        }
+                        return depth;
+                    }
+                });
+
         initialised = true;    }
 
     /**
@@ -281,8 +281,9 @@ public class LdapQueryBuilder extends QueryBuilder<Connection, Filter> {
 
         @Override
         public Collection<T> next() {
-            // The search results can be paged by using the paging cookie.
-            if (isPagingResults()) {
+            // The search results can be paged by using the paging cookie, which starts empty and is then returned
+            // with each page to request the next one.
+            if (isPagingResults() && pagingCookie == null) {
                 pagingCookie = getEmptyPagingCookie();
             }
 
@@ -44,6 +44,9 @@ public class TimeoutConfig {
             case CTS_MAX_SESSION_TIMEOUT_WORKER:
             case CTS_SESSION_IDLE_TIMEOUT_WORKER:
                 return SystemProperties.getAsInt(DataLayerConstants.CORE_TOKEN_WORKER_TIMEOUT, NO_TIMEOUT);
+            case CTS_PAGED_QUERY:
+                return SystemProperties.getAsInt(DataLayerConstants.CORE_TOKEN_PAGED_QUERY_TIMEOUT,
+                        getTimeout(ConnectionType.CTS_ASYNC));
             case DATA_LAYER:
                 return SystemProperties.getAsInt(DataLayerConstants.DATA_LAYER_TIMEOUT, 10);
             case RESOURCE_SETS:
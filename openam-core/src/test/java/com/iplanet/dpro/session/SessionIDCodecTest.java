@@ -0,0 +1,278 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.dpro.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.testng.Reporter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.iplanet.am.util.SystemProperties;
+import com.iplanet.services.util.Crypt;
+import com.sun.identity.shared.Constants;
+import com.sun.identity.shared.encode.Base64;
+
+public class SessionIDCodecTest {
+
+    private static final String ENCRYPTION_PASSWORD = "kW7Ek3xC9mVq2dUu5pR8sT1yZ4aB6nH0";
+    // Distinct session ID strings, which fits the default size of the memo of decoded strings
+    private static final int BENCHMARK_SESSIONS = 10000;
+    private static final int BENCHMARK_OPERATIONS = 10000000;
+
+    @BeforeClass
+    public void setUp() {
+        SystemProperties.initializeProperties("am.encryption.pwd", ENCRYPTION_PASSWORD);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        SystemProperties.initializeProperties(Constants.SESSION_ID_AEAD_ENABLED, "false");
+    }
+
+    @Test
+    public void shouldDecodeExtensionsAndTail() throws Exception {
+        // Given
+        SessionIDExtensions extensions = new LegacySessionIDExtensions("01", "02", "12345");
+        String sid = SessionID.makeSessionID("AQIC5wM2LY4Sfcx", extensions, "tail");
+
+        // When
+        SessionIDCodec.Parsed parsed = SessionIDCodec.decode(sid);
+
+        // Then
+        assertThat(parsed.hasOuter()).isTrue();
+        assertThat(parsed.getExtensions()).isEqualTo(extensions.asMap());
+        assertThat(parsed.getTail()).isEqualTo("tail");
+    }
+
+    @Test
+    public void shouldDecodeC66EncodedSessionID() throws Exception {
+        // Given
+        SessionIDExtensions extensions = new LegacySessionIDExtensions("01", "02", null);
+        String sid = SessionID.makeSessionID("AQIC5wM2LY4Sfcx+/=", extensions, null)
+                .replace('@', '*').replace('#', '*').replace('+', '-').replace('/', '_').replace('=', '.');
+
+        // When
+        SessionIDCodec.Parsed parsed = SessionIDCodec.decode(sid);
+
+        // Then
+        assertThat(parsed.getExtensions()).isEqualTo(extensions.asMap());
+        assertThat(parsed.getTail()).isEmpty();
+    }
+
+    @Test
+    public void shouldReuseParsedSessionIDString() throws Exception {
+        // Given
+        String sid = SessionID.makeSessionID("AQIC5wM2LY4Sfcx", new LegacySessionIDExtensions("01", "02", "1"), null);
+
+        // When
+        SessionIDCodec.Parsed first = SessionIDCodec.parse(sid);
+        SessionIDCodec.Parsed second = SessionIDCodec.parse(new String(sid));
+
+        // Then
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void shouldNotShareExtensionsBetweenSessionIDs() throws Exception {
+        // Given
+        SessionIDExtensions extensions = new LegacySessionIDExtensions();
+        extensions.add(LegacySessionIDExtensions.STORAGE_KEY, "1");
+        String sid = SessionID.makeSessionID("AQIC5wM2LY4Sfcx", extensions, null);
+        SessionID first = new SessionID(sid);
+        first.getExtension().add("key", "value");
+
+        // When
+        SessionID second = new SessionID(sid);
+
+        // Then
+        assertThat(second.getExtension().get("key")).isNull();
+        assertThat(second.getExtension().getStorageKey()).isEqualTo("1");
+    }
+
+    @Test
+    public void shouldEncryptNewIDsWithHardcodedKeyByDefault() {
+        // Given
+        SystemProperties.initializeProperties(Constants.SESSION_ID_AEAD_ENABLED, "false");
+
+        // When
+        String encryptedID = SessionIDCodec.encryptID("5a9c3d1e@01");
+
+        // Then
+        assertThat(Crypt.decode(encryptedID, Crypt.getHardcodedKeyEncryptor())).isEqualTo("5a9c3d1e@01");
+    }
+
+    @Test
+    public void shouldEncryptNewIDsWithAeadWhenEnabled() throws Exception {
+        // Given
+        SystemProperties.initializeProperties(Constants.SESSION_ID_AEAD_ENABLED, "true");
+
+        // When
+        String encryptedID = SessionIDCodec.encryptID("5a9c3d1e@01");
+
+        // Then
+        assertThat(Base64.decode(encryptedID)[0]).isEqualTo((byte) 2);
+        assertThat(SessionIDCodec.encryptID("5a9c3d1e@01")).isNotEqualTo(encryptedID);
+        assertThat(aeadDecrypt(encryptedID)).isEqualTo("5a9c3d1e@01");
+    }
+
+    /**
+     * Measures the time taken to decode session ID strings without the memo of decoded strings. Each request carries
+     * a new copy of the session ID string, so each operation decodes a copy.
+     * Disabled by default to avoid slowing down the build.
+     */
+    @Test(enabled = false)
+    public void testDecodeTime() throws Exception {
+        // Given
+        String[] sessionIds = benchmarkSessionIds();
+        decode(sessionIds, BENCHMARK_OPERATIONS / 10);
+
+        // When
+        long start = System.nanoTime();
+        long sink = decode(sessionIds, BENCHMARK_OPERATIONS);
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        assertThat(sink).isEqualTo(4L * BENCHMARK_OPERATIONS);
+        Reporter.log("Decoded " + BENCHMARK_OPERATIONS + " times: " + elapsed / BENCHMARK_OPERATIONS + " ns/op");
+    }
+
+    /**
+     * Measures the time taken to parse session ID strings through the memo of decoded strings. Each request carries
+     * a new copy of the session ID string, which the memo has to hash again.
+     * Disabled by default to avoid slowing down the build.
+     */
+    @Test(enabled = false)
+    public void testParseTime() throws Exception {
+        // Given
+        String[] sessionIds = benchmarkSessionIds();
+        parse(sessionIds, BENCHMARK_OPERATIONS / 10);
+
+        // When
+        long start = System.nanoTime();
+        long sink = parse(sessionIds, BENCHMARK_OPERATIONS);
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        assertThat(sink).isEqualTo(4L * BENCHMARK_OPERATIONS);
+        Reporter.log("Parsed " + BENCHMARK_OPERATIONS + " times through memo: " + elapsed / BENCHMARK_OPERATIONS
+                + " ns/op");
+    }
+
+    @DataProvider
+    public Object[][] aeadEnabled() {
+        return new Object[][]{
+                { false },
+                { true }
+        };
+    }
+
+    /**
+     * Measures the time taken to encrypt the ID of new session IDs, in the legacy or AES-GCM format. Encryption is
+     * measured over a tenth as many operations as decoding, as it is much slower.
+     * Disabled by default to avoid slowing down the build.
+     *
+     * @param aead whether the IDs are encrypted with AES-GCM.
+     */
+    @Test(dataProvider = "aeadEnabled", enabled = false)
+    public void testEncryptTime(boolean aead) throws Exception {
+        // Given
+        int operations = BENCHMARK_OPERATIONS / 10;
+        SystemProperties.initializeProperties(Constants.SESSION_ID_AEAD_ENABLED, Boolean.toString(aead));
+        encrypt(operations / 10);
+
+        // When
+        long start = System.nanoTime();
+        long sink = encrypt(operations);
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        assertThat(sink).isGreaterThan(0L);
+        Reporter.log("Encrypted " + operations + (aead ? " AES-GCM" : " legacy") + " IDs: " + elapsed / operations
+                + " ns/op");
+    }
+
+    private static String[] benchmarkSessionIds() throws Exception {
+        String[] sessionIds = new String[BENCHMARK_SESSIONS];
+        for (int i = 0; i < BENCHMARK_SESSIONS; i++) {
+            SessionIDExtensions extensions = new LegacySessionIDExtensions("01", "02", Integer.toString(i));
+            sessionIds[i] = SessionID.makeSessionID("AQIC5wM2LY4Sfcz" + Integer.toHexString(i) + "AAJTSQACMDE.",
+                    extensions, "tail");
+        }
+        return sessionIds;
+    }
+
+    /**
+     * @return The total length of the decoded tails, so that the JIT compiler cannot remove the measured work.
+     */
+    private static long decode(String[] sessionIds, int operations) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < operations; i++) {
+            sink += SessionIDCodec.decode(new String(sessionIds[i % sessionIds.length])).getTail().length();
+        }
+        return sink;
+    }
+
+    /**
+     * @return The total length of the parsed tails, so that the JIT compiler cannot remove the measured work.
+     */
+    private static long parse(String[] sessionIds, int operations) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < operations; i++) {
+            sink += SessionIDCodec.parse(new String(sessionIds[i % sessionIds.length])).getTail().length();
+        }
+        return sink;
+    }
+
+    /**
+     * @return The total length of the encrypted IDs, so that the JIT compiler cannot remove the measured work.
+     */
+    private static long encrypt(int operations) {
+        long sink = 0;
+        for (int i = 0; i < operations; i++) {
+            sink += SessionIDCodec.encryptID(Integer.toHexString(i) + "@01").length();
+        }
+        return sink;
+    }
+
+    /**
+     * Decrypts an AES-GCM encrypted ID as a client sharing the encryption password would.
+     */
+    private static String aeadDecrypt(String encryptedID) throws GeneralSecurityException {
+        byte[] bytes = Base64.decode(encryptedID);
+        byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1")
+                .generateSecret(new PBEKeySpec(ENCRYPTION_PASSWORD.toCharArray(),
+                        "openam-session-id".getBytes(StandardCharsets.UTF_8), 10000, 128))
+                .getEncoded();
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"),
+                new GCMParameterSpec(128, Arrays.copyOfRange(bytes, 1, 13)));
+        return new String(cipher.doFinal(bytes, 13, bytes.length - 13), StandardCharsets.UTF_8);
+    }
+}
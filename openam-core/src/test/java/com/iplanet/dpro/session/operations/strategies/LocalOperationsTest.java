@@ -26,6 +26,7 @@ import org.forgerock.openam.session.SessionEventType;
 import org.forgerock.openam.session.authorisation.SessionChangeAuthorizer;
 import org.forgerock.openam.session.service.SessionAccessManager;
 import org.forgerock.openam.session.service.access.SessionQueryManager;
+import org.forgerock.openam.session.service.access.persistence.caching.SessionInfoCache;
 import org.forgerock.openam.utils.TimeTravelUtil;
 import org.forgerock.util.time.TimeService;
 import org.mockito.ArgumentCaptor;
@@ -63,6 +64,7 @@ public class LocalOperationsTest {
     @Mock private SessionCookies sessionCookies;
     @Mock private SessionChangeAuthorizer sessionChangeAuthorizer;
     @Mock private InternalSessionEventBroker internalSessionEventBroker;
+    @Mock private SessionInfoCache sessionInfoCache;
 
     @BeforeMethod
     public void setup() {
@@ -75,7 +77,7 @@ public class LocalOperationsTest {
         given(sessionAccessManager.getInternalSession(mockSessionID)).willReturn(mockInternalSession);
 
         local = new LocalOperations(mock(Debug.class), sessionAccessManager, mock(SessionQueryManager.class),
-                sessionInfoFactory, serverConfig, internalSessionEventBroker, sessionChangeAuthorizer);
+                sessionInfoFactory, serverConfig, internalSessionEventBroker, sessionChangeAuthorizer, sessionInfoCache);
     }
 
     @AfterMethod
@@ -114,6 +116,31 @@ public class LocalOperationsTest {
         assertThat(result).isEqualTo(mockSessionInfo);
     }
 
+    @Test
+    public void shouldAnswerValidationFromSessionInfoCache() throws SessionException {
+        // Given
+        SessionInfo cachedSessionInfo = new SessionInfo();
+        given(sessionInfoCache.get(mockSessionID)).willReturn(cachedSessionInfo);
+        // When
+        SessionInfo result = local.getSessionInfo(mockSessionID, false);
+        // Then
+        assertThat(result).isSameAs(cachedSessionInfo);
+        verify(sessionAccessManager, never()).getInternalSession(mockSessionID);
+    }
+
+    @Test
+    public void shouldPopulateSessionInfoCacheOnRefresh() throws SessionException {
+        // Given
+        SessionInfo sessionInfo = new SessionInfo();
+        given(sessionInfoCache.getGeneration()).willReturn(3L);
+        given(sessionInfoFactory.getSessionInfo(mockInternalSession, mockSessionID)).willReturn(sessionInfo);
+        // When
+        local.refresh(mockSession, true);
+        // Then
+        verify(sessionInfoCache, never()).get(mockSessionID);
+        verify(sessionInfoCache).populate(mockSessionID, sessionInfo, 3L);
+    }
+
     @Test
     public void shouldRemoveSessionFromSessionAccessManagerOnLogout() throws Exception {
         // Given
@@ -0,0 +1,238 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.dpro.session.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openam.core.guice.CTSObjectMapperProvider;
+import org.forgerock.openam.cts.utils.JSONSerialisation;
+import org.forgerock.openam.cts.utils.blob.TokenBlobUtils;
+import org.forgerock.openam.cts.utils.blob.strategies.AttributeCompressionStrategy;
+import org.forgerock.openam.cts.utils.blob.strategies.CompressionStrategy;
+import org.forgerock.openam.utils.IOUtils;
+import org.testng.Reporter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class InternalSessionCodecTest {
+
+    private static final int BENCHMARK_ITERATIONS = 100000;
+
+    private ObjectMapper mapper;
+    private JSONSerialisation serialisation;
+    private InternalSessionCodec codec;
+
+    @BeforeMethod
+    public void setup() {
+        mapper = new CTSObjectMapperProvider().get();
+        serialisation = new JSONSerialisation(mapper);
+        codec = new InternalSessionCodec(serialisation);
+    }
+
+    @DataProvider(name = "sessions")
+    public Object[][] getSessions() {
+        return new Object[][]{
+                {"/json/complex-session-with-restriction-v11.json"},
+                {"/json/complex-session-with-restriction-v12.json"}
+        };
+    }
+
+    @Test(dataProvider = "sessions")
+    public void shouldDecodeEncodedSession(String path) throws Exception {
+        // Given
+        InternalSession session = getSession(path);
+
+        // When
+        InternalSession result = codec.decode(codec.encode(session));
+
+        // Then
+        assertThat(mapper.readTree(serialisation.serialise(result)))
+                .isEqualTo(mapper.readTree(serialisation.serialise(session)));
+        assertThat(result.getRestrictedTokens()).isEqualTo(session.getRestrictedTokens());
+    }
+
+    @Test
+    public void shouldDistinguishEncodedSessionsFromJson() throws Exception {
+        // Given
+        InternalSession session = getSession("/json/basic-session-with-restriction.json");
+
+        // When
+        byte[] encoded = codec.encode(session);
+        byte[] json = serialisation.serialise(session).getBytes(TokenBlobUtils.ENCODING);
+
+        // Then
+        assertThat(InternalSessionCodec.isEncoded(encoded)).isTrue();
+        assertThat(InternalSessionCodec.isEncoded(json)).isFalse();
+        assertThat(InternalSessionCodec.isEncoded(null)).isFalse();
+    }
+
+    @Test
+    public void shouldSkipUnknownFields() throws Exception {
+        // Given
+        InternalSession session = getSession("/json/complex-session-with-restriction-v12.json");
+        byte[] encoded = codec.encode(session);
+        byte[] unknownFields = {
+                // tag 99 integer 5
+                (byte) 0x8C, 0x03, 0x05,
+                // tag 100 string "abc"
+                (byte) 0x91, 0x03, 0x03, 'a', 'b', 'c',
+                // tag 101 group holding tag 1 integer 7
+                (byte) 0x96, 0x03, 0x04, 0x07, 0x00,
+                // end of record
+                0x00};
+        byte[] extended = Arrays.copyOf(encoded, encoded.length - 1 + unknownFields.length);
+        System.arraycopy(unknownFields, 0, extended, encoded.length - 1, unknownFields.length);
+
+        // When
+        InternalSession result = codec.decode(extended);
+
+        // Then
+        assertThat(mapper.readTree(serialisation.serialise(result)))
+                .isEqualTo(mapper.readTree(serialisation.serialise(session)));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectNewerVersion() throws Exception {
+        // Given
+        byte[] encoded = codec.encode(getSession("/json/basic-session-with-restriction.json"));
+        encoded[2] = InternalSessionCodec.VERSION + 1;
+
+        // When
+        codec.decode(encoded);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectTruncatedSession() throws Exception {
+        // Given
+        byte[] encoded = codec.encode(getSession("/json/complex-session-with-restriction-v12.json"));
+
+        // When
+        codec.decode(Arrays.copyOf(encoded, encoded.length / 2));
+    }
+
+    @Test(dataProvider = "sessions")
+    public void shouldBeSmallerThanJson(String path) throws Exception {
+        // Given
+        InternalSession session = getSession(path);
+        CompressionStrategy compression = new CompressionStrategy();
+        AttributeCompressionStrategy attributeCompression = new AttributeCompressionStrategy(new TokenBlobUtils());
+
+        // When
+        byte[] json = serialisation.serialise(session).getBytes(TokenBlobUtils.ENCODING);
+        byte[] compressedJson = compression.perform(attributeCompression.perform(json));
+        byte[] encoded = codec.encode(session);
+        byte[] compressedEncoded = compression.perform(encoded);
+
+        // Then
+        assertThat(encoded.length).isLessThan(json.length);
+        assertThat(compressedEncoded.length).isLessThan(compressedJson.length);
+    }
+
+    /**
+     * Measures the time taken to store and read a session in the JSON format with attribute name compression and
+     * GZIP compression, which is the most compact configuration of the JSON format.
+     * Disabled by default to avoid slowing down the build.
+     *
+     * @param path the session to store and read.
+     */
+    @Test(dataProvider = "sessions", enabled = false)
+    public void testJsonStoreAndReadTime(String path) throws Exception {
+        // Given
+        InternalSession session = getSession(path);
+        TokenBlobUtils blobUtils = new TokenBlobUtils();
+        CompressionStrategy compression = new CompressionStrategy();
+        AttributeCompressionStrategy attributeCompression = new AttributeCompressionStrategy(blobUtils);
+        byte[] json = null;
+        for (int i = 0; i < BENCHMARK_ITERATIONS / 10; i++) {
+            json = compression.perform(attributeCompression.perform(
+                    blobUtils.fromUTF8(serialisation.serialise(session))));
+            serialisation.deserialise(blobUtils.toUTF8(attributeCompression.reverse(compression.reverse(json))),
+                    InternalSession.class);
+        }
+
+        // When
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            json = compression.perform(attributeCompression.perform(
+                    blobUtils.fromUTF8(serialisation.serialise(session))));
+        }
+        long writeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        InternalSession result = null;
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            result = serialisation.deserialise(
+                    blobUtils.toUTF8(attributeCompression.reverse(compression.reverse(json))), InternalSession.class);
+        }
+        long readNanos = System.nanoTime() - start;
+
+        // Then
+        assertThat(result.getID()).isEqualTo(session.getID());
+        Reporter.log(path + " JSON + attribute compression + GZIP: write " + micros(writeNanos) + "us, read "
+                + micros(readNanos) + "us, " + json.length + " bytes ("
+                + blobUtils.fromUTF8(serialisation.serialise(session)).length + " uncompressed)");
+    }
+
+    /**
+     * Measures the time taken to store and read a session in the binary format.
+     * Disabled by default to avoid slowing down the build.
+     *
+     * @param path the session to store and read.
+     */
+    @Test(dataProvider = "sessions", enabled = false)
+    public void testBinaryStoreAndReadTime(String path) throws Exception {
+        // Given
+        InternalSession session = getSession(path);
+        byte[] encoded = null;
+        for (int i = 0; i < BENCHMARK_ITERATIONS / 10; i++) {
+            encoded = codec.encode(session);
+            codec.decode(encoded);
+        }
+
+        // When
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            encoded = codec.encode(session);
+        }
+        long writeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        InternalSession result = null;
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            result = codec.decode(encoded);
+        }
+        long readNanos = System.nanoTime() - start;
+
+        // Then
+        assertThat(result.getID()).isEqualTo(session.getID());
+        Reporter.log(path + " binary: write " + micros(writeNanos) + "us, read " + micros(readNanos) + "us, "
+                + encoded.length + " bytes (" + new CompressionStrategy().perform(encoded).length + " with GZIP)");
+    }
+
+    private static double micros(long nanos) {
+        return (double) nanos / TimeUnit.MICROSECONDS.toNanos(1) / BENCHMARK_ITERATIONS;
+    }
+
+    private InternalSession getSession(String path) throws Exception {
+        String json = IOUtils.getFileContentFromClassPath(InternalSessionCodecTest.class, path).replaceAll("\\s", "");
+        return serialisation.deserialise(json, InternalSession.class);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.services.comm.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.testng.Reporter;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Benchmarks of the PLL request and response documents. Disabled by default to avoid slowing down the build; the
+ * results are written to the TestNG report.
+ */
+public class PLLBenchmarkTest {
+
+    private static final int ITERATIONS = 100000;
+    private static final int WARM_UP_ITERATIONS = 10000;
+
+    @DataProvider
+    public Object[][] responseSizes() {
+        return new Object[][]{
+                { 10 },
+                { 100 },
+                { 10000 }
+        };
+    }
+
+    /**
+     * Compares the memory allocated to parse a response set with the StAX parser and to read its response from a DOM,
+     * as the response sets were parsed before, as a factor of the number of attributes in the response.
+     *
+     * @param attributes the number of attributes in the response.
+     */
+    @Test(dataProvider = "responseSizes", enabled = false)
+    public void testParseAllocation(int attributes) throws Exception {
+        // Given
+        byte[] xml = responseSet(attributes).toXMLString().getBytes("UTF-8");
+        int iterations = Math.max(10, ITERATIONS / attributes);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        for (int i = 0; i < iterations; i++) {
+            ResponseSet.parseXML(new ByteArrayInputStream(xml));
+            builder.parse(new ByteArrayInputStream(xml)).getDocumentElement().getTextContent();
+        }
+
+        // When
+        long start = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            ResponseSet.parseXML(new ByteArrayInputStream(xml));
+        }
+        long staxBytes = allocatedBytes() - start;
+        start = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            builder.parse(new ByteArrayInputStream(xml)).getDocumentElement().getTextContent();
+        }
+        long domBytes = allocatedBytes() - start;
+
+        // Then
+        assertThat(ResponseSet.parseXML(new ByteArrayInputStream(xml)).getResponses()).hasSize(1);
+        Reporter.log(attributes + " attributes, " + xml.length + " bytes: StAX " + staxBytes / iterations
+                + " bytes allocated per parse, DOM " + domBytes / iterations + " bytes allocated per parse");
+    }
+
+    /**
+     * Measures a PLL round trip without the network: the client encodes the request set, the server parses it and
+     * streams back the response set, and the client parses the response set, as {@code PLLClient} and
+     * {@code PLLRequestServlet} do.
+     *
+     * @param attributes the number of attributes in the response.
+     */
+    @Test(dataProvider = "responseSizes", enabled = false)
+    public void testRoundTrip(int attributes) throws Exception {
+        // Given
+        RequestSet requestSet = new RequestSet("session");
+        Request request = new Request("<SessionRequest vers=\"1.0\" reqid=\"1\"><Method>GetSession</Method>"
+                + "<SessionID>AQIC5wM2LY4SfcxuZ</SessionID></SessionRequest>");
+        request.setSessionID("AQIC5wM2LY4SfcxuZ");
+        requestSet.addRequest(request);
+        ResponseSet responseSet = responseSet(attributes);
+        int iterations = Math.max(10, ITERATIONS / attributes);
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            roundTrip(requestSet, responseSet);
+        }
+
+        // When
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        ResponseSet parsed = null;
+        for (int i = 0; i < iterations; i++) {
+            parsed = roundTrip(requestSet, responseSet);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+
+        // Then
+        assertThat(parsed.getResponses()).hasSize(1);
+        Reporter.log(attributes + " attributes: " + elapsed / iterations + " ns and " + allocated / iterations
+                + " bytes allocated per round trip");
+    }
+
+    private static ResponseSet roundTrip(RequestSet requestSet, ResponseSet responseSet) throws Exception {
+        byte[] requestBytes = requestSet.toXMLString().getBytes("UTF-8");
+
+        RequestSet received = RequestSet.parseXML(new ByteArrayInputStream(requestBytes));
+        List<Request> requests = received.getRequests();
+        responseSet.setRequestSetID(received.getRequestSetID());
+        ByteArrayOutputStream responseBytes = new ByteArrayOutputStream(requests.size() * 1024);
+        Writer out = new BufferedWriter(new OutputStreamWriter(responseBytes, "UTF-8"));
+        responseSet.writeXML(out);
+        out.flush();
+
+        return ResponseSet.parseXML(new ByteArrayInputStream(responseBytes.toByteArray()));
+    }
+
+    private static ResponseSet responseSet(int attributes) {
+        StringBuilder content = new StringBuilder("<SessionResponse vers=\"1.0\" reqid=\"1\"><GetSession>");
+        for (int i = 0; i < attributes; i++) {
+            content.append("<Property name=\"property").append(i).append("\" value=\"value").append(i)
+                    .append("\"/>");
+        }
+        content.append("</GetSession></SessionResponse>");
+        ResponseSet responseSet = new ResponseSet("session");
+        responseSet.addResponse(new Response(content.toString()));
+        return responseSet;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread, or {@code 0} if the JVM cannot measure it.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.services.comm.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+
+import org.testng.annotations.Test;
+
+public class RequestSetTest {
+
+    @Test
+    public void shouldParseRequestSetFromStream() throws Exception {
+        // Given
+        RequestSet requestSet = new RequestSet("session");
+        Request request = new Request("<SessionRequest vers=\"1.0\" reqid=\"1\"/>");
+        request.setSessionID("AQIC5w");
+        requestSet.addRequest(request);
+        requestSet.addRequest(new Request("second"));
+        byte[] xml = requestSet.toXMLString().getBytes("UTF-8");
+
+        // When
+        RequestSet parsed = RequestSet.parseXML(new ByteArrayInputStream(xml));
+
+        // Then
+        assertThat(parsed.getRequestSetVersion()).isEqualTo("1.0");
+        assertThat(parsed.getServiceID()).isEqualTo("session");
+        assertThat(parsed.getRequestSetID()).isEqualTo(requestSet.getRequestSetID());
+        assertThat(parsed.getRequests()).hasSize(2);
+        assertThat(parsed.getRequests().get(0).getContent()).isEqualTo("<SessionRequest vers=\"1.0\" reqid=\"1\"/>");
+        assertThat(parsed.getRequests().get(0).getSessionID()).isEqualTo("AQIC5w");
+        assertThat(parsed.getRequests().get(1).getContent()).isEqualTo("second");
+    }
+
+    @Test
+    public void shouldReturnNullForMalformedRequestSet() {
+        assertThat(RequestSet.parseXML("<RequestSet vers=\"1.0\"><Request>")).isNull();
+    }
+
+    @Test
+    public void shouldNotResolveExternalEntities() {
+        // Given
+        String xml = "<!DOCTYPE RequestSet [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>"
+                + "<RequestSet vers=\"1.0\" svcid=\"session\" reqid=\"1\"><Request>&secret;</Request></RequestSet>";
+
+        // When
+        RequestSet parsed = RequestSet.parseXML(xml);
+
+        // Then
+        assertThat(parsed).isNull();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.iplanet.services.comm.share;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+
+import org.testng.annotations.Test;
+
+public class ResponseSetTest {
+
+    @Test
+    public void shouldWriteSameDocumentAsToXMLString() throws Exception {
+        // Given
+        ResponseSet responseSet = new ResponseSet("session");
+        responseSet.setRequestSetID("7");
+        responseSet.addResponse(new Response("<SessionResponse vers=\"1.0\" reqid=\"7\"/>"));
+        StringWriter writer = new StringWriter();
+
+        // When
+        responseSet.writeXML(writer);
+
+        // Then
+        assertThat(writer.toString()).isEqualTo(responseSet.toXMLString());
+    }
+
+    @Test
+    public void shouldParseResponseSetFromStream() throws Exception {
+        // Given
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("<Attribute name=\"").append(i).append("\" value=\"\u00e9\"/>");
+        }
+        ResponseSet responseSet = new ResponseSet("session");
+        responseSet.setRequestSetID("7");
+        responseSet.addResponse(new Response(content.toString()));
+        responseSet.addResponse(new Response(""));
+        byte[] xml = responseSet.toXMLString().getBytes("UTF-8");
+
+        // When
+        ResponseSet parsed = ResponseSet.parseXML(new ByteArrayInputStream(xml));
+
+        // Then
+        assertThat(parsed.getResponses()).hasSize(2);
+        assertThat(((Response) parsed.getResponses().get(0)).getContent()).isEqualTo(content.toString());
+        assertThat(((Response) parsed.getResponses().get(1)).getContent()).isEmpty();
+        assertThat(parsed.toXMLString()).contains("reqid=\"7\"");
+    }
+}
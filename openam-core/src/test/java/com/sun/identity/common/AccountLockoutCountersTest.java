@@ -0,0 +1,180 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Calendar;
+
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.CTSOptions;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.sm.datalayer.api.OptimisticConcurrencyCheckFailedException;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.openam.tokens.TokenType;
+import org.forgerock.util.Options;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AccountLockoutCountersTest {
+
+    private static final String USER_DN = "uid=demo,ou=people,dc=openam,dc=forgerock,dc=org";
+    private static final String TOKEN_ID = AccountLockoutCounters.tokenId(USER_DN);
+    private static final long WINDOW = 300000;
+
+    @Mock
+    private CTSPersistentStore mockCts;
+
+    private AccountLockoutCounters counters;
+
+    @BeforeMethod
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        counters = new AccountLockoutCounters(mockCts);
+    }
+
+    @Test
+    public void shouldCreateCounterOnFirstFailure() throws Exception {
+        //Given
+        given(mockCts.read(TOKEN_ID)).willReturn(null);
+
+        //When
+        int failures = counters.recordFailure(USER_DN, WINDOW);
+
+        //Then
+        assertThat(failures).isEqualTo(1);
+        ArgumentCaptor<Token> created = ArgumentCaptor.forClass(Token.class);
+        verify(mockCts).create(created.capture());
+        assertThat(created.getValue().getType()).isEqualTo(TokenType.ACCOUNT_LOCKOUT);
+        assertThat(created.getValue().getUserId()).isEqualTo(USER_DN);
+        assertThat(created.getValue().<Integer>getAttribute(CoreTokenField.INTEGER_ONE)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldAddToFailuresCountedByOtherServers() throws Exception {
+        //Given
+        given(mockCts.read(TOKEN_ID)).willReturn(counter(2, currentTimeMillis(), "etag1"));
+
+        //When
+        int failures = counters.recordFailure(USER_DN, WINDOW);
+
+        //Then
+        assertThat(failures).isEqualTo(3);
+        ArgumentCaptor<Token> updated = ArgumentCaptor.forClass(Token.class);
+        ArgumentCaptor<Options> options = ArgumentCaptor.forClass(Options.class);
+        verify(mockCts).update(updated.capture(), options.capture());
+        assertThat(updated.getValue().<Integer>getAttribute(CoreTokenField.INTEGER_ONE)).isEqualTo(3);
+        assertThat(options.getValue().get(CTSOptions.OPTIMISTIC_CONCURRENCY_CHECK_OPTION)).isEqualTo("etag1");
+    }
+
+    @Test
+    public void shouldRestartCountWhenLastFailureIsOutsideWindow() throws Exception {
+        //Given
+        given(mockCts.read(TOKEN_ID)).willReturn(counter(4, currentTimeMillis() - WINDOW - 1, "etag1"));
+
+        //When
+        int failures = counters.recordFailure(USER_DN, WINDOW);
+
+        //Then
+        assertThat(failures).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRetryWhenAnotherServerUpdatedCounter() throws Exception {
+        //Given
+        given(mockCts.read(TOKEN_ID)).willReturn(counter(2, currentTimeMillis(), "etag1"),
+                counter(3, currentTimeMillis(), "etag2"));
+        willThrow(new CoreTokenException("Conflict", new OptimisticConcurrencyCheckFailedException(TOKEN_ID,
+                "etag1", null))).willNothing().given(mockCts).update(any(Token.class), any(Options.class));
+
+        //When
+        int failures = counters.recordFailure(USER_DN, WINDOW);
+
+        //Then
+        assertThat(failures).isEqualTo(4);
+        verify(mockCts, times(2)).update(any(Token.class), any(Options.class));
+    }
+
+    @Test
+    public void shouldReportFailureWhenCounterCannotBeUpdated() throws Exception {
+        //Given
+        given(mockCts.read(TOKEN_ID)).willThrow(new CoreTokenException("Unavailable"));
+
+        //When
+        int failures = counters.recordFailure(USER_DN, WINDOW);
+
+        //Then
+        assertThat(failures).isEqualTo(-1);
+        verify(mockCts, never()).create(any(Token.class));
+    }
+
+    @Test
+    public void shouldNotReturnFailuresOutsideWindow() throws Exception {
+        //Given
+        given(mockCts.read(TOKEN_ID)).willReturn(counter(4, currentTimeMillis() - WINDOW - 1, "etag1"));
+
+        //When
+        AccountLockoutInfo info = counters.read(USER_DN, WINDOW);
+
+        //Then
+        assertThat(info).isNull();
+    }
+
+    @Test
+    public void shouldReturnFailuresWithinWindow() throws Exception {
+        //Given
+        long lastFailure = currentTimeMillis();
+        given(mockCts.read(TOKEN_ID)).willReturn(counter(4, lastFailure, "etag1"));
+
+        //When
+        AccountLockoutInfo info = counters.read(USER_DN, WINDOW);
+
+        //Then
+        assertThat(info.getFailCount()).isEqualTo(4);
+        assertThat(info.getLastFailTime()).isEqualTo(lastFailure);
+    }
+
+    @Test
+    public void shouldDeleteCounterOnReset() throws Exception {
+        //When
+        counters.reset(USER_DN);
+
+        //Then
+        verify(mockCts).delete(TOKEN_ID);
+    }
+
+    private static Token counter(int failures, long lastFailure, String etag) {
+        Token token = new Token(TOKEN_ID, TokenType.ACCOUNT_LOCKOUT);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(lastFailure);
+        token.setAttribute(CoreTokenField.INTEGER_ONE, failures);
+        token.setAttribute(CoreTokenField.DATE_ONE, calendar);
+        token.setAttribute(CoreTokenField.ETAG, etag);
+        return token;
+    }
+}
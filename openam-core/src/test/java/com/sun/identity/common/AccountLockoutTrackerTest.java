@@ -0,0 +1,176 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+import org.testng.annotations.Test;
+
+public class AccountLockoutTrackerTest {
+
+    @Test
+    public void shouldReturnTrackedInformation() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(100, new MetricsRegistry(10));
+        AccountLockoutInfo info = new AccountLockoutInfo();
+
+        //When
+        tracker.put("uid=demo", info, Long.MAX_VALUE);
+
+        //Then
+        assertThat(tracker.get("uid=demo")).isSameAs(info);
+        assertThat(tracker.get("uid=other")).isNull();
+    }
+
+    @Test
+    public void shouldNotReturnExpiredInformation() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(100, new MetricsRegistry(10));
+        tracker.put("uid=demo", new AccountLockoutInfo(), 0);
+
+        //When
+        AccountLockoutInfo info = tracker.get("uid=demo");
+
+        //Then
+        assertThat(info).isNull();
+        assertThat(tracker.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldPurgeExpiredInformation() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(100, new MetricsRegistry(10));
+        tracker.put("uid=expired", new AccountLockoutInfo(), 0);
+        tracker.put("uid=live", new AccountLockoutInfo(), Long.MAX_VALUE);
+
+        //When
+        tracker.purgeExpired();
+
+        //Then
+        assertThat(tracker.size()).isEqualTo(1);
+        assertThat(tracker.get("uid=live")).isNotNull();
+    }
+
+    @Test
+    public void shouldStopTrackingRemovedUser() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(100, new MetricsRegistry(10));
+        tracker.put("uid=demo", new AccountLockoutInfo(), Long.MAX_VALUE);
+
+        //When
+        tracker.remove("uid=demo");
+
+        //Then
+        assertThat(tracker.get("uid=demo")).isNull();
+    }
+
+    @Test
+    public void shouldBoundNumberOfTrackedUsers() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(160, new MetricsRegistry(10));
+
+        //When
+        for (int i = 0; i < 10000; i++) {
+            tracker.put("uid=user" + i, new AccountLockoutInfo(), Long.MAX_VALUE);
+        }
+
+        //Then
+        assertThat(tracker.size()).isLessThanOrEqualTo(160);
+        assertThat(tracker.getEvictionCount()).isEqualTo(10000 - tracker.size());
+    }
+
+    @Test
+    public void shouldKeepLockoutWhenFloodedWithFailuresForOtherUsers() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(160, new MetricsRegistry(10));
+        AccountLockoutInfo victim = lockedOut();
+        tracker.put("uid=victim", victim, Long.MAX_VALUE);
+
+        //When
+        for (int i = 0; i < 10000; i++) {
+            tracker.put("uid=user" + i, new AccountLockoutInfo(), Long.MAX_VALUE);
+        }
+
+        //Then
+        assertThat(tracker.get("uid=victim")).isSameAs(victim);
+        assertThat(tracker.get("uid=victim").isLockout()).isTrue();
+        assertThat(tracker.size()).isLessThanOrEqualTo(160);
+    }
+
+    @Test
+    public void shouldExceedCapacityRatherThanEvictActiveLockouts() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(160, new MetricsRegistry(10));
+
+        //When
+        for (int i = 0; i < 1000; i++) {
+            tracker.put("uid=locked" + i, lockedOut(), Long.MAX_VALUE);
+        }
+        tracker.put("uid=failed", new AccountLockoutInfo(), Long.MAX_VALUE);
+
+        //Then
+        assertThat(tracker.size()).isEqualTo(1001);
+        assertThat(tracker.get("uid=failed")).isNotNull();
+        assertThat(tracker.getEvictionCount()).isZero();
+    }
+
+    @Test
+    public void shouldEvictExpiredLockouts() {
+        //Given
+        AccountLockoutTracker tracker = new AccountLockoutTracker(16, new MetricsRegistry(10));
+        for (int i = 0; i < 100; i++) {
+            tracker.put("uid=locked" + i, lockedOut(), 0);
+        }
+
+        //When
+        tracker.put("uid=failed", new AccountLockoutInfo(), Long.MAX_VALUE);
+
+        //Then
+        assertThat(tracker.size()).isLessThanOrEqualTo(16);
+        assertThat(tracker.get("uid=failed")).isNotNull();
+    }
+
+    @Test
+    public void shouldPublishStatisticsThroughMetricsRegistry() throws Exception {
+        //Given
+        MetricsRegistry registry = new MetricsRegistry(10);
+        AccountLockoutTracker tracker = new AccountLockoutTracker(100, registry);
+        tracker.put("uid=expired", new AccountLockoutInfo(), 0);
+        tracker.put("uid=live", new AccountLockoutInfo(), Long.MAX_VALUE);
+
+        //When
+        tracker.recordCheck();
+        tracker.recordCheck();
+        tracker.recordFailure();
+        tracker.recordLockout();
+
+        //Then
+        StringBuilder output = new StringBuilder();
+        registry.write(output);
+        assertThat(output.toString()).contains("openam_account_lockout_events_total{event=\"check\"} 2\n");
+        assertThat(output.toString()).contains("openam_account_lockout_events_total{event=\"failure\"} 1\n");
+        assertThat(output.toString()).contains("openam_account_lockout_events_total{event=\"lockout\"} 1\n");
+        assertThat(output.toString()).contains("openam_account_lockout_tracked_users 1\n");
+    }
+
+    private static AccountLockoutInfo lockedOut() {
+        AccountLockoutInfo info = new AccountLockoutInfo();
+        info.setLockout(true);
+        return info;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.entitlement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.sun.identity.entitlement.util.ResourceNameIndexGenerator;
+import com.sun.identity.entitlement.util.ResourceNameSplitter;
+
+public class BatchPrivilegeSearchTest {
+
+    private static final String REALM = "/";
+    private static final String[] POLICY_RESOURCES = {
+            "http://www.example.com:80/*",
+            "http://www.example.com:80/index.html",
+            "http://www.example.com:80/private/*",
+            "http://www.example.com:80/private/secret.html",
+            "http://www.example.com:80/*/index.html",
+            "http://www.other.com:80/*",
+            "https://www.example.com:443/*",
+            "http*://www.example.com:*/*",
+            "*://*:*/*",
+            "http://www.unrelated.com:80/*"
+    };
+
+    private final URLResourceName comparator = new URLResourceName();
+    private List<IPrivilege> privileges;
+    private Map<IPrivilege, String> privilegeResources;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        privileges = new ArrayList<>();
+        privilegeResources = new HashMap<>();
+        for (String resource : POLICY_RESOURCES) {
+            Entitlement entitlement = mock(Entitlement.class);
+            given(entitlement.getResourceNames()).willReturn(Collections.singleton(resource));
+            given(entitlement.getResourceSaveIndexes(any(Subject.class), anyString()))
+                    .willReturn(new ResourceNameIndexGenerator().getIndexes(resource));
+            Privilege privilege = mock(Privilege.class);
+            given(privilege.getEntitlement()).willReturn(entitlement);
+            privileges.add(privilege);
+            privilegeResources.put(privilege, resource);
+        }
+    }
+
+    @DataProvider
+    public Object[][] batches() {
+        return new Object[][] {
+                { new String[] { "http://www.example.com:80/index.html" } },
+                { new String[] { "http://www.example.com:80/index.html",
+                        "http://www.example.com:80/private/secret.html" } },
+                { new String[] { "http://www.example.com:80/index.html", "http://www.other.com:80/index.html",
+                        "https://www.example.com:443/index.html", "http://www.example.com:80/a/b/index.html" } }
+        };
+    }
+
+    @Test(dataProvider = "batches")
+    public void shouldFindSamePoliciesForEachResourceAsSingleResourceEvaluation(String[] resourceNames)
+            throws Exception {
+        //Given
+        BatchPrivilegeSearch batchSearch = newBatchSearch(resourceNames);
+
+        for (String resourceName : resourceNames) {
+            //When
+            Set<String> batchMatches = applicableTo(resourceName, batchSearch.search(resourceName));
+
+            //Then
+            Set<String> singleMatches = applicableTo(resourceName, newBatchSearch(resourceName).search(resourceName));
+            assertThat(batchMatches).isEqualTo(singleMatches)
+                    .isEqualTo(applicableTo(resourceName, privileges.iterator()));
+        }
+    }
+
+    @Test
+    public void shouldOnlyReturnPoliciesIndexedForTheResource() throws Exception {
+        //Given
+        BatchPrivilegeSearch batchSearch = newBatchSearch("http://www.example.com:80/index.html",
+                "http://www.other.com:80/index.html");
+
+        //When
+        Set<String> found = resourcesOf(batchSearch.search("http://www.other.com:80/index.html"));
+
+        //Then
+        assertThat(found).contains("http://www.other.com:80/*", "*://*:*/*")
+                .doesNotContain("http://www.example.com:80/*", "http://www.unrelated.com:80/*");
+    }
+
+    @Test
+    public void shouldReturnNoPoliciesForResourceOutsideTheBatch() throws Exception {
+        //Given
+        BatchPrivilegeSearch batchSearch = newBatchSearch("http://www.example.com:80/index.html");
+
+        //When
+        Iterator<IPrivilege> found = batchSearch.search("http://www.other.com:80/index.html");
+
+        //Then
+        assertThat(found.hasNext()).isFalse();
+    }
+
+    /**
+     * Creates a batch search for the given resources from every policy, as the index store may return any policy
+     * matching the combined indexes of the batch.
+     */
+    private BatchPrivilegeSearch newBatchSearch(String... resourceNames) throws EntitlementException {
+        Map<String, ResourceSearchIndexes> resourceIndexes = new HashMap<>();
+        for (String resourceName : resourceNames) {
+            resourceIndexes.put(resourceName, new ResourceNameSplitter().getIndexes(resourceName, REALM));
+        }
+        return new BatchPrivilegeSearch(new Subject(), REALM, resourceIndexes, privileges.iterator(), false);
+    }
+
+    /**
+     * Returns the resources of the policies whose resources apply to the requested resource, as matched by
+     * {@link Entitlement} when the policies are evaluated.
+     */
+    private Set<String> applicableTo(String resourceName, Iterator<IPrivilege> found) {
+        Set<String> applicable = new HashSet<>();
+        for (String policyResource : resourcesOf(found)) {
+            if (comparator.compare(policyResource, resourceName, false) == ResourceMatch.EXACT_MATCH
+                    || comparator.compare(resourceName, policyResource, true) == ResourceMatch.WILDCARD_MATCH) {
+                applicable.add(policyResource);
+            }
+        }
+        return applicable;
+    }
+
+    private Set<String> resourcesOf(Iterator<IPrivilege> found) {
+        Set<String> resources = new HashSet<>();
+        while (found.hasNext()) {
+            resources.add(privilegeResources.get(found.next()));
+        }
+        return resources;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.policy.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.AtomicHistogram;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.sun.identity.policy.client.PolicyDecisionCache.CachedDecision;
+
+public class PolicyDecisionCacheTest {
+
+    private static final String SERVICE = "iPlanetAMWebAgentService";
+    private static final String RESOURCE = "http://www.example.com:80/index.html";
+    private static final String SCOPE = "self";
+
+    private PolicyDecisionCache cache;
+
+    @BeforeMethod
+    public void setup() {
+        cache = new PolicyDecisionCache(1000, 1000);
+    }
+
+    @Test
+    public void shouldReturnCachedDecision() {
+        //Given
+        CachedDecision decision = decision(Long.MAX_VALUE);
+
+        //When
+        boolean newToken = cache.put(SERVICE, RESOURCE, "token", SCOPE, decision);
+
+        //Then
+        assertThat(newToken).isTrue();
+        assertThat(cache.get(SERVICE, RESOURCE, "token", SCOPE)).isSameAs(decision);
+        assertThat(cache.get(SERVICE, RESOURCE, "token", "subtree")).isNull();
+        assertThat(cache.get(SERVICE, RESOURCE, "other", SCOPE)).isNull();
+    }
+
+    @Test
+    public void shouldOnlyReportTokenAsNewOnce() {
+        //Given
+        cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+
+        //When
+        boolean newToken = cache.put(SERVICE, "http://www.example.com:80/other.html", "token", SCOPE,
+                decision(Long.MAX_VALUE));
+
+        //Then
+        assertThat(newToken).isFalse();
+    }
+
+    @Test
+    public void shouldRemoveOnlyDecisionsOfGivenToken() {
+        //Given
+        cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+        cache.put("otherService", RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+        cache.put(SERVICE, RESOURCE, "other", SCOPE, decision(Long.MAX_VALUE));
+
+        //When
+        boolean removed = cache.removeToken("token");
+
+        //Then
+        assertThat(removed).isTrue();
+        assertThat(cache.get(SERVICE, RESOURCE, "token", SCOPE)).isNull();
+        assertThat(cache.get("otherService", RESOURCE, "token", SCOPE)).isNull();
+        assertThat(cache.get(SERVICE, RESOURCE, "other", SCOPE)).isNotNull();
+        assertThat(cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE))).isTrue();
+    }
+
+    @Test
+    public void shouldRemoveOnlyDecisionsOfGivenResource() {
+        //Given
+        cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+        cache.put(SERVICE, "http://www.example.com:80/other.html", "token", SCOPE, decision(Long.MAX_VALUE));
+
+        //When
+        boolean removed = cache.removeResource(SERVICE, RESOURCE);
+
+        //Then
+        assertThat(removed).isTrue();
+        assertThat(cache.get(SERVICE, RESOURCE, "token", SCOPE)).isNull();
+        assertThat(cache.getResourceNames(SERVICE)).containsOnly("http://www.example.com:80/other.html");
+    }
+
+    @Test
+    public void shouldPreferEvictingExpiredDecisionsWhenOverCap() {
+        //Given
+        cache = new PolicyDecisionCache(2, 1000);
+        cache.put(SERVICE, "expired", "token", SCOPE, decision(0));
+        cache.put(SERVICE, "live", "token", SCOPE, decision(Long.MAX_VALUE));
+
+        //When
+        cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+
+        //Then
+        assertThat(cache.getResourceNames(SERVICE)).containsOnly("live", RESOURCE);
+    }
+
+    @Test
+    public void shouldBoundTokensPerResource() {
+        //Given
+        cache = new PolicyDecisionCache(1000, 10);
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            cache.put(SERVICE, RESOURCE, "token" + i, SCOPE, decision(Long.MAX_VALUE));
+        }
+
+        //Then
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get(SERVICE, RESOURCE, "token" + i, SCOPE) != null) {
+                cached++;
+            }
+        }
+        assertThat(cached).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedResourcesWhenOverCap() throws Exception {
+        //Given
+        cache = new PolicyDecisionCache(3, 1000);
+        cache.put(SERVICE, "first", "token", SCOPE, decision(Long.MAX_VALUE));
+        cache.put(SERVICE, "second", "token", SCOPE, decision(Long.MAX_VALUE));
+        cache.put(SERVICE, "third", "token", SCOPE, decision(Long.MAX_VALUE));
+        TimeUnit.MILLISECONDS.sleep(10);
+        cache.get(SERVICE, "first", "token", SCOPE);
+        cache.get(SERVICE, "third", "token", SCOPE);
+
+        //When
+        cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+
+        //Then
+        assertThat(cache.getResourceNames(SERVICE)).containsOnly("first", "third", RESOURCE);
+    }
+
+    @Test
+    public void shouldRemoveEvictedDecisionsFromTokenIndex() {
+        //Given
+        cache = new PolicyDecisionCache(2, 1000);
+        cache.put(SERVICE, "expired", "token", SCOPE, decision(0));
+        cache.put(SERVICE, "live", "other", SCOPE, decision(Long.MAX_VALUE));
+
+        //When
+        cache.put(SERVICE, RESOURCE, "other", SCOPE, decision(Long.MAX_VALUE));
+
+        //Then
+        assertThat(cache.getIndexedResourceNames("token", SERVICE)).isEmpty();
+        assertThat(cache.getIndexedResourceNames("other", SERVICE)).containsOnly("live", RESOURCE);
+    }
+
+    @Test
+    public void shouldRemoveDecisionsOfRemovedResourceFromTokenIndex() {
+        //Given
+        cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+        cache.put(SERVICE, "http://www.example.com:80/other.html", "token", SCOPE, decision(Long.MAX_VALUE));
+
+        //When
+        cache.removeResource(SERVICE, RESOURCE);
+
+        //Then
+        assertThat(cache.getIndexedResourceNames("token", SERVICE))
+                .containsOnly("http://www.example.com:80/other.html");
+    }
+
+    @Test
+    public void shouldNotLeaveDecisionsBehindWhenTokenRemovedDuringPut() throws Exception {
+        //Given
+        final int rounds = 20000;
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Set<Throwable> errors = Collections.newSetFromMap(new ConcurrentHashMap<Throwable, Boolean>());
+
+        //When
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        barrier.await();
+                        cache.removeToken("token" + i);
+                        barrier.await();
+                    }
+                } catch (Exception e) {
+                    errors.add(e);
+                }
+            }
+        });
+        for (int i = 0; i < rounds; i++) {
+            barrier.await();
+            cache.put(SERVICE, RESOURCE, "token" + i, SCOPE, decision(Long.MAX_VALUE));
+            barrier.await();
+
+            //Then
+            cache.removeToken("token" + i);
+            assertThat(cache.get(SERVICE, RESOURCE, "token" + i, SCOPE)).isNull();
+        }
+        executor.shutdown();
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepDecisionIndexedWhenUnindexedDuringPut() throws Exception {
+        //Given
+        final int rounds = 20000;
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Set<Throwable> errors = Collections.newSetFromMap(new ConcurrentHashMap<Throwable, Boolean>());
+        // A single token per resource, so that each put evicts and unindexes the token cached by the other thread
+        cache = new PolicyDecisionCache(1000, 1);
+
+        //When
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        barrier.await();
+                        cache.put(SERVICE, RESOURCE, "other", SCOPE, decision(Long.MAX_VALUE));
+                        barrier.await();
+                    }
+                } catch (Exception e) {
+                    errors.add(e);
+                }
+            }
+        });
+        for (int i = 0; i < rounds; i++) {
+            barrier.await();
+            cache.put(SERVICE, RESOURCE, "token", SCOPE, decision(Long.MAX_VALUE));
+            barrier.await();
+
+            //Then
+            for (String tokenID : new String[] {"token", "other"}) {
+                if (cache.get(SERVICE, RESOURCE, tokenID, SCOPE) != null) {
+                    assertThat(cache.getIndexedResourceNames(tokenID, SERVICE)).containsOnly(RESOURCE);
+                }
+            }
+        }
+        executor.shutdown();
+        assertThat(errors).isEmpty();
+    }
+
+    @DataProvider
+    public Object[][] numThreads() {
+        return new Object[][]{
+                { 1 },
+                { 2 },
+                { 5 },
+                { 10 },
+                { 25 },
+                { 50 },
+                { 100 }
+        };
+    }
+
+    /**
+     * Measures the latency of cache hits as a factor of the number of threads, while a background thread
+     * continually invalidates the decisions of other tokens. Disabled by default to avoid slowing down the build.
+     *
+     * @param numThreads the number of threads concurrently reading decisions from the cache.
+     */
+    @Test(dataProvider = "numThreads", enabled = false)
+    public void testCacheHitLatency(int numThreads) throws Exception {
+        final int totalRounds = 10000000;
+        final int tokens = 1000;
+        final Set<Throwable> errors = Collections.newSetFromMap(new ConcurrentHashMap<Throwable, Boolean>());
+        // Nanosecond precision timings of batches of lookups: max=10 seconds, 3 significant digits
+        final AtomicHistogram samples = new AtomicHistogram(10000000000L, 3);
+        cache = new PolicyDecisionCache(1000, tokens * 2);
+        for (int i = 0; i < tokens; i++) {
+            cache.put(SERVICE, RESOURCE, "token" + i, SCOPE, decision(Long.MAX_VALUE));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+        final CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+
+        // When
+        for (int i = 0; i < numThreads; i++) {
+            executor.execute(new LookupTask(barrier, cache, samples, errors, totalRounds / numThreads, tokens));
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    cache.removeToken("churn");
+                    cache.put(SERVICE, RESOURCE, "churn", SCOPE, decision(Long.MAX_VALUE));
+                }
+            }
+        });
+        barrier.await();
+        barrier.await();
+        executor.shutdownNow();
+
+        // Then
+        assertThat(errors).isEmpty();
+        System.out.println("Threads: " + numThreads + ", nanoseconds per " + LookupTask.BATCH + " hits:");
+        samples.outputPercentileDistribution(System.out, 1.0);
+    }
+
+    private static CachedDecision decision(long expiryTime) {
+        return new CachedDecision(Collections.emptySet(), null, expiryTime, Collections.singleton("GET"));
+    }
+
+    /**
+     * Benchmarking task that reads cached decisions in a tight loop.
+     */
+    private static final class LookupTask implements Runnable {
+        private static final int BATCH = 100;
+        private final CyclicBarrier barrier;
+        private final PolicyDecisionCache cache;
+        private final AtomicHistogram samples;
+        private final Collection<Throwable> errors;
+        private final int rounds;
+        private final int tokens;
+
+        LookupTask(CyclicBarrier barrier, PolicyDecisionCache cache, AtomicHistogram samples,
+                Collection<Throwable> errors, int rounds, int tokens) {
+            this.barrier = barrier;
+            this.cache = cache;
+            this.samples = samples;
+            this.errors = errors;
+            this.rounds = rounds;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void run() {
+            try {
+                barrier.await();
+                int misses = 0;
+                for (int i = 0; i < rounds; i += BATCH) {
+                    final long start = System.nanoTime();
+                    for (int j = 0; j < BATCH; j++) {
+                        if (cache.get(SERVICE, RESOURCE, "token" + ((i + j) % tokens), SCOPE) == null) {
+                            misses++;
+                        }
+                    }
+                    samples.recordValue(System.nanoTime() - start);
+                }
+                assertThat(misses).isEqualTo(0);
+            } catch (Throwable t) {
+                errors.add(t);
+            } finally {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    errors.add(e);
+                }
+            }
+        }
+    }
+}
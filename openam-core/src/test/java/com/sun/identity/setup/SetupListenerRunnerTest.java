@@ -0,0 +1,226 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.setup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SetupListenerRunnerTest {
+
+    private static final List<String> NOTIFIED = Collections.synchronizedList(new ArrayList<String>());
+
+    private StartupProfiler profiler;
+
+    @BeforeMethod
+    public void setUp() {
+        NOTIFIED.clear();
+        profiler = new StartupProfiler();
+    }
+
+    @Test
+    public void shouldNotifyPlainListenersInOrder() throws Exception {
+        //Given
+        SetupListenerRunner runner = new SetupListenerRunner(profiler, null);
+
+        //When
+        runner.run(Arrays.<SetupListener>asList(new First(), new Second()));
+
+        //Then
+        assertThat(NOTIFIED).containsExactly("First", "Second");
+        assertThat(runner.getWaitedForPhases()).hasSize(2);
+    }
+
+    @Test
+    public void shouldNotifyPhaseAfterItsDependencies() throws Exception {
+        //Given
+        SetupListenerRunner runner = new SetupListenerRunner(profiler, null);
+
+        //When
+        runner.run(Arrays.<SetupListener>asList(new DependentPhase(), new First(), new IndependentPhase()));
+
+        //Then
+        assertThat(NOTIFIED).containsOnly("DependentPhase", "First", "IndependentPhase");
+        assertThat(NOTIFIED.indexOf("DependentPhase")).isGreaterThan(NOTIFIED.indexOf("First"));
+        assertThat(profiler.getReport()).contains("Critical path").contains("DependentPhase");
+    }
+
+    @Test
+    public void shouldNotWaitForBackgroundPhases() throws Exception {
+        //Given
+        SetupListenerRunner runner = new SetupListenerRunner(profiler, null);
+        BackgroundPhase background = new BackgroundPhase();
+
+        //When
+        runner.run(Arrays.<SetupListener>asList(background, new First()));
+
+        //Then
+        assertThat(NOTIFIED).containsExactly("First");
+        assertThat(runner.getWaitedForPhases()).hasSize(1);
+        background.release.countDown();
+        assertThat(background.complete.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldNotifyInOrderWhenDependenciesFormCycle() throws Exception {
+        //Given
+        SetupListenerRunner runner = new SetupListenerRunner(profiler, null);
+
+        //When
+        runner.run(Arrays.<SetupListener>asList(new CyclicPhase(), new DependentPhase(), new First()));
+
+        //Then
+        assertThat(NOTIFIED).containsExactly("CyclicPhase", "DependentPhase", "First");
+    }
+
+    @Test
+    public void shouldContinueAfterPhaseFails() throws Exception {
+        //Given
+        SetupListenerRunner runner = new SetupListenerRunner(profiler, null);
+
+        //When
+        runner.run(Arrays.<SetupListener>asList(new FailingPhase(), new First()));
+
+        //Then
+        assertThat(NOTIFIED).containsOnly("FailingPhase", "First");
+    }
+
+    private static Set<Class<? extends SetupListener>> dependencies(Class<? extends SetupListener>... classes) {
+        return new HashSet<>(Arrays.asList(classes));
+    }
+
+    private static class First implements SetupListener {
+        @Override
+        public void setupComplete() {
+            NOTIFIED.add("First");
+        }
+    }
+
+    private static class Second implements SetupListener {
+        @Override
+        public void setupComplete() {
+            NOTIFIED.add("Second");
+        }
+    }
+
+    private static class IndependentPhase implements SetupPhase {
+        @Override
+        public void setupComplete() {
+            NOTIFIED.add("IndependentPhase");
+        }
+
+        @Override
+        public Set<Class<? extends SetupListener>> getDependencies() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isBackground() {
+            return false;
+        }
+    }
+
+    private static class DependentPhase implements SetupPhase {
+        @Override
+        public void setupComplete() {
+            NOTIFIED.add("DependentPhase");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<Class<? extends SetupListener>> getDependencies() {
+            return dependencies(First.class, CyclicPhase.class);
+        }
+
+        @Override
+        public boolean isBackground() {
+            return false;
+        }
+    }
+
+    private static class CyclicPhase implements SetupPhase {
+        @Override
+        public void setupComplete() {
+            NOTIFIED.add("CyclicPhase");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<Class<? extends SetupListener>> getDependencies() {
+            return dependencies(DependentPhase.class);
+        }
+
+        @Override
+        public boolean isBackground() {
+            return false;
+        }
+    }
+
+    private static class FailingPhase implements SetupPhase {
+        @Override
+        public void setupComplete() {
+            NOTIFIED.add("FailingPhase");
+            throw new IllegalStateException("failed");
+        }
+
+        @Override
+        public Set<Class<? extends SetupListener>> getDependencies() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isBackground() {
+            return false;
+        }
+    }
+
+    private static class BackgroundPhase implements SetupPhase {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch complete = new CountDownLatch(1);
+
+        @Override
+        public void setupComplete() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            NOTIFIED.add("BackgroundPhase");
+            complete.countDown();
+        }
+
+        @Override
+        public Set<Class<? extends SetupListener>> getDependencies() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean isBackground() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.sm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.identity.sm.CachedSMSEntry.ChangeTracker;
+
+public class CachedSMSEntryChangeTrackerTest {
+
+    private ChangeTracker tracker;
+
+    @BeforeMethod
+    public void setUp() {
+        tracker = new ChangeTracker();
+    }
+
+    @Test
+    public void shouldBeCleanUntilChanged() {
+        assertThat(tracker.isDirty()).isFalse();
+
+        tracker.changed();
+
+        assertThat(tracker.isDirty()).isTrue();
+    }
+
+    @Test
+    public void shouldRemainDirtyWhenChangedDuringRead() {
+        //Given
+        long changesBeforeRead = tracker.readStarting();
+
+        //When
+        tracker.changed();
+        tracker.readCompleted(changesBeforeRead);
+
+        //Then
+        assertThat(tracker.isDirty()).isTrue();
+    }
+
+    @Test
+    public void shouldNotGoBackWhenEarlierReadCompletesLast() {
+        //Given
+        tracker.changed();
+        long earlierRead = tracker.readStarting();
+        tracker.changed();
+        long laterRead = tracker.readStarting();
+
+        //When
+        tracker.readCompleted(laterRead);
+        tracker.readCompleted(earlierRead);
+
+        //Then
+        assertThat(tracker.isDirty()).isFalse();
+    }
+
+    @Test
+    public void shouldNotLoseChangesNotifiedConcurrentlyWithRead() throws Exception {
+        //Given
+        final int rounds = 20000;
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //When
+        Future<?> notifier = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (int i = 0; i < rounds; i++) {
+                    barrier.await();
+                    tracker.changed();
+                    barrier.await();
+                }
+                return null;
+            }
+        });
+        try {
+            for (int i = 1; i <= rounds; i++) {
+                barrier.await();
+                long changesBeforeRead = tracker.readStarting();
+                tracker.readCompleted(changesBeforeRead);
+                barrier.await();
+
+                //Then
+                // Each round notifies one change, which is clean only if the read started after it
+                assertThat(tracker.isDirty()).isEqualTo(changesBeforeRead != i);
+            }
+            notifier.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.core.realms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RealmStateCacheTest {
+
+    private List<String> released;
+    private RealmStateCache<String> cache;
+
+    @BeforeMethod
+    public void setUp() {
+        released = new ArrayList<>();
+        cache = new RealmStateCache<>("test", 2, 0, new RealmStateCache.Releaser<String>() {
+            @Override
+            public void release(String realm, String state) {
+                released.add(realm);
+            }
+        });
+    }
+
+    @Test
+    public void shouldLoadStateOnFirstUseOnly() throws Exception {
+        //Given
+        CountingLoader loader = new CountingLoader();
+
+        //When
+        String first = cache.get("/realm", loader);
+        String second = cache.get("/realm", loader);
+
+        //Then
+        assertThat(first).isEqualTo("state of /realm");
+        assertThat(second).isSameAs(first);
+        assertThat(loader.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldShareConcurrentLoadsOfRealm() throws Exception {
+        //Given
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingLoader loader = new CountingLoader() {
+            @Override
+            public String load(String realm) throws TestException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.load(realm);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<>();
+
+        //When
+        try {
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return cache.get("/realm", loader);
+                    }
+                }));
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("state of /realm");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //Then
+        assertThat(loader.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCacheMissingState() throws Exception {
+        //Given
+        CountingLoader loader = new CountingLoader();
+
+        //When
+        String first = cache.get("/missing", loader);
+        String second = cache.get("/missing", loader);
+
+        //Then
+        assertThat(first).isNull();
+        assertThat(second).isNull();
+        assertThat(loader.loads.get()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldThrowLoaderException() throws Exception {
+        try {
+            //When
+            cache.get("/failing", new CountingLoader());
+            failBecauseExceptionWasNotThrown(TestException.class);
+        } catch (TestException e) {
+            //Then
+            assertThat(cache.size()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void shouldEvictAndReleaseLeastRecentlyUsedRealm() throws Exception {
+        //Given
+        CountingLoader loader = new CountingLoader();
+        cache.get("/first", loader);
+        cache.get("/second", loader);
+        cache.get("/first", loader);
+
+        //When
+        cache.get("/third", loader);
+
+        //Then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getIfPresent("/second")).isNull();
+        assertThat(cache.getIfPresent("/first")).isNotNull();
+        assertThat(released).containsExactly("/second");
+    }
+
+    @Test
+    public void shouldReleaseInvalidatedState() throws Exception {
+        //Given
+        cache.get("/realm", new CountingLoader());
+
+        //When
+        cache.invalidate("/realm");
+
+        //Then
+        assertThat(cache.getIfPresent("/realm")).isNull();
+        assertThat(released).containsExactly("/realm");
+    }
+
+    private static class CountingLoader implements RealmStateCache.Loader<String, TestException> {
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public String load(String realm) throws TestException {
+            loads.incrementAndGet();
+            if ("/failing".equals(realm)) {
+                throw new TestException();
+            }
+            return "/missing".equals(realm) ? null : "state of " + realm;
+        }
+    }
+
+    private static class TestException extends Exception {
+    }
+}
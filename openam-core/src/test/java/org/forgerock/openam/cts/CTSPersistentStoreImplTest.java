@@ -18,6 +18,7 @@ package org.forgerock.openam.cts;
 import com.sun.identity.shared.debug.Debug;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.cts.impl.CoreTokenAdapter;
+import org.forgerock.openam.cts.impl.query.CTSPagedQueryFactory;
 import org.forgerock.openam.cts.utils.blob.TokenBlobStrategy;
 import org.forgerock.util.Options;
 import org.testng.annotations.BeforeMethod;
@@ -39,7 +40,7 @@ public class CTSPersistentStoreImplTest {
     @BeforeMethod
     public void setup() {
         mockAdapter = mock(CoreTokenAdapter.class);
-        impl = new CTSPersistentStoreImpl(mockAdapter, mock(Debug.class));
+        impl = new CTSPersistentStoreImpl(mockAdapter, mock(CTSPagedQueryFactory.class), mock(Debug.class));
     }
 
     @Test
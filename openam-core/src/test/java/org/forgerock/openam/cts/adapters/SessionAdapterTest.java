@@ -46,6 +46,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.iplanet.dpro.session.SessionID;
 import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionCodec;
 import com.iplanet.dpro.session.service.SessionState;
 
 public class SessionAdapterTest {
@@ -56,6 +57,7 @@ public class SessionAdapterTest {
     private JSONSerialisation mockJsonSerialisation;
     private TokenBlobUtils blobUtils;
     private DNWrapper dnWrapper;
+    private InternalSessionCodec mockCodec;
 
     @BeforeMethod
     public void setup() {
@@ -64,8 +66,9 @@ public class SessionAdapterTest {
         mockJsonSerialisation = mock(JSONSerialisation.class);
         blobUtils = new TokenBlobUtils();
         dnWrapper = mock(DNWrapper.class);
+        mockCodec = mock(InternalSessionCodec.class);
         adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, mockJsonSerialisation, blobUtils,
-                dnWrapper);
+                dnWrapper, mockCodec);
     }
 
     @Test
@@ -133,7 +136,8 @@ public class SessionAdapterTest {
                 .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
                 .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
         JSONSerialisation serialisation = new JSONSerialisation(mapper);
-        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, serialisation, blobUtils, dnWrapper);
+        adapter = new SessionAdapter(mockTokenIdFactory, mockCoreTokenConfig, serialisation, blobUtils, dnWrapper,
+                mockCodec);
 
         // When
         InternalSession session = adapter.fromToken(token);
@@ -282,6 +286,42 @@ public class SessionAdapterTest {
         assertThat(realm).isEqualTo("PRETTY_REALM");
     }
 
+    @Test
+    public void shouldStoreBinaryEncodedSessionWhenConfigured() {
+        // Given
+        InternalSession mockSession = prototypeMockInternalSession();
+        byte[] encoded = {0x00, 'S', 0x01, 0x00};
+        given(mockCoreTokenConfig.isSessionBinaryEncoded()).willReturn(true);
+        given(mockCodec.encode(mockSession)).willReturn(encoded);
+        given(mockSession.getLatestAccessTime()).willReturn(1376308558L);
+
+        // When
+        Token token = adapter.toToken(mockSession);
+
+        // Then
+        assertThat(token.getBlob()).isEqualTo(encoded);
+        assertThat(token.<String>getAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField())).isEqualTo("1376308558");
+        verify(mockJsonSerialisation, never()).serialise(any());
+    }
+
+    @Test
+    public void shouldDecodeBinaryEncodedSession() {
+        // Given
+        InternalSession mockSession = mock(InternalSession.class);
+        byte[] encoded = {0x00, 'S', 0x01, 0x00};
+        Token token = new Token("badger", TokenType.SESSION);
+        token.setBlob(encoded);
+        token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), "1376308558");
+        given(mockCodec.decode(encoded)).willReturn(mockSession);
+
+        // When
+        InternalSession result = adapter.fromToken(token);
+
+        // Then
+        assertThat(result).isSameAs(mockSession);
+        verify(mockJsonSerialisation, never()).deserialise(anyString(), eq(InternalSession.class));
+    }
+
     @Test
     public void shouldFilterLatestAccessTime() throws CoreTokenException {
         // Given
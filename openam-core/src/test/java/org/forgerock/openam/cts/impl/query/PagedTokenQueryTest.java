@@ -0,0 +1,150 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.impl.query;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.forgerock.openam.cts.api.filter.TokenFilterBuilder;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.exceptions.QueryFailedException;
+import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
+import org.forgerock.openam.sm.datalayer.api.DataLayerRuntimeException;
+import org.forgerock.openam.sm.datalayer.api.query.QueryBuilder;
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.Filter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PagedTokenQueryTest {
+
+    private QueryBuilder<Connection, Filter> mockBuilder;
+    private ConnectionFactory<Connection> mockConnectionFactory;
+    private Connection mockConnection;
+    private Iterator<Collection<String>> mockIterator;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        mockBuilder = mock(QueryBuilder.class);
+        mockConnectionFactory = mock(ConnectionFactory.class);
+        mockConnection = mock(Connection.class);
+        mockIterator = mock(Iterator.class);
+        given(mockConnectionFactory.create()).willReturn(mockConnection);
+        given(mockBuilder.executeRawResults(mockConnection, String.class)).willReturn(mockIterator);
+    }
+
+    @Test
+    public void shouldReadEachPageOnRequest() throws CoreTokenException {
+        //given
+        given(mockIterator.hasNext()).willReturn(true, true, true, false);
+        given(mockIterator.next()).willReturn(Arrays.asList("one", "two"), Arrays.asList("three"));
+        PagedTokenQuery<Connection, String> query = query(0);
+
+        //when
+        Collection<String> page1 = query.nextPage();
+
+        //then
+        assertThat(page1).containsOnly("one", "two");
+        verify(mockIterator, times(1)).next();
+        assertThat(query.nextPage()).containsOnly("three");
+        assertThat(query.nextPage()).isNull();
+        verify(mockConnection).close();
+    }
+
+    @Test
+    public void shouldSkipEmptyPages() throws CoreTokenException {
+        //given
+        given(mockIterator.hasNext()).willReturn(true, true, false);
+        given(mockIterator.next()).willReturn(Collections.<String>emptyList(), Arrays.asList("one"));
+
+        //when
+        Collection<String> page = query(0).nextPage();
+
+        //then
+        assertThat(page).containsOnly("one");
+    }
+
+    @Test
+    public void shouldApplySizeLimitAcrossPages() throws CoreTokenException {
+        //given
+        given(mockIterator.hasNext()).willReturn(true);
+        given(mockIterator.next()).willReturn(Arrays.asList("one", "two"), Arrays.asList("three", "four"));
+        PagedTokenQuery<Connection, String> query = query(3);
+
+        //when
+        Collection<String> page1 = query.nextPage();
+        Collection<String> page2 = query.nextPage();
+        Collection<String> page3 = query.nextPage();
+
+        //then
+        assertThat(page1).hasSize(2);
+        assertThat(page2).containsOnly("three");
+        assertThat(page3).isNull();
+        verify(mockConnection).close();
+    }
+
+    @Test
+    public void shouldReleaseConnectionWhenClosedEarly() throws CoreTokenException {
+        //given
+        given(mockIterator.hasNext()).willReturn(true);
+        given(mockIterator.next()).willReturn(Arrays.asList("one"));
+        PagedTokenQuery<Connection, String> query = query(0);
+        query.nextPage();
+
+        //when
+        query.close();
+
+        //then
+        verify(mockConnection).close();
+        assertThat(query.nextPage()).isNull();
+        verify(mockIterator, times(1)).next();
+    }
+
+    @Test
+    public void shouldReleaseConnectionOnFailure() throws CoreTokenException {
+        //given
+        given(mockIterator.hasNext()).willReturn(true);
+        given(mockIterator.next()).willThrow(new DataLayerRuntimeException("failed"));
+        PagedTokenQuery<Connection, String> query = query(0);
+
+        //when
+        try {
+            query.nextPage();
+        } catch (QueryFailedException e) {
+            // expected
+        }
+
+        //then
+        verify(mockConnection).close();
+        assertThat(query.nextPage()).isNull();
+    }
+
+    private PagedTokenQuery<Connection, String> query(int sizeLimit) {
+        return new PagedTokenQuery<Connection, String>(mockConnectionFactory, mockBuilder, String.class,
+                new TokenFilterBuilder().withSizeLimit(sizeLimit).build()) {
+            @Override
+            protected Collection<String> convert(Collection<String> page) {
+                return page;
+            }
+        };
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.monitoring.impl.queue;
 
@@ -20,6 +20,7 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -33,6 +34,7 @@ public class DefaultMonitoringResultHandlerTest {
     private CTSOperationsMonitoringStore mockStore;
     private DefaultMonitoringResultHandler handler;
     private CTSOperation operation;
+    private MetricsRegistry.Timer timer;
 
     @BeforeMethod
     public void setup() {
@@ -40,7 +42,9 @@ public class DefaultMonitoringResultHandlerTest {
         mockStore = mock(CTSOperationsMonitoringStore.class);
         operation = CTSOperation.LIST;
 
-        handler = new DefaultMonitoringResultHandler(mockResultHandler, mockStore, operation);
+        timer = new MetricsRegistry(10).timer("cts", "CTS", "operation", "outcome");
+
+        handler = new DefaultMonitoringResultHandler(mockResultHandler, mockStore, operation, timer);
     }
 
     @Test
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.monitoring.impl.queue;
 
@@ -20,9 +20,11 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -32,6 +34,7 @@ public class TokenMonitoringResultHandlerTest {
     private CTSOperationsMonitoringStore mockStore;
     private TokenMonitoringResultHandler handler;
     private CTSOperation operation;
+    private MetricsRegistry.Timer timer;
 
     @BeforeMethod
     public void setup() {
@@ -39,7 +42,9 @@ public class TokenMonitoringResultHandlerTest {
         mockStore = mock(CTSOperationsMonitoringStore.class);
         operation = CTSOperation.CREATE;
 
-        handler = new TokenMonitoringResultHandler(mockResultHandler, mockStore, operation);
+        timer = new MetricsRegistry(10).timer("cts", "CTS", "operation", "outcome");
+
+        handler = new TokenMonitoringResultHandler(mockResultHandler, mockStore, operation, timer);
     }
 
     @Test
@@ -60,4 +65,16 @@ public class TokenMonitoringResultHandlerTest {
         handler.processError(mock(CoreTokenException.class));
         verify(mockStore).addTokenOperation((Token) eq(null), eq(operation), eq(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldRecordDurationOnProcessResults() {
+        handler.processResults(mock(Token.class));
+        assertThat(timer.getHistogram("CREATE", "success").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecordDurationOnProcessError() {
+        handler.processError(mock(CoreTokenException.class));
+        assertThat(timer.getHistogram("CREATE", "failure").getCount()).isEqualTo(1);
+    }
+}
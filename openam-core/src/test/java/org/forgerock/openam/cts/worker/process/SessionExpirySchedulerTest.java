@@ -0,0 +1,171 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.worker.process;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.filter.TokenFilter;
+import org.forgerock.openam.cts.api.tokens.TokenIdFactory;
+import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.SessionState;
+import com.sun.identity.shared.debug.Debug;
+
+public class SessionExpirySchedulerTest {
+
+    private static final long TICK = 1000;
+    private static final SessionID SESSION_ID = new SessionID("test");
+
+    @Mock private SessionExpiryBatchHandler mockIdleTimeoutHandler;
+    @Mock private SessionExpiryBatchHandler mockMaxTimeoutHandler;
+    @Mock private CTSPersistentStore mockStore;
+    @Mock private TokenIdFactory mockTokenIdFactory;
+
+    private long now;
+    private SessionExpiryScheduler scheduler;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        given(mockTokenIdFactory.toSessionTokenId(SESSION_ID)).willReturn("tokenId");
+        given(mockIdleTimeoutHandler.timeoutBatch(anyCollectionOf(PartialToken.class)))
+                .willReturn(new CountDownLatch(0));
+        given(mockMaxTimeoutHandler.timeoutBatch(anyCollectionOf(PartialToken.class)))
+                .willReturn(new CountDownLatch(0));
+        now = currentTimeMillis();
+        scheduler = newScheduler(TICK);
+    }
+
+    @Test
+    public void shouldTimeOutExpiredSessionsWhichTheCTSConfirmsHaveExpired() throws Exception {
+        // Given
+        List<PartialToken> expired = Collections.singletonList(mock(PartialToken.class));
+        given(mockStore.attributeQuery(any(TokenFilter.class))).willReturn(expired);
+        scheduler.schedule(mockSession(now + 2 * TICK, now + 60 * TICK));
+
+        // When
+        scheduler.expire(now + 3 * TICK);
+
+        // Then
+        verify(mockIdleTimeoutHandler).timeoutBatch(expired);
+        verifyZeroInteractions(mockMaxTimeoutHandler);
+    }
+
+    @Test
+    public void shouldNotTimeOutSessionsWhichTheCTSHasNotExpired() throws Exception {
+        // Given
+        given(mockStore.attributeQuery(any(TokenFilter.class))).willReturn(Collections.<PartialToken>emptyList());
+        scheduler.schedule(mockSession(now + 2 * TICK, now + 60 * TICK));
+
+        // When
+        scheduler.expire(now + 3 * TICK);
+
+        // Then
+        verify(mockStore).attributeQuery(any(TokenFilter.class));
+        verify(mockIdleTimeoutHandler, never()).timeoutBatch(anyCollectionOf(PartialToken.class));
+    }
+
+    @Test
+    public void shouldRescheduleIdleTimeoutWhenSessionIsStoredAgain() throws Exception {
+        // Given
+        scheduler.schedule(mockSession(now + 2 * TICK, now + 60 * TICK));
+
+        // When
+        scheduler.schedule(mockSession(now + 30 * TICK, now + 60 * TICK));
+        scheduler.expire(now + 3 * TICK);
+
+        // Then
+        verifyZeroInteractions(mockStore);
+    }
+
+    @Test
+    public void shouldCancelTimeoutsWhenSessionIsRemoved() throws Exception {
+        // Given
+        InternalSession session = mockSession(now + 2 * TICK, now + 3 * TICK);
+        scheduler.schedule(session);
+
+        // When
+        scheduler.cancel(session);
+        scheduler.expire(now + 4 * TICK);
+
+        // Then
+        verifyZeroInteractions(mockStore);
+    }
+
+    @Test
+    public void shouldCancelTimeoutsWhenSessionIsNoLongerValid() throws Exception {
+        // Given
+        scheduler.schedule(mockSession(now + 2 * TICK, now + 3 * TICK));
+        InternalSession destroyed = mockSession(now + 2 * TICK, now + 3 * TICK);
+        given(destroyed.getState()).willReturn(SessionState.DESTROYED);
+
+        // When
+        scheduler.schedule(destroyed);
+        scheduler.expire(now + 4 * TICK);
+
+        // Then
+        verifyZeroInteractions(mockStore);
+    }
+
+    @Test
+    public void shouldIgnoreSessionsWhenDisabled() {
+        // Given
+        SessionExpiryScheduler disabled = newScheduler(0);
+
+        // When
+        disabled.schedule(mockSession(now + 2 * TICK, now + 3 * TICK));
+
+        // Then
+        assertThat(disabled.isEnabled()).isFalse();
+        verifyZeroInteractions(mockStore);
+    }
+
+    private SessionExpiryScheduler newScheduler(long tickMillis) {
+        return new SessionExpiryScheduler(mock(Debug.class), mockIdleTimeoutHandler, mockMaxTimeoutHandler,
+                mockStore, mockTokenIdFactory, 100, tickMillis, 4);
+    }
+
+    private InternalSession mockSession(long idleExpiryTime, long maxExpiryTime) {
+        InternalSession session = mock(InternalSession.class);
+        given(session.getID()).willReturn(SESSION_ID);
+        given(session.getState()).willReturn(SessionState.VALID);
+        given(session.willExpire()).willReturn(true);
+        given(session.getMaxIdleExpirationTime(MILLISECONDS)).willReturn(idleExpiryTime);
+        given(session.getMaxSessionExpirationTime(MILLISECONDS)).willReturn(maxExpiryTime);
+        return session;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.worker.process;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Reporter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long START = 1234567890000L;
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    private static final int BENCHMARK_SESSIONS = 1000000;
+
+    private TimingWheel<String> wheel;
+
+    @BeforeMethod
+    public void setUp() {
+        wheel = new TimingWheel<>(TICK, START);
+    }
+
+    @Test
+    public void shouldExpireKeysOnceTheirDeadlineHasPassed() {
+        // Given
+        wheel.schedule("first", START + 1500);
+        wheel.schedule("second", START + 3000);
+
+        // When / Then
+        assertThat(wheel.advance(START + 1999)).isEmpty();
+        assertThat(wheel.advance(START + 2000)).containsExactly("first");
+        assertThat(wheel.advance(START + 2999)).isEmpty();
+        assertThat(wheel.advance(START + 3000)).containsExactly("second");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void shouldExpireKeysWhoseDeadlineHasAlreadyPassedOnTheNextTick() {
+        // Given
+        wheel.advance(START + 5000);
+        wheel.schedule("late", START);
+
+        // When / Then
+        assertThat(wheel.advance(START + 5500)).isEmpty();
+        assertThat(wheel.advance(START + 6000)).containsExactly("late");
+    }
+
+    @Test
+    public void shouldReplaceDeadlineWhenKeyIsRescheduled() {
+        // Given
+        wheel.schedule("session", START + 2000);
+
+        // When
+        wheel.schedule("session", START + 10000);
+
+        // Then
+        assertThat(wheel.advance(START + 9000)).isEmpty();
+        assertThat(wheel.advance(START + 10000)).containsExactly("session");
+    }
+
+    @Test
+    public void shouldNotExpireCancelledKeys() {
+        // Given
+        wheel.schedule("session", START + 2000);
+
+        // When
+        boolean cancelled = wheel.cancel("session");
+
+        // Then
+        assertThat(cancelled).isTrue();
+        assertThat(wheel.cancel("session")).isFalse();
+        assertThat(wheel.advance(START + 2000)).isEmpty();
+    }
+
+    @Test
+    public void shouldCascadeDistantDeadlinesDownTheLevels() {
+        // Given
+        long twoHours = TimeUnit.HOURS.toMillis(2);
+        long threeDays = TimeUnit.DAYS.toMillis(3);
+        wheel.schedule("hours", START + twoHours);
+        wheel.schedule("days", START + threeDays);
+
+        // When / Then
+        assertThat(wheel.advance(START + twoHours - TICK)).isEmpty();
+        assertThat(wheel.advance(START + twoHours)).containsExactly("hours");
+        assertThat(wheel.advance(START + threeDays - TICK)).isEmpty();
+        assertThat(wheel.advance(START + threeDays)).containsExactly("days");
+    }
+
+    @Test
+    public void shouldHoldDeadlinesBeyondTheRangeOfTheWheel() {
+        // Given
+        long range = TICK << 24;
+        wheel.schedule("distant", START + 3 * range);
+
+        // When / Then
+        assertThat(wheel.advance(START + 3 * range - TICK)).isEmpty();
+        assertThat(wheel.advance(START + 3 * range)).containsExactly("distant");
+    }
+
+    @DataProvider
+    public Object[][] numThreads() {
+        return new Object[][]{
+                { 1 },
+                { 2 },
+                { 5 },
+                { 10 },
+                { 25 },
+                { 50 },
+                { 100 }
+        };
+    }
+
+    /**
+     * Tests the rate at which idle timeouts can be rescheduled, in timing wheels sharded and locked the same way as in
+     * the {@link SessionExpiryScheduler} and holding a large number of sessions, as a factor of the number of threads.
+     * Disabled by default to avoid slowing down the build.
+     *
+     * @param numThreads the number of threads to concurrently reschedule idle timeouts.
+     */
+    @Test(dataProvider = "numThreads", enabled = false)
+    public void testRescheduleThroughput(int numThreads) throws Exception {
+        final int roundsPerThread = 10000000 / numThreads;
+        // Given
+        final List<TimingWheel<String>> shards = newShards();
+        final String[] sessionIds = scheduleSessions(shards);
+        final CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        // When
+        for (int i = 0; i < numThreads; ++i) {
+            final int seed = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        barrier.await();
+                        for (int j = 0; j < roundsPerThread; j++) {
+                            // Each request refreshes the idle timeout of a random session some time into the run
+                            schedule(shards, sessionIds[random.nextInt(sessionIds.length)],
+                                    START + random.nextInt((int) IDLE_TIMEOUT) + IDLE_TIMEOUT);
+                        }
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        barrier.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        // Then
+        assertThat(size(shards)).isEqualTo(BENCHMARK_SESSIONS);
+        long reschedules = (long) numThreads * roundsPerThread;
+        Reporter.log(numThreads + " threads: " + reschedules * TimeUnit.SECONDS.toNanos(1) / elapsed
+                + " reschedules per second");
+    }
+
+    /**
+     * Measures the time taken to expire a large number of sessions by advancing sharded timing wheels one tick at a
+     * time. Disabled by default to avoid slowing down the build.
+     */
+    @Test(enabled = false)
+    public void testExpiryTime() {
+        // Given
+        List<TimingWheel<String>> shards = newShards();
+        scheduleSessions(shards);
+
+        // When
+        long start = System.nanoTime();
+        int expired = 0;
+        for (long now = START; now <= START + IDLE_TIMEOUT + TICK; now += TICK) {
+            for (TimingWheel<String> shard : shards) {
+                expired += shard.advance(now).size();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Then
+        assertThat(expired).isEqualTo(BENCHMARK_SESSIONS);
+        Reporter.log("Expired " + expired + " sessions: " + elapsed / expired + " ns per session");
+    }
+
+    private static List<TimingWheel<String>> newShards() {
+        List<TimingWheel<String>> shards = new ArrayList<>();
+        int shardCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 4;
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new TimingWheel<String>(TICK, START));
+        }
+        return shards;
+    }
+
+    private static String[] scheduleSessions(List<TimingWheel<String>> shards) {
+        String[] sessionIds = new String[BENCHMARK_SESSIONS];
+        for (int i = 0; i < BENCHMARK_SESSIONS; i++) {
+            sessionIds[i] = "AQIC5wM2LY4Sfcz" + Integer.toHexString(i) + "AAJTSQACMDE.*";
+            schedule(shards, sessionIds[i], START + IDLE_TIMEOUT);
+        }
+        return sessionIds;
+    }
+
+    private static void schedule(List<TimingWheel<String>> shards, String sessionId, long deadline) {
+        int hash = sessionId.hashCode();
+        TimingWheel<String> shard = shards.get((hash ^ (hash >>> 16)) & (shards.size() - 1));
+        synchronized (shard) {
+            shard.schedule(sessionId, deadline);
+        }
+    }
+
+    private static int size(List<TimingWheel<String>> shards) {
+        int size = 0;
+        for (TimingWheel<String> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+}
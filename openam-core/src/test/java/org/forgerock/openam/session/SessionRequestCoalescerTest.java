@@ -0,0 +1,175 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.iplanet.dpro.session.SessionException;
+import com.iplanet.dpro.session.share.SessionRequest;
+import com.iplanet.dpro.session.share.SessionResponse;
+
+public class SessionRequestCoalescerTest {
+
+    private SessionPLLSender sender;
+    private URL url;
+    private ExecutorService executorService;
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        sender = mock(SessionPLLSender.class);
+        url = new URL("http://openam.example.com:8080/openam/sessionservice");
+        executorService = Executors.newCachedThreadPool();
+        given(sender.getLBCookie(any(SessionRequest.class))).willReturn("amlbcookie=01");
+        given(sender.sendPLLRequests(any(URL.class), anyListOf(SessionRequest.class)))
+                .willAnswer(new Answer<List<SessionResponse>>() {
+                    @Override
+                    public List<SessionResponse> answer(InvocationOnMock invocation) {
+                        List<SessionResponse> responses = new ArrayList<>();
+                        for (SessionRequest request : (List<SessionRequest>) invocation.getArguments()[1]) {
+                            responses.add(new SessionResponse(request.getRequestID(), request.getMethodID()));
+                        }
+                        return responses;
+                    }
+                });
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldOnlyCoalesceRefreshRequests() {
+        SessionRequestCoalescer coalescer = new SessionRequestCoalescer(5, 50);
+
+        assertThat(coalescer.canCoalesce(new SessionRequest(SessionRequest.GetSession, "sid", false))).isTrue();
+        assertThat(coalescer.canCoalesce(new SessionRequest(SessionRequest.Logout, "sid", false))).isFalse();
+        assertThat(new SessionRequestCoalescer(0, 50)
+                .canCoalesce(new SessionRequest(SessionRequest.GetSession, "sid", false))).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSendConcurrentRequestsInOneRequestSet() throws Exception {
+        // Given
+        SessionRequestCoalescer coalescer = new SessionRequestCoalescer(10000, 3);
+        List<SessionRequest> requests = new ArrayList<>();
+        List<Future<SessionResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SessionRequest request = new SessionRequest(SessionRequest.GetSession, "sid" + i, false);
+            requests.add(request);
+            futures.add(executorService.submit(send(coalescer, request)));
+        }
+
+        // When
+        List<SessionResponse> responses = new ArrayList<>();
+        for (Future<SessionResponse> future : futures) {
+            responses.add(future.get(5, TimeUnit.SECONDS));
+        }
+
+        // Then
+        ArgumentCaptor<List> sent = ArgumentCaptor.forClass(List.class);
+        verify(sender, times(1)).sendPLLRequests(any(URL.class), sent.capture());
+        assertThat(sent.getValue()).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(responses.get(i).getRequestID()).isEqualTo(requests.get(i).getRequestID());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldShareResponseBetweenIdenticalRequests() throws Exception {
+        // Given
+        SessionRequestCoalescer coalescer = new SessionRequestCoalescer(500, 50);
+        Future<SessionResponse> first = executorService.submit(
+                send(coalescer, new SessionRequest(SessionRequest.GetSession, "sid", false)));
+        Future<SessionResponse> second = executorService.submit(
+                send(coalescer, new SessionRequest(SessionRequest.GetSession, "sid", false)));
+
+        // When
+        SessionResponse firstResponse = first.get(5, TimeUnit.SECONDS);
+        SessionResponse secondResponse = second.get(5, TimeUnit.SECONDS);
+
+        // Then
+        ArgumentCaptor<List> sent = ArgumentCaptor.forClass(List.class);
+        verify(sender, times(1)).sendPLLRequests(any(URL.class), sent.capture());
+        assertThat(sent.getValue()).hasSize(1);
+        assertThat(secondResponse).isSameAs(firstResponse);
+    }
+
+    @Test
+    public void shouldFailEveryRequestInFailedRequestSet() throws Exception {
+        // Given
+        given(sender.sendPLLRequests(any(URL.class), anyListOf(SessionRequest.class)))
+                .willThrow(new SessionException("Site is down."));
+        SessionRequestCoalescer coalescer = new SessionRequestCoalescer(10000, 2);
+        Future<SessionResponse> first = executorService.submit(
+                send(coalescer, new SessionRequest(SessionRequest.GetSession, "sid1", false)));
+        Future<SessionResponse> second = executorService.submit(
+                send(coalescer, new SessionRequest(SessionRequest.GetSession, "sid2", false)));
+
+        // When
+        Throwable firstFailure = failureOf(first);
+        Throwable secondFailure = failureOf(second);
+
+        // Then
+        assertThat(firstFailure).isInstanceOf(SessionException.class).hasMessage("Site is down.");
+        assertThat(secondFailure).isInstanceOf(SessionException.class).hasMessage("Site is down.");
+    }
+
+    private Callable<SessionResponse> send(final SessionRequestCoalescer coalescer, final SessionRequest request) {
+        return new Callable<SessionResponse>() {
+            @Override
+            public SessionResponse call() throws Exception {
+                return coalescer.send(sender, url, request);
+            }
+        };
+    }
+
+    private Throwable failureOf(Future<SessionResponse> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
@@ -17,11 +17,16 @@
 package org.forgerock.openam.session.service.access;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static java.util.Arrays.asList;
 import static org.mockito.BDDMockito.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.fest.util.Collections;
 import org.forgerock.guice.core.GuiceModules;
 import org.forgerock.guice.core.GuiceTestCase;
+import org.forgerock.openam.cts.CTSPagedQuery;
 import org.forgerock.openam.cts.CTSPersistentStore;
 import org.forgerock.openam.cts.adapters.SessionAdapter;
 import org.forgerock.openam.cts.api.filter.TokenFilter;
@@ -112,6 +117,66 @@ public class SessionPersistenceStoreTest extends GuiceTestCase {
         assertThat(sessionPersistenceStore.recoverSessionByHandle(HANDLE)).isNull();
     }
 
+    @Test
+    public void stopsReadingValidSessionsAtMaxSessionListSize() throws Exception {
+        //Given
+        CTSPagedQuery<Token> query = pagedQueryOfTokens(3);
+        given(mockSessionServiceConfig.getMaxSessionListSize()).willReturn(3);
+        final List<InternalSession> sessions = new ArrayList<>();
+
+        //When
+        sessionPersistenceStore.getValidSessions(new SessionQueryHandler<InternalSession>() {
+            @Override
+            public boolean handleResult(InternalSession session) {
+                sessions.add(session);
+                return true;
+            }
+        });
+
+        //Then
+        assertThat(sessions).hasSize(3);
+        verify(query, times(2)).nextPage();
+        verify(query).close();
+    }
+
+    @Test
+    public void stopsReadingValidSessionsWhenHandlerStops() throws Exception {
+        //Given
+        CTSPagedQuery<Token> query = pagedQueryOfTokens(3);
+        given(mockSessionServiceConfig.getMaxSessionListSize()).willReturn(100);
+        final List<InternalSession> sessions = new ArrayList<>();
+
+        //When
+        sessionPersistenceStore.getValidSessions(new SessionQueryHandler<InternalSession>() {
+            @Override
+            public boolean handleResult(InternalSession session) {
+                sessions.add(session);
+                return false;
+            }
+        });
+
+        //Then
+        assertThat(sessions).hasSize(1);
+        verify(query).nextPage();
+        verify(query).close();
+    }
+
+    /**
+     * Returns the given number of pages of two tokens each from the paged CTS query.
+     */
+    @SuppressWarnings("unchecked")
+    private CTSPagedQuery<Token> pagedQueryOfTokens(int pages) throws Exception {
+        CTSPagedQuery<Token> query = mock(CTSPagedQuery.class);
+        List<Token> page = asList(mockToken, mockToken);
+        List<Token>[] morePages = new List[pages];
+        for (int i = 0; i < pages - 1; i++) {
+            morePages[i] = page;
+        }
+        given(query.nextPage()).willReturn(page, morePages);
+        given(mockCoreTokenService.pagedQuery(any(TokenFilter.class), anyInt())).willReturn(query);
+        return query;
+    }
+
     public static class TestSessionGuiceModule extends AbstractModule {
 
         @Override
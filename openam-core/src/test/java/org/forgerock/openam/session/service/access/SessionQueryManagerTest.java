@@ -19,8 +19,8 @@ package org.forgerock.openam.session.service.access;
 import static com.iplanet.dpro.session.service.SessionState.VALID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
-
-import java.util.Arrays;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.any;
 
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionException;
@@ -36,6 +36,8 @@ import org.forgerock.openam.session.authorisation.SessionChangeAuthorizer;
 import org.forgerock.openam.session.service.access.persistence.SessionPersistenceStore;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -68,12 +70,19 @@ public class SessionQueryManagerTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     public void shouldReturnAllSessionsWhenNullPattern() throws SessionException, CoreTokenException, SSOException {
         //given
         String pattern = null;
         given(actingSession.getSessionID()).willReturn(sessionID);
         given(sessionChangeAuthorizer.hasTopLevelAdminRole(sessionID)).willReturn(true);
-        given(sessionPersistenceStore.getValidSessions()).willReturn(Arrays.asList(internalSession));
+        willAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((SessionQueryHandler<InternalSession>) invocation.getArguments()[0]).handleResult(internalSession);
+                return null;
+            }
+        }).given(sessionPersistenceStore).getValidSessions(any(SessionQueryHandler.class));
         given(internalSession.isUserSession()).willReturn(true);
         given(internalSession.toSessionInfo()).willReturn(new SessionInfo());
 
@@ -0,0 +1,168 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.forgerock.openam.cts.CoreTokenConfig;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.iplanet.dpro.session.SessionEventType;
+import com.iplanet.dpro.session.SessionException;
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionEvent;
+import com.sun.identity.shared.debug.Debug;
+
+public class UserSessionIndexTest {
+
+    private static final String USER = "id=demo,ou=user,dc=openam,dc=forgerock,dc=org";
+
+    @Mock
+    private Debug debug;
+    @Mock
+    private SessionQueryManager sessionQueryManager;
+    @Mock
+    private CoreTokenConfig tokenConfig;
+
+    private UserSessionIndex index;
+    private long later;
+
+    @BeforeMethod
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        later = MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        index = new UserSessionIndex(debug, new Provider<SessionQueryManager>() {
+            @Override
+            public SessionQueryManager get() {
+                return sessionQueryManager;
+            }
+        }, tokenConfig, 100, 15);
+    }
+
+    @Test
+    public void shouldReadSessionsOfUserOnlyOnce() throws Exception {
+        //given
+        given(sessionQueryManager.getAllSessionsByUUID(USER)).willReturn(sessions("one", "two"));
+
+        //when
+        int first = index.getSessionCount(USER);
+        int second = index.getSessionCount(USER.toUpperCase());
+
+        //then
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isEqualTo(2);
+        verify(sessionQueryManager, times(1)).getAllSessionsByUUID(anyString());
+    }
+
+    @Test
+    public void shouldTrackChangesToIndexedUser() throws Exception {
+        //given
+        given(sessionQueryManager.getAllSessionsByUUID(USER)).willReturn(sessions("one", "two"));
+        index.getSessionCount(USER);
+
+        //when
+        index.sessionAdded(new SessionID("three"), USER, later);
+        index.sessionModified(new SessionID("one"), USER, later + 60);
+        index.sessionDeleted(new SessionID("two"), null);
+
+        //then
+        Map<String, Long> sessions = index.getSessions(USER);
+        assertThat(sessions).hasSize(2);
+        assertThat(sessions.get("one")).isEqualTo(later + 60);
+        assertThat(sessions.get("three")).isEqualTo(later);
+    }
+
+    @Test
+    public void shouldTrackLocalSessionEvents() throws Exception {
+        //given
+        given(sessionQueryManager.getAllSessionsByUUID(USER)).willReturn(sessions("one"));
+        index.getSessionCount(USER);
+        InternalSession session = mock(InternalSession.class);
+        given(session.getUUID()).willReturn(USER);
+        given(session.getID()).willReturn(new SessionID("two"));
+        given(session.getExpirationTime(MILLISECONDS)).willReturn(SECONDS.toMillis(later));
+        given(tokenConfig.getUserId(session)).willReturn(USER);
+
+        //when
+        index.onEvent(new InternalSessionEvent(session, SessionEventType.SESSION_CREATION, 0L));
+        int created = index.getSessionCount(USER);
+        index.onEvent(new InternalSessionEvent(session, SessionEventType.LOGOUT, 0L));
+        int loggedOut = index.getSessionCount(USER);
+
+        //then
+        assertThat(created).isEqualTo(2);
+        assertThat(loggedOut).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCountExpiredSessions() throws Exception {
+        //given
+        Map<String, Long> stored = sessions("one");
+        stored.put("expired", MILLISECONDS.toSeconds(System.currentTimeMillis()) - 1);
+        given(sessionQueryManager.getAllSessionsByUUID(USER)).willReturn(stored);
+
+        //when
+        Map<String, Long> sessions = index.getSessions(USER);
+
+        //then
+        assertThat(sessions.keySet()).containsOnly("one");
+    }
+
+    @Test
+    public void shouldReadSessionsAgainWhenChangesAreLost() throws Exception {
+        //given
+        given(sessionQueryManager.getAllSessionsByUUID(USER)).willReturn(sessions("one"));
+        index.getSessionCount(USER);
+
+        //when
+        index.changesLost();
+        index.getSessionCount(USER);
+
+        //then
+        verify(sessionQueryManager, times(2)).getAllSessionsByUUID(USER);
+    }
+
+    @Test(expectedExceptions = SessionException.class)
+    public void shouldPropagateFailureToReadSessions() throws Exception {
+        //given
+        given(sessionQueryManager.getAllSessionsByUUID(USER)).willThrow(new SessionException("down"));
+
+        //when
+        index.getSessionCount(USER);
+    }
+
+    private Map<String, Long> sessions(String... sids) {
+        Map<String, Long> sessions = new HashMap<>();
+        for (String sid : sids) {
+            sessions.put(sid, later);
+        }
+        return sessions;
+    }
+}
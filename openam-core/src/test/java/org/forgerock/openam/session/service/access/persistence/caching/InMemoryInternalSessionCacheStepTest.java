@@ -19,18 +19,26 @@ package org.forgerock.openam.session.service.access.persistence.caching;
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.BDDMockito.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.inject.Provider;
+
 import org.forgerock.openam.cts.api.fields.SessionTokenField;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.session.service.access.persistence.InternalSessionStore;
+import org.forgerock.openam.session.service.access.persistence.SessionPersistenceManagerStep;
+import org.forgerock.openam.session.service.access.persistence.SessionPersistenceStore;
 import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationListener;
 import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationWatcher;
 import org.forgerock.openam.utils.CollectionUtils;
@@ -45,8 +53,11 @@ import org.testng.annotations.Test;
 
 import com.iplanet.dpro.session.SessionID;
 import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionCodec;
 import com.iplanet.dpro.session.service.SessionServiceConfig;
+import com.iplanet.dpro.session.service.SessionState;
 import com.sun.identity.shared.debug.Debug;
+import com.sun.identity.shared.stats.Stats;
 
 public class InMemoryInternalSessionCacheStepTest {
     private static final int MAX_SESSIONS = 42;
@@ -67,6 +78,18 @@ public class InMemoryInternalSessionCacheStepTest {
     @Mock
     private Debug mockDebug;
 
+    @Mock
+    private InternalSessionCodec mockCodec;
+
+    @Mock
+    private SessionPersistenceStore mockPersistenceStore;
+
+    @Mock
+    private SessionPersistenceManagerStep mockPersistenceManager;
+
+    @Mock
+    private Stats mockStats;
+
     private InMemoryInternalSessionCacheStep testCache;
     private SessionModificationListener sessionModificationListener;
 
@@ -78,7 +101,7 @@ public class InMemoryInternalSessionCacheStepTest {
 
         setupMockCTSToCaptureQueryListener(mockSessionModificationWatcher);
 
-        testCache = new InMemoryInternalSessionCacheStep(mockSessionConfig, mockDebug, mockSessionModificationWatcher);
+        testCache = newTestCache();
     }
 
     @Test
@@ -185,6 +208,124 @@ public class InMemoryInternalSessionCacheStepTest {
         assertThat(testCache.size()).as("Cache size after reconfiguration").isLessThanOrEqualTo(MAX_SESSIONS * 2);
     }
 
+    @Test
+    public void shouldMoveEvictedSessionsOffHeapAndBack() throws Exception {
+        // Given
+        given(mockSessionConfig.getOffHeapSessionCacheSize()).willReturn(1024L * 1024L);
+        testCache = newTestCache();
+        InternalSession restoredSession = mock(InternalSession.class);
+        given(restoredSession.getID()).willReturn(new SessionID("restored"));
+        given(mockCodec.decode(any(byte[].class))).willReturn(restoredSession);
+        storeSessions(MAX_SESSIONS * 2);
+
+        // When
+        int restored = 0;
+        for (int i = 0; i < MAX_SESSIONS * 2; ++i) {
+            InternalSession session = testCache.getBySessionID(new SessionID("Session" + i), mockStore);
+            assertThat(session).isNotNull();
+            if (session == restoredSession) {
+                restored++;
+            }
+        }
+
+        // Then
+        assertThat(restored).isGreaterThan(0);
+        verify(mockStore, never()).getBySessionID(any(SessionID.class));
+        verify(mockPersistenceStore, atLeastOnce()).initialiseSession(restoredSession);
+        verify(restoredSession, atLeastOnce()).setPersistenceManager(mockPersistenceManager);
+    }
+
+    @Test
+    public void shouldRemoveOffHeapSessionsOnSessionChangedEvent() throws Exception {
+        // Given
+        given(mockSessionConfig.getOffHeapSessionCacheSize()).willReturn(1024L * 1024L);
+        testCache = newTestCache();
+        storeSessions(MAX_SESSIONS * 2);
+
+        // When
+        for (int i = 0; i < MAX_SESSIONS * 2; ++i) {
+            sessionModificationListener.sessionChanged(new SessionID("Session" + i));
+        }
+
+        // Then
+        for (int i = 0; i < MAX_SESSIONS * 2; ++i) {
+            assertThat(testCache.getBySessionID(new SessionID("Session" + i), mockStore)).isNull();
+        }
+        verify(mockCodec, never()).decode(any(byte[].class));
+    }
+
+    @Test
+    public void shouldNotMoveInvalidSessionsOffHeap() throws Exception {
+        // Given
+        given(mockSessionConfig.getOffHeapSessionCacheSize()).willReturn(1024L * 1024L);
+        testCache = newTestCache();
+
+        // When
+        storeSessions(MAX_SESSIONS * 2, SessionState.DESTROYED);
+
+        // Then
+        verify(mockCodec, never()).encode(any(InternalSession.class));
+    }
+
+    @Test
+    public void shouldNotResurrectSessionInvalidatedWhileMovingOffHeap() throws Exception {
+        // Given
+        given(mockSessionConfig.getOffHeapSessionCacheSize()).willReturn(1024L * 1024L);
+        testCache = newTestCache();
+        final List<SessionID> invalidated = new ArrayList<>();
+        given(mockCodec.encode(any(InternalSession.class))).willAnswer(new Answer<byte[]>() {
+            @Override
+            public byte[] answer(InvocationOnMock invocation) throws Throwable {
+                InternalSession session = (InternalSession) invocation.getArguments()[0];
+                invalidated.add(session.getID());
+                sessionModificationListener.sessionChanged(session.getID());
+                return session.getID().toString().getBytes("UTF-8");
+            }
+        });
+
+        // When
+        for (int i = 0; i < MAX_SESSIONS * 2; ++i) {
+            InternalSession session = mock(InternalSession.class);
+            given(session.getID()).willReturn(new SessionID("Session" + i));
+            given(session.getState()).willReturn(SessionState.VALID);
+            testCache.store(session, mockStore);
+        }
+
+        // Then
+        assertThat(invalidated).isNotEmpty();
+        for (SessionID sessionID : invalidated) {
+            assertThat(testCache.getBySessionID(sessionID, mockStore)).isNull();
+        }
+        verify(mockCodec, never()).decode(any(byte[].class));
+    }
+
+    private InMemoryInternalSessionCacheStep newTestCache() {
+        return new InMemoryInternalSessionCacheStep(mockSessionConfig, mockDebug, mockSessionModificationWatcher,
+                mockCodec, providerOf(mockPersistenceStore), providerOf(mockPersistenceManager), mockStats);
+    }
+
+    private void storeSessions(int count) throws Exception {
+        storeSessions(count, SessionState.VALID);
+    }
+
+    private void storeSessions(int count, SessionState state) throws Exception {
+        for (int i = 0; i < count; ++i) {
+            InternalSession session = mock(InternalSession.class);
+            given(session.getID()).willReturn(new SessionID("Session" + i));
+            given(session.getState()).willReturn(state);
+            given(mockCodec.encode(session)).willReturn(("Session" + i).getBytes("UTF-8"));
+            testCache.store(session, mockStore);
+        }
+    }
+
+    private static <T> Provider<T> providerOf(final T instance) {
+        return new Provider<T>() {
+            @Override
+            public T get() {
+                return instance;
+            }
+        };
+    }
 
     private InternalSession sessionWithHandleAndRestrictedTokens() {
         String sessionHandle = "sessionHandle";
@@ -0,0 +1,363 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access.persistence.caching;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.openam.session.service.access.persistence.caching.OffHeapSessionStore.LongIndex;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class OffHeapSessionStoreTest {
+
+    // Two segments of 100 bytes, each holding two records of one two character key and 30 bytes of data
+    private static final int SEGMENT_SIZE = 100;
+    private static final int DATA_LENGTH = 30;
+    private static final int RECORD_LENGTH = 8 + 4 + 2 + DATA_LENGTH;
+
+    // Distinct keys with the same 64 bit FNV-1a hash
+    private static final String COLLIDING_KEY = "LLwCZu4z3qH";
+    private static final String OTHER_COLLIDING_KEY = "AuHH3scoLSF";
+
+    private OffHeapSessionStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        store = new OffHeapSessionStore(2 * SEGMENT_SIZE, SEGMENT_SIZE);
+    }
+
+    @Test
+    public void shouldFindSessionByEachOfItsKeys() {
+        //Given
+        byte[] data = data(1);
+
+        //When
+        store.put(asList("id", "handle"), data);
+
+        //Then
+        assertThat(store.get("id")).isEqualTo(data);
+        assertThat(store.get("handle")).isEqualTo(data);
+        assertThat(store.get("other")).isNull();
+        assertThat(store.getHitCount()).isEqualTo(2);
+        assertThat(store.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRemoveEveryKeyOfSession() {
+        //Given
+        store.put(asList("id", "handle"), data(1));
+
+        //When
+        store.remove("handle");
+
+        //Then
+        assertThat(store.get("id")).isNull();
+        assertThat(store.get("handle")).isNull();
+        assertThat(store.getEntryCount()).isZero();
+        assertThat(store.getBytesResident()).isZero();
+    }
+
+    @Test
+    public void shouldEvictSessionsOfReusedSegment() {
+        //Given
+        for (int i = 1; i <= 4; i++) {
+            store.put(singletonList("s" + i), data(i));
+        }
+
+        //When
+        store.put(singletonList("s5"), data(5));
+
+        //Then
+        assertThat(store.get("s1")).isNull();
+        assertThat(store.get("s2")).isNull();
+        assertThat(store.get("s3")).isEqualTo(data(3));
+        assertThat(store.get("s4")).isEqualTo(data(4));
+        assertThat(store.get("s5")).isEqualTo(data(5));
+        assertThat(store.getEvictionCount()).isEqualTo(2);
+        assertThat(store.getEntryCount()).isEqualTo(3);
+        assertThat(store.getBytesResident()).isEqualTo(3 * RECORD_LENGTH);
+        assertThat(store.getBytesAllocated()).isEqualTo(2 * SEGMENT_SIZE);
+    }
+
+    @Test
+    public void shouldMissEvictedKeysAfterRingWraps() {
+        //Given
+        for (int i = 1; i <= 4; i++) {
+            store.put(singletonList("s" + i), data(i));
+        }
+
+        //When
+        // Each wrap writes new sessions over the records of the sessions evicted from the same offsets
+        for (int i = 5; i <= 12; i++) {
+            store.put(singletonList("s" + i), data(i));
+        }
+
+        //Then
+        for (int i = 1; i <= 8; i++) {
+            assertThat(store.get("s" + i)).isNull();
+        }
+        for (int i = 9; i <= 12; i++) {
+            assertThat(store.get("s" + i)).isEqualTo(data(i));
+        }
+        assertThat(store.getEvictionCount()).isEqualTo(8);
+        assertThat(store.getEntryCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldKeepReplacedSessionWhenSegmentOfOldCopyIsReused() {
+        //Given
+        store.put(singletonList("s1"), data(1));
+        store.put(singletonList("s2"), data(2));
+        store.put(singletonList("s1"), data(11));
+        store.put(singletonList("s3"), data(3));
+
+        //When
+        store.put(singletonList("s4"), data(4));
+
+        //Then
+        assertThat(store.get("s1")).isEqualTo(data(11));
+        assertThat(store.get("s2")).isNull();
+        assertThat(store.getEvictionCount()).isEqualTo(1);
+        assertThat(store.getEntryCount()).isEqualTo(3);
+        assertThat(store.getBytesResident()).isEqualTo(3 * RECORD_LENGTH);
+    }
+
+    @Test
+    public void shouldNotEvictRemovedSessions() {
+        //Given
+        for (int i = 1; i <= 4; i++) {
+            store.put(singletonList("s" + i), data(i));
+        }
+        store.remove("s1");
+
+        //When
+        store.put(singletonList("s5"), data(5));
+
+        //Then
+        assertThat(store.getEvictionCount()).isEqualTo(1);
+        assertThat(store.getEntryCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldRejectSessionLargerThanSegment() {
+        //Given
+        store.put(singletonList("s1"), data(1));
+
+        //When
+        boolean stored = store.put(singletonList("s1"), new byte[SEGMENT_SIZE]);
+
+        //Then
+        assertThat(stored).isFalse();
+        assertThat(store.get("s1")).isNull();
+        assertThat(store.getEntryCount()).isZero();
+        assertThat(store.getBytesResident()).isZero();
+    }
+
+    @Test
+    public void shouldStoreSessionFillingWholeSegment() {
+        //Given
+        byte[] data = new byte[SEGMENT_SIZE - RECORD_LENGTH + DATA_LENGTH];
+
+        //When
+        boolean stored = store.put(singletonList("s1"), data);
+
+        //Then
+        assertThat(stored).isTrue();
+        assertThat(store.get("s1")).isEqualTo(data);
+        assertThat(store.getBytesResident()).isEqualTo(SEGMENT_SIZE);
+    }
+
+    @Test
+    public void shouldMissRatherThanReturnSessionWithCollidingKey() {
+        //Given
+        store.put(singletonList(COLLIDING_KEY), data(1));
+
+        //When
+        store.put(singletonList(OTHER_COLLIDING_KEY), data(2));
+
+        //Then
+        assertThat(store.get(COLLIDING_KEY)).isNull();
+        assertThat(store.get(OTHER_COLLIDING_KEY)).isEqualTo(data(2));
+        assertThat(store.getEntryCount()).isEqualTo(1);
+        assertThat(store.getBytesResident()).isEqualTo(RECORD_LENGTH + COLLIDING_KEY.length() - 2);
+    }
+
+    @Test
+    public void shouldNotRemoveSessionWithCollidingKey() {
+        //Given
+        store.put(singletonList(OTHER_COLLIDING_KEY), data(2));
+
+        //When
+        store.remove(COLLIDING_KEY);
+
+        //Then
+        assertThat(store.get(OTHER_COLLIDING_KEY)).isEqualTo(data(2));
+        assertThat(store.getEntryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepSessionWhenOnlySomeOfItsKeysCollide() {
+        //Given
+        store.put(asList("id", COLLIDING_KEY), data(1));
+
+        //When
+        store.put(singletonList(OTHER_COLLIDING_KEY), data(2));
+
+        //Then
+        assertThat(store.get("id")).isEqualTo(data(1));
+        assertThat(store.get(COLLIDING_KEY)).isNull();
+        assertThat(store.getEntryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldGrowIndexWhenThreeQuartersFull() {
+        //Given
+        LongIndex index = new LongIndex();
+        int initialCapacity = index.capacity();
+        for (long key = 1; key <= initialCapacity * 3 / 4; key++) {
+            index.put(key, -key);
+        }
+        assertThat(index.capacity()).isEqualTo(initialCapacity);
+
+        //When
+        index.put(initialCapacity, -initialCapacity);
+
+        //Then
+        assertThat(index.capacity()).isEqualTo(initialCapacity * 2);
+        for (long key = 1; key <= initialCapacity * 3 / 4; key++) {
+            assertThat(index.get(key)).isEqualTo(-key);
+        }
+        assertThat(index.get(initialCapacity)).isEqualTo(-initialCapacity);
+    }
+
+    @Test
+    public void shouldShiftBackProbeSequenceOnRemove() {
+        //Given
+        LongIndex index = new LongIndex();
+        int mask = index.capacity() - 1;
+        // Three keys share slot 10 and one belongs in slot 11, so they fill slots 10 to 13
+        List<Long> keys = keysWithSlot(10, 3, mask);
+        long displaced = keysWithSlot(11, 1, mask).get(0);
+        for (long key : keys) {
+            index.put(key, key);
+        }
+        index.put(displaced, displaced);
+
+        //When
+        index.remove(keys.get(0));
+
+        //Then
+        assertThat(index.get(keys.get(0))).isEqualTo(LongIndex.ABSENT);
+        assertThat(index.get(keys.get(1))).isEqualTo(keys.get(1));
+        assertThat(index.get(keys.get(2))).isEqualTo(keys.get(2));
+        assertThat(index.get(displaced)).isEqualTo(displaced);
+    }
+
+    @Test
+    public void shouldShiftBackProbeSequenceWrappingPastEndOfIndex() {
+        //Given
+        LongIndex index = new LongIndex();
+        int mask = index.capacity() - 1;
+        List<Long> keys = keysWithSlot(mask, 2, mask);
+        long wrapped = keysWithSlot(0, 1, mask).get(0);
+        for (long key : keys) {
+            index.put(key, key);
+        }
+        index.put(wrapped, wrapped);
+
+        //When
+        index.remove(keys.get(0));
+
+        //Then
+        assertThat(index.get(keys.get(1))).isEqualTo(keys.get(1));
+        assertThat(index.get(wrapped)).isEqualTo(wrapped);
+    }
+
+    @Test
+    public void shouldNotShiftEntryBeforeItsOwnSlot() {
+        //Given
+        LongIndex index = new LongIndex();
+        int mask = index.capacity() - 1;
+        long first = keysWithSlot(10, 1, mask).get(0);
+        long atHome = keysWithSlot(11, 1, mask).get(0);
+        index.put(first, first);
+        index.put(atHome, atHome);
+
+        //When
+        index.remove(first);
+
+        //Then
+        assertThat(index.get(atHome)).isEqualTo(atHome);
+        index.remove(atHome);
+        assertThat(index.get(atHome)).isEqualTo(LongIndex.ABSENT);
+    }
+
+    @Test
+    public void shouldFindEveryRemainingKeyAfterRandomRemovals() {
+        //Given
+        LongIndex index = new LongIndex();
+        Random random = new Random(42);
+        List<Long> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            long key = random.nextLong();
+            if (key != 0) {
+                keys.add(key);
+                index.put(key, ~key);
+            }
+        }
+        Collections.shuffle(keys, random);
+        List<Long> removed = keys.subList(0, keys.size() / 2);
+        List<Long> remaining = keys.subList(keys.size() / 2, keys.size());
+
+        //When
+        for (long key : removed) {
+            index.remove(key);
+        }
+
+        //Then
+        for (long key : removed) {
+            assertThat(index.get(key)).isEqualTo(LongIndex.ABSENT);
+        }
+        for (long key : remaining) {
+            assertThat(index.get(key)).isEqualTo(~key);
+        }
+    }
+
+    private static byte[] data(int session) {
+        byte[] data = new byte[DATA_LENGTH];
+        Arrays.fill(data, (byte) session);
+        return data;
+    }
+
+    private static List<Long> keysWithSlot(int slot, int count, int mask) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; keys.size() < count; key++) {
+            if (LongIndex.slot(key, mask) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.session.service.access.persistence.caching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Subscription;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.openam.session.SessionEventType;
+import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationListener;
+import org.forgerock.openam.session.service.access.persistence.watchers.SessionModificationWatcher;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.service.InternalSession;
+import com.iplanet.dpro.session.service.InternalSessionEvent;
+import com.iplanet.dpro.session.share.SessionInfo;
+import com.sun.identity.shared.debug.Debug;
+
+public class SessionInfoCacheTest {
+
+    private static final SessionID SESSION_ID = new SessionID("test");
+
+    @Mock
+    private NotificationBroker mockBroker;
+
+    @Mock
+    private Subscription mockSubscription;
+
+    @Mock
+    private SessionModificationWatcher mockWatcher;
+
+    private SessionInfo sessionInfo;
+    private SessionInfoCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(mockBroker.subscribe(any(Consumer.class))).willReturn(mockSubscription);
+        given(mockSubscription.bindTo(any(Topic.class))).willReturn(mockSubscription);
+        sessionInfo = new SessionInfo();
+        sessionInfo.setSessionID(SESSION_ID.toString());
+        sessionInfo.setTimeLeft(60);
+        cache = new SessionInfoCache(mock(Debug.class), mockBroker, mockWatcher, 60000, 10);
+    }
+
+    @Test
+    public void shouldReturnCopyOfCachedSessionInfo() {
+        // Given
+        cache.populate(SESSION_ID, sessionInfo, cache.getGeneration());
+
+        // When
+        SessionInfo result = cache.get(SESSION_ID);
+
+        // Then
+        assertThat(result).isEqualTo(sessionInfo).isNotSameAs(sessionInfo);
+        assertThat(result.getProperties()).isNotSameAs(sessionInfo.getProperties());
+    }
+
+    @Test
+    public void shouldNotCacheSessionInfoLoadedBeforeInvalidation() {
+        // Given
+        long generation = cache.getGeneration();
+        cache.invalidate(SESSION_ID);
+
+        // When
+        cache.populate(SESSION_ID, sessionInfo, generation);
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isNull();
+    }
+
+    @Test
+    public void shouldCacheSessionInfoLoadedWhileAnotherSessionIsInvalidated() {
+        // Given
+        long generation = cache.getGeneration();
+        cache.invalidate(new SessionID("other"));
+
+        // When
+        cache.populate(SESSION_ID, sessionInfo, generation);
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isEqualTo(sessionInfo);
+    }
+
+    @Test
+    public void shouldCacheSessionInfoLoadedAfterInvalidation() {
+        // Given
+        cache.invalidate(SESSION_ID);
+        long generation = cache.getGeneration();
+
+        // When
+        cache.populate(SESSION_ID, sessionInfo, generation);
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isEqualTo(sessionInfo);
+    }
+
+    @Test
+    public void shouldNotCacheSessionInfoLoadedBeforeForgottenInvalidation() {
+        // Given
+        long generation = cache.getGeneration();
+        cache.invalidate(SESSION_ID);
+        // The cache keeps as many tombstones as sessions, so these push out the tombstone of the session
+        for (int i = 0; i < 10; i++) {
+            cache.invalidate(new SessionID("other" + i));
+        }
+
+        // When
+        cache.populate(SESSION_ID, sessionInfo, generation);
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isNull();
+    }
+
+    @Test
+    public void shouldNotCacheInvalidOrExpiredSessions() {
+        // Given
+        SessionInfo destroyed = new SessionInfo(sessionInfo);
+        destroyed.setState("destroyed");
+        SessionInfo expired = new SessionInfo(sessionInfo);
+        expired.setTimeLeft(-1);
+        SessionID expiredID = new SessionID("expired");
+
+        // When
+        cache.populate(SESSION_ID, destroyed, cache.getGeneration());
+        cache.populate(expiredID, expired, cache.getGeneration());
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isNull();
+        assertThat(cache.get(expiredID)).isNull();
+    }
+
+    @Test
+    public void shouldInvalidateAndPublishOnLogout() {
+        // Given
+        InternalSession session = mock(InternalSession.class);
+        given(session.getID()).willReturn(SESSION_ID);
+        cache.populate(SESSION_ID, sessionInfo, cache.getGeneration());
+
+        // When
+        cache.onEvent(new InternalSessionEvent(session, SessionEventType.LOGOUT, 0));
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isNull();
+        ArgumentCaptor<JsonValue> notification = ArgumentCaptor.forClass(JsonValue.class);
+        verify(mockBroker).publish(eq(SessionInfoCache.TOPIC), notification.capture());
+        assertThat(notification.getValue().get("tokenId").asString()).isEqualTo(SESSION_ID.toString());
+    }
+
+    @Test
+    public void shouldInvalidateOnNotificationFromAnotherServer() {
+        // Given
+        ArgumentCaptor<Consumer> consumer = ArgumentCaptor.forClass(Consumer.class);
+        verify(mockBroker).subscribe(consumer.capture());
+        verify(mockSubscription).bindTo(SessionInfoCache.TOPIC);
+        cache.populate(SESSION_ID, sessionInfo, cache.getGeneration());
+
+        // When
+        consumer.getValue().accept(json(object(field("source", "other"), field("tokenId", SESSION_ID.toString()))));
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isNull();
+    }
+
+    @Test
+    public void shouldInvalidateWhenStoredSessionChanges() {
+        // Given
+        ArgumentCaptor<SessionModificationListener> listener =
+                ArgumentCaptor.forClass(SessionModificationListener.class);
+        verify(mockWatcher).addListener(listener.capture());
+        cache.populate(SESSION_ID, sessionInfo, cache.getGeneration());
+
+        // When
+        listener.getValue().sessionChanged(SESSION_ID);
+
+        // Then
+        assertThat(cache.get(SESSION_ID)).isNull();
+        verify(mockBroker, never()).publish(any(Topic.class), any(JsonValue.class));
+    }
+
+    @Test
+    public void shouldNotCacheOrSubscribeWhenDisabled() {
+        // Given
+        NotificationBroker broker = mock(NotificationBroker.class);
+        SessionInfoCache disabled = new SessionInfoCache(mock(Debug.class), broker, mockWatcher, 0, 10);
+
+        // When
+        disabled.populate(SESSION_ID, sessionInfo, disabled.getGeneration());
+
+        // Then
+        assertThat(disabled.get(SESSION_ID)).isNull();
+        verify(broker, never()).subscribe(any(Consumer.class));
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.sm.datalayer.impl;
@@ -28,6 +28,7 @@ import java.util.concurrent.ExecutorService;
 
 import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.impl.tasks.CreateTask;
@@ -53,7 +54,8 @@ public class SeriesTaskExecutorTest {
         configuration = mock(CTSQueueConfiguration.class);
         given(configuration.getQueueSize()).willReturn(10);
 
-        executor = new SeriesTaskExecutor(executorService, processorFactory, monitor, configuration, mock(Debug.class));
+        executor = new SeriesTaskExecutor(executorService, processorFactory, monitor, configuration, mock(Debug.class),
+                new MetricsRegistry(10));
     }
 
     @Test
@@ -35,6 +35,12 @@ import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.NameCallback;
 import javax.security.auth.callback.PasswordCallback;
 
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.RemovalCause;
+import org.forgerock.guava.common.cache.RemovalListener;
+import org.forgerock.guava.common.cache.RemovalNotification;
+import org.forgerock.i18n.LocalizedIllegalArgumentException;
 import org.forgerock.openam.idrepo.ldap.helpers.ADAMHelper;
 import org.forgerock.openam.idrepo.ldap.helpers.ADHelper;
 import org.forgerock.openam.idrepo.ldap.helpers.DirectoryHelper;
@@ -53,6 +59,8 @@ import org.forgerock.opendj.ldap.Attribute;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.Connection;
 import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.DecodeOptions;
 import org.forgerock.opendj.ldap.Entry;
 import org.forgerock.opendj.ldap.Filter;
 import org.forgerock.opendj.ldap.LDAPUrl;
@@ -65,10 +73,12 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SSLContextBuilder;
 import org.forgerock.opendj.ldap.SearchResultReferenceIOException;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.controls.SimplePagedResultsControl;
 import org.forgerock.opendj.ldap.requests.BindRequest;
 import org.forgerock.opendj.ldap.requests.ModifyRequest;
 import org.forgerock.opendj.ldap.requests.SearchRequest;
 import org.forgerock.opendj.ldap.responses.BindResult;
+import org.forgerock.opendj.ldap.responses.Result;
 import org.forgerock.opendj.ldap.responses.SearchResultEntry;
 import org.forgerock.opendj.ldap.schema.AttributeType;
 import org.forgerock.opendj.ldap.schema.ObjectClass;
@@ -121,6 +131,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
     private static final Map<String, DJLDAPv3PersistentSearch> pSearchMap =
             new HashMap<>();
     private static final String AM_AUTH = "amAuth";
+    private static final long PAGED_SEARCH_IDLE_MINUTES = 5;
     private static final Filter DEFAULT_ROLE_SEARCH_FILTER =
             Filter.valueOf("(&(objectclass=ldapsubentry)(objectclass=nsmanagedroledefinition))");
     private static final Filter DEFAULT_FILTERED_ROLE_SEARCH_FILTER =
@@ -172,6 +183,10 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
     //although there is a max pool size, we are currently doubling that in order to be able to authenticate users
     private ConnectionFactory<Connection> connectionFactory;
     private ConnectionFactory<Connection> bindConnectionFactory;
+    //paged searches hold their own connections between pages, so that they never hold connections of the pool
+    private ConnectionFactory<Connection> pagedSearchConnectionFactory;
+    //holds the connection of each paged search between pages, keyed by the cookie identifying the next page
+    private Cache<String, Connection> pagedSearchConnections;
     //holds service attributes for the current realm
     private Map<String, Map<String, Set<String>>> serviceMap;
     //holds the directory schema
@@ -232,6 +247,12 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         protocolVersion = CollectionHelper.getMapAttr(configParams, LDAP_SERVER_SECURE_PROTOCOL_VERSION, "TLSv1");
         bindConnectionFactory = createConnectionFactory(null, null, maxPoolSize);
         connectionFactory = createConnectionFactory(username, password, maxPoolSize);
+        pagedSearchConnectionFactory = createConnectionFactory(username, password, 1);
+        pagedSearchConnections = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(1, maxPoolSize / 2))
+                .expireAfterAccess(PAGED_SEARCH_IDLE_MINUTES, TimeUnit.MINUTES)
+                .removalListener(new PagedSearchConnectionListener())
+                .build();
 
         supportedTypesAndOperations =
                 IdRepoUtils.parseSupportedTypesAndOperations(configParams.get(LDAP_SUPPORTED_TYPES_AND_OPERATIONS));
@@ -1110,7 +1131,8 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
      * @param maxTime The time limit for this search (in seconds). When maxTime &lt; 1, the default time limit will
      * be used.
      * @param maxResults The number of maximum results we should receive for this search. When maxResults &lt; 1 the
-     * default sizelimit will be used.
+     * default sizelimit will be used. When the CREST query requests a single page of results, this limits the number
+     * of results in the page, and the paged results cookie returned with the results identifies the next page.
      * @param returnAttrs The attributes that should be returned from the "search hits".
      * @param returnAllAttrs <code>true</code> if all user attribute should be returned.
      * @param filterOp When avPairs is provided, this logical operation will be used between them. Use
@@ -1168,15 +1190,24 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         } else {
             attrs = new String[]{searchAttr};
         }
+        int sizeLimit = maxResults < 1 ? defaultSizeLimit : maxResults;
         SearchRequest searchRequest = LDAPRequests.newSearchRequest(baseDN, scope, filter, attrs);
-        searchRequest.setSizeLimit(maxResults < 1 ? defaultSizeLimit : maxResults);
         searchRequest.setTimeLimit(maxTime < 1 ? defaultTimeLimit : maxTime);
+        if (crestQuery.isPaged()) {
+            int pageSize = sizeLimit > 0 ? Math.min(crestQuery.getPageSize(), sizeLimit) : crestQuery.getPageSize();
+            searchRequest.setSizeLimit(pageSize);
+            searchRequest.addControl(SimplePagedResultsControl.newControl(true, pageSize,
+                    decodePagedResultsCookie(crestQuery.getPagedResultsCookie())));
+        } else {
+            searchRequest.setSizeLimit(sizeLimit);
+        }
         Connection conn = null;
         Set<String> names = new HashSet<>();
         Map<String, Map<String, Set<String>>> entries = new HashMap<>();
         int errorCode = RepoSearchResults.SUCCESS;
+        String pagedResultsCookie = null;
         try {
-            conn = createConnection();
+            conn = getSearchConnection(crestQuery);
             ConnectionEntryReader reader = conn.search(searchRequest);
             while (reader.hasNext()) {
                 Map<String, Set<String>> attributes = new HashMap<>();
@@ -1205,6 +1236,13 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
                     reader.readReference();
                 }
             }
+            if (crestQuery.isPaged()) {
+                pagedResultsCookie = getPagedResultsCookie(reader.readResult());
+                if (pagedResultsCookie != null) {
+                    pagedSearchConnections.put(pagedResultsCookie, conn);
+                    conn = null;
+                }
+            }
         } catch (LdapException ere) {
             ResultCode resultCode = ere.getResult().getResultCode();
             if (resultCode.equals(ResultCode.NO_SUCH_OBJECT)) {
@@ -1226,7 +1264,70 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         } finally {
             IOUtils.closeIfNotNull(conn);
         }
-        return new RepoSearchResults(names, errorCode, entries, type);
+        RepoSearchResults results = new RepoSearchResults(names, errorCode, entries, type);
+        results.setPagedResultsCookie(pagedResultsCookie);
+        return results;
+    }
+
+    /**
+     * Returns the connection to search for the requested page. Some directories, such as Active Directory, only accept
+     * a paged results cookie on the connection that returned it, so every page of a paged search is read using the
+     * connection that read the first page. If that connection is no longer held, for example because the search was
+     * idle for too long, a new connection is used.
+     * <p>
+     * Paged searches use connections of their own rather than connections of the pool, so that abandoned searches
+     * cannot exhaust the pool. The connections of idle searches are closed before each paged search.
+     */
+    private Connection getSearchConnection(CrestQuery crestQuery) throws IdRepoException {
+        if (!crestQuery.isPaged()) {
+            return createConnection();
+        }
+        pagedSearchConnections.cleanUp();
+        String pagedResultsCookie = crestQuery.getPagedResultsCookie();
+        if (StringUtils.isNotEmpty(pagedResultsCookie)) {
+            Connection conn = pagedSearchConnections.asMap().remove(pagedResultsCookie);
+            if (conn != null && conn.isValid()) {
+                return conn;
+            }
+            IOUtils.closeIfNotNull(conn);
+        }
+        try {
+            return pagedSearchConnectionFactory.create();
+        } catch (DataLayerException e) {
+            DEBUG.error("An error occurred while trying to create a paged search connection to the datastore", e);
+            throw newIdRepoException(IdRepoErrorCode.INITIALIZATION_ERROR, CLASS_NAME);
+        }
+    }
+
+    private ByteString decodePagedResultsCookie(String pagedResultsCookie) throws IdRepoException {
+        if (StringUtils.isEmpty(pagedResultsCookie)) {
+            return ByteString.empty();
+        }
+        try {
+            return ByteString.valueOfBase64(pagedResultsCookie);
+        } catch (LocalizedIllegalArgumentException liae) {
+            DEBUG.warning("Invalid paged results cookie: " + pagedResultsCookie, liae);
+            throw newIdRepoException(IdRepoErrorCode.SEARCH_FAILED, CLASS_NAME);
+        }
+    }
+
+    private String getPagedResultsCookie(Result result) throws IdRepoException {
+        try {
+            SimplePagedResultsControl control = result.getControl(SimplePagedResultsControl.DECODER,
+                    new DecodeOptions());
+            if (control == null) {
+                if (DEBUG.warningEnabled()) {
+                    DEBUG.warning("The directory did not return a paged results control, all the results have "
+                            + "been returned in a single page");
+                }
+                return null;
+            }
+            ByteString cookie = control.getCookie();
+            return cookie.isEmpty() ? null : cookie.toBase64String();
+        } catch (DecodeException de) {
+            DEBUG.error("Unable to decode the paged results control", de);
+            throw newIdRepoException(IdRepoErrorCode.SEARCH_FAILED, CLASS_NAME);
+        }
     }
 
     /**
@@ -2160,6 +2261,13 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         }
         super.shutdown();
         removeListener();
+        if (pagedSearchConnections != null) {
+            for (Connection conn : pagedSearchConnections.asMap().values()) {
+                IOUtils.closeIfNotNull(conn);
+            }
+            pagedSearchConnections.invalidateAll();
+        }
+        IOUtils.closeIfNotNull(pagedSearchConnectionFactory);
         IOUtils.closeIfNotNull(connectionFactory);
         IOUtils.closeIfNotNull(bindConnectionFactory);
         idRepoListener = null;
@@ -2529,6 +2637,20 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         return new IdRepoException(IdRepoBundle.BUNDLE_NAME, key, String.valueOf(resultCode.intValue()), args);
     }
 
+    /**
+     * Closes the connections of paged searches which were abandoned, or which were replaced by a newer search with the
+     * same cookie. Connections taken to read the next page are removed explicitly, and are left open.
+     */
+    private static class PagedSearchConnectionListener implements RemovalListener<String, Connection> {
+
+        @Override
+        public void onRemoval(RemovalNotification<String, Connection> notification) {
+            if (notification.getCause() != RemovalCause.EXPLICIT) {
+                IOUtils.closeIfNotNull(notification.getValue());
+            }
+        }
+    }
+
     private static class StringAttributeExtractor implements Function<Attribute, Set<String>, IdRepoException> {
 
         @Override
@@ -359,6 +359,41 @@ public class GenericRepoTest extends IdRepoTestBase {
                 "searchTester3", "searchTester4");
     }
 
+    @Test
+    public void searchReturnsMatchesPageByPage() throws Exception {
+        CrestQuery firstPage = new CrestQuery("searchTester*", null, null, 3, null);
+        RepoSearchResults results =
+                idrepo.search(null, IdType.USER, firstPage, 0, 0, null, true, IdRepo.AND_MOD, null, true);
+        assertThat(results.getErrorCode()).isEqualTo(ResultCode.SUCCESS.intValue());
+        assertThat(results.getSearchResults()).hasSize(3);
+        assertThat(results.getPagedResultsCookie()).isNotNull();
+        Set<String> names = new HashSet<String>(results.getSearchResults());
+
+        CrestQuery secondPage = new CrestQuery("searchTester*", null, null, 3, results.getPagedResultsCookie());
+        results = idrepo.search(null, IdType.USER, secondPage, 0, 0, null, true, IdRepo.AND_MOD, null, true);
+        assertThat(results.getErrorCode()).isEqualTo(ResultCode.SUCCESS.intValue());
+        assertThat(results.getSearchResults()).hasSize(1);
+        assertThat(results.getPagedResultsCookie()).isNull();
+        names.addAll(results.getSearchResults());
+
+        assertThat(names).containsOnly("searchTester1", "searchTester2", "searchTester3", "searchTester4");
+    }
+
+    @Test
+    public void searchReadsEveryPageWithTheSameConnection() throws Exception {
+        int connectionsBeforeSearch = connectionsOpened.get();
+        CrestQuery firstPage = new CrestQuery("searchTester*", null, null, 2, null);
+        RepoSearchResults results =
+                idrepo.search(null, IdType.USER, firstPage, 0, 0, null, true, IdRepo.AND_MOD, null, true);
+        assertThat(results.getPagedResultsCookie()).isNotNull();
+
+        CrestQuery secondPage = new CrestQuery("searchTester*", null, null, 2, results.getPagedResultsCookie());
+        results = idrepo.search(null, IdType.USER, secondPage, 0, 0, null, true, IdRepo.AND_MOD, null, true);
+        assertThat(results.getSearchResults()).hasSize(2);
+
+        assertThat(connectionsOpened.get() - connectionsBeforeSearch).isEqualTo(1);
+    }
+
     @Test
     public void searchReturnsRequestedAttributes() throws Exception {
         CrestQuery crestQuery = new CrestQuery("searchTester1");
@@ -21,6 +21,7 @@ import java.lang.annotation.Annotation;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 import javax.security.auth.callback.Callback;
@@ -74,6 +75,7 @@ public abstract class IdRepoTestBase extends PowerMockTestCase {
     protected static final String DEMO_DN = "uid=demo,ou=people,dc=openam,dc=forgerock,dc=org";
     protected RequestHandler<RequestContext> memoryBackend;
     protected IdRepoListener idRepoListener;
+    protected final AtomicInteger connectionsOpened = new AtomicInteger();
     protected DJLDAPv3Repo idrepo = new DJLDAPv3Repo() {
         @Override
         protected org.forgerock.openam.sm.datalayer.api.ConnectionFactory<Connection>
@@ -155,6 +157,7 @@ public abstract class IdRepoTestBase extends PowerMockTestCase {
 
         @Override
         public Connection getConnection() throws LdapException {
+            connectionsOpened.incrementAndGet();
             return cf.getConnection();
         }
 
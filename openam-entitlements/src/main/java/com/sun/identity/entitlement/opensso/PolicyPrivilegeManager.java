@@ -31,10 +31,12 @@ package com.sun.identity.entitlement.opensso;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.openam.entitlement.SetupInternalNotificationSubscriptions.*;
 import static org.forgerock.openam.utils.Time.newDate;
 
 import java.security.AccessController;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -309,6 +311,21 @@ public class PolicyPrivilegeManager extends PrivilegeManager {
             broker.publish(Topic.of("/agent/policy"), json);
         }
 
+        Set<String> resourceTypeUuids = new HashSet<String>();
+        if (previous != null && previous.getResourceTypeUuid() != null) {
+            resourceTypeUuids.add(previous.getResourceTypeUuid());
+        }
+        if (current.getResourceTypeUuid() != null) {
+            resourceTypeUuids.add(current.getResourceTypeUuid());
+        }
+        broker.publish(TOPIC_INTERNAL_POLICY, json(object(
+                field(MESSAGE_ATTR_REALM, realm),
+                field(MESSAGE_ATTR_NAME, current.getName()),
+                field(MESSAGE_ATTR_POLICY_SET, applicationName),
+                field(MESSAGE_ATTR_RESOURCE_TYPES, new ArrayList<String>(resourceTypeUuids)),
+                field(MESSAGE_ATTR_REVISION, Long.toString(current.getLastModifiedDate())),
+                field(MESSAGE_ATTR_EVENT_TYPE, eventType.toString()))));
+
         PrivilegeChangeNotifier.getInstance().notify(getAdminSubject(), realm,
                 applicationName, current.getName(), resourceNames);
     }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013 ForgeRock Inc.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.entitlement.indextree;
 
@@ -39,4 +39,15 @@ public interface IndexTreeService {
      */
     public Set<String> searchTree(String resource, String realm) throws EntitlementException;
 
+    /**
+     * Loads the index tree of the specified realm, unless it is already loaded, so that the first search of the realm
+     * does not have to.
+     *
+     * @param realm
+     *         The realm whose tree is to be loaded.
+     * @throws EntitlementException
+     *         When some system error halts the tree from loading.
+     */
+    public void warmTree(String realm) throws EntitlementException;
+
 }
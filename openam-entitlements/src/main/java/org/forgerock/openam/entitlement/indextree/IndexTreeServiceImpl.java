@@ -22,6 +22,7 @@ import com.sun.identity.sm.SMSDataEntry;
 import com.sun.identity.sm.SMSException;
 import com.sun.identity.sm.ServiceManagementDAO;
 import org.forgerock.openam.core.DNWrapper;
+import org.forgerock.openam.core.realms.RealmStateCache;
 import org.forgerock.openam.entitlement.indextree.events.ErrorEventType;
 import org.forgerock.openam.entitlement.indextree.events.EventType;
 import org.forgerock.openam.entitlement.indextree.events.IndexChangeEvent;
@@ -39,13 +40,12 @@ import java.security.PrivilegedAction;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides a search implementation that takes on a lazy approach to policy rule retrieval. Policy rules for a given
  * realm are only loaded into a index rule tree instance as search requests are made against that realm. This avoids
  * there being a potentially large memory consumption earlier on and instead builds up the data as it is required.
+ * Trees of realms which are no longer used are evicted as configured for the {@link RealmStateCache}.
  *
  * @author apforrest
  */
@@ -58,7 +58,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
     private static final String REALM_DN_TEMPLATE =
             "ou=default,ou=OrganizationConfig,ou=1.0,ou=sunEntitlementIndexes,ou=services,%s";
 
-    private final ConcurrentMap<String, IndexRuleTree> indexTreeCache;
+    private final RealmStateCache<IndexRuleTree> indexTreeCache;
 
     private final IndexChangeManager manager;
     private final PrivilegedAction<SSOToken> adminAction;
@@ -75,7 +75,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
         this.smDAO = smDAO;
         this.dnMapper = dnMapper;
 
-        indexTreeCache = new ConcurrentHashMap<String, IndexRuleTree>();
+        indexTreeCache = new RealmStateCache<>("policy_index");
 
         // Register to the shutdown to clean up appropriate resources.
         shutdownManager.addShutdownListener(this);
@@ -102,6 +102,13 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
         return results;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void warmTree(String realm) throws EntitlementException {
+        getIndexTree(realm);
+    }
+
     /**
      * Retrieves the index rule tree for the given realm.
      *
@@ -112,32 +119,14 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
      *         When an error occurs reading policy data..
      */
     private IndexRuleTree getIndexTree(String realm) throws EntitlementException {
-        IndexRuleTree indexTree = null;
-
-        // It is important to note here that get() is used on the cache as opposed to contains() followed by a get().
-        // This is done to make the retrieval of the tree atomic, whereas contains() follow by get() is not atomic
-        // and therefore the result of contains() instantly becomes unreliable when get() is reached.
-        indexTree = indexTreeCache.get(realm);
-
-        if (indexTree == null) {
-
-            synchronized (indexTreeCache) {
-                // Double checking mechanism used here to help performance within a synchronised block.
-                indexTree = indexTreeCache.get(realm);
-
-                if (indexTree == null) {
-                    // Create a new tree instance for the realm.
-                    indexTree = createAndPopulateTree(realm);
-
-                    if (indexTree != null) {
-                        // Valid tree entry create, add to the cache.
-                        indexTreeCache.put(realm, indexTree);
-                    }
-                }
+        // Concurrent requests for a realm whose tree is not loaded share a single load, without holding up requests
+        // for other realms.
+        return indexTreeCache.get(realm, new RealmStateCache.Loader<IndexRuleTree, EntitlementException>() {
+            @Override
+            public IndexRuleTree load(String realm) throws EntitlementException {
+                return createAndPopulateTree(realm);
             }
-        }
-
-        return indexTree;
+        });
     }
 
     /**
@@ -197,7 +186,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
             ModificationEvent modification = (ModificationEvent)event;
 
             String realm = modification.getRealm();
-            IndexRuleTree tree = indexTreeCache.get(realm);
+            IndexRuleTree tree = indexTreeCache.getIfPresent(realm);
 
             if (tree != null) {
                 String pathIndex = modification.getPathIndex();
@@ -219,7 +208,7 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
         } else if (type == ErrorEventType.DATA_LOSS) {
             // Error event received, destroy the cache as policy updates may well have been lost, resulting in cached
             // trees becoming inconsistent. This will force all trees to be reloaded with clean data.
-            indexTreeCache.clear();
+            indexTreeCache.invalidateAll();
 
             if (DEBUG.messageEnabled()) {
                 DEBUG.message("Potential policy path index loss, cached index trees cleared.");
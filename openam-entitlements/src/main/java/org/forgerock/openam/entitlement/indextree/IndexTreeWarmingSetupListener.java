@@ -0,0 +1,34 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.entitlement.indextree;
+
+import org.forgerock.guice.core.InjectorHolder;
+
+import com.sun.identity.entitlement.EntitlementException;
+import com.sun.identity.setup.CacheWarmingSetupPhase;
+
+/**
+ * Loads the policy path index tree of every realm in the background at startup, when cache warming is enabled, so
+ * that the first policy evaluation of each realm does not have to read its policy indexes.
+ */
+public class IndexTreeWarmingSetupListener extends CacheWarmingSetupPhase {
+
+    @Override
+    protected void warm(String realm) throws EntitlementException {
+        InjectorHolder.getInstance(IndexTreeService.class).warmTree(realm);
+    }
+}
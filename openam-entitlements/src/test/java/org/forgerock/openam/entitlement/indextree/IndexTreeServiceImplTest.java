@@ -128,6 +128,39 @@ public class IndexTreeServiceImplTest {
         assertEquals(expectedResults, results);
     }
 
+    /**
+     * Warms the tree of a realm and then searches it. Demonstrates that the search uses the tree loaded when warming.
+     */
+    @Test
+    public void treeSearchAfterWarming() throws Exception {
+        // Path indexes to return from the DAO search.
+        List<SMSDataEntry> pathIndexes = new ArrayList<SMSDataEntry>();
+        pathIndexes.add(new SMSDataEntry("{dn:somedn,attributeValues:{pathindex:[\"http://www.test.com\"]}}"));
+
+        // Set up mock objects for a single search.
+        when(dnMapper.orgNameToDN(REALM)).thenReturn(REALM_DN);
+        when(privilegedAction.run()).thenReturn(ssoToken);
+        when(serviceManagementDAO.checkIfEntryExists(SERVICE_DN, ssoToken)).thenReturn(true);
+        when(serviceManagementDAO.search(ssoToken, SERVICE_DN, FILTER, 0, 0, false, false, excludes))
+                .thenReturn(pathIndexes.iterator());
+
+        // Warm the tree.
+        treeService.warmTree(REALM);
+
+        // Verify the tree was loaded.
+        verify(serviceManagementDAO).search(ssoToken, SERVICE_DN, FILTER, 0, 0, false, false, excludes);
+
+        // Execute the actual search for www.test.com url.
+        Set<String> results = treeService.searchTree("http://www.test.com", REALM);
+
+        // Verify the results.
+        verify(dnMapper).orgNameToDN(REALM);
+        verify(privilegedAction).run();
+        verify(serviceManagementDAO).checkIfEntryExists(SERVICE_DN, ssoToken);
+        verifyNoMoreInteractions(dnMapper, privilegedAction, serviceManagementDAO);
+        assertEquals(Collections.singleton("http://www.test.com"), results);
+    }
+
     /**
      * First carries out a two searches for test-realm. This demonstrates the use of the cached tree after the initial
      * search. Secondly carries out two further searches for some-other-test-realm. This demonstrates that a new search
@@ -0,0 +1,42 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.saml2;
+
+import com.sun.identity.saml2.common.SAML2Utils;
+import com.sun.identity.saml2.meta.SAML2MetaException;
+import com.sun.identity.saml2.meta.SAML2MetaManager;
+import com.sun.identity.setup.CacheWarmingSetupPhase;
+
+/**
+ * Loads the SAML2 metadata and extended configuration of every hosted and remote entity of every realm into the
+ * SAML2 metadata cache in the background at startup, when cache warming is enabled, so that the first SAML2 request
+ * for each entity does not have to read and parse its metadata.
+ */
+public class SAML2MetadataWarmingSetupListener extends CacheWarmingSetupPhase {
+
+    @Override
+    protected void warm(String realm) throws SAML2MetaException {
+        SAML2MetaManager metaManager = SAML2Utils.getSAML2MetaManager();
+        if (metaManager == null) {
+            return;
+        }
+        for (Object entityId : metaManager.getAllEntities(realm)) {
+            metaManager.getEntityDescriptor(realm, (String) entityId);
+            metaManager.getEntityConfig(realm, (String) entityId);
+        }
+    }
+}
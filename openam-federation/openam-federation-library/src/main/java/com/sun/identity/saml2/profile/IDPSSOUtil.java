@@ -105,6 +105,7 @@ import com.sun.identity.plugin.session.SessionException;
 import com.sun.identity.saml2.plugins.SAML2IdentityProviderAdapter;
 import org.forgerock.openam.federation.saml2.SAML2TokenRepositoryException;
 import org.forgerock.openam.saml2.audit.SAML2EventLogger;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.utils.ClientUtils;
 import org.forgerock.openam.utils.CollectionUtils;
 import org.forgerock.openam.utils.StringUtils;
@@ -143,6 +144,8 @@ public class IDPSSOUtil {
     public static SAML2MetaManager metaManager = null;
     public static CircleOfTrustManager cotManager = null;
     static IDPSessionListener sessionListener = new IDPSessionListener();
+    private static final MetricsRegistry.Timer SSO_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_saml2_sso_seconds", "Duration of SAML2 single sign on", "role", "outcome");
     static SessionProvider sessionProvider = null;
 
     private static FedMonAgent agent;
@@ -395,6 +398,23 @@ public class IDPSSOUtil {
                                          String realm, String nameIDFormat, String relayState,
                                          AuthnContext matchingAuthnContext)
             throws SAML2Exception {
+        final long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            doSendResponseToACS(request, response, out, session, authnReq, spEntityID, idpEntityID, idpMetaAlias,
+                    realm, nameIDFormat, relayState, matchingAuthnContext);
+            success = true;
+        } finally {
+            SSO_TIMER.recordSince(startTime, "idp", success ? "success" : "failure");
+        }
+    }
+
+    private static void doSendResponseToACS(HttpServletRequest request, HttpServletResponse response, PrintWriter out,
+                                         Object session, AuthnRequest authnReq,
+                                         String spEntityID, String idpEntityID, String idpMetaAlias,
+                                         String realm, String nameIDFormat, String relayState,
+                                         AuthnContext matchingAuthnContext)
+            throws SAML2Exception {
 
         StringBuffer returnedBinding = new StringBuffer();
         String acsURL = IDPSSOUtil.getACSurl(
@@ -114,6 +114,7 @@ import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import org.forgerock.openam.federation.saml2.SAML2TokenRepositoryException;
 import org.forgerock.openam.saml2.audit.SAML2EventLogger;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.utils.ClientUtils;
 import org.forgerock.openam.utils.CollectionUtils;
 import org.forgerock.openam.utils.StringUtils;
@@ -130,6 +131,8 @@ public class SPACSUtils {
 
     private static FedMonAgent agent = MonitorManager.getAgent();
     private static FedMonSAML2Svc saml2Svc = MonitorManager.getSAML2Svc();
+    private static final MetricsRegistry.Timer SSO_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_saml2_sso_seconds", "Duration of SAML2 single sign on", "role", "outcome");
 
     private SPACSUtils() {}
 
@@ -1001,6 +1004,23 @@ public class SPACSUtils {
         String metaAlias, Object session, ResponseInfo respInfo,
         String realm, String hostEntityId, SAML2MetaManager metaManager, SAML2EventLogger auditor
     ) throws SAML2Exception {
+        final long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = doProcessResponse(request, response, out, metaAlias, session, respInfo, realm, hostEntityId,
+                    metaManager, auditor);
+            success = true;
+            return result;
+        } finally {
+            SSO_TIMER.recordSince(startTime, "sp", success ? "success" : "failure");
+        }
+    }
+
+    private static Object doProcessResponse(
+        HttpServletRequest request, HttpServletResponse response, PrintWriter out,
+        String metaAlias, Object session, ResponseInfo respInfo,
+        String realm, String hostEntityId, SAML2MetaManager metaManager, SAML2EventLogger auditor
+    ) throws SAML2Exception {
 
         String classMethod = "SPACSUtils.processResponse: ";
         if (SAML2Utils.debug.messageEnabled()) {
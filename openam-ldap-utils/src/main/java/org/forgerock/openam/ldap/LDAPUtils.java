@@ -136,6 +136,8 @@ public final class LDAPUtils {
      * @param heartBeatTimeUnit The timeunit for the heartbeat interval.
      * @param ldapOptions Additional LDAP settings used to create the pool
      * @return A failover loadbalanced authenticated/anonymous connection pool, which may also send heartbeat requests.
+     * When affinity is not enabled and {@link Constants#LDAP_LOAD_BALANCER_ENABLED} is set, connections are balanced
+     * between the servers by their outstanding requests and response times instead.
      */
     public static ConnectionFactory newFailoverConnectionPool(Set<LDAPURL> servers,
             String username,
@@ -144,17 +146,35 @@ public final class LDAPUtils {
             int heartBeatInterval,
             String heartBeatTimeUnit,
             Options ldapOptions) {
+        List<String> names = new ArrayList<String>(servers.size());
         List<ConnectionFactory> factories = new ArrayList<ConnectionFactory>(servers.size());
+        List<ConnectionFactory> probeFactories = new ArrayList<ConnectionFactory>(servers.size());
         for (LDAPURL ldapurl : servers) {
-            ConnectionFactory cf = Connections.newFixedConnectionPool(
-                    newConnectionFactory(ldapurl, username, password, heartBeatInterval, heartBeatTimeUnit,
-                    ldapOptions), maxSize);
-            factories.add(cf);
+            ConnectionFactory connectionFactory = newConnectionFactory(ldapurl, username, password,
+                    heartBeatInterval, heartBeatTimeUnit, ldapOptions);
+            names.add(ldapurl.getHost() + ":" + ldapurl.getPort());
+            factories.add(Connections.newFixedConnectionPool(connectionFactory, maxSize));
+            probeFactories.add(connectionFactory);
         }
 
+        if (!ldapOptions.get(AFFINITY_ENABLED)
+                && SystemPropertiesManager.getAsBoolean(Constants.LDAP_LOAD_BALANCER_ENABLED, false)) {
+            return new LeastLatencyLoadBalancer(names, factories, probeFactories, getLoadBalancerOptions());
+        }
         return loadBalanceFactories(factories, ldapOptions);
     }
 
+    private static Options getLoadBalancerOptions() {
+        Options options = Options.defaultOptions();
+        options.set(LeastLatencyLoadBalancer.PROBE_INTERVAL, new Duration((long) SystemPropertiesManager.getAsInt(
+                Constants.LDAP_LOAD_BALANCER_PROBE_INTERVAL, 5), TimeUnit.SECONDS));
+        options.set(LeastLatencyLoadBalancer.EJECTION_LATENCY, new Duration((long) SystemPropertiesManager.getAsInt(
+                Constants.LDAP_LOAD_BALANCER_EJECTION_LATENCY, 1000), TimeUnit.MILLISECONDS));
+        options.set(LeastLatencyLoadBalancer.EJECTION_PERIOD, new Duration((long) SystemPropertiesManager.getAsInt(
+                Constants.LDAP_LOAD_BALANCER_EJECTION_PERIOD, 30), TimeUnit.SECONDS));
+        return options;
+    }
+
     /**
      * Based on the incoming parameters prioritizes the LDAP server list, then creates a connection factory that is
      * capable to failover to the servers defined in case there is an error.
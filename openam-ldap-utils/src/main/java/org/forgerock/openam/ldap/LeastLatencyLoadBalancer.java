@@ -0,0 +1,683 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.ldap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+import org.forgerock.opendj.ldap.AbstractAsynchronousConnection;
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.ConnectionEventListener;
+import org.forgerock.opendj.ldap.ConnectionFactory;
+import org.forgerock.opendj.ldap.DN;
+import org.forgerock.opendj.ldap.IntermediateResponseHandler;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.LdapPromise;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.ldap.SearchResultHandler;
+import org.forgerock.opendj.ldap.controls.PersistentSearchRequestControl;
+import org.forgerock.opendj.ldap.requests.AbandonRequest;
+import org.forgerock.opendj.ldap.requests.AddRequest;
+import org.forgerock.opendj.ldap.requests.BindRequest;
+import org.forgerock.opendj.ldap.requests.CompareRequest;
+import org.forgerock.opendj.ldap.requests.DeleteRequest;
+import org.forgerock.opendj.ldap.requests.ExtendedRequest;
+import org.forgerock.opendj.ldap.requests.ModifyDNRequest;
+import org.forgerock.opendj.ldap.requests.ModifyRequest;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.opendj.ldap.requests.UnbindRequest;
+import org.forgerock.opendj.ldap.responses.BindResult;
+import org.forgerock.opendj.ldap.responses.CompareResult;
+import org.forgerock.opendj.ldap.responses.ExtendedResult;
+import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Option;
+import org.forgerock.util.Options;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.Duration;
+
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * A connection factory which balances connections between several LDAP servers by their load and latency, rather
+ * than sending everything to the first available server.
+ * <p>
+ * Each server is scored by its number of outstanding requests multiplied by an exponentially weighted moving average
+ * of its response time, and each new connection is taken from the server with the lowest score. Servers with the same
+ * score are chosen in the order they were given, so servers which have been prioritized for this OpenAM server or
+ * site are preferred while they keep up. The moving average decays with time rather than with the number of
+ * requests, so that it follows a server which becomes slow regardless of how busy it is.
+ * <p>
+ * Every server is periodically probed with a base object search of the root DSE over a dedicated connection. A server
+ * is ejected for a while when a probe or a new connection fails, when a request fails because the server is down,
+ * busy or did not answer in time, or when the average response time of its probes stays above a threshold for several
+ * probes in a row. The probes are kept in a separate moving average, as the response times of other requests depend
+ * on what is asked for, and a single expensive search sent to a server which has been idle would otherwise dominate
+ * its average and eject it. Ejected servers are only used when all the servers have been ejected, and connections to
+ * an ejected server report that they are no longer valid, so that long lived users of a connection move to another
+ * server.
+ * <p>
+ * The response time of every request is recorded in the {@code openam_ldap_server_request_seconds} metric, the
+ * requests awaiting a response in the {@code openam_ldap_server_outstanding_requests} metric and the ejections in the
+ * {@code openam_ldap_server_ejections_total} metric, all labelled by server.
+ */
+final class LeastLatencyLoadBalancer implements ConnectionFactory {
+
+    /**
+     * The interval at which servers are probed. A zero duration disables probing.
+     */
+    static final Option<Duration> PROBE_INTERVAL = Option.withDefault(new Duration(5L, TimeUnit.SECONDS));
+
+    /**
+     * The average response time of the probes above which a server is ejected.
+     */
+    static final Option<Duration> EJECTION_LATENCY = Option.withDefault(new Duration(1L, TimeUnit.SECONDS));
+
+    /**
+     * The minimum time for which an ejected server is not used.
+     */
+    static final Option<Duration> EJECTION_PERIOD = Option.withDefault(new Duration(30L, TimeUnit.SECONDS));
+
+    /**
+     * The time constant of the moving average of the response times: a response time recorded this long ago weighs
+     * about a third of a response time recorded now.
+     */
+    static final Option<Duration> LATENCY_DECAY = Option.withDefault(new Duration(10L, TimeUnit.SECONDS));
+
+    private static final int SLOW_PROBES_BEFORE_EJECTION = 3;
+    private static final Debug DEBUG = Debug.getInstance("LDAPUtils");
+    private static final MetricsRegistry.Timer REQUEST_TIMER = MetricsRegistry.getInstance().timer(
+            "openam_ldap_server_request_seconds", "Response time of the requests sent to each LDAP server", "server");
+    private static final MetricsRegistry.Counter EJECTIONS = MetricsRegistry.getInstance().counter(
+            "openam_ldap_server_ejections_total", "Number of times each LDAP server has been ejected", "server");
+    private static final MetricsRegistry.LabelledGauge OUTSTANDING_REQUESTS = MetricsRegistry.getInstance().gauge(
+            "openam_ldap_server_outstanding_requests", "Number of requests awaiting a response from each LDAP server",
+            "server");
+    private static final Set<ResultCode> SERVER_FAILURES = new HashSet<>(Arrays.asList(ResultCode.BUSY,
+            ResultCode.UNAVAILABLE, ResultCode.CLIENT_SIDE_SERVER_DOWN, ResultCode.CLIENT_SIDE_CONNECT_ERROR,
+            ResultCode.CLIENT_SIDE_TIMEOUT));
+
+    private final List<Server> servers;
+    private final long ejectionLatencyNanos;
+    private final long ejectionPeriodNanos;
+    private final double decayNanos;
+    private final ScheduledFuture<?> probeTask;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a load balancer over the given servers.
+     *
+     * @param names The names of the servers, used in metrics and debug messages, in order of preference.
+     * @param factories The connection factories, usually connection pools, from which connections to each server are
+     * obtained.
+     * @param probeFactories The connection factories from which the connection used to probe each server is obtained.
+     * @param options The load balancer options.
+     */
+    LeastLatencyLoadBalancer(List<String> names, List<ConnectionFactory> factories,
+            List<ConnectionFactory> probeFactories, Options options) {
+        Reject.ifTrue(names.isEmpty(), "At least one server is required");
+        Reject.ifFalse(names.size() == factories.size() && names.size() == probeFactories.size(),
+                "A connection factory and a probe connection factory are required for each server");
+        List<Server> serverList = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            serverList.add(new Server(names.get(i), factories.get(i), probeFactories.get(i)));
+        }
+        this.servers = Collections.unmodifiableList(serverList);
+        this.ejectionLatencyNanos = options.get(EJECTION_LATENCY).to(TimeUnit.NANOSECONDS);
+        this.ejectionPeriodNanos = options.get(EJECTION_PERIOD).to(TimeUnit.NANOSECONDS);
+        this.decayNanos = Math.max(1L, options.get(LATENCY_DECAY).to(TimeUnit.NANOSECONDS));
+        long probeInterval = options.get(PROBE_INTERVAL).to(TimeUnit.MILLISECONDS);
+        if (probeInterval > 0) {
+            this.probeTask = ProbeScheduler.INSTANCE.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, 0L, probeInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.probeTask = null;
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws LdapException {
+        Set<Server> tried = new HashSet<>();
+        LdapException lastError = null;
+        Server server;
+        while ((server = select(tried)) != null) {
+            tried.add(server);
+            try {
+                return server.track(server.factory.getConnection());
+            } catch (LdapException e) {
+                server.eject("unable to connect", e);
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    @Override
+    public Promise<Connection, LdapException> getConnectionAsync() {
+        return getConnectionAsync(new HashSet<Server>(), null);
+    }
+
+    private Promise<Connection, LdapException> getConnectionAsync(final Set<Server> tried, LdapException lastError) {
+        final Server server = select(tried);
+        if (server == null) {
+            return Promises.newExceptionPromise(lastError);
+        }
+        tried.add(server);
+        return server.factory.getConnectionAsync().thenAsync(
+                new AsyncFunction<Connection, Connection, LdapException>() {
+                    @Override
+                    public Promise<Connection, LdapException> apply(Connection connection) {
+                        return Promises.newResultPromise(server.track(connection));
+                    }
+                },
+                new AsyncFunction<LdapException, Connection, LdapException>() {
+                    @Override
+                    public Promise<Connection, LdapException> apply(LdapException e) {
+                        server.eject("unable to connect", e);
+                        return getConnectionAsync(tried, e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (probeTask != null) {
+            probeTask.cancel(false);
+        }
+        for (Server server : servers) {
+            server.closeProbeConnection();
+            server.factory.close();
+        }
+    }
+
+    /**
+     * Returns the server with the lowest score which has not been ejected, or the server with the lowest score if
+     * they have all been ejected.
+     */
+    private Server select(Set<Server> excluded) {
+        long now = System.nanoTime();
+        Server best = null;
+        double bestScore = Double.MAX_VALUE;
+        Server fallback = null;
+        double fallbackScore = Double.MAX_VALUE;
+        for (Server server : servers) {
+            if (excluded.contains(server)) {
+                continue;
+            }
+            double score = server.getScore();
+            if (server.isEjected(now)) {
+                if (score < fallbackScore) {
+                    fallback = server;
+                    fallbackScore = score;
+                }
+            } else if (score < bestScore) {
+                best = server;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    private boolean hasAvailableServer(long now) {
+        for (Server server : servers) {
+            if (!server.isEjected(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Probes every server, unless a probe of the server is already in progress. Package private for tests.
+     */
+    void probe() {
+        if (closed) {
+            return;
+        }
+        for (Server server : servers) {
+            try {
+                server.probe();
+            } catch (RuntimeException e) {
+                DEBUG.error("LeastLatencyLoadBalancer: unable to probe {}", server.name, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the average response time of the named server, for tests.
+     */
+    double getLatency(String name) {
+        return getServer(name).getLatency();
+    }
+
+    /**
+     * Returns the number of outstanding requests of the named server, for tests.
+     */
+    int getOutstandingRequests(String name) {
+        return getServer(name).outstanding.get();
+    }
+
+    /**
+     * Records a response time for the named server, for tests.
+     */
+    void recordLatency(String name, long latencyNanos) {
+        getServer(name).recordLatency(latencyNanos, System.nanoTime());
+    }
+
+    /**
+     * Records a probe response time for the named server, as when a probe completes, for tests.
+     */
+    void recordProbeLatency(String name, long latencyNanos) {
+        getServer(name).probeCompleted(latencyNanos, System.nanoTime());
+    }
+
+    /**
+     * Tells whether the named server is currently ejected, for tests.
+     */
+    boolean isEjected(String name) {
+        return getServer(name).isEjected(System.nanoTime());
+    }
+
+    private Server getServer(String name) {
+        for (Server server : servers) {
+            if (server.name.equals(name)) {
+                return server;
+            }
+        }
+        throw new IllegalArgumentException("Unknown server " + name);
+    }
+
+    /**
+     * The state of one of the servers.
+     */
+    private final class Server {
+
+        private final String name;
+        private final ConnectionFactory factory;
+        private final ConnectionFactory probeFactory;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private final AtomicReference<Connection> probeConnection = new AtomicReference<>();
+        private final MovingAverage latency = new MovingAverage();
+        private final MovingAverage probeLatency = new MovingAverage();
+        private int slowProbes;
+        private volatile long ejectedUntilNanos;
+        private volatile boolean ejected;
+
+        private Server(String name, ConnectionFactory factory, ConnectionFactory probeFactory) {
+            this.name = name;
+            this.factory = factory;
+            this.probeFactory = probeFactory;
+        }
+
+        private Connection track(Connection connection) {
+            return new TrackedConnection(this, connection);
+        }
+
+        private double getScore() {
+            return (outstanding.get() + 1) * (Math.max(0D, getLatency()) + 1000D);
+        }
+
+        private synchronized double getLatency() {
+            return latency.value;
+        }
+
+        private synchronized void recordLatency(long sampleNanos, long now) {
+            latency.record(sampleNanos, now);
+        }
+
+        private long requestStarted() {
+            outstanding.incrementAndGet();
+            OUTSTANDING_REQUESTS.increment(name);
+            return System.nanoTime();
+        }
+
+        private void requestCompleted(long startNanos, LdapException error) {
+            outstanding.decrementAndGet();
+            OUTSTANDING_REQUESTS.decrement(name);
+            long now = System.nanoTime();
+            REQUEST_TIMER.record(now - startNanos, name);
+            recordLatency(now - startNanos, now);
+            if (error != null && SERVER_FAILURES.contains(error.getResult().getResultCode())) {
+                eject("request failed", error);
+            }
+        }
+
+        private boolean isEjected(long now) {
+            return ejected && now - ejectedUntilNanos < 0;
+        }
+
+        private void eject(String reason, Exception cause) {
+            ejectedUntilNanos = System.nanoTime() + ejectionPeriodNanos;
+            if (!ejected) {
+                ejected = true;
+                EJECTIONS.increment(name);
+                DEBUG.warning("LeastLatencyLoadBalancer: ejecting {} for {} ms, {}", name,
+                        TimeUnit.NANOSECONDS.toMillis(ejectionPeriodNanos), reason, cause);
+            }
+        }
+
+        private void reinstate() {
+            if (ejected) {
+                ejected = false;
+                DEBUG.warning("LeastLatencyLoadBalancer: {} is available again", name);
+            }
+        }
+
+        /**
+         * Records the response time of a successful probe, which also counts as a request to the server, and ejects
+         * the server if its probes have been slow for several probes in a row, or reinstates it once its ejection
+         * period is over.
+         */
+        private void probeCompleted(long sampleNanos, long now) {
+            double averageNanos;
+            boolean slow;
+            synchronized (this) {
+                latency.record(sampleNanos, now);
+                probeLatency.record(sampleNanos, now);
+                averageNanos = probeLatency.value;
+                slowProbes = averageNanos > ejectionLatencyNanos ? slowProbes + 1 : 0;
+                slow = slowProbes >= SLOW_PROBES_BEFORE_EJECTION;
+            }
+            if (slow) {
+                eject("average probe response time is " + TimeUnit.NANOSECONDS.toMillis((long) averageNanos) + " ms",
+                        null);
+            } else if (ejected && !isEjected(now)) {
+                reinstate();
+            }
+        }
+
+        private void probe() {
+            if (!probing.compareAndSet(false, true)) {
+                return;
+            }
+            Connection connection = probeConnection.get();
+            Promise<Connection, LdapException> connectionPromise;
+            if (connection != null && connection.isValid()) {
+                connectionPromise = Promises.newResultPromise(connection);
+            } else {
+                closeProbeConnection();
+                connectionPromise = probeFactory.getConnectionAsync();
+            }
+            final long[] startNanos = new long[1];
+            connectionPromise.thenAsync(new AsyncFunction<Connection, SearchResultEntry, LdapException>() {
+                @Override
+                public Promise<SearchResultEntry, LdapException> apply(Connection connection) {
+                    probeConnection.set(connection);
+                    if (closed) {
+                        // The load balancer was closed while connecting, after it closed the probe connections
+                        closeProbeConnection();
+                        return Promises.newExceptionPromise(LdapException.newLdapException(
+                                ResultCode.CLIENT_SIDE_USER_CANCELLED, "Load balancer closed"));
+                    }
+                    startNanos[0] = System.nanoTime();
+                    return connection.searchSingleEntryAsync(
+                            LDAPRequests.newSingleEntrySearchRequest(DN.rootDN(), "1.1"));
+                }
+            }).thenOnResultOrException(new ResultHandler<SearchResultEntry>() {
+                @Override
+                public void handleResult(SearchResultEntry entry) {
+                    long now = System.nanoTime();
+                    probeCompleted(now - startNanos[0], now);
+                    probing.set(false);
+                }
+            }, new ExceptionHandler<LdapException>() {
+                @Override
+                public void handleException(LdapException e) {
+                    closeProbeConnection();
+                    if (!closed) {
+                        eject("probe failed", e);
+                    }
+                    probing.set(false);
+                }
+            });
+        }
+
+        private void closeProbeConnection() {
+            Connection connection = probeConnection.getAndSet(null);
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * An exponentially weighted moving average of response times, which decays with the time between samples. The
+     * first sample is taken as the average. Guarded by the lock of the server it belongs to.
+     */
+    private final class MovingAverage {
+
+        private double value = -1D;
+        private long lastSampleNanos;
+
+        private void record(long sampleNanos, long now) {
+            if (value < 0) {
+                value = sampleNanos;
+            } else {
+                double weight = Math.exp(-Math.max(0L, now - lastSampleNanos) / decayNanos);
+                value = sampleNanos + (value - sampleNanos) * weight;
+            }
+            lastSampleNanos = now;
+        }
+    }
+
+    /**
+     * A connection to one of the servers, which keeps track of the outstanding requests and their response times.
+     */
+    private final class TrackedConnection extends AbstractAsynchronousConnection {
+
+        private final Server server;
+        private final Connection connection;
+
+        private TrackedConnection(Server server, Connection connection) {
+            this.server = server;
+            this.connection = connection;
+        }
+
+        @Override
+        public LdapPromise<Void> abandonAsync(AbandonRequest request) {
+            return connection.abandonAsync(request);
+        }
+
+        @Override
+        public LdapPromise<Result> addAsync(AddRequest request, IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.addAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public LdapPromise<BindResult> bindAsync(BindRequest request,
+                IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.bindAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public LdapPromise<CompareResult> compareAsync(CompareRequest request,
+                IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.compareAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public LdapPromise<Result> deleteAsync(DeleteRequest request,
+                IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.deleteAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public <R extends ExtendedResult> LdapPromise<R> extendedRequestAsync(ExtendedRequest<R> request,
+                IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.extendedRequestAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public LdapPromise<Result> modifyAsync(ModifyRequest request,
+                IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.modifyAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public LdapPromise<Result> modifyDNAsync(ModifyDNRequest request,
+                IntermediateResponseHandler intermediateHandler) {
+            long start = server.requestStarted();
+            try {
+                return track(connection.modifyDNAsync(request, intermediateHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        @Override
+        public LdapPromise<Result> searchAsync(SearchRequest request,
+                IntermediateResponseHandler intermediateHandler, SearchResultHandler entryHandler) {
+            // Persistent searches last as long as the connection, so they say nothing about the server's load.
+            if (request.containsControl(PersistentSearchRequestControl.OID)) {
+                return connection.searchAsync(request, intermediateHandler, entryHandler);
+            }
+            long start = server.requestStarted();
+            try {
+                return track(connection.searchAsync(request, intermediateHandler, entryHandler), start);
+            } catch (RuntimeException e) {
+                server.requestCompleted(start, null);
+                throw e;
+            }
+        }
+
+        private <R> LdapPromise<R> track(LdapPromise<R> promise, final long start) {
+            promise.thenOnResultOrException(new ResultHandler<R>() {
+                @Override
+                public void handleResult(R result) {
+                    server.requestCompleted(start, null);
+                }
+            }, new ExceptionHandler<LdapException>() {
+                @Override
+                public void handleException(LdapException e) {
+                    server.requestCompleted(start, e);
+                }
+            });
+            return promise;
+        }
+
+        @Override
+        public void addConnectionEventListener(ConnectionEventListener listener) {
+            connection.addConnectionEventListener(listener);
+        }
+
+        @Override
+        public void removeConnectionEventListener(ConnectionEventListener listener) {
+            connection.removeConnectionEventListener(listener);
+        }
+
+        @Override
+        public void close(UnbindRequest request, String reason) {
+            connection.close(request, reason);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return connection.isClosed();
+        }
+
+        /**
+         * Connections to an ejected server are reported as invalid while another server is available, so that users
+         * holding on to them reconnect.
+         */
+        @Override
+        public boolean isValid() {
+            long now = System.nanoTime();
+            return connection.isValid() && !(server.isEjected(now) && hasAvailableServer(now));
+        }
+
+        @Override
+        public String toString() {
+            return "LeastLatencyLoadBalancer(" + server.name + ", " + connection + ")";
+        }
+    }
+
+    /**
+     * Holds the thread shared by all the load balancers to probe their servers.
+     */
+    private static final class ProbeScheduler {
+
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "LDAPLoadBalancerProbe");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
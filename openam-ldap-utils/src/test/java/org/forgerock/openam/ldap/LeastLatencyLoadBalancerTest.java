@@ -0,0 +1,204 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.ldap;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.ConnectionFactory;
+import org.forgerock.opendj.ldap.IntermediateResponseHandler;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.LdapPromise;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.ldap.requests.AddRequest;
+import org.forgerock.opendj.ldap.requests.Requests;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.util.Options;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LeastLatencyLoadBalancerTest {
+
+    private ConnectionFactory first;
+    private ConnectionFactory second;
+    private Connection firstConnection;
+    private Connection secondConnection;
+    private LeastLatencyLoadBalancer loadBalancer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        first = mock(ConnectionFactory.class);
+        second = mock(ConnectionFactory.class);
+        firstConnection = mock(Connection.class);
+        secondConnection = mock(Connection.class);
+        given(first.getConnection()).willReturn(firstConnection);
+        given(second.getConnection()).willReturn(secondConnection);
+        given(firstConnection.isValid()).willReturn(true);
+        given(secondConnection.isValid()).willReturn(true);
+
+        Options options = Options.defaultOptions()
+                .set(LeastLatencyLoadBalancer.PROBE_INTERVAL, new Duration(0L, TimeUnit.SECONDS));
+        loadBalancer = new LeastLatencyLoadBalancer(asList("first:389", "second:389"), asList(first, second),
+                asList(first, second), options);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        loadBalancer.close();
+    }
+
+    @Test
+    public void shouldPreferServersInOrderWhenEquallyLoaded() throws Exception {
+        //When
+        Connection connection = loadBalancer.getConnection();
+
+        //Then
+        assertThat(connection.toString()).contains("first:389");
+        verify(second, never()).getConnection();
+    }
+
+    @Test
+    public void shouldPreferServerWithLowerLatency() throws Exception {
+        //Given
+        loadBalancer.recordLatency("first:389", TimeUnit.MILLISECONDS.toNanos(20));
+        loadBalancer.recordLatency("second:389", TimeUnit.MILLISECONDS.toNanos(2));
+
+        //When
+        Connection connection = loadBalancer.getConnection();
+
+        //Then
+        assertThat(connection.toString()).contains("second:389");
+        verify(first, never()).getConnection();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPreferServerWithFewerOutstandingRequests() throws Exception {
+        //Given
+        given(firstConnection.addAsync(any(AddRequest.class), any(IntermediateResponseHandler.class)))
+                .willReturn(mock(LdapPromise.class));
+        Connection busy = loadBalancer.getConnection();
+        busy.addAsync(Requests.newAddRequest("uid=demo,ou=people,dc=example,dc=com"));
+
+        //When
+        Connection connection = loadBalancer.getConnection();
+
+        //Then
+        assertThat(loadBalancer.getOutstandingRequests("first:389")).isEqualTo(1);
+        assertThat(MetricsRegistry.getInstance().gauge("openam_ldap_server_outstanding_requests", null, "server")
+                .getValue("first:389")).isEqualTo(1L);
+        assertThat(connection.toString()).contains("second:389");
+    }
+
+    @Test
+    public void shouldFailOverAndEjectServerWhichCannotBeConnectedTo() throws Exception {
+        //Given
+        given(first.getConnection()).willThrow(LdapException.newLdapException(ResultCode.CLIENT_SIDE_CONNECT_ERROR));
+
+        //When
+        Connection connection = loadBalancer.getConnection();
+
+        //Then
+        assertThat(connection.toString()).contains("second:389");
+        assertThat(loadBalancer.isEjected("first:389")).isTrue();
+        assertThat(loadBalancer.isEjected("second:389")).isFalse();
+    }
+
+    @Test
+    public void shouldInvalidateConnectionsToEjectedServer() throws Exception {
+        //Given
+        Connection connection = loadBalancer.getConnection();
+        loadBalancer.recordLatency("second:389", TimeUnit.SECONDS.toNanos(1));
+        given(first.getConnection()).willThrow(LdapException.newLdapException(ResultCode.CLIENT_SIDE_CONNECT_ERROR));
+
+        //When
+        loadBalancer.getConnection();
+
+        //Then
+        assertThat(connection.isValid()).isFalse();
+    }
+
+    @Test
+    public void shouldNotEjectServerForSlowQueryAfterIdle() throws Exception {
+        //Given
+        loadBalancer.recordLatency("first:389", TimeUnit.SECONDS.toNanos(5));
+
+        //When
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.recordProbeLatency("first:389", TimeUnit.MILLISECONDS.toNanos(2));
+        }
+
+        //Then
+        assertThat(loadBalancer.getLatency("first:389")).isGreaterThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(loadBalancer.isEjected("first:389")).isFalse();
+    }
+
+    @Test
+    public void shouldEjectServerWhenSeveralProbesInARowAreSlow() throws Exception {
+        //Given
+        loadBalancer.recordProbeLatency("first:389", TimeUnit.SECONDS.toNanos(2));
+        loadBalancer.recordProbeLatency("first:389", TimeUnit.SECONDS.toNanos(2));
+        assertThat(loadBalancer.isEjected("first:389")).isFalse();
+
+        //When
+        loadBalancer.recordProbeLatency("first:389", TimeUnit.SECONDS.toNanos(2));
+
+        //Then
+        assertThat(loadBalancer.isEjected("first:389")).isTrue();
+        assertThat(loadBalancer.getConnection().toString()).contains("second:389");
+    }
+
+    @Test
+    public void shouldCloseProbeConnectionWhichConnectsAfterClose() throws Exception {
+        //Given
+        PromiseImpl<Connection, LdapException> probeConnectionPromise = PromiseImpl.create();
+        Connection probeConnection = mock(Connection.class);
+        given(first.getConnectionAsync()).willReturn(probeConnectionPromise);
+        given(second.getConnectionAsync()).willReturn(PromiseImpl.<Connection, LdapException>create());
+        loadBalancer.probe();
+        loadBalancer.close();
+
+        //When
+        probeConnectionPromise.handleResult(probeConnection);
+
+        //Then
+        verify(probeConnection).close();
+        verify(probeConnection, never()).searchSingleEntryAsync(any(SearchRequest.class));
+        assertThat(loadBalancer.isEjected("first:389")).isFalse();
+    }
+
+    @Test(expectedExceptions = LdapException.class)
+    public void shouldFailWhenNoServerCanBeConnectedTo() throws Exception {
+        //Given
+        given(first.getConnection()).willThrow(LdapException.newLdapException(ResultCode.CLIENT_SIDE_CONNECT_ERROR));
+        given(second.getConnection()).willThrow(LdapException.newLdapException(ResultCode.CLIENT_SIDE_CONNECT_ERROR));
+
+        //When
+        loadBalancer.getConnection();
+    }
+}
@@ -43,6 +43,7 @@ import org.forgerock.openam.audit.context.AuditRequestContext;
 import org.forgerock.openam.oauth2.OAuth2Constants;
 import org.forgerock.openam.oauth2.OAuth2UrisFactory;
 import org.forgerock.openam.oauth2.validation.ConfirmationKeyValidator;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.util.Reject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +63,7 @@ public class AccessTokenService {
     private final OAuth2ProviderSettingsFactory providerSettingsFactory;
     private final OAuth2UrisFactory urisFactory;
     private final ConfirmationKeyValidator confirmationKeyValidator;
+    private final MetricsRegistry.Timer grantTimer;
 
     /**
      * Constructs a new AccessTokenServiceImpl.
@@ -70,18 +72,22 @@ public class AccessTokenService {
      * @param tokenStore An instance of the TokenStore.
      * @param providerSettingsFactory An instance of the OAuth2ProviderSettingsFactory.
      * @param urisFactory An instance of the OAuth2UrisFactory.
+     * @param confirmationKeyValidator An instance of the ConfirmationKeyValidator.
+     * @param metricsRegistry The registry in which to record the duration of each grant.
      */
     @Inject
     public AccessTokenService(Map<String, GrantTypeHandler> grantTypeHandlers,
             final ClientAuthenticator clientAuthenticator, final TokenStore tokenStore,
             final OAuth2ProviderSettingsFactory providerSettingsFactory, OAuth2UrisFactory urisFactory,
-            final ConfirmationKeyValidator confirmationKeyValidator) {
+            final ConfirmationKeyValidator confirmationKeyValidator, MetricsRegistry metricsRegistry) {
         this.grantTypeHandlers = grantTypeHandlers;
         this.clientAuthenticator = clientAuthenticator;
         this.tokenStore = tokenStore;
         this.providerSettingsFactory = providerSettingsFactory;
         this.urisFactory = urisFactory;
         this.confirmationKeyValidator = confirmationKeyValidator;
+        this.grantTimer = metricsRegistry.timer("openam_oauth2_grant_seconds",
+                "Duration of OAuth2 access token requests", "grant_type", "outcome");
     }
 
     /**
@@ -110,10 +116,19 @@ public class AccessTokenService {
             BadRequestException {
         final String grantType = request.getParameter(GRANT_TYPE);
         final GrantTypeHandler grantTypeHandler = grantTypeHandlers.get(grantType);
-        if (grantTypeHandler == null) {
-            throw new InvalidGrantException("Unknown Grant Type, " + grantType);
+        final long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            if (grantTypeHandler == null) {
+                throw new InvalidGrantException("Unknown Grant Type, " + grantType);
+            }
+            AccessToken accessToken = grantTypeHandler.handle(request);
+            success = true;
+            return accessToken;
+        } finally {
+            // Only configured grant types are used as labels, so that clients cannot create arbitrary series
+            grantTimer.recordSince(startTime, grantTypeHandler == null ? "unknown" : grantType, getOutcome(success));
         }
-        return grantTypeHandler.handle(request);
     }
 
     /**
@@ -136,7 +151,20 @@ public class AccessTokenService {
     public AccessToken refreshToken(OAuth2Request request) throws InvalidClientException, InvalidRequestException,
             BadRequestException, ServerException, ExpiredTokenException, InvalidGrantException,
             InvalidScopeException, NotFoundException {
+        final long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            AccessToken accessToken = refreshAccessToken(request);
+            success = true;
+            return accessToken;
+        } finally {
+            grantTimer.recordSince(startTime, REFRESH_TOKEN, getOutcome(success));
+        }
+    }
 
+    private AccessToken refreshAccessToken(OAuth2Request request) throws InvalidClientException,
+            InvalidRequestException, BadRequestException, ServerException, ExpiredTokenException,
+            InvalidGrantException, InvalidScopeException, NotFoundException {
         Reject.ifTrue(isEmpty(request.<String>getParameter(REFRESH_TOKEN)), "Missing parameter, 'refresh_token'");
         confirmationKeyValidator.validateRequest(request);
 
@@ -207,4 +235,8 @@ public class AccessTokenService {
 
         return accessToken;
     }
+
+    private static String getOutcome(boolean success) {
+        return success ? "success" : "failure";
+    }
 }
@@ -16,15 +16,13 @@
 
 package org.forgerock.oauth2.core;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.forgerock.oauth2.core.exceptions.NotFoundException;
 import org.forgerock.oauth2.core.exceptions.OAuth2ProviderNotFoundException;
 import org.forgerock.oauth2.resources.ResourceSetStore;
+import org.forgerock.openam.core.realms.RealmStateCache;
 import org.forgerock.openam.oauth2.AgentClientRegistration;
 import org.forgerock.openam.oauth2.OAuth2Constants;
 import org.forgerock.openam.oauth2.OAuth2RealmResolver;
@@ -45,7 +43,8 @@ import com.sun.identity.sm.ServiceListener;
  * A factory for creating/retrieving OAuth2ProviderSettings instances.
  * <br/>
  * It is up to the implementation to provide caching of OAuth2ProviderSettings instance if it wants to supported
- * multiple OAuth2 providers.
+ * multiple OAuth2 providers. The settings of each realm are created when the realm is first used, and evicted as
+ * configured for the {@link RealmStateCache}.
  *
  * @since 12.0.0
  */
@@ -53,7 +52,13 @@ import com.sun.identity.sm.ServiceListener;
 public class OAuth2ProviderSettingsFactory implements ServiceListener {
 
     private final Debug logger = Debug.getInstance("OAuth2Provider");
-    private final Map<String, OAuth2ProviderSettings> providerSettingsMap = new HashMap<>();
+    private final RealmStateCache<OAuth2ProviderSettings> providerSettingsCache = new RealmStateCache<>(
+            "oauth2_provider", new RealmStateCache.Releaser<OAuth2ProviderSettings>() {
+                @Override
+                public void release(String realm, OAuth2ProviderSettings settings) {
+                    ((RealmOAuth2ProviderSettings) settings).removeServiceListener();
+                }
+            });
     private final ResourceSetStoreFactory resourceSetStoreFactory;
     private final OAuth2RealmResolver realmResolver;
     private final ServiceConfigManagerFactory serviceConfigManagerFactory;
@@ -136,22 +141,22 @@ public class OAuth2ProviderSettingsFactory implements ServiceListener {
 
     private OAuth2ProviderSettings getRealmOAuth2ProviderSettings(String realm) throws OAuth2ProviderNotFoundException {
         Reject.ifNull(realm, "realm cannot be null");
-        synchronized (providerSettingsMap) {
-            OAuth2ProviderSettings providerSettings = providerSettingsMap.get(realm);
-            if (providerSettings == null) {
-                ResourceSetStore resourceSetStore = resourceSetStoreFactory.create(realm);
-                OpenAMSettings settings = new OpenAMSettingsImpl(OAuth2Constants.OAuth2ProviderService.NAME,
-                        OAuth2Constants.OAuth2ProviderService.VERSION);
-                providerSettings = new RealmOAuth2ProviderSettings(settings, realm,
-                        resourceSetStore, serviceConfigManagerFactory);
-                if (providerSettings.exists()) {
-                    providerSettingsMap.put(realm, providerSettings);
-                } else {
-                    throw new OAuth2ProviderNotFoundException("No OpenID Connect provider for realm " + realm);
-                }
-            }
-            return providerSettings;
-        }
+        return providerSettingsCache.get(realm,
+                new RealmStateCache.Loader<OAuth2ProviderSettings, OAuth2ProviderNotFoundException>() {
+                    @Override
+                    public OAuth2ProviderSettings load(String realm) throws OAuth2ProviderNotFoundException {
+                        ResourceSetStore resourceSetStore = resourceSetStoreFactory.create(realm);
+                        OpenAMSettings settings = new OpenAMSettingsImpl(OAuth2Constants.OAuth2ProviderService.NAME,
+                                OAuth2Constants.OAuth2ProviderService.VERSION);
+                        RealmOAuth2ProviderSettings providerSettings = new RealmOAuth2ProviderSettings(settings,
+                                realm, resourceSetStore, serviceConfigManagerFactory);
+                        if (!providerSettings.exists()) {
+                            providerSettings.removeServiceListener();
+                            throw new OAuth2ProviderNotFoundException("No OpenID Connect provider for realm " + realm);
+                        }
+                        return providerSettings;
+                    }
+                });
     }
 
     @Override
@@ -171,7 +176,7 @@ public class OAuth2ProviderSettingsFactory implements ServiceListener {
         if (type == ServiceListener.REMOVED) {
             String realm = DNMapper.orgNameToRealmName(orgName);
             logger.message("Removing OAuth2 provider for realm {}", realm);
-            providerSettingsMap.remove(realm);
+            providerSettingsCache.invalidate(realm);
         }
     }
 }
\ No newline at end of file
@@ -96,6 +96,8 @@ public class RealmOAuth2ProviderSettings implements OAuth2ProviderSettings {
     private final ServiceConfigManagerFactory serviceConfigManagerFactory;
     private ScopeValidator scopeValidator;
     private volatile Template loginUrlTemplate;
+    private ServiceConfigManager serviceConfigManager;
+    private String serviceListenerId;
 
     /**
      * Constructs a new OpenAMOAuth2ProviderSettings.
@@ -116,10 +118,10 @@ public class RealmOAuth2ProviderSettings implements OAuth2ProviderSettings {
 
     private void addServiceListener() {
         try {
-            final ServiceConfigManager serviceConfigManager =
-                    serviceConfigManagerFactory.create(OAuth2Constants.OAuth2ProviderService.NAME,
-                            OAuth2Constants.OAuth2ProviderService.VERSION);
-            if (serviceConfigManager.addListener(new OAuth2ProviderSettingsChangeListener()) == null) {
+            serviceConfigManager = serviceConfigManagerFactory.create(OAuth2Constants.OAuth2ProviderService.NAME,
+                    OAuth2Constants.OAuth2ProviderService.VERSION);
+            serviceListenerId = serviceConfigManager.addListener(new OAuth2ProviderSettingsChangeListener());
+            if (serviceListenerId == null) {
                 logger.error("Could not add listener to ServiceConfigManager instance. OAuth2 provider service " +
                         "changes will not be dynamically updated for realm " + realm);
             }
@@ -130,6 +132,16 @@ public class RealmOAuth2ProviderSettings implements OAuth2ProviderSettings {
         }
     }
 
+    /**
+     * Stops listening for changes to the OAuth2 provider service, once these settings are no longer used.
+     */
+    void removeServiceListener() {
+        if (serviceListenerId != null) {
+            serviceConfigManager.removeListener(serviceListenerId);
+            serviceListenerId = null;
+        }
+    }
+
     private final Map<String, Set<String>> attributeCache = new HashMap<String, Set<String>>();
     private final List<Map<String, Object>> jwks = new ArrayList<Map<String, Object>>();
     private Set<String> supportedScopesWithoutTranslations;
@@ -39,6 +39,7 @@ import org.forgerock.oauth2.core.exceptions.InvalidGrantException;
 import org.forgerock.oauth2.core.exceptions.InvalidRequestException;
 import org.forgerock.openam.oauth2.OAuth2UrisFactory;
 import org.forgerock.openam.oauth2.validation.ConfirmationKeyValidator;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.mockito.Matchers;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -68,7 +69,8 @@ public class AccessTokenServiceTest {
         OAuth2UrisFactory urisFactory = mock(OAuth2UrisFactory.class);
 
         accessTokenService = new AccessTokenService(grantTypeHandlers, clientAuthenticator, tokenStore,
-                providerSettingsFactory, urisFactory, mock(ConfirmationKeyValidator.class));
+                providerSettingsFactory, urisFactory, mock(ConfirmationKeyValidator.class),
+                new MetricsRegistry(10));
 
         providerSettings = mock(RealmOAuth2ProviderSettings.class);
         given(providerSettingsFactory.get(Matchers.<OAuth2Request>anyObject())).willReturn(providerSettings);
@@ -66,6 +66,10 @@ public final class PushNotificationConstants {
     public static final int DENY_VALUE = 0;
     /** Accept value. */
     public static final int ACCEPT_VALUE = 1;
+    /** Topic on which servers announce messages they have received on behalf of another server in the cluster. */
+    public static final String MESSAGE_COMPLETED_TOPIC = "/internal/push/message";
+    /** Name of the key where the realm is stored in a message completed notification. */
+    public static final String MESSAGE_REALM = "realm";
 
 
     /**
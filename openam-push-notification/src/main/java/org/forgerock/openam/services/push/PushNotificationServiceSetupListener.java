@@ -11,58 +11,64 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.services.push;
 
 import com.sun.identity.security.AdminTokenAction;
 import com.sun.identity.setup.SetupListener;
+import com.sun.identity.setup.SetupPhase;
 import com.sun.identity.sm.SMSException;
 import java.security.AccessController;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.services.push.dispatch.ClusterMessageRelay;
 import org.forgerock.openam.utils.RealmUtils;
 
 /**
  * Starts the Push Notification Service on each realm as soon as the server starts, to
- * ensure that endpoints are appropriately created and made available.
+ * ensure that endpoints are appropriately created and made available. This runs in the background, as server
+ * start-up does not need to wait for it.
  */
-public class PushNotificationServiceSetupListener implements SetupListener {
+public class PushNotificationServiceSetupListener implements SetupPhase {
 
     /**
-     * Generates a new thread once the setup is completed which
-     * executes the task at hand - checking over each realm and calling
-     * init on its Push Notification Service.
+     * Checks over each realm and calls init on its Push Notification Service once the setup is completed.
      */
     @Override
     public void setupComplete() {
-        new Thread(
-                new Runnable() {
-                    public void run() {
-                        PushNotificationService service = InjectorHolder.getInstance(PushNotificationService.class);
+        PushNotificationService service = InjectorHolder.getInstance(PushNotificationService.class);
 
-                        Set<String> realms = new HashSet<>();
-                        try {
-                            realms.addAll(RealmUtils.getRealmNames(
-                                            AccessController.doPrivileged(AdminTokenAction.getInstance())));
+        Set<String> realms = new HashSet<>();
+        try {
+            realms.addAll(RealmUtils.getRealmNames(AccessController.doPrivileged(AdminTokenAction.getInstance())));
 
-                            for (String realm : realms) {
-                                try {
-                                    service.init(realm);
-                                } catch (PushNotificationException e) {
-                                    //do nothing - service doesn't exist on this realm
-                                }
-                            }
+            for (String realm : realms) {
+                try {
+                    service.init(realm);
+                } catch (PushNotificationException e) {
+                    //do nothing - service doesn't exist on this realm
+                }
+            }
 
-                        } catch (SMSException e) {
-                            //thrown if the admin token is invalid
-                        }
+        } catch (SMSException e) {
+            //thrown if the admin token is invalid
+        }
 
-                        service.registerServiceListener();
-                    }
-                }
-        ).start();
+        service.registerServiceListener();
+        InjectorHolder.getInstance(ClusterMessageRelay.class).start();
+    }
+
+    @Override
+    public Set<Class<? extends SetupListener>> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean isBackground() {
+        return true;
     }
 }
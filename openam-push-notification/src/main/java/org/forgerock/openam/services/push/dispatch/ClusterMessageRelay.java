@@ -0,0 +1,145 @@
+/*
+* The contents of this file are subject to the terms of the Common Development and
+* Distribution License (the License). You may not use this file except in compliance with the
+* License.
+*
+* You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+* specific language governing permission and limitations under the License.
+*
+* When distributing Covered Software, include this CDDL Header Notice in each file and include
+* the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+* Header, with the fields enclosed by brackets [] replaced by your own identifying
+* information: "Portions copyright [year] [name of copyright owner]".
+*
+* Copyright 2016 ForgeRock AS.
+*/
+package org.forgerock.openam.services.push.dispatch;
+
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.openam.services.push.PushMessage.MESSAGE_ID;
+import static org.forgerock.openam.services.push.PushNotificationConstants.*;
+
+import com.google.inject.name.Named;
+import com.sun.identity.shared.debug.Debug;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Subscription;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.openam.services.push.PushNotificationService;
+import org.forgerock.openam.utils.JsonValueBuilder;
+import org.forgerock.util.Reject;
+
+/**
+ * Relays the completion of push messages between the servers of a cluster over the {@link NotificationBroker}.
+ *
+ * The device's response to a push message may arrive at any server in the cluster. When it does not arrive at the
+ * server whose {@link MessageDispatcher} is awaiting it, the receiving server validates the response and records it
+ * in the CTS token for the message, then announces the completion through this relay. The server awaiting the
+ * message reads the token once and completes its local promise, so waiting authentication modules do not have to
+ * read the CTS on every poll to discover the outcome.
+ *
+ * Notifications only carry the realm and messageId; the device's response itself stays in the CTS.
+ */
+@Singleton
+public class ClusterMessageRelay {
+
+    private static final Topic TOPIC = Topic.of(MESSAGE_COMPLETED_TOPIC);
+
+    private final NotificationBroker broker;
+    private final PushNotificationService pushNotificationService;
+    private final CTSPersistentStore coreTokenService;
+    private final Debug debug;
+
+    private Subscription subscription;
+
+    /**
+     * Generate a new ClusterMessageRelay.
+     *
+     * @param broker The cluster-wide notification broker.
+     * @param pushNotificationService Used to locate the MessageDispatcher for a given realm.
+     * @param coreTokenService Used to read the response recorded by the server which received it.
+     * @param debug For writing debug messages.
+     */
+    @Inject
+    public ClusterMessageRelay(NotificationBroker broker, PushNotificationService pushNotificationService,
+            CTSPersistentStore coreTokenService, @Named("frPush") Debug debug) {
+        this.broker = broker;
+        this.pushNotificationService = pushNotificationService;
+        this.coreTokenService = coreTokenService;
+        this.debug = debug;
+    }
+
+    /**
+     * Subscribes this relay to message completions announced by other servers in the cluster.
+     * Invocation has no additional effect if already started.
+     */
+    public synchronized void start() {
+        if (subscription == null) {
+            subscription = broker.subscribe(new MessageCompletedConsumer()).bindTo(TOPIC);
+        }
+    }
+
+    /**
+     * Announces to the cluster that the response to the message with the provided messageId has been received,
+     * validated, and recorded in the CTS by this server.
+     *
+     * @param realm The realm in which the message was sent. May not be null.
+     * @param messageId The messageId of the completed message. May not be null.
+     * @return False if the announcement definitely failed, in which case the awaiting server will only learn of the
+     * completion by reading the CTS.
+     */
+    public boolean publish(String realm, String messageId) {
+        Reject.ifNull(realm);
+        Reject.ifNull(messageId);
+        return broker.publish(TOPIC, json(object(field(MESSAGE_REALM, realm), field(MESSAGE_ID, messageId))));
+    }
+
+    /**
+     * Completes the local promise for the messageId described by the notification, if this server is awaiting it.
+     *
+     * @param notification The notification received from the broker.
+     */
+    void handle(JsonValue notification) {
+        String realm = notification.get(MESSAGE_REALM).asString();
+        String messageId = notification.get(MESSAGE_ID).asString();
+
+        if (realm == null || messageId == null) {
+            debug.warning("Ignoring invalid push message completion notification {}.", notification);
+            return;
+        }
+
+        try {
+            MessageDispatcher messageDispatcher = pushNotificationService.getMessageDispatcher(realm);
+            if (!messageDispatcher.isExpecting(messageId)) {
+                return;
+            }
+
+            Token coreToken = coreTokenService.read(messageId);
+            if (coreToken == null || coreToken.getBlob() == null) {
+                debug.warning("Notified of completion of messageId {} but found no response in the CTS.", messageId);
+                return;
+            }
+
+            messageDispatcher.complete(messageId, JsonValueBuilder.toJsonValue(new String(coreToken.getBlob())));
+        } catch (NotFoundException e) {
+            debug.message("No MessageDispatcher in realm {} for completed messageId {}.", realm, messageId);
+        } catch (CoreTokenException e) {
+            debug.warning("Unable to read completed messageId {} from the CTS.", messageId, e);
+        }
+    }
+
+    private final class MessageCompletedConsumer implements Consumer {
+
+        @Override
+        public void accept(JsonValue notification) {
+            handle(notification);
+        }
+    }
+}
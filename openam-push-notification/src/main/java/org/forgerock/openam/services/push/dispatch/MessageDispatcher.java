@@ -88,6 +88,39 @@ public class MessageDispatcher {
         }
     }
 
+    /**
+     * Completes the promise awaiting the provided messageId without running its predicates. This is used when
+     * the message was received and validated by another server in the cluster, which has already run the
+     * predicates against the message contents before informing this server of the completion.
+     *
+     * @param messageId The messageId of the promise to complete. May not be null.
+     * @param content The contents to complete the awaiting promise with. May not be null.
+     * @return True if a promise was awaiting the messageId and has been completed, false otherwise.
+     */
+    public boolean complete(String messageId, JsonValue content) {
+        Reject.ifNull(content);
+        Reject.ifNull(messageId);
+        MessagePromise messagePromise = cache.getIfPresent(messageId);
+        if (messagePromise == null) {
+            return false;
+        }
+
+        messagePromise.getPromise().tryHandleResult(content);
+        cache.invalidate(messageId);
+        return true;
+    }
+
+    /**
+     * Informs whether this dispatcher has been told to expect a message with the provided messageId, and is
+     * still awaiting it.
+     *
+     * @param messageId The messageId to check.
+     * @return True if a promise for the messageId is awaiting completion, false otherwise.
+     */
+    public boolean isExpecting(String messageId) {
+        return messageId != null && cache.getIfPresent(messageId) != null;
+    }
+
     /**
      * Tells the message dispatcher to expect a message to be handled with the given messageId. This returns
      * an incomplete promise.
@@ -56,6 +56,7 @@ import org.forgerock.openam.cts.utils.JSONSerialisation;
 import org.forgerock.openam.rest.RealmContext;
 import org.forgerock.openam.rest.RestUtils;
 import org.forgerock.openam.services.push.PushNotificationService;
+import org.forgerock.openam.services.push.dispatch.ClusterMessageRelay;
 import org.forgerock.openam.services.push.dispatch.MessageDispatcher;
 import org.forgerock.openam.services.push.dispatch.Predicate;
 import org.forgerock.openam.services.push.dispatch.PredicateNotMetException;
@@ -94,6 +95,7 @@ public class SnsMessageResource {
     private final CTSPersistentStore coreTokenService;
     private final JSONSerialisation jsonSerialisation;
     private final JwtReconstruction jwtReconstruction;
+    private final ClusterMessageRelay clusterMessageRelay;
 
     /**
      * Generate a new SnsMessageResource using the provided MessageDispatcher.
@@ -104,16 +106,18 @@ public class SnsMessageResource {
      * @param jsonSerialisation Used to perform the serialisation necessary for inserting tokens into the CTS.
      * @param debug For writing out debug messages.
      * @param jwtReconstruction For recreating JWTs.
+     * @param clusterMessageRelay Used to inform the server awaiting a message that it has been received here.
      */
     @Inject
     public SnsMessageResource(CTSPersistentStore coreTokenService, PushNotificationService pushNotificationService,
                               JSONSerialisation jsonSerialisation, @Named("frPush") Debug debug,
-                              JwtReconstruction jwtReconstruction) {
+                              JwtReconstruction jwtReconstruction, ClusterMessageRelay clusterMessageRelay) {
         this.pushNotificationService = pushNotificationService;
         this.jsonSerialisation = jsonSerialisation;
         this.debug = debug;
         this.coreTokenService = coreTokenService;
         this.jwtReconstruction = jwtReconstruction;
+        this.clusterMessageRelay = clusterMessageRelay;
     }
 
     /**
@@ -178,7 +182,10 @@ public class SnsMessageResource {
             } catch (NotFoundException e) {
                 debug.warning("Unable to deliver message with messageId {} in realm {}.", messageId, realm, e);
                 try {
-                    attemptFromCTS(messageId, actionContent, requestType);
+                    if (attemptFromCTS(messageId, actionContent, requestType)
+                            && !clusterMessageRelay.publish(realm, messageId)) {
+                        debug.warning("Unable to notify cluster of completed messageId {}.", messageId);
+                    }
                 } catch (IllegalAccessException | InstantiationException | ClassNotFoundException
                         | CoreTokenException | NotFoundException ex) {
                     debug.warning("Nothing in the CTS with messageId {}.", messageId, ex);
@@ -241,6 +248,7 @@ public class SnsMessageResource {
 
     private void addDeny(Token coreToken, JsonValue actionContent) {
 
+        coreToken.setBlob(jsonSerialisation.serialise(actionContent.getObject()).getBytes());
         Jwt possibleDeny = jwtReconstruction.reconstructJwt(actionContent.get(JWT).asString(), SignedJwt.class);
 
         if (possibleDeny.getClaimsSet().getClaim(DENY_LOCATION) != null) {
@@ -0,0 +1,110 @@
+/*
+* The contents of this file are subject to the terms of the Common Development and
+* Distribution License (the License). You may not use this file except in compliance with the
+* License.
+*
+* You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+* specific language governing permission and limitations under the License.
+*
+* When distributing Covered Software, include this CDDL Header Notice in each file and include
+* the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+* Header, with the fields enclosed by brackets [] replaced by your own identifying
+* information: "Portions copyright [year] [name of copyright owner]".
+*
+* Copyright 2016 ForgeRock AS.
+*/
+package org.forgerock.openam.services.push.dispatch;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.json.JsonValue.*;
+import static org.mockito.BDDMockito.*;
+
+import com.sun.identity.shared.debug.Debug;
+import java.util.HashSet;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.openam.cts.CTSPersistentStore;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.openam.services.push.PushNotificationService;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ClusterMessageRelayTest {
+
+    private NotificationBroker mockBroker;
+    private PushNotificationService mockService;
+    private CTSPersistentStore mockCTS;
+    private MessageDispatcher messageDispatcher;
+    private ClusterMessageRelay relay;
+
+    @BeforeMethod
+    public void theSetUp() throws NotFoundException {
+        mockBroker = mock(NotificationBroker.class);
+        mockService = mock(PushNotificationService.class);
+        mockCTS = mock(CTSPersistentStore.class);
+        Debug mockDebug = mock(Debug.class);
+        messageDispatcher = new MessageDispatcher(CacheBuilder.newBuilder().<String, MessagePromise>build(),
+                mockDebug);
+        given(mockService.getMessageDispatcher("/realm")).willReturn(messageDispatcher);
+
+        relay = new ClusterMessageRelay(mockBroker, mockService, mockCTS, mockDebug);
+    }
+
+    @Test
+    public void shouldPublishRealmAndMessageIdOnly() {
+        //given
+
+        //when
+        relay.publish("/realm", "messageId");
+
+        //then
+        ArgumentCaptor<JsonValue> captor = ArgumentCaptor.forClass(JsonValue.class);
+        verify(mockBroker).publish(eq(Topic.of("/internal/push/message")), captor.capture());
+        assertThat(captor.getValue().size()).isEqualTo(2);
+        assertThat(captor.getValue().get("realm").asString()).isEqualTo("/realm");
+        assertThat(captor.getValue().get("messageId").asString()).isEqualTo("messageId");
+    }
+
+    @Test
+    public void shouldCompleteLocalPromiseFromCTSWhenExpected() throws Exception {
+        //given
+        MessagePromise promise = messageDispatcher.expect("messageId", new HashSet<Predicate>());
+        Token mockToken = mock(Token.class);
+        given(mockToken.getBlob()).willReturn("{ \"jwt\" : \"value\" }".getBytes());
+        given(mockCTS.read("messageId")).willReturn(mockToken);
+
+        //when
+        relay.handle(json(object(field("realm", "/realm"), field("messageId", "messageId"))));
+
+        //then
+        assertThat(promise.getPromise().isDone()).isTrue();
+        assertThat(promise.getPromise().get().get("jwt").asString()).isEqualTo("value");
+    }
+
+    @Test
+    public void shouldNotReadCTSWhenNotExpected() throws Exception {
+        //given
+
+        //when
+        relay.handle(json(object(field("realm", "/realm"), field("messageId", "other"))));
+
+        //then
+        verifyZeroInteractions(mockCTS);
+    }
+
+    @Test
+    public void shouldIgnoreNotificationsForUnknownRealms() throws Exception {
+        //given
+        given(mockService.getMessageDispatcher("/unknown")).willThrow(new NotFoundException());
+
+        //when
+        relay.handle(json(object(field("realm", "/unknown"), field("messageId", "messageId"))));
+
+        //then
+        verifyZeroInteractions(mockCTS);
+    }
+}
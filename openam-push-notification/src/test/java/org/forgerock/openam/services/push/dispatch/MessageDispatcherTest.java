@@ -16,6 +16,7 @@
 package org.forgerock.openam.services.push.dispatch;
 
 import static org.assertj.core.api.Assertions.*;
+import static java.util.Collections.singleton;
 import static org.forgerock.json.JsonValue.*;
 import static org.mockito.Mockito.*;
 
@@ -130,4 +131,44 @@ public class MessageDispatcherTest {
         //then
         assertThat(result).isFalse();
     }
+
+    @Test
+    public void shouldCompletePromiseWithoutPredicatesWhenExpected() {
+        //given
+        Predicate failing = mock(Predicate.class);
+        MessagePromise result = messageDispatcher.expect("clusterComplete", singleton(failing));
+
+        //when
+        boolean completed = messageDispatcher.complete("clusterComplete", json(object()));
+
+        //then
+        assertThat(completed).isTrue();
+        assertThat(result.getPromise().isDone()).isTrue();
+        assertThat(messageDispatcher.isExpecting("clusterComplete")).isFalse();
+        verifyZeroInteractions(failing);
+    }
+
+    @Test
+    public void shouldReturnFalseCompleteWhenNotExpected() {
+        //given
+
+        //when
+        boolean result = messageDispatcher.complete("notexpectedComplete", json(object()));
+
+        //then
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    public void shouldReportExpectingOnlyForAwaitedMessageIds() {
+        //given
+        messageDispatcher.expect("awaited", new HashSet<Predicate>());
+
+        //when
+
+        //then
+        assertThat(messageDispatcher.isExpecting("awaited")).isTrue();
+        assertThat(messageDispatcher.isExpecting("notAwaited")).isFalse();
+        assertThat(messageDispatcher.isExpecting(null)).isFalse();
+    }
 }
@@ -47,6 +47,7 @@ import org.forgerock.openam.cts.utils.JSONSerialisation;
 import org.forgerock.openam.rest.RealmContext;
 import org.forgerock.openam.rest.resource.SSOTokenContext;
 import org.forgerock.openam.services.push.PushNotificationService;
+import org.forgerock.openam.services.push.dispatch.ClusterMessageRelay;
 import org.forgerock.openam.services.push.dispatch.MessageDispatcher;
 import org.forgerock.openam.services.push.dispatch.PredicateNotMetException;
 import org.forgerock.openam.tokens.CoreTokenField;
@@ -64,6 +65,7 @@ public class SnsMessageResourceTest {
     JSONSerialisation mockSerialisation;
     JwtReconstruction mockReconstructor;
     RealmTestHelper realmTestHelper;
+    ClusterMessageRelay mockRelay;
 
     @BeforeMethod
     public void theSetUp() throws Exception { //you need this
@@ -74,6 +76,7 @@ public class SnsMessageResourceTest {
         mockDispatcher = mock(MessageDispatcher.class);
         mockSerialisation = mock(JSONSerialisation.class);
         mockReconstructor = mock(JwtReconstruction.class);
+        mockRelay = mock(ClusterMessageRelay.class);
 
         try {
             given(mockService.getMessageDispatcher(anyString())).willReturn(mockDispatcher);
@@ -83,7 +86,8 @@ public class SnsMessageResourceTest {
         realmTestHelper = new RealmTestHelper();
         realmTestHelper.setupRealmClass();
 
-        messageResource = new SnsMessageResource(mockCTS, mockService, mockSerialisation, mockDebug, mockReconstructor);
+        messageResource = new SnsMessageResource(mockCTS, mockService, mockSerialisation, mockDebug, mockReconstructor,
+                mockRelay);
     }
 
     @AfterMethod
@@ -139,6 +143,7 @@ public class SnsMessageResourceTest {
         verify(mockToken, times(1)).setAttribute(CoreTokenField.INTEGER_ONE, ACCEPT_VALUE);
         verify(mockToken, times(1)).setBlob((byte[]) any());
         verify(mockCTS, times(1)).update(mockToken);
+        verify(mockRelay, times(1)).publish(anyString(), eq("asdf"));
     }
 
     @Test
@@ -170,7 +175,9 @@ public class SnsMessageResourceTest {
         //then
         assertThat(result.get()).isNotNull();
         verify(mockToken, times(1)).setAttribute(CoreTokenField.INTEGER_ONE, ACCEPT_VALUE);
+        verify(mockToken, times(1)).setBlob((byte[]) any());
         verify(mockCTS, times(1)).update(mockToken);
+        verify(mockRelay, times(1)).publish(anyString(), eq("asdf"));
     }
 
     @Test (expectedExceptions = BadRequestException.class)
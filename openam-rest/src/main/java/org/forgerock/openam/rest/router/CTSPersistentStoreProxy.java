@@ -21,6 +21,7 @@ import java.util.Map;
 import javax.inject.Singleton;
 
 import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.cts.CTSPagedQuery;
 import org.forgerock.openam.cts.CTSPersistentStore;
 import org.forgerock.openam.cts.api.filter.TokenFilter;
 import org.forgerock.openam.cts.api.tokens.Token;
@@ -171,6 +172,16 @@ public class CTSPersistentStoreProxy implements CTSPersistentStore {
         return CTSHolder.get().attributeQuery(tokenFilter);
     }
 
+    @Override
+    public CTSPagedQuery<Token> pagedQuery(TokenFilter filter, int pageSize) {
+        return CTSHolder.get().pagedQuery(filter, pageSize);
+    }
+
+    @Override
+    public CTSPagedQuery<PartialToken> pagedAttributeQuery(TokenFilter tokenFilter, int pageSize) {
+        return CTSHolder.get().pagedAttributeQuery(tokenFilter, pageSize);
+    }
+
     @Override
     public void deleteOnQueryAsync(TokenFilter tokenFilter) throws CoreTokenException {
         CTSHolder.get().deleteOnQueryAsync(tokenFilter);
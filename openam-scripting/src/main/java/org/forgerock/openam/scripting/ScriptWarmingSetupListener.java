@@ -0,0 +1,58 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.scripting;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.scripting.service.ScriptConfiguration;
+import org.forgerock.openam.scripting.service.ScriptingServiceFactory;
+
+import com.sun.identity.setup.CacheWarmingSetupPhase;
+import com.sun.identity.setup.SetupListener;
+
+/**
+ * Loads the script configuration of every realm in the background at startup, when cache warming is enabled, and
+ * compiles each script once, so that neither the first use of a realm's scripts nor the first compilation in each
+ * script engine happen on a request.
+ * <p>
+ * Compiled scripts are not kept, as scripts are compiled each time they are evaluated: compiling them here loads and
+ * warms up the compilers of the script engines.
+ */
+public class ScriptWarmingSetupListener extends CacheWarmingSetupPhase {
+
+    private final Set<String> compiledScripts = new HashSet<>();
+
+    @Override
+    public Set<Class<? extends SetupListener>> getDependencies() {
+        return Collections.<Class<? extends SetupListener>>singleton(ScriptingSetupListener.class);
+    }
+
+    @Override
+    protected void warm(String realm) throws ScriptException {
+        ScriptValidator validator = InjectorHolder.getInstance(ScriptValidator.class);
+        for (ScriptConfiguration script : InjectorHolder.getInstance(ScriptingServiceFactory.class).create(realm)
+                .getAll()) {
+            // Global scripts are listed in every realm, but only need compiling once
+            if (compiledScripts.add(script.getId())) {
+                validator.validateScript(new ScriptObject(script.getName(), script.getScript(), script.getLanguage()));
+            }
+        }
+    }
+}
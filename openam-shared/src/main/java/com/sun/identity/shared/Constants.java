@@ -348,6 +348,23 @@ public interface Constants {
      */
     String AM_SESSION_MAX_CACHE_SIZE = "org.forgerock.openam.session.service.access.persistence.caching.maxsize";
 
+    /**
+     * Property name for the size in megabytes of the off-heap tier of the internal session cache. 0 disables it.
+     */
+    String AM_SESSION_OFF_HEAP_CACHE_SIZE =
+            "org.forgerock.openam.session.service.access.persistence.caching.offHeapSizeMB";
+
+    /**
+     * Property name for whether each server times out the sessions it stores as soon as they expire, rather than
+     * leaving them for the next run of the CTS worker.
+     */
+    String AM_SESSION_EXPIRY_SCHEDULER_ENABLED = "org.forgerock.openam.session.service.expiryScheduler.enabled";
+
+    /**
+     * Property name for the resolution in milliseconds of the session expiry scheduler.
+     */
+    String AM_SESSION_EXPIRY_SCHEDULER_TICK = "org.forgerock.openam.session.service.expiryScheduler.tickMillis";
+
     /**
      * Property string for security provider package.
      */
@@ -621,6 +638,19 @@ public interface Constants {
     static final String SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION =
             "com.sun.identity.session.repository.enableAttributeCompression";
 
+    /**
+     * Stores sessions in the compact binary format instead of JSON. Servers which predate the binary format cannot
+     * read such sessions, so this should only be enabled once every server in the deployment can.
+     */
+    static final String SESSION_REPOSITORY_BINARY_ENCODING =
+            "com.sun.identity.session.repository.enableBinaryEncoding";
+
+    /**
+     * The number of sessions read from the session repository in each page when listing sessions.
+     */
+    static final String SESSION_QUERY_PAGE_SIZE =
+            "com.sun.identity.session.repository.queryPageSize";
+
     /**
      * Property string for determining whether or not appplication sessions
      * should be returned via the getValidSessions() call.
@@ -1364,6 +1394,53 @@ public interface Constants {
      */
     public static final String LDAP_SERVER_TLS_VERSION = "org.forgerock.openam.ldap.secure.protocol.version";
 
+    /**
+     * Property to make LDAP connection pools balance connections between the servers by their outstanding requests
+     * and response times, rather than failing over between them in order. Ignored when affinity is enabled.
+     */
+    public static final String LDAP_LOAD_BALANCER_ENABLED = "org.forgerock.openam.ldap.loadbalancer.enabled";
+
+    /**
+     * Interval in seconds at which the LDAP load balancer probes each server.
+     */
+    public static final String LDAP_LOAD_BALANCER_PROBE_INTERVAL =
+            "org.forgerock.openam.ldap.loadbalancer.probe.interval";
+
+    /**
+     * Average response time in milliseconds above which the LDAP load balancer stops using a server.
+     */
+    public static final String LDAP_LOAD_BALANCER_EJECTION_LATENCY =
+            "org.forgerock.openam.ldap.loadbalancer.ejection.latency";
+
+    /**
+     * Minimum time in seconds for which the LDAP load balancer stops using a slow or failed server.
+     */
+    public static final String LDAP_LOAD_BALANCER_EJECTION_PERIOD =
+            "org.forgerock.openam.ldap.loadbalancer.ejection.period";
+
+    /**
+     * Maximum number of parsed session ID strings kept in memory, so that the extensions of a session ID do not have
+     * to be decoded on every request. 0 disables the cache.
+     */
+    public static final String SESSION_ID_PARSE_CACHE_SIZE = "org.forgerock.openam.session.id.parseCacheSize";
+
+    /**
+     * Property to encrypt the encrypted ID part of new session IDs with AES-GCM instead of the hardcoded key. Clients
+     * which decrypt this part of the session ID themselves cannot read session IDs generated with this enabled.
+     */
+    public static final String SESSION_ID_AEAD_ENABLED = "org.forgerock.openam.session.id.aead.enabled";
+
+    /**
+     * Property for the number of milliseconds a server may answer session validation requests from its cached copy of
+     * a session's information, rather than reading the session. 0 disables the cache.
+     */
+    public static final String SESSION_INFO_CACHE_STALENESS = "org.forgerock.openam.session.infoCache.staleness";
+
+    /**
+     * Property for the maximum number of sessions whose information is held by the session validation cache.
+     */
+    public static final String SESSION_INFO_CACHE_SIZE = "org.forgerock.openam.session.infoCache.size";
+
     /**
      * Property to enable capturing trace-level messages from Log4J world when in message-level debug mode.
      */
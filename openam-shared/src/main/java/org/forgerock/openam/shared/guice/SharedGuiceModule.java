@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.shared.guice;
 
@@ -23,6 +23,7 @@ import org.forgerock.guice.core.GuiceModule;
 import org.forgerock.openam.audit.context.AMExecutorServiceFactory;
 import org.forgerock.openam.audit.context.AuditRequestContextPropagatingExecutorServiceFactory;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
 import org.forgerock.openam.shared.security.crypto.KeyPairProviderFactory;
 import org.forgerock.openam.shared.security.crypto.KeyPairProviderFactoryImpl;
 import org.forgerock.util.thread.listener.ShutdownManager;
@@ -50,6 +51,7 @@ public class SharedGuiceModule extends AbstractModule {
                 .toInstance(Debug.getInstance(DEBUG_THREAD_MANAGER));
         bind(ShutdownManager.class).toInstance(com.sun.identity.common.ShutdownManager.getInstance());
         bind(KeyPairProviderFactory.class).to(KeyPairProviderFactoryImpl.class);
+        bind(MetricsRegistry.class).toInstance(MetricsRegistry.getInstance());
     }
 
     @Provides @Inject
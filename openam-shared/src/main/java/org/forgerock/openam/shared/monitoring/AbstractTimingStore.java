@@ -11,20 +11,20 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.shared.monitoring;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An abstract store for holding a set of {@link TimingEntry}s. The maximum size of the store
- * is set on creation. The store internally uses a synchronizedList, which verifies the size of the collection
- * isn't greater than the maximum upon insertion, and removes the oldest entry if it is.
- * Read operations are not synchronized.
+ * is set on creation. The store is a fixed ring of entries, in which each new entry replaces the oldest
+ * once the store is full, so adding an entry never blocks. Read operations are not synchronized.
+ * <br/>
+ * The duration of every entry ever added is also recorded in a {@link LatencyHistogram}.
  */
 public abstract class AbstractTimingStore {
 
@@ -33,6 +33,10 @@ public abstract class AbstractTimingStore {
      */
     protected final int maxEntries;
 
+    private final AtomicReferenceArray<TimingEntry> durationStore;
+    private final AtomicLong added = new AtomicLong();
+    private final LatencyHistogram durationHistogram = new LatencyHistogram();
+
     /**
      * Constructs a new AbstractTimingStore instance.
      *
@@ -44,22 +48,19 @@ public abstract class AbstractTimingStore {
         } else {
             this.maxEntries = maxEntries;
         }
+        this.durationStore = new AtomicReferenceArray<>(this.maxEntries);
     }
 
     /**
-     * The duration store, limited to the number of entries specified by the configuration set by administrator.
+     * Adds an entry to the store, replacing the oldest entry if the store is full.
+     *
+     * @param entry The entry.
      */
-    protected final List<TimingEntry> durationStore = Collections.synchronizedList(new ArrayList<TimingEntry>() {
-
-        @Override
-        public boolean add(TimingEntry entry) {
-            while (size() >= maxEntries) {
-                remove(0);
-            }
-            return super.add(entry);
-        }
-
-    });
+    protected void add(TimingEntry entry) {
+        long position = added.getAndIncrement();
+        durationStore.set((int) (position % maxEntries), entry);
+        durationHistogram.record(entry.getDuration());
+    }
 
     /**
      * Getter for the average length of time events recorded in the duration store have taken.
@@ -68,17 +69,22 @@ public abstract class AbstractTimingStore {
      */
     public long getDurationAverage() {
 
-        if (durationStore.size() == 0) {
-            return 0L;
-        }
-
         long current = 0L;
+        int entries = 0;
 
-        for (TimingEntry te : durationStore) {
-            current += te.getDuration();
+        for (int i = 0; i < maxEntries; i++) {
+            TimingEntry te = durationStore.get(i);
+            if (te != null) {
+                current += te.getDuration();
+                entries++;
+            }
         }
 
-        return current / durationStore.size();
+        if (entries == 0) {
+            return 0L;
+        }
+
+        return current / entries;
 
     }
 
@@ -116,6 +122,16 @@ public abstract class AbstractTimingStore {
         return te.getDuration();
     }
 
+    /**
+     * Returns the histogram of the durations of every entry added since the store was created, from which
+     * percentiles can be read.
+     *
+     * @return the duration histogram.
+     */
+    public LatencyHistogram getDurationHistogram() {
+        return durationHistogram;
+    }
+
     /**
      * Finds the slowest (longest duration) timing entry in the durationStore.
      *
@@ -123,14 +139,11 @@ public abstract class AbstractTimingStore {
      */
     private TimingEntry getSlowest() {
 
-        if (durationStore == null || durationStore.size() == 0) {
-            return null;
-        }
-
-        TimingEntry current = durationStore.get(0);
+        TimingEntry current = null;
 
-        for (TimingEntry te : durationStore) {
-            if (current.getDuration() < te.getDuration()) {
+        for (int i = 0; i < maxEntries; i++) {
+            TimingEntry te = durationStore.get(i);
+            if (te != null && (current == null || current.getDuration() < te.getDuration())) {
                 current = te;
             }
         }
@@ -0,0 +1,228 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.shared.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as operation latencies, from which percentiles can be read
+ * while values are being recorded.
+ * <br/>
+ * Values are counted in log-linear buckets: values below 32 each have their own bucket, and every larger power of two
+ * range is divided into 32 equal buckets, so that any value reported for a percentile is within about 3% of the
+ * recorded value.
+ * <br/>
+ * The buckets of each power of two range are allocated the first time a value in the range is recorded, so a
+ * histogram of values of similar magnitude holds only a few ranges. Values are counted in a single set of buckets
+ * until recording threads contend on a bucket, after which a contending thread counts in one of several further
+ * stripes of buckets, which are also allocated on first use.
+ * <br/>
+ * The histogram is cumulative: it covers every value recorded since it was created.
+ *
+ * @since 14.0.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int RANGES = Long.SIZE - SUB_BUCKET_BITS;
+    private static final int STRIPES = stripeCount();
+
+    /**
+     * An estimate of the most heap that the buckets of a single histogram can use, once every stripe has counted
+     * values of every magnitude.
+     */
+    public static final long MAX_FOOTPRINT_BYTES =
+            16L + 4L * STRIPES + STRIPES * (16L + 4L * RANGES + RANGES * (16L + 8L * SUB_BUCKETS));
+
+    private final AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>> stripes =
+            new AtomicReferenceArray<>(STRIPES);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        long recorded = Math.max(0L, value);
+        int bucket = getBucket(recorded);
+        int index = bucket & (SUB_BUCKETS - 1);
+        AtomicLongArray counts = getCounts(0, bucket);
+        long current = counts.get(index);
+        if (!counts.compareAndSet(index, current, current + 1)) {
+            int stripe = 1 + (int) (Thread.currentThread().getId() % (STRIPES - 1));
+            getCounts(stripe, bucket).incrementAndGet(index);
+        }
+        count.incrementAndGet();
+        sum.addAndGet(recorded);
+        long currentMax = max.get();
+        while (recorded > currentMax && !max.compareAndSet(currentMax, recorded)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     *
+     * @return The sum of the values.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return The mean, or zero if no values have been recorded.
+     */
+    public double getMean() {
+        long values = count.get();
+        return values == 0 ? 0D : (double) sum.get() / values;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return The largest value, or zero if no values have been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The highest value equivalent to the value at the percentile, or zero if no values have been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] values = new long[1];
+        getValuesAtPercentiles(new double[] {percentile}, values);
+        return values[0];
+    }
+
+    /**
+     * Reads the values at several percentiles in a single pass over the histogram, without allocating.
+     *
+     * @param percentiles The percentiles, between 0 and 100, in ascending order.
+     * @param values The array in which to store the value at each percentile, which must be at least as long as the
+     * percentiles.
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] values) {
+        // Buckets above the one holding the maximum are empty, apart from values whose maximum is still being set.
+        long currentMax = max.get();
+        int lastBucket = getBucket(currentMax);
+        long total = 0;
+        for (int bucket = 0; bucket <= lastBucket; bucket++) {
+            total += getBucketCount(bucket);
+        }
+        int next = 0;
+        if (total > 0) {
+            long seen = 0;
+            for (int bucket = 0; bucket <= lastBucket && next < percentiles.length; bucket++) {
+                seen += getBucketCount(bucket);
+                while (next < percentiles.length && seen >= getTarget(percentiles[next], total)) {
+                    values[next++] = Math.min(getHighestValue(bucket), currentMax);
+                }
+            }
+        }
+        while (next < percentiles.length) {
+            values[next++] = total > 0 ? currentMax : 0L;
+        }
+    }
+
+    /**
+     * Returns the counts of the power of two range of the given bucket in the given stripe, allocating them if no
+     * value in the range has been counted in the stripe yet.
+     */
+    private AtomicLongArray getCounts(int stripe, int bucket) {
+        AtomicReferenceArray<AtomicLongArray> ranges = stripes.get(stripe);
+        if (ranges == null) {
+            stripes.compareAndSet(stripe, null, new AtomicReferenceArray<AtomicLongArray>(RANGES));
+            ranges = stripes.get(stripe);
+        }
+        int range = bucket >>> SUB_BUCKET_BITS;
+        AtomicLongArray counts = ranges.get(range);
+        if (counts == null) {
+            ranges.compareAndSet(range, null, new AtomicLongArray(SUB_BUCKETS));
+            counts = ranges.get(range);
+        }
+        return counts;
+    }
+
+    private long getBucketCount(int bucket) {
+        long bucketCount = 0;
+        int range = bucket >>> SUB_BUCKET_BITS;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            AtomicReferenceArray<AtomicLongArray> ranges = stripes.get(stripe);
+            AtomicLongArray counts = ranges == null ? null : ranges.get(range);
+            if (counts != null) {
+                bucketCount += counts.get(bucket & (SUB_BUCKETS - 1));
+            }
+        }
+        return bucketCount;
+    }
+
+    private static long getTarget(double percentile, long total) {
+        double requested = Math.min(Math.max(percentile, 0D), 100D);
+        return Math.max(1L, (long) Math.ceil(requested / 100D * total));
+    }
+
+    /**
+     * Returns the bucket which counts the given value.
+     */
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted by the given bucket.
+     */
+    static long getHighestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static int stripeCount() {
+        // The first stripe is shared by every thread until they contend
+        return 1 + Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    }
+}
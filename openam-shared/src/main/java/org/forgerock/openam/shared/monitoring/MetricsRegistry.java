@@ -0,0 +1,638 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.shared.monitoring;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
+
+/**
+ * Registry of the counters, gauges and timers of this server, which can be written out in the Prometheus text
+ * exposition format.
+ * <br/>
+ * Counters, labelled gauges and timers are recorded without locking. Each metric may have a fixed set of label names, and keeps a
+ * series per distinct set of label values up to a configurable maximum, after which further values are recorded in a
+ * single overflow series whose labels are all {@code other}. The cost and size of writing out the registry is
+ * therefore bounded by the number of metrics and the maximum number of series, whatever the labels recorded. The
+ * series are held in a map per label, so that recording into an existing series does not allocate.
+ * <br/>
+ * Timers keep a {@link LatencyHistogram} per series and are written out as summaries, in seconds, with the median,
+ * 90th and 99th percentiles. As a histogram is far larger than a counter, the maximum number of series of each timer
+ * is further limited so that the histograms of a timer cannot use more than a configurable amount of heap.
+ *
+ * @since 14.0.0
+ */
+public final class MetricsRegistry {
+
+    /**
+     * System property for the maximum number of series each metric may have before label values are recorded as
+     * {@code other}.
+     */
+    public static final String MAX_SERIES_PROPERTY = "org.forgerock.openam.metrics.maxSeriesPerMetric";
+
+    /**
+     * System property for the most heap, in megabytes, that the histograms of the series of each timer may use.
+     */
+    public static final String MAX_TIMER_MEMORY_PROPERTY = "org.forgerock.openam.metrics.maxTimerMemoryMegabytes";
+
+    /**
+     * The content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final int DEFAULT_MAX_SERIES = 500;
+    private static final int DEFAULT_MAX_TIMER_MEMORY_MEGABYTES = 8;
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final String OVERFLOW_LABEL_VALUE = "other";
+    private static final double[] PERCENTILES = {50D, 90D, 99D};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99"};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final MetricsRegistry INSTANCE =
+            new MetricsRegistry(SystemPropertiesManager.getAsInt(MAX_SERIES_PROPERTY, DEFAULT_MAX_SERIES),
+                    SystemPropertiesManager.getAsInt(MAX_TIMER_MEMORY_PROPERTY, DEFAULT_MAX_TIMER_MEMORY_MEGABYTES)
+                            * BYTES_PER_MEGABYTE);
+
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+    private final int maxSeries;
+    private final int maxTimerSeries;
+
+    /**
+     * Constructs a new registry whose timers may use the default amount of heap.
+     *
+     * @param maxSeries The maximum number of series each labelled metric may have.
+     */
+    public MetricsRegistry(int maxSeries) {
+        this(maxSeries, DEFAULT_MAX_TIMER_MEMORY_MEGABYTES * BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Constructs a new registry.
+     *
+     * @param maxSeries The maximum number of series each labelled metric may have.
+     * @param maxTimerBytes The most heap that the histograms of the series of each timer may use, which limits the
+     * number of series of a timer to fewer than {@code maxSeries} if the largest possible histograms would not fit.
+     */
+    public MetricsRegistry(int maxSeries, long maxTimerBytes) {
+        this.maxSeries = Math.max(1, maxSeries);
+        this.maxTimerSeries = (int) Math.max(1, Math.min(this.maxSeries,
+                maxTimerBytes / LatencyHistogram.MAX_FOOTPRINT_BYTES));
+    }
+
+    /**
+     * Returns the registry of this server.
+     *
+     * @return The singleton instance.
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the counter of the given name, registering it if it does not exist yet.
+     *
+     * @param name The metric name, which by convention ends in {@code _total}.
+     * @param help The description of the metric.
+     * @param labelNames The names of the labels of the metric.
+     * @return The counter.
+     * @throws IllegalArgumentException If a different type of metric has already been registered with the name, or
+     * if the name is not a valid metric name.
+     */
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(new Counter(name, help, labelNames, maxSeries), Counter.class);
+    }
+
+    /**
+     * Returns the timer of the given name, registering it if it does not exist yet.
+     *
+     * @param name The metric name, which by convention ends in {@code _seconds}.
+     * @param help The description of the metric.
+     * @param labelNames The names of the labels of the metric.
+     * @return The timer.
+     * @throws IllegalArgumentException If a different type of metric has already been registered with the name, or
+     * if the name is not a valid metric name.
+     */
+    public Timer timer(String name, String help, String... labelNames) {
+        return register(new Timer(name, help, labelNames, maxTimerSeries), Timer.class);
+    }
+
+    /**
+     * Returns the labelled gauge of the given name, registering it if it does not exist yet.
+     * <br/>
+     * Unlike a {@link Gauge}, which is read when the registry is written out, a labelled gauge holds a value per
+     * series which is increased and decreased as what it measures changes, such as the requests in progress.
+     *
+     * @param name The metric name.
+     * @param help The description of the metric.
+     * @param labelNames The names of the labels of the metric.
+     * @return The labelled gauge.
+     * @throws IllegalArgumentException If a different type of metric has already been registered with the name, or
+     * if the name is not a valid metric name.
+     */
+    public LabelledGauge gauge(String name, String help, String... labelNames) {
+        return register(new LabelledGauge(name, help, labelNames, maxSeries), LabelledGauge.class);
+    }
+
+    /**
+     * Registers a gauge, unless a gauge has already been registered with the same name, in which case the existing
+     * gauge is kept and the given gauge is never read.
+     *
+     * @param name The metric name.
+     * @param help The description of the metric.
+     * @param gauge The gauge, which is read each time the registry is written out.
+     * @return The registered gauge, which is not the given gauge if one was already registered with the name.
+     * @throws IllegalArgumentException If a different type of metric has already been registered with the name, or
+     * if the name is not a valid metric name.
+     */
+    public Gauge gauge(String name, String help, Gauge gauge) {
+        return register(new GaugeMetric(name, help, gauge), GaugeMetric.class).gauge;
+    }
+
+    /**
+     * Writes every metric of the registry in the Prometheus text exposition format.
+     *
+     * @param out The output.
+     * @throws IOException If the output cannot be written to.
+     */
+    public void write(Appendable out) throws IOException {
+        long[] values = new long[PERCENTILES.length];
+        for (Metric metric : metrics.values()) {
+            out.append("# HELP ").append(metric.name).append(' ');
+            appendEscaped(out, metric.help, false);
+            out.append("\n# TYPE ").append(metric.name).append(' ').append(metric.getType()).append('\n');
+            metric.write(out, values);
+        }
+    }
+
+    private <T extends Metric> T register(T metric, Class<T> type) {
+        Metric existing = metrics.putIfAbsent(metric.name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (!type.isInstance(existing) || !Arrays.equals(existing.labelNames, metric.labelNames)) {
+            throw new IllegalArgumentException("Metric " + metric.name + " is already registered differently");
+        }
+        return type.cast(existing);
+    }
+
+    private static void appendEscaped(Appendable out, String value, boolean quotes) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                out.append("\\\\");
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '"' && quotes) {
+                out.append("\\\"");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static void validateName(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Metric and label names must not be empty");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                    || (i > 0 && c >= '0' && c <= '9');
+            if (!valid) {
+                throw new IllegalArgumentException("Invalid metric or label name: " + name);
+            }
+        }
+    }
+
+    /**
+     * A value which is read each time the registry is written out, such as the size of a queue.
+     */
+    public interface Gauge {
+
+        /**
+         * Returns the current value.
+         *
+         * @return The value.
+         */
+        long getValue();
+    }
+
+    /**
+     * Common behaviour of the metrics of the registry.
+     */
+    private abstract static class Metric {
+        final String name;
+        final String help;
+        final String[] labelNames;
+
+        Metric(String name, String help, String... labelNames) {
+            validateName(name);
+            for (String labelName : labelNames) {
+                validateName(labelName);
+            }
+            this.name = name;
+            this.help = help == null ? "" : help;
+            this.labelNames = labelNames.clone();
+        }
+
+        abstract String getType();
+
+        abstract void write(Appendable out, long[] values) throws IOException;
+
+        void appendLabels(Appendable out, String[] labelValues, String extraName, String extraValue)
+                throws IOException {
+            if (labelNames.length == 0 && extraName == null) {
+                return;
+            }
+            out.append('{');
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labelNames[i]).append("=\"");
+                appendEscaped(out, labelValues[i], true);
+                out.append('"');
+            }
+            if (extraName != null) {
+                if (labelNames.length > 0) {
+                    out.append(',');
+                }
+                out.append(extraName).append("=\"").append(extraValue).append('"');
+            }
+            out.append('}');
+        }
+    }
+
+    /**
+     * A metric with a series per distinct set of label values.
+     * <br/>
+     * The series are held in a tree of maps with a level per label, keyed by the label value, so that an existing
+     * series is found without allocating a key. Intermediate maps are only created once a new series has been counted
+     * against the maximum, so their number is bounded too.
+     *
+     * @param <S> The type of the series.
+     */
+    private abstract static class LabelledMetric<S> extends Metric {
+        private final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+        private final AtomicReference<S> unlabelled = new AtomicReference<>();
+        private final AtomicInteger seriesCount = new AtomicInteger();
+        private final int maxSeries;
+        private final String[] overflow;
+
+        LabelledMetric(String name, String help, String[] labelNames, int maxSeries) {
+            super(name, help, labelNames);
+            this.maxSeries = maxSeries;
+            this.overflow = new String[labelNames.length];
+            Arrays.fill(overflow, OVERFLOW_LABEL_VALUE);
+        }
+
+        abstract S newSeries();
+
+        /**
+         * Returns the series with the given label values, creating it, or returning the overflow series if the
+         * maximum number of series has been reached.
+         */
+        S getSeries(String[] labelValues) {
+            checkLabels(labelValues);
+            if (labelValues.length == 0) {
+                S existing = unlabelled.get();
+                if (existing == null) {
+                    unlabelled.compareAndSet(null, newSeries());
+                    existing = unlabelled.get();
+                }
+                return existing;
+            }
+            S existing = findSeries(labelValues);
+            if (existing != null) {
+                return existing;
+            }
+            while (true) {
+                int count = seriesCount.get();
+                if (count >= maxSeries) {
+                    return createSeries(overflow, false);
+                }
+                if (seriesCount.compareAndSet(count, count + 1)) {
+                    return createSeries(labelValues, true);
+                }
+            }
+        }
+
+        /**
+         * Returns the series with the given label values, without creating it.
+         *
+         * @return The series, or {@code null} if nothing has been recorded with the label values.
+         */
+        @SuppressWarnings("unchecked")
+        S findSeries(String[] labelValues) {
+            checkLabels(labelValues);
+            if (labelValues.length == 0) {
+                return unlabelled.get();
+            }
+            Object node = series;
+            for (String labelValue : labelValues) {
+                node = ((ConcurrentMap<String, Object>) node).get(labelValue == null ? "" : labelValue);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return (S) node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private S createSeries(String[] labelValues, boolean counted) {
+            ConcurrentMap<String, Object> level = series;
+            int last = labelValues.length - 1;
+            for (int i = 0; i < last; i++) {
+                String labelValue = labelValues[i] == null ? "" : labelValues[i];
+                Object next = level.get(labelValue);
+                if (next == null) {
+                    ConcurrentMap<String, Object> created = new ConcurrentHashMap<>();
+                    next = level.putIfAbsent(labelValue, created);
+                    if (next == null) {
+                        next = created;
+                    }
+                }
+                level = (ConcurrentMap<String, Object>) next;
+            }
+            S created = newSeries();
+            Object existing = level.putIfAbsent(labelValues[last] == null ? "" : labelValues[last], created);
+            if (existing == null) {
+                return created;
+            }
+            if (counted) {
+                // Another thread created the same series first
+                seriesCount.decrementAndGet();
+            }
+            return (S) existing;
+        }
+
+        private void checkLabels(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException("Metric " + name + " requires " + labelNames.length + " labels");
+            }
+        }
+
+        @Override
+        void write(Appendable out, long[] values) throws IOException {
+            if (labelNames.length == 0) {
+                S existing = unlabelled.get();
+                if (existing != null) {
+                    writeSeries(out, new String[0], existing, values);
+                }
+            } else {
+                writeLevel(out, series, new String[labelNames.length], 0, values);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeLevel(Appendable out, ConcurrentMap<String, Object> level, String[] labelValues, int depth,
+                long[] values) throws IOException {
+            for (Map.Entry<String, Object> entry : level.entrySet()) {
+                labelValues[depth] = entry.getKey();
+                if (depth == labelValues.length - 1) {
+                    writeSeries(out, labelValues, (S) entry.getValue(), values);
+                } else {
+                    writeLevel(out, (ConcurrentMap<String, Object>) entry.getValue(), labelValues, depth + 1, values);
+                }
+            }
+        }
+
+        /**
+         * Writes out a series with the given label values.
+         */
+        abstract void writeSeries(Appendable out, String[] labelValues, S series, long[] values) throws IOException;
+    }
+
+    /**
+     * A counter, which only ever increases.
+     */
+    public static final class Counter extends LabelledMetric<AtomicLong> {
+
+        private Counter(String name, String help, String[] labelNames, int maxSeries) {
+            super(name, help, labelNames, maxSeries);
+        }
+
+        /**
+         * Increments the series with the given label values by one.
+         *
+         * @param labelValues The label values, in the order of the label names of the counter.
+         */
+        public void increment(String... labelValues) {
+            getSeries(labelValues).incrementAndGet();
+        }
+
+        /**
+         * Increments the series with the given label values.
+         *
+         * @param amount The amount to add, which must not be negative.
+         * @param labelValues The label values, in the order of the label names of the counter.
+         */
+        public void add(long amount, String... labelValues) {
+            getSeries(labelValues).addAndGet(amount);
+        }
+
+        /**
+         * Returns the value of the series with the given label values, without creating the series.
+         *
+         * @param labelValues The label values, in the order of the label names of the counter.
+         * @return The value, or zero if nothing has been recorded with the label values.
+         */
+        public long getValue(String... labelValues) {
+            AtomicLong series = findSeries(labelValues);
+            return series == null ? 0 : series.get();
+        }
+
+        @Override
+        AtomicLong newSeries() {
+            return new AtomicLong();
+        }
+
+        @Override
+        String getType() {
+            return "counter";
+        }
+
+        @Override
+        void writeSeries(Appendable out, String[] labelValues, AtomicLong series, long[] values) throws IOException {
+            out.append(name);
+            appendLabels(out, labelValues, null, null);
+            out.append(' ').append(Long.toString(series.get())).append('\n');
+        }
+    }
+
+    /**
+     * A gauge with a value per series, which may go up and down.
+     */
+    public static final class LabelledGauge extends LabelledMetric<AtomicLong> {
+
+        private LabelledGauge(String name, String help, String[] labelNames, int maxSeries) {
+            super(name, help, labelNames, maxSeries);
+        }
+
+        /**
+         * Increments the series with the given label values by one.
+         *
+         * @param labelValues The label values, in the order of the label names of the gauge.
+         */
+        public void increment(String... labelValues) {
+            getSeries(labelValues).incrementAndGet();
+        }
+
+        /**
+         * Decrements the series with the given label values by one.
+         *
+         * @param labelValues The label values, in the order of the label names of the gauge.
+         */
+        public void decrement(String... labelValues) {
+            getSeries(labelValues).decrementAndGet();
+        }
+
+        /**
+         * Returns the value of the series with the given label values, without creating the series.
+         *
+         * @param labelValues The label values, in the order of the label names of the gauge.
+         * @return The value, or zero if nothing has been recorded with the label values.
+         */
+        public long getValue(String... labelValues) {
+            AtomicLong series = findSeries(labelValues);
+            return series == null ? 0 : series.get();
+        }
+
+        @Override
+        AtomicLong newSeries() {
+            return new AtomicLong();
+        }
+
+        @Override
+        String getType() {
+            return "gauge";
+        }
+
+        @Override
+        void writeSeries(Appendable out, String[] labelValues, AtomicLong series, long[] values) throws IOException {
+            out.append(name);
+            appendLabels(out, labelValues, null, null);
+            out.append(' ').append(Long.toString(series.get())).append('\n');
+        }
+    }
+
+    /**
+     * A timer, which records durations in a histogram per series.
+     */
+    public static final class Timer extends LabelledMetric<LatencyHistogram> {
+
+        private Timer(String name, String help, String[] labelNames, int maxSeries) {
+            super(name, help, labelNames, maxSeries);
+        }
+
+        /**
+         * Records a duration in nanoseconds.
+         *
+         * @param nanos The duration in nanoseconds.
+         * @param labelValues The label values, in the order of the label names of the timer.
+         */
+        public void record(long nanos, String... labelValues) {
+            getSeries(labelValues).record(nanos);
+        }
+
+        /**
+         * Records a duration.
+         *
+         * @param duration The duration.
+         * @param unit The unit of the duration.
+         * @param labelValues The label values, in the order of the label names of the timer.
+         */
+        public void record(long duration, TimeUnit unit, String... labelValues) {
+            getSeries(labelValues).record(unit.toNanos(duration));
+        }
+
+        /**
+         * Records the time elapsed since the given start time.
+         *
+         * @param startNanos The start time, as returned by {@link System#nanoTime()}.
+         * @param labelValues The label values, in the order of the label names of the timer.
+         */
+        public void recordSince(long startNanos, String... labelValues) {
+            getSeries(labelValues).record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Returns the histogram of the series with the given label values, without creating the series.
+         *
+         * @param labelValues The label values, in the order of the label names of the timer.
+         * @return The histogram of durations, in nanoseconds, or {@code null} if nothing has been recorded with the
+         * label values.
+         */
+        public LatencyHistogram getHistogram(String... labelValues) {
+            return findSeries(labelValues);
+        }
+
+        @Override
+        LatencyHistogram newSeries() {
+            return new LatencyHistogram();
+        }
+
+        @Override
+        String getType() {
+            return "summary";
+        }
+
+        @Override
+        void writeSeries(Appendable out, String[] labelValues, LatencyHistogram histogram, long[] values)
+                throws IOException {
+            histogram.getValuesAtPercentiles(PERCENTILES, values);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                out.append(name);
+                appendLabels(out, labelValues, "quantile", QUANTILES[i]);
+                out.append(' ').append(Double.toString(values[i] / NANOS_PER_SECOND)).append('\n');
+            }
+            out.append(name).append("_sum");
+            appendLabels(out, labelValues, null, null);
+            out.append(' ').append(Double.toString(histogram.getSum() / NANOS_PER_SECOND)).append('\n');
+            out.append(name).append("_count");
+            appendLabels(out, labelValues, null, null);
+            out.append(' ').append(Long.toString(histogram.getCount())).append('\n');
+        }
+    }
+
+    private static final class GaugeMetric extends Metric {
+        private final Gauge gauge;
+
+        private GaugeMetric(String name, String help, Gauge gauge) {
+            super(name, help);
+            this.gauge = gauge;
+        }
+
+        @Override
+        String getType() {
+            return "gauge";
+        }
+
+        @Override
+        void write(Appendable out, long[] values) throws IOException {
+            out.append(name).append(' ').append(Long.toString(gauge.getValue())).append('\n');
+        }
+    }
+}
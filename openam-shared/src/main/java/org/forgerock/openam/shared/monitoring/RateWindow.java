@@ -11,15 +11,12 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.shared.monitoring;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class maintains the rate of an event for a sample rate over a window of a particular size.
@@ -28,24 +25,23 @@ import java.util.concurrent.atomic.AtomicLong;
  * defined by the sample rate. The min, max and average will always be of the current window position, ie as the window
  * moves and sample are not covered by the window the sample will not be included in the  min, max and average
  * calculations.
+ * <br/>
+ * The window is a fixed ring of slots, one per sample period, which are reused as the window moves. Recording an
+ * event never blocks: it increments the counter of the slot for the event's period, first claiming the slot
+ * with a compare-and-set if it still holds an earlier period. Reads sum the slots without blocking writers.
  *
  * @since 12.0.0
  */
 public class RateWindow {
 
+    private static final long NO_INDEX = Long.MAX_VALUE;
+
     private final RateTimer timer;
     private final int size;
     private final long sampleRate;
-    private final ConcurrentSkipListMap<Long, AtomicLong> window = new ConcurrentSkipListMap<Long, AtomicLong>();
-    private final Comparator<AtomicLong> atomicLongComparator = new Comparator<AtomicLong>() {
-
-        @Override
-        public int compare(AtomicLong rate, AtomicLong rate2) {
-            long x = rate.get();
-            long y = rate2.get();
-            return x > y ? 1 : x < y ? -1 : 0;
-        }
-    };
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong firstIndex = new AtomicLong(NO_INDEX);
+    private final AtomicLong lastIndex = new AtomicLong(Long.MIN_VALUE);
 
     /**
      * Constructs a new instance of the RateWindow.
@@ -58,6 +54,7 @@ public class RateWindow {
         this.timer = timer;
         this.size = size;
         this.sampleRate = sampleRate;
+        this.slots = new AtomicReferenceArray<>(size);
     }
 
     /**
@@ -69,37 +66,63 @@ public class RateWindow {
         long index = getIndexForTimestamp(timestamp);
 
         if (isWithinWindow(index)) {
-            AtomicLong rate = window.get(index);
-            if (rate == null) {
-                //fill in the RateWindow until the current index
-                fillInWindow(index - 1);
-                rate = new AtomicLong(0);
-                AtomicLong previousValue = window.putIfAbsent(index, rate);
-                if (previousValue == null) {
-                    //this is a new entry, hence we should clear out old entries to prevent memory leak
-                    window.headMap(window.lastKey() - size, true).clear();
-                } else {
-                    rate = previousValue;
-                }
+            long last = moveTo(index);
+            if (index <= last - size) {
+                // the window has already moved past this index
+                return;
+            }
+            long first = firstIndex.get();
+            while (index < first && !firstIndex.compareAndSet(first, index)) {
+                first = firstIndex.get();
+            }
+            Slot slot = claimSlot(index);
+            if (slot != null) {
+                slot.count.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Moves the end of the window up to the given index, if it is not already beyond it.
+     *
+     * @param index The index of an event.
+     * @return The index of the end of the window.
+     */
+    private long moveTo(long index) {
+        long last = lastIndex.get();
+        while (index > last) {
+            if (lastIndex.compareAndSet(last, index)) {
+                return index;
             }
-            rate.incrementAndGet();
+            last = lastIndex.get();
         }
+        return last;
     }
 
     /**
-     * Fills in the windows with 0 values until the index provided. This ensures that there are no empty spots between
-     * the indexes, so the information stored in the window actually represents a rolling window of data.
+     * Gets the slot for the given index, replacing the slot of an earlier index which occupied the same position.
      *
-     * @param index The index until which the window should be filled. The entry corresponding to the provided index
-     * will be also initialized
+     * @param index The index.
+     * @return The slot, or {@code null} if the position has already been reused by a later index, in which case the
+     * given index is no longer covered by the window.
      */
-    private void fillInWindow(long index) {
-        if (!window.isEmpty()) {
-            Long lastKey = window.lastKey();
-            for (lastKey = lastKey + 1; lastKey <= index; lastKey++) {
-                window.putIfAbsent(lastKey, new AtomicLong(0));
+    private Slot claimSlot(long index) {
+        int position = getPosition(index);
+        Slot created = null;
+        while (true) {
+            Slot slot = slots.get(position);
+            if (slot != null && slot.index == index) {
+                return slot;
+            }
+            if (slot != null && slot.index > index) {
+                return null;
+            }
+            if (created == null) {
+                created = new Slot(index);
+            }
+            if (slots.compareAndSet(position, slot, created)) {
+                return created;
             }
-            window.headMap(window.lastKey() - size, true).clear();
         }
     }
 
@@ -111,26 +134,28 @@ public class RateWindow {
      *
      * @return The average event rate.
      */
-    public synchronized double getAverageRate() {
-        if (window.isEmpty()) {
+    public double getAverageRate() {
+        long first = firstIndex.get();
+        if (first == NO_INDEX) {
             return 0D;
         }
 
-        fillInWindow(getCurrentIndex());
+        long currentIndex = getCurrentIndex();
+        long last = Math.max(lastIndex.get(), currentIndex);
+        long from = Math.max(first, last - size + 1);
         double averageRate = 0;
-        for (Map.Entry<Long, AtomicLong> entry : window.entrySet()) {
-            if (entry.getKey().equals(getCurrentIndex())) {
+        for (long index = from; index <= last; index++) {
+            if (index == currentIndex) {
                 /*
                  * If this is true then the latest window slot has not completed so the rate in it will not be
                  * accurate so skip it.
                  */
                 continue;
             }
-            averageRate += entry.getValue().get();
+            averageRate += getCount(index);
         }
 
-        return averageRate / window.size();
-
+        return averageRate / (last - from + 1);
     }
 
     /**
@@ -139,12 +164,17 @@ public class RateWindow {
      * @return The minimum event rate.
      */
     public long getMinRate() {
-        if (window.isEmpty()) {
+        long first = firstIndex.get();
+        if (first == NO_INDEX) {
             return 0L;
         }
 
-        fillInWindow(getCurrentIndex());
-        return Collections.min(window.values(), atomicLongComparator).get();
+        long last = Math.max(lastIndex.get(), getCurrentIndex());
+        long min = Long.MAX_VALUE;
+        for (long index = Math.max(first, last - size + 1); index <= last; index++) {
+            min = Math.min(min, getCount(index));
+        }
+        return min;
     }
 
     /**
@@ -153,12 +183,26 @@ public class RateWindow {
      * @return The maximum event rate.
      */
     public long getMaxRate() {
-        if (window.isEmpty()) {
+        long first = firstIndex.get();
+        if (first == NO_INDEX) {
             return 0L;
         }
 
-        fillInWindow(getCurrentIndex());
-        return Collections.max(window.values(), atomicLongComparator).get();
+        long last = Math.max(lastIndex.get(), getCurrentIndex());
+        long max = 0L;
+        for (long index = Math.max(first, last - size + 1); index <= last; index++) {
+            max = Math.max(max, getCount(index));
+        }
+        return max;
+    }
+
+    private long getCount(long index) {
+        Slot slot = slots.get(getPosition(index));
+        return slot != null && slot.index == index ? slot.count.get() : 0L;
+    }
+
+    private int getPosition(long index) {
+        return (int) (((index % size) + size) % size);
     }
 
     /**
@@ -178,4 +222,16 @@ public class RateWindow {
     private boolean isWithinWindow(final long index) {
         return getCurrentIndex() - size < index;
     }
+
+    /**
+     * The events counted for one sample period.
+     */
+    private static final class Slot {
+        private final long index;
+        private final AtomicLong count = new AtomicLong();
+
+        private Slot(long index) {
+            this.index = index;
+        }
+    }
 }
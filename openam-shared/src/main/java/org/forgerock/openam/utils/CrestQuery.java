@@ -32,6 +32,8 @@ public class CrestQuery {
     private final String queryId;
     private final QueryFilter<JsonPointer> queryFilter;
     private final List<JsonPointer> fields;
+    private final int pageSize;
+    private final String pagedResultsCookie;
 
     /**
      * Constructs a new CrestQuery instance with the specified query id.
@@ -59,9 +61,27 @@ public class CrestQuery {
      * @param fields The fields to return in the query results.
      */
     public CrestQuery(String queryId, QueryFilter<JsonPointer> queryFilter, List<JsonPointer> fields) {
+        this(queryId, queryFilter, fields, 0, null);
+    }
+
+    /**
+     * Constructs a new CrestQuery instance which requests a single page of results. Identity repositories which
+     * support paging return the cookie identifying the next page alongside the results, repositories which do not
+     * return all the results at once.
+     *
+     * @param queryId The query ID.
+     * @param queryFilter The query filter.
+     * @param fields The fields to return in the query results.
+     * @param pageSize The number of results to return in the page, or zero to return all the results.
+     * @param pagedResultsCookie The cookie returned with the previous page, or {@code null} for the first page.
+     */
+    public CrestQuery(String queryId, QueryFilter<JsonPointer> queryFilter, List<JsonPointer> fields, int pageSize,
+            String pagedResultsCookie) {
         this.queryId = queryId;
         this.queryFilter = queryFilter;
         this.fields = fields;
+        this.pageSize = Math.max(0, pageSize);
+        this.pagedResultsCookie = pagedResultsCookie;
     }
 
     /**
@@ -94,6 +114,42 @@ public class CrestQuery {
         return fields;
     }
 
+    /**
+     * Gets the number of results requested in a page.
+     *
+     * @return The page size, or zero if all the results should be returned.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Gets the cookie identifying the page of results to return.
+     *
+     * @return The paged results cookie, or {@code null} if the first page should be returned.
+     */
+    public String getPagedResultsCookie() {
+        return pagedResultsCookie;
+    }
+
+    /**
+     * Determines if the CREST query requests a single page of results.
+     *
+     * @return true if the object contains a page size.
+     */
+    public boolean isPaged() {
+        return pageSize > 0;
+    }
+
+    /**
+     * Returns a copy of this query which requests all the results rather than a single page.
+     *
+     * @return This query if it is not paged, otherwise an equivalent query without the page size and cookie.
+     */
+    public CrestQuery withoutPaging() {
+        return isPaged() ? new CrestQuery(queryId, queryFilter, fields) : this;
+    }
+
     /**
      * Determines if the CREST query is based on a query id.
      *
@@ -124,6 +180,8 @@ public class CrestQuery {
                 + "queryId='" + queryId + '\''
                 + ", queryFilter=" + queryFilter
                 + ", fields=" + fields
+                + ", pageSize=" + pageSize
+                + ", pagedResultsCookie='" + pagedResultsCookie + '\''
                 + '}';
     }
 }
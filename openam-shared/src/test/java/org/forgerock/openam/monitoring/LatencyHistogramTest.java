@@ -0,0 +1,215 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openam.shared.monitoring.LatencyHistogram;
+import org.forgerock.openam.shared.monitoring.RateTimer;
+import org.forgerock.openam.shared.monitoring.RateWindow;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldReturnZeroWhenEmpty() {
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        long median = histogram.getValueAtPercentile(50);
+
+        //Then
+        assertThat(median).isEqualTo(0L);
+        assertThat(histogram.getCount()).isEqualTo(0L);
+        assertThat(histogram.getMean()).isEqualTo(0D);
+    }
+
+    @Test
+    public void shouldRecordSmallValuesExactly() {
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        //Then
+        assertThat(histogram.getCount()).isEqualTo(10L);
+        assertThat(histogram.getSum()).isEqualTo(55L);
+        assertThat(histogram.getMax()).isEqualTo(10L);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(5L);
+        assertThat(histogram.getValueAtPercentile(90)).isEqualTo(9L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(10L);
+    }
+
+    @Test
+    public void shouldReportLargeValuesWithinPrecision() {
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        //Then
+        long p99 = histogram.getValueAtPercentile(99);
+        assertThat(p99).isGreaterThanOrEqualTo(9900L);
+        assertThat(p99).isLessThanOrEqualTo(9900L + 9900L / 32);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(10000L);
+    }
+
+    @Test
+    public void shouldRecordNegativeValuesAsZero() {
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        histogram.record(-5);
+
+        //Then
+        assertThat(histogram.getSum()).isEqualTo(0L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldRecordExtremeValues() {
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        histogram.record(Long.MAX_VALUE);
+
+        //Then
+        assertThat(histogram.getMax()).isEqualTo(Long.MAX_VALUE);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldReportValuesOfEveryMagnitude() {
+        //Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //When
+        for (int shift = 0; shift < Long.SIZE - 1; shift++) {
+            histogram.record(1L << shift);
+        }
+
+        //Then
+        assertThat(histogram.getCount()).isEqualTo(63L);
+        assertThat(histogram.getValueAtPercentile(0)).isEqualTo(1L);
+        long median = histogram.getValueAtPercentile(50);
+        assertThat(median).isGreaterThanOrEqualTo(1L << 31);
+        assertThat(median).isLessThanOrEqualTo((1L << 31) + (1L << 31) / 32);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1L << 62);
+    }
+
+    @Test
+    public void shouldCountEveryValueRecordedConcurrently() throws Exception {
+        //Given
+        final LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 4;
+        final int rounds = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        //When
+        for (int i = 0; i < threads; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < rounds; j++) {
+                        histogram.record(j);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        //Then
+        assertThat(histogram.getCount()).isEqualTo((long) threads * rounds);
+        assertThat(histogram.getMax()).isEqualTo(rounds - 1L);
+    }
+
+    @DataProvider
+    public Object[][] numThreads() {
+        return new Object[][]{
+                { 1 },
+                { 2 },
+                { 5 },
+                { 10 },
+                { 25 },
+                { 50 },
+                { 100 }
+        };
+    }
+
+    /**
+     * Tests the cost of recording an operation in a rate window and a histogram, as monitoring code does on every
+     * operation, as a factor of the number of threads.
+     * Disabled by default to avoid slowing down the build.
+     *
+     * @param numThreads the number of threads to concurrently record operations.
+     */
+    @Test(dataProvider = "numThreads", enabled = false)
+    public void testThroughPut(int numThreads) throws Exception {
+        final int roundsPerThread = 10000000 / numThreads;
+        // Given
+        final RateTimer timer = new RateTimer();
+        final RateWindow rateWindow = new RateWindow(timer, 10, 1000L);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+        // When
+        for (int i = 0; i < numThreads; ++i) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                        for (int j = 0; j < roundsPerThread; j++) {
+                            rateWindow.incrementForTimestamp(timer.now());
+                            histogram.record(j & 1023);
+                        }
+                        barrier.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        barrier.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        // Then
+        assertThat(histogram.getCount()).isEqualTo((long) numThreads * roundsPerThread);
+        System.out.printf("%d threads: %d ns per recorded operation%n", numThreads,
+                elapsed * numThreads / histogram.getCount());
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openam.shared.monitoring.LatencyHistogram;
+import org.forgerock.openam.shared.monitoring.MetricsRegistry;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry registry;
+
+    @BeforeMethod
+    public void setUp() {
+        registry = new MetricsRegistry(10);
+    }
+
+    @Test
+    public void shouldWriteCounterSeries() throws Exception {
+        //Given
+        MetricsRegistry.Counter counter = registry.counter("openam_test_total", "Test counter.", "outcome");
+        counter.increment("success");
+        counter.add(2, "success");
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("# HELP openam_test_total Test counter.\n");
+        assertThat(output).contains("# TYPE openam_test_total counter\n");
+        assertThat(output).contains("openam_test_total{outcome=\"success\"} 3\n");
+    }
+
+    @Test
+    public void shouldWriteTimerAsSummaryInSeconds() throws Exception {
+        //Given
+        MetricsRegistry.Timer timer = registry.timer("openam_test_seconds", "Test timer.", "operation");
+        timer.record(2, TimeUnit.SECONDS, "read");
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("# TYPE openam_test_seconds summary\n");
+        assertThat(output).contains("openam_test_seconds{operation=\"read\",quantile=\"0.99\"} 2.0\n");
+        assertThat(output).contains("openam_test_seconds_sum{operation=\"read\"} 2.0\n");
+        assertThat(output).contains("openam_test_seconds_count{operation=\"read\"} 1\n");
+    }
+
+    @Test
+    public void shouldWriteGaugeValue() throws Exception {
+        //Given
+        registry.gauge("openam_test_depth", "Test gauge.", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return 42L;
+            }
+        });
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("openam_test_depth 42\n");
+    }
+
+    @Test
+    public void shouldWriteLabelledGaugeSeries() throws Exception {
+        //Given
+        MetricsRegistry.LabelledGauge gauge = registry.gauge("openam_test_active", "Test gauge.", "server");
+        gauge.increment("first");
+        gauge.increment("first");
+        gauge.decrement("first");
+        gauge.increment("second");
+        gauge.decrement("second");
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("# TYPE openam_test_active gauge\n");
+        assertThat(output).contains("openam_test_active{server=\"first\"} 1\n");
+        assertThat(output).contains("openam_test_active{server=\"second\"} 0\n");
+        assertThat(gauge.getValue("first")).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldEscapeLabelValues() throws Exception {
+        //Given
+        registry.counter("openam_test_total", "Test counter.", "name").increment("a\"b\\c\nd");
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("openam_test_total{name=\"a\\\"b\\\\c\\nd\"} 1\n");
+    }
+
+    @Test
+    public void shouldReturnSameMetricWhenRegisteredTwice() {
+        //Given
+        MetricsRegistry.Counter counter = registry.counter("openam_test_total", "Test counter.", "outcome");
+
+        //When
+        MetricsRegistry.Counter again = registry.counter("openam_test_total", "Test counter.", "outcome");
+
+        //Then
+        assertThat(again).isSameAs(counter);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectMetricRegisteredAsAnotherType() {
+        //Given
+        registry.counter("openam_test", "Test counter.");
+
+        //When
+        registry.timer("openam_test", "Test timer.");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectInvalidMetricName() {
+        registry.counter("openam-test", "Test counter.");
+    }
+
+    @Test
+    public void shouldRecordValuesBeyondMaximumSeriesAsOther() {
+        //Given
+        MetricsRegistry.Counter counter = registry.counter("openam_test_total", "Test counter.", "user");
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            counter.increment("user" + i);
+        }
+
+        //Then
+        assertThat(counter.getValue("other")).isEqualTo(90L);
+    }
+
+    @Test
+    public void shouldKeepFirstGaugeRegisteredWithName() throws Exception {
+        //Given
+        MetricsRegistry.Gauge first = constantGauge(1L);
+        registry.gauge("openam_test_depth", "Test gauge.", first);
+
+        //When
+        MetricsRegistry.Gauge registered = registry.gauge("openam_test_depth", "Test gauge.", constantGauge(2L));
+
+        //Then
+        assertThat(registered).isSameAs(first);
+        assertThat(write()).contains("openam_test_depth 1\n");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectGaugeRegisteredAsAnotherType() {
+        //Given
+        registry.counter("openam_test", "Test counter.");
+
+        //When
+        registry.gauge("openam_test", "Test gauge.", constantGauge(1L));
+    }
+
+    @Test
+    public void shouldNotCreateSeriesWhenReadingValues() throws Exception {
+        //Given
+        MetricsRegistry.Counter counter = registry.counter("openam_test_total", "Test counter.", "user");
+        MetricsRegistry.Timer timer = registry.timer("openam_test_seconds", "Test timer.", "user");
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            assertThat(counter.getValue("user" + i)).isEqualTo(0L);
+            assertThat(timer.getHistogram("user" + i)).isNull();
+        }
+
+        //Then
+        assertThat(write()).doesNotContain("user=");
+        counter.increment("user0");
+        assertThat(counter.getValue("user0")).isEqualTo(1L);
+        assertThat(counter.getValue("other")).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldWriteEverySeriesOfMultipleLabels() throws Exception {
+        //Given
+        MetricsRegistry.Counter counter = registry.counter("openam_test_total", "Test counter.", "operation",
+                "outcome");
+        counter.increment("read", "success");
+        counter.increment("read", "failure");
+        counter.add(2, "delete", "success");
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("openam_test_total{operation=\"read\",outcome=\"success\"} 1\n");
+        assertThat(output).contains("openam_test_total{operation=\"read\",outcome=\"failure\"} 1\n");
+        assertThat(output).contains("openam_test_total{operation=\"delete\",outcome=\"success\"} 2\n");
+    }
+
+    @Test
+    public void shouldWriteUnlabelledCounter() throws Exception {
+        //Given
+        registry.counter("openam_test_total", "Test counter.").increment();
+
+        //When
+        String output = write();
+
+        //Then
+        assertThat(output).contains("openam_test_total 1\n");
+    }
+
+    @Test
+    public void shouldLimitTimerSeriesToMemoryBudget() {
+        //Given
+        registry = new MetricsRegistry(500, 3 * LatencyHistogram.MAX_FOOTPRINT_BYTES);
+        MetricsRegistry.Timer timer = registry.timer("openam_test_seconds", "Test timer.", "user");
+        MetricsRegistry.Counter counter = registry.counter("openam_test_total", "Test counter.", "user");
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            timer.record(i, "user" + i);
+            counter.increment("user" + i);
+        }
+
+        //Then
+        assertThat(timer.getHistogram("user2").getCount()).isEqualTo(1L);
+        assertThat(timer.getHistogram("user3")).isNull();
+        assertThat(timer.getHistogram("other").getCount()).isEqualTo(7L);
+        assertThat(counter.getValue("user9")).isEqualTo(1L);
+    }
+
+    private static MetricsRegistry.Gauge constantGauge(final long value) {
+        return new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return value;
+            }
+        };
+    }
+
+    private String write() throws Exception {
+        StringBuilder output = new StringBuilder();
+        registry.write(output);
+        return output.toString();
+    }
+}
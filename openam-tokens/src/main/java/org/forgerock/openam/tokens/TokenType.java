@@ -88,5 +88,9 @@ public enum TokenType {
     /**
      * Token type for cluster-wide notification system.
      */
-    NOTIFICATION
+    NOTIFICATION,
+    /**
+     * Token type for the cluster-wide failed authentication counters of account lockout.
+     */
+    ACCOUNT_LOCKOUT
 }
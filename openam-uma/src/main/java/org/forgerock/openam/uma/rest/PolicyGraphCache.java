@@ -0,0 +1,258 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.uma.rest;
+
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.openam.entitlement.SetupInternalNotificationSubscriptions.*;
+import static org.forgerock.openam.uma.UmaConstants.BackendPolicy.BACKEND_POLICY_RESOURCE_TYPE_KEY;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Topic;
+
+import com.sun.identity.entitlement.PolicyEventType;
+
+/**
+ * Caches the backend policies that make up the UMA policies of each resource set, so that the {@link PolicyGraph}
+ * of a resource set can be rebuilt after a share or unshare without querying the policy engine for every policy of
+ * the resource set again.
+ * <p>
+ * The cache is maintained incrementally from the responses of the policy create, update and delete operations made
+ * through the {@link PolicyResourceDelegate}. Changes made by other servers in the cluster are announced over the
+ * {@link NotificationBroker}, and invalidate the affected resource set on every other server. Every change to a policy
+ * made through any other API, such as the policy REST endpoint, is also announced by the policy engine, and
+ * invalidates the affected resource set unless the cache already holds that revision of the policy.
+ *
+ * @since 14.0.0
+ */
+@Singleton
+public class PolicyGraphCache {
+
+    static final Topic TOPIC = Topic.of("/internal/uma/policy");
+    private static final String SOURCE_KEY = "source";
+    private static final String RESOURCE_SET_KEY = "resourceSetId";
+    private static final long MAX_RESOURCE_SETS = 10000;
+    private static final long EXPIRY_MINUTES = 5;
+
+    private final Cache<String, Map<String, ResourceResponse>> resourceSetPolicies;
+    private final AtomicLong generation = new AtomicLong();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final NotificationBroker broker;
+
+    /**
+     * Creates an instance of the {@code PolicyGraphCache}.
+     *
+     * @param broker The cluster-wide notification broker.
+     */
+    @Inject
+    public PolicyGraphCache(NotificationBroker broker) {
+        this.broker = broker;
+        this.resourceSetPolicies = CacheBuilder.newBuilder()
+                .maximumSize(MAX_RESOURCE_SETS)
+                .expireAfterWrite(EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .build();
+        broker.subscribe(new InvalidationConsumer()).bindTo(TOPIC);
+        broker.subscribe(new PolicyChangeConsumer()).bindTo(TOPIC_INTERNAL_POLICY);
+    }
+
+    /**
+     * Gets copies of the cached backend policies of the given resource set.
+     *
+     * @param resourceSetId The resource set id.
+     * @return The policies, or {@code null} if the resource set is not cached.
+     */
+    public Collection<ResourceResponse> get(String resourceSetId) {
+        Map<String, ResourceResponse> policies = resourceSetPolicies.getIfPresent(resourceSetId);
+        if (policies == null) {
+            return null;
+        }
+        List<ResourceResponse> copies = new ArrayList<>();
+        for (ResourceResponse policy : policies.values()) {
+            copies.add(copy(policy));
+        }
+        return copies;
+    }
+
+    /**
+     * Gets the current generation of the cache, which changes whenever any cached policy changes. A caller loading
+     * the policies of a resource set must read the generation before starting to load, and pass it to
+     * {@link #populate(String, Collection, long)}.
+     *
+     * @return The current generation.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches the complete set of backend policies for the given resource set, unless any policy has changed since
+     * the given generation, in which case the loaded policies may already be stale and are discarded.
+     *
+     * @param resourceSetId The resource set id.
+     * @param policies All of the backend policies of the resource set.
+     * @param loadGeneration The generation read before the policies were loaded.
+     */
+    public void populate(String resourceSetId, Collection<ResourceResponse> policies, long loadGeneration) {
+        Map<String, ResourceResponse> entry = new ConcurrentHashMap<>();
+        for (ResourceResponse policy : policies) {
+            entry.put(policy.getId(), copy(policy));
+        }
+        synchronized (generation) {
+            if (generation.get() == loadGeneration) {
+                resourceSetPolicies.put(resourceSetId, entry);
+            }
+        }
+    }
+
+    /**
+     * Applies created or updated backend policies to any cached resource sets they belong to.
+     *
+     * @param policies The created or updated policies.
+     */
+    public void policiesChanged(Collection<ResourceResponse> policies) {
+        for (ResourceResponse policy : policies) {
+            apply(policy, false);
+        }
+    }
+
+    /**
+     * Removes deleted backend policies from any cached resource sets they belonged to.
+     *
+     * @param policies The deleted policies.
+     */
+    public void policiesDeleted(Collection<ResourceResponse> policies) {
+        for (ResourceResponse policy : policies) {
+            apply(policy, true);
+        }
+    }
+
+    private void apply(ResourceResponse policy, boolean deleted) {
+        String resourceSetId = policy.getContent().get(BACKEND_POLICY_RESOURCE_TYPE_KEY).asString();
+        if (resourceSetId == null) {
+            invalidate(null);
+            return;
+        }
+        synchronized (generation) {
+            generation.incrementAndGet();
+            Map<String, ResourceResponse> cached = resourceSetPolicies.getIfPresent(resourceSetId);
+            if (cached != null && deleted) {
+                cached.remove(policy.getId());
+            } else if (cached != null) {
+                cached.put(policy.getId(), copy(policy));
+            }
+        }
+        publish(resourceSetId);
+    }
+
+    /**
+     * Removes the given resource set from the cache on every server in the cluster.
+     *
+     * @param resourceSetId The resource set id, or {@code null} to invalidate all resource sets.
+     */
+    public void invalidate(String resourceSetId) {
+        invalidateLocally(resourceSetId);
+        publish(resourceSetId);
+    }
+
+    private void invalidateLocally(String resourceSetId) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            if (resourceSetId == null) {
+                resourceSetPolicies.invalidateAll();
+            } else {
+                resourceSetPolicies.invalidate(resourceSetId);
+            }
+        }
+    }
+
+    /**
+     * Invalidates a resource set which holds a policy changed through the policy engine, unless the change has already
+     * been applied to the cached resource set.
+     */
+    private void policyStoreChanged(String resourceSetId, String policyName, String revision,
+            PolicyEventType eventType) {
+        synchronized (generation) {
+            Map<String, ResourceResponse> cached = resourceSetPolicies.getIfPresent(resourceSetId);
+            if (cached == null) {
+                return;
+            }
+            ResourceResponse policy = cached.get(policyName);
+            boolean applied = eventType == PolicyEventType.DELETE
+                    ? policy == null
+                    : policy != null && revision != null && revision.equals(policy.getRevision());
+            if (!applied) {
+                generation.incrementAndGet();
+                resourceSetPolicies.invalidate(resourceSetId);
+            }
+        }
+    }
+
+    private static ResourceResponse copy(ResourceResponse policy) {
+        return newResourceResponse(policy.getId(), policy.getRevision(), policy.getContent().copy());
+    }
+
+    private void publish(String resourceSetId) {
+        broker.publish(TOPIC, json(object(field(SOURCE_KEY, instanceId), field(RESOURCE_SET_KEY, resourceSetId))));
+    }
+
+    private final class InvalidationConsumer implements Consumer {
+
+        @Override
+        public void accept(JsonValue notification) {
+            if (!instanceId.equals(notification.get(SOURCE_KEY).asString())) {
+                invalidateLocally(notification.get(RESOURCE_SET_KEY).asString());
+            }
+        }
+    }
+
+    /**
+     * Consumes the notifications published by the policy engine for every policy change.
+     */
+    private final class PolicyChangeConsumer implements Consumer {
+
+        @Override
+        public void accept(JsonValue notification) {
+            JsonValue eventType = notification.get(MESSAGE_ATTR_EVENT_TYPE);
+            String policyName = notification.get(MESSAGE_ATTR_NAME).asString();
+            if (eventType.isNull() || policyName == null) {
+                return;
+            }
+            PolicyEventType type = PolicyEventType.valueOf(eventType.asString());
+            String revision = notification.get(MESSAGE_ATTR_REVISION).asString();
+            for (JsonValue resourceSetId : notification.get(MESSAGE_ATTR_RESOURCE_TYPES)) {
+                policyStoreChanged(resourceSetId.asString(), policyName, revision, type);
+            }
+        }
+    }
+}
@@ -16,7 +16,9 @@
 
 package org.forgerock.openam.uma.rest;
 
+import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.openam.uma.UmaConstants.UMA_BACKEND_POLICY_RESOURCE_HANDLER;
+import static org.forgerock.openam.uma.UmaConstants.BackendPolicy.BACKEND_POLICY_RESOURCE_TYPE_KEY;
 import static org.forgerock.util.promise.Promises.newExceptionPromise;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
@@ -27,8 +29,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.forgerock.services.context.Context;
+import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
@@ -37,11 +41,14 @@ import org.forgerock.json.resource.RequestHandler;
 import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.Responses;
 import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Pair;
+import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
 import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.query.QueryFilter;
 
 /**
  * Delegate that provide methods to create, update, delete and query sets of underlying backend policies.
@@ -52,15 +59,19 @@ import org.forgerock.util.promise.ResultHandler;
 public class PolicyResourceDelegate {
 
     private final RequestHandler policyResource;
+    private final PolicyGraphCache policyGraphCache;
 
     /**
      * Constructs an instance of the {@code PolicyResourceDelegate}.
      *
      * @param policyResource An instance of the backend policy resource.
+     * @param policyGraphCache The cache of the backend policies of each resource set.
      */
     @Inject
-    public PolicyResourceDelegate(@Named(UMA_BACKEND_POLICY_RESOURCE_HANDLER) RequestHandler policyResource) {
+    public PolicyResourceDelegate(@Named(UMA_BACKEND_POLICY_RESOURCE_HANDLER) RequestHandler policyResource,
+            PolicyGraphCache policyGraphCache) {
         this.policyResource = policyResource;
+        this.policyGraphCache = policyGraphCache;
     }
 
     /**
@@ -95,9 +106,11 @@ public class PolicyResourceDelegate {
                 .thenAsync(new AsyncFunction<List<ResourceResponse>, List<ResourceResponse>, ResourceException>() {
                     @Override
                     public Promise<List<ResourceResponse>, ResourceException> apply(List<ResourceResponse> value) {
+                        policyGraphCache.policiesChanged(value);
                         return newResultPromise(value);
                     }
-                }, new UmaPolicyCreateFailureHandler(context, policyIds));
+                }, new UmaPolicyCreateFailureHandler(context, policyIds))
+                .thenOnException(invalidatePolicyGraphCache());
     }
 
     /**
@@ -118,7 +131,14 @@ public class PolicyResourceDelegate {
             String policyName = policy.get("name").asString();
             promises.add(policyResource.handleUpdate(context, Requests.newUpdateRequest(policyName, policy)));
         }
-        return Promises.when(promises);
+        return Promises.when(promises)
+                .thenOnResult(new ResultHandler<List<ResourceResponse>>() {
+                    @Override
+                    public void handleResult(List<ResourceResponse> result) {
+                        policyGraphCache.policiesChanged(result);
+                    }
+                })
+                .thenOnException(invalidatePolicyGraphCache());
     }
 
     /**
@@ -178,7 +198,69 @@ public class PolicyResourceDelegate {
         for (String policyId : policyIds) {
             promises.add(policyResource.handleDelete(context, Requests.newDeleteRequest(policyId)));
         }
-        return Promises.when(promises);
+        return Promises.when(promises)
+                .thenOnResult(new ResultHandler<List<ResourceResponse>>() {
+                    @Override
+                    public void handleResult(List<ResourceResponse> result) {
+                        policyGraphCache.policiesDeleted(result);
+                    }
+                })
+                .thenOnException(invalidatePolicyGraphCache());
+    }
+
+    /**
+     * Queries all of the underlying backend policies of a resource set, from the {@link PolicyGraphCache} if the
+     * resource set is cached there, otherwise from the backend policies, caching the result.
+     *
+     * @param context The request context.
+     * @param resourceSetId The id of the resource set.
+     * @param resultHandler The handler for results.
+     * @return A promise containing the {@code QueryResult} or a {@code ResourceException} if the query failed.
+     */
+    public Promise<QueryResponse, ResourceException> queryResourceSetPolicies(Context context,
+            final String resourceSetId, final QueryResourceHandler resultHandler) {
+        Collection<ResourceResponse> cached = policyGraphCache.get(resourceSetId);
+        if (cached != null) {
+            for (ResourceResponse policy : cached) {
+                resultHandler.handleResource(policy);
+            }
+            return newResultPromise(newQueryResponse());
+        }
+
+        final long generation = policyGraphCache.getGeneration();
+        final List<ResourceResponse> policies = new ArrayList<>();
+        final AtomicBoolean complete = new AtomicBoolean(true);
+        QueryRequest request = Requests.newQueryRequest("")
+                .setQueryFilter(QueryFilter.equalTo(new JsonPointer(BACKEND_POLICY_RESOURCE_TYPE_KEY), resourceSetId));
+        return policyResource.handleQuery(context, request, new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(ResourceResponse resource) {
+                policies.add(Responses.newResourceResponse(resource.getId(), resource.getRevision(),
+                        resource.getContent().copy()));
+                if (!resultHandler.handleResource(resource)) {
+                    complete.set(false);
+                    return false;
+                }
+                return true;
+            }
+        }).thenOnResult(new ResultHandler<QueryResponse>() {
+            @Override
+            public void handleResult(QueryResponse result) {
+                if (complete.get()) {
+                    policyGraphCache.populate(resourceSetId, policies, generation);
+                }
+            }
+        });
+    }
+
+    private ExceptionHandler<ResourceException> invalidatePolicyGraphCache() {
+        return new ExceptionHandler<ResourceException>() {
+            @Override
+            public void handleException(ResourceException e) {
+                // Some of the policies may have been changed before the failure, so the cache can't be trusted.
+                policyGraphCache.invalidate(null);
+            }
+        };
     }
 
     /**
@@ -67,9 +67,11 @@ import org.forgerock.openam.utils.OpenAMSettingsImpl;
 import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
+import org.forgerock.util.promise.ResultHandler;
 import org.forgerock.util.query.QueryFilter;
 
 import com.iplanet.sso.SSOException;
@@ -107,7 +109,7 @@ public class UmaPolicyApplicationListener implements IdEventListener {
     private final RequestHandler policyResource;
     private final ResourceSetStoreFactory resourceSetStoreFactory;
     private final SessionCache sessionCache;
-
+    private final PolicyGraphCache policyGraphCache;
 
     private static final int NO_ACTION =  1;
     private static final int CREATE_UMA_APPLICATION = 2;
@@ -121,19 +123,22 @@ public class UmaPolicyApplicationListener implements IdEventListener {
      * @param policyResource An instance of the policy backend {@code PromisedRequestHandler}.
      * @param resourceSetStoreFactory An instance of the {@code ResourceSetStoreFactory}.
      * @param sessionCache The cache of session instances.
+     * @param policyGraphCache The cache of the backend policies of each resource set.
      */
     @Inject
     public UmaPolicyApplicationListener(final AMIdentityRepositoryFactory idRepoFactory,
             ApplicationServiceFactory applicationServiceFactory,
             ApplicationTypeManagerWrapper applicationTypeManagerWrapper,
             @Named(UMA_BACKEND_POLICY_RESOURCE_HANDLER) RequestHandler policyResource,
-            ResourceSetStoreFactory resourceSetStoreFactory, SessionCache sessionCache) {
+            ResourceSetStoreFactory resourceSetStoreFactory, SessionCache sessionCache,
+            PolicyGraphCache policyGraphCache) {
         this.idRepoFactory = idRepoFactory;
         this.applicationServiceFactory = applicationServiceFactory;
         this.applicationTypeManagerWrapper = applicationTypeManagerWrapper;
         this.policyResource = policyResource;
         this.resourceSetStoreFactory = resourceSetStoreFactory;
         this.sessionCache = sessionCache;
+        this.policyGraphCache = policyGraphCache;
     }
 
     /**
@@ -304,7 +309,8 @@ public class UmaPolicyApplicationListener implements IdEventListener {
         }
     }
 
-    private void deletePolicies(String realm, String resourceServerId) throws RealmLookupException {
+    @VisibleForTesting
+    void deletePolicies(String realm, String resourceServerId) throws RealmLookupException {
         RealmContext realmContext = new RealmContext(new RootContext(), Realm.of(realm));
         final Context context = new AdminSubjectContext(logger, sessionCache, realmContext);
         QueryRequest request = Requests.newQueryRequest("")
@@ -329,10 +335,17 @@ public class UmaPolicyApplicationListener implements IdEventListener {
                         return when;
                     }
                 })
+                .thenOnResult(new ResultHandler<List<ResourceResponse>>() {
+                    @Override
+                    public void handleResult(List<ResourceResponse> deleted) {
+                        policyGraphCache.policiesDeleted(resources);
+                    }
+                })
                 .thenOnException(new ExceptionHandler<ResourceException>() {
                     @Override
                     public void handleException(ResourceException error) {
                         logger.error(error.getReason());
+                        policyGraphCache.invalidate(null);
                     }
                 });
     }
@@ -344,6 +357,7 @@ public class UmaPolicyApplicationListener implements IdEventListener {
         Set<ResourceSetDescription> results = resourceSetStore.query(queryFilter);
         for (ResourceSetDescription resourceSet : results) {
             resourceSetStore.delete(resourceSet.getId(), resourceSet.getResourceOwnerId());
+            policyGraphCache.invalidate(resourceSet.getId());
         }
     }
 
@@ -324,10 +324,8 @@ public class UmaPolicyServiceImpl implements UmaPolicyService {
 
         @Override
         public Promise<T, ResourceException> apply(final T result) {
-            final QueryRequest queryRequest = Requests.newQueryRequest("")
-                    .setQueryFilter(QueryFilter.equalTo(new JsonPointer("resourceTypeUuid"), resourceSet.getId()));
             final PolicyGraph policyGraph = new PolicyGraph(resourceSet);
-            return policyResourceDelegate.queryPolicies(context, queryRequest, policyGraph)
+            return policyResourceDelegate.queryResourceSetPolicies(context, resourceSet.getId(), policyGraph)
                     .thenOnException(policyGraph).thenOnResult(policyGraph)
                     .thenAsync(new AsyncFunction<QueryResponse, T, ResourceException>() {
                         @Override
@@ -58,6 +58,7 @@ public class UmaResourceSetRegistrationHook implements ResourceSetRegistrationHo
     private final ApplicationServiceFactory applicationServiceFactory;
     private final UmaPolicyService policyService;
     private final SessionCache sessionCache;
+    private final PolicyGraphCache policyGraphCache;
 
     /**
      * Creates a new UmaResourceSetRegistrationHook instance.
@@ -65,15 +66,17 @@ public class UmaResourceSetRegistrationHook implements ResourceSetRegistrationHo
      * @param applicationServiceFactory An instance of the {@code ApplicationServiceFactory}.
      * @param policyService An instance of the {@code UmaPolicyService}.
      * @param sessionCache An instance of the {@code SessionCache}.
+     * @param policyGraphCache An instance of the {@code PolicyGraphCache}.
      */
     @Inject
     public UmaResourceSetRegistrationHook(ResourceTypeService resourceTypeService,
             ApplicationServiceFactory applicationServiceFactory, UmaPolicyService policyService,
-            SessionCache sessionCache) throws EntitlementException{
+            SessionCache sessionCache, PolicyGraphCache policyGraphCache) throws EntitlementException{
         this.resourceTypeService = resourceTypeService;
         this.applicationServiceFactory = applicationServiceFactory;
         this.policyService = policyService;
         this.sessionCache = sessionCache;
+        this.policyGraphCache = policyGraphCache;
     }
 
     /**
@@ -140,6 +143,7 @@ public class UmaResourceSetRegistrationHook implements ResourceSetRegistrationHo
 
         try {
             policyService.deletePolicy(createAdminContext(realm, resourceSet.getResourceOwnerId()), resourceSet.getId());
+            policyGraphCache.invalidate(resourceSet.getId());
 
             resourceTypeService.deleteResourceType(adminSubject, realm, resourceTypeUUID);
         } catch (EntitlementException e) {
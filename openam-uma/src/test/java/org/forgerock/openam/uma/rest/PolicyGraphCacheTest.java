@@ -0,0 +1,183 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.uma.rest;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.openam.entitlement.SetupInternalNotificationSubscriptions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Subscription;
+import org.forgerock.openam.notifications.Topic;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PolicyGraphCacheTest {
+
+    private NotificationBroker broker;
+    private Consumer consumer;
+    private Consumer policyConsumer;
+    private PolicyGraphCache cache;
+
+    @BeforeMethod
+    public void setup() {
+        broker = mock(NotificationBroker.class);
+        Subscription subscription = mock(Subscription.class);
+        given(subscription.bindTo(any(Topic.class))).willReturn(subscription);
+        ArgumentCaptor<Consumer> consumerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        given(broker.subscribe(consumerCaptor.capture())).willReturn(subscription);
+
+        cache = new PolicyGraphCache(broker);
+        consumer = consumerCaptor.getAllValues().get(0);
+        policyConsumer = consumerCaptor.getAllValues().get(1);
+    }
+
+    @Test
+    public void shouldReturnNullWhenResourceSetNotCached() {
+        assertThat(cache.get("RESOURCE_SET_ID")).isNull();
+    }
+
+    @Test
+    public void shouldApplyCreatedUpdatedAndDeletedPoliciesToCachedResourceSet() {
+        //Given
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), cache.getGeneration());
+
+        //When
+        cache.policiesChanged(singletonList(policy("ID_2", "read")));
+        cache.policiesChanged(singletonList(policy("ID_1", "write")));
+        cache.policiesDeleted(singletonList(policy("ID_2", "read")));
+
+        //Then
+        Collection<ResourceResponse> policies = cache.get("RESOURCE_SET_ID");
+        assertThat(policies).hasSize(1);
+        ResourceResponse policy = policies.iterator().next();
+        assertThat(policy.getId()).isEqualTo("ID_1");
+        assertThat(policy.getContent().get("actionValues").isDefined("write")).isTrue();
+    }
+
+    @Test
+    public void shouldReturnCopiesOfCachedPolicies() {
+        //Given
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), cache.getGeneration());
+
+        //When
+        cache.get("RESOURCE_SET_ID").iterator().next().getContent().get("actionValues").remove("read");
+
+        //Then
+        ResourceResponse policy = cache.get("RESOURCE_SET_ID").iterator().next();
+        assertThat(policy.getContent().get("actionValues").isDefined("read")).isTrue();
+    }
+
+    @Test
+    public void shouldNotPopulateWhenPoliciesChangedDuringLoad() {
+        //Given
+        long generation = cache.getGeneration();
+        cache.policiesChanged(singletonList(policy("ID_2", "read")));
+
+        //When
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), generation);
+
+        //Then
+        assertThat(cache.get("RESOURCE_SET_ID")).isNull();
+    }
+
+    @Test
+    public void shouldInvalidateResourceSetOnNotificationFromAnotherServer() {
+        //Given
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), cache.getGeneration());
+
+        //When
+        consumer.accept(json(object(field("source", "another-server"), field("resourceSetId", "RESOURCE_SET_ID"))));
+
+        //Then
+        assertThat(cache.get("RESOURCE_SET_ID")).isNull();
+    }
+
+    @Test
+    public void shouldPublishChangesToOtherServers() {
+        //When
+        cache.policiesChanged(singletonList(policy("ID_1", "read")));
+
+        //Then
+        verify(broker).publish(eq(PolicyGraphCache.TOPIC), any(JsonValue.class));
+    }
+
+    @Test
+    public void shouldInvalidateResourceSetWhenPolicyChangedThroughAnotherApi() {
+        //Given
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), cache.getGeneration());
+
+        //When
+        policyConsumer.accept(policyNotification("ID_1", "2", "UPDATE"));
+
+        //Then
+        assertThat(cache.get("RESOURCE_SET_ID")).isNull();
+    }
+
+    @Test
+    public void shouldInvalidateResourceSetWhenPolicyDeletedThroughAnotherApi() {
+        //Given
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), cache.getGeneration());
+
+        //When
+        policyConsumer.accept(policyNotification("ID_1", "2", "DELETE"));
+
+        //Then
+        assertThat(cache.get("RESOURCE_SET_ID")).isNull();
+    }
+
+    @Test
+    public void shouldKeepResourceSetWhenPolicyChangeAlreadyApplied() {
+        //Given
+        cache.populate("RESOURCE_SET_ID", singletonList(policy("ID_1", "read")), cache.getGeneration());
+        cache.policiesDeleted(singletonList(policy("ID_1", "read")));
+        cache.policiesChanged(singletonList(policy("ID_2", "write")));
+
+        //When
+        policyConsumer.accept(policyNotification("ID_1", "2", "DELETE"));
+        policyConsumer.accept(policyNotification("ID_2", "1", "CREATE"));
+
+        //Then
+        assertThat(cache.get("RESOURCE_SET_ID")).hasSize(1);
+    }
+
+    private JsonValue policyNotification(String name, String revision, String eventType) {
+        return json(object(
+                field(MESSAGE_ATTR_REALM, "/"),
+                field(MESSAGE_ATTR_NAME, name),
+                field(MESSAGE_ATTR_RESOURCE_TYPES, singletonList("RESOURCE_SET_ID")),
+                field(MESSAGE_ATTR_REVISION, revision),
+                field(MESSAGE_ATTR_EVENT_TYPE, eventType)));
+    }
+
+    private ResourceResponse policy(String id, String scope) {
+        return newResourceResponse(id, "1", json(object(
+                field("resourceTypeUuid", "RESOURCE_SET_ID"),
+                field("actionValues", Collections.singletonMap(scope, true)))));
+    }
+}
@@ -18,12 +18,15 @@ package org.forgerock.openam.uma.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -34,6 +37,7 @@ import org.forgerock.json.resource.CreateRequest;
 import org.forgerock.json.resource.DeleteRequest;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.RequestHandler;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
@@ -43,6 +47,8 @@ import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -51,12 +57,14 @@ public class PolicyResourceDelegateTest {
     private PolicyResourceDelegate delegate;
 
     private RequestHandler policyResource;
+    private PolicyGraphCache policyGraphCache;
 
     @BeforeMethod
     public void setup() {
         policyResource = mock(RequestHandler.class);
+        policyGraphCache = mock(PolicyGraphCache.class);
 
-        delegate = new PolicyResourceDelegate(policyResource);
+        delegate = new PolicyResourceDelegate(policyResource, policyGraphCache);
     }
 
     @Test
@@ -247,6 +255,52 @@ public class PolicyResourceDelegateTest {
         verify(policyResource).handleQuery(context, request, handler);
     }
 
+    @Test
+    public void shouldQueryResourceSetPoliciesFromCacheWhenCached() throws ResourceException {
+
+        //Given
+        Context context = mock(Context.class);
+        QueryResourceHandler handler = mock(QueryResourceHandler.class);
+        ResourceResponse policy = newResourceResponse("ID_1", null, json(object()));
+        given(policyGraphCache.get("RESOURCE_SET_ID")).willReturn(Collections.singletonList(policy));
+
+        //When
+        delegate.queryResourceSetPolicies(context, "RESOURCE_SET_ID", handler);
+
+        //Then
+        verify(handler).handleResource(policy);
+        verifyZeroInteractions(policyResource);
+    }
+
+    @Test
+    public void shouldQueryAndCacheResourceSetPoliciesWhenNotCached() throws ResourceException {
+
+        //Given
+        final Context context = mock(Context.class);
+        QueryResourceHandler handler = mock(QueryResourceHandler.class);
+        final ResourceResponse policy = newResourceResponse("ID_1", "REVISION_1",
+                json(object(field("resourceTypeUuid", "RESOURCE_SET_ID"))));
+        given(policyGraphCache.getGeneration()).willReturn(3L);
+        given(handler.handleResource(any(ResourceResponse.class))).willReturn(true);
+        given(policyResource.handleQuery(eq(context), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .willAnswer(new Answer<Promise<QueryResponse, ResourceException>>() {
+                    @Override
+                    public Promise<QueryResponse, ResourceException> answer(InvocationOnMock invocation) {
+                        ((QueryResourceHandler) invocation.getArguments()[2]).handleResource(policy);
+                        return Promises.newResultPromise(newQueryResponse());
+                    }
+                });
+
+        //When
+        delegate.queryResourceSetPolicies(context, "RESOURCE_SET_ID", handler);
+
+        //Then
+        verify(handler).handleResource(policy);
+        ArgumentCaptor<Collection> cachedCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(policyGraphCache).populate(eq("RESOURCE_SET_ID"), cachedCaptor.capture(), eq(3L));
+        assertThat(cachedCaptor.getValue()).hasSize(1);
+    }
+
     @Test
     public void shouldDeletePolicies() throws ResourceException {
 
@@ -0,0 +1,136 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.uma.rest;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.json.resource.RequestHandler;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openam.core.realms.RealmTestHelper;
+import org.forgerock.openam.entitlement.rest.wrappers.ApplicationTypeManagerWrapper;
+import org.forgerock.openam.entitlement.service.ApplicationServiceFactory;
+import org.forgerock.openam.identity.idm.AMIdentityRepositoryFactory;
+import org.forgerock.openam.notifications.Consumer;
+import org.forgerock.openam.notifications.NotificationBroker;
+import org.forgerock.openam.notifications.Subscription;
+import org.forgerock.openam.notifications.Topic;
+import org.forgerock.openam.oauth2.resources.ResourceSetStoreFactory;
+import org.forgerock.openam.session.SessionCache;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class UmaPolicyApplicationListenerTest {
+
+    private static final ResourceResponse POLICY_ONE = policy("ID_1");
+    private static final ResourceResponse POLICY_TWO = policy("ID_2");
+
+    private RealmTestHelper realmTestHelper;
+    private RequestHandler policyResource;
+    private PolicyGraphCache policyGraphCache;
+    private UmaPolicyApplicationListener listener;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        realmTestHelper = new RealmTestHelper();
+        realmTestHelper.setupRealmClass();
+
+        NotificationBroker broker = mock(NotificationBroker.class);
+        Subscription subscription = mock(Subscription.class);
+        given(subscription.bindTo(any(Topic.class))).willReturn(subscription);
+        given(broker.subscribe(any(Consumer.class))).willReturn(subscription);
+        policyGraphCache = new PolicyGraphCache(broker);
+
+        policyResource = mock(RequestHandler.class);
+        given(policyResource.handleQuery(any(Context.class), any(QueryRequest.class),
+                any(QueryResourceHandler.class))).willAnswer(new Answer<Promise<QueryResponse, ResourceException>>() {
+                    @Override
+                    public Promise<QueryResponse, ResourceException> answer(InvocationOnMock invocation) {
+                        QueryResourceHandler handler = (QueryResourceHandler) invocation.getArguments()[2];
+                        handler.handleResource(POLICY_ONE);
+                        handler.handleResource(POLICY_TWO);
+                        return Promises.newResultPromise(newQueryResponse());
+                    }
+                });
+
+        listener = new UmaPolicyApplicationListener(mock(AMIdentityRepositoryFactory.class),
+                mock(ApplicationServiceFactory.class), mock(ApplicationTypeManagerWrapper.class), policyResource,
+                mock(ResourceSetStoreFactory.class), mock(SessionCache.class), policyGraphCache);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        realmTestHelper.tearDownRealmClass();
+    }
+
+    @Test
+    public void shouldRemoveDeletedPoliciesFromPolicyGraphCache() throws Exception {
+        //Given
+        policyGraphCache.populate("RESOURCE_SET_ID", asList(POLICY_ONE, POLICY_TWO), policyGraphCache.getGeneration());
+        given(policyResource.handleDelete(any(Context.class), any(DeleteRequest.class)))
+                .willReturn(Promises.<ResourceResponse, ResourceException>newResultPromise(
+                        newResourceResponse("ID", "0", json(object()))));
+
+        //When
+        listener.deletePolicies("/", "RESOURCE_SERVER_ID");
+
+        //Then
+        assertThat(policyGraphCache.get("RESOURCE_SET_ID")).isEmpty();
+    }
+
+    @Test
+    public void shouldInvalidatePolicyGraphCacheWhenDeleteFails() throws Exception {
+        //Given
+        policyGraphCache.populate("RESOURCE_SET_ID", asList(POLICY_ONE, POLICY_TWO), policyGraphCache.getGeneration());
+        given(policyResource.handleDelete(any(Context.class), any(DeleteRequest.class)))
+                .willReturn(Promises.<ResourceResponse, ResourceException>newExceptionPromise(
+                        new NotFoundException()));
+
+        //When
+        listener.deletePolicies("/", "RESOURCE_SERVER_ID");
+
+        //Then
+        assertThat(policyGraphCache.get("RESOURCE_SET_ID")).isNull();
+    }
+
+    private static ResourceResponse policy(String id) {
+        return newResourceResponse(id, "1", json(object(
+                field("applicationName", "RESOURCE_SERVER_ID"),
+                field("resourceTypeUuid", "RESOURCE_SET_ID"),
+                field("actionValues", Collections.singletonMap("read", true)))));
+    }
+}
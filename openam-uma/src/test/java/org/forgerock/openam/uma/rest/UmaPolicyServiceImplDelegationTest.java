@@ -405,7 +405,7 @@ public class UmaPolicyServiceImplDelegationTest {
                 new NotFoundException().asPromise();
         given(policyResourceDelegate.queryPolicies(any(Context.class), any(QueryRequest.class)))
                 .willReturn(queryPromise);
-        given(policyResourceDelegate.queryPolicies(any(Context.class), any(QueryRequest.class),
+        given(policyResourceDelegate.queryResourceSetPolicies(any(Context.class), anyString(),
                 any(QueryResourceHandler.class))).willAnswer(new Answer<Promise<QueryResponse, ResourceException>>() {
             @Override
             public Promise<QueryResponse, ResourceException> answer(InvocationOnMock invocation) throws Throwable {
@@ -438,7 +438,7 @@ public class UmaPolicyServiceImplDelegationTest {
         Promise<List<ResourceResponse>, ResourceException> updatePolicyPromise = newResultPromise(updatedPolicies);
         given(policyResourceDelegate.updatePolicies(any(Context.class), Matchers.<Set<JsonValue>>anyObject()))
                 .willReturn(updatePolicyPromise);
-        given(policyResourceDelegate.queryPolicies(any(Context.class), any(QueryRequest.class),
+        given(policyResourceDelegate.queryResourceSetPolicies(any(Context.class), anyString(),
                 any(QueryResourceHandler.class))).willAnswer(new Answer<Promise<QueryResponse, ResourceException>>() {
             @Override
             public Promise<QueryResponse, ResourceException> answer(InvocationOnMock invocation) throws Throwable {
@@ -644,7 +644,7 @@ public class UmaPolicyServiceImplTest {
             final ResourceResponse... updatedPolicies) {
         given(policyResourceDelegate.queryPolicies(any(Context.class), any(QueryRequest.class)))
                 .willReturn(initialQuery);
-        given(policyResourceDelegate.queryPolicies(any(Context.class), any(QueryRequest.class),
+        given(policyResourceDelegate.queryResourceSetPolicies(any(Context.class), anyString(),
                 any(QueryResourceHandler.class))).willAnswer(new Answer<Promise<QueryResponse, ResourceException>>() {
             @Override
             public Promise<QueryResponse, ResourceException> answer(InvocationOnMock invocation) throws Throwable {